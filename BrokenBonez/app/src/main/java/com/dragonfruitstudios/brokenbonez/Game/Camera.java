@@ -11,12 +11,32 @@ public class Camera {
     private float width;
     private float height;
 
+    // The position of this camera at the previous game update, only set when interpolating.
+    private VectorF prevPos;
+    // The translation applied by `enable`, so that `disable` can undo it.
+    private float enabledX;
+    private float enabledY;
+
     public Camera(float width, float height) {
         pos = new VectorF(0, 0);
         this.width = width;
         this.height = height;
     }
 
+    /**
+     * Saves the camera's current position. When this is called before each game update, the
+     * camera is drawn between the previous and the current position based on the GameView's
+     * interpolation value.
+     */
+    public void savePreviousState() {
+        if (prevPos == null) {
+            prevPos = pos.copy();
+        }
+        else {
+            prevPos.set(pos.x, pos.y);
+        }
+    }
+
     /**
      * Center the camera horizontally on the specified x coordinate.
      */
@@ -28,7 +48,7 @@ public class Camera {
      * Scrolls the camera vertically.
      */
     public void scrollY(float y) {
-        pos.add(new VectorF(0, y));
+        pos.add(0, y);
     }
 
     /**
@@ -37,7 +57,14 @@ public class Camera {
      * Note: You should use GameView.enableCamera instead.
      */
     public void enable(GameView view) {
-        view.translate(-pos.x, -pos.y);
+        enabledX = pos.x;
+        enabledY = pos.y;
+        if (prevPos != null) {
+            float alpha = view.getInterpolation();
+            enabledX = prevPos.x + (pos.x - prevPos.x) * alpha;
+            enabledY = prevPos.y + (pos.y - prevPos.y) * alpha;
+        }
+        view.translate(-enabledX, -enabledY);
     }
 
     /**
@@ -46,7 +73,7 @@ public class Camera {
      * Note: You should use GameView.disableCamera instead.
      */
     public void disable(GameView view) {
-        view.translate(pos.x, pos.y);
+        view.translate(enabledX, enabledY);
     }
 
     /**
@@ -17,6 +17,7 @@ import android.view.View;
 import com.dragonfruitstudios.brokenbonez.Math.Collisions.Line;
 import com.dragonfruitstudios.brokenbonez.Math.Collisions.Polygon;
 import com.dragonfruitstudios.brokenbonez.Math.VectorF;
+import com.dragonfruitstudios.brokenbonez.Math.VectorPool;
 
 import java.security.InvalidParameterException;
 
@@ -40,6 +41,10 @@ public class GameView extends View {
     private Camera camera; // The camera which can be used for drawing.
     private boolean cameraEnabled;
 
+    // How far the current frame is between the previous and the current game update, from 0
+    // to 1. Objects which move use this to draw themselves between those two states.
+    private float interpolation = 1;
+
     /**
      * Stores two GameView callbacks.
      */
@@ -111,6 +116,22 @@ public class GameView extends View {
         canvas.translate(x, y);
     }
 
+    /**
+     * Sets how far the frame being drawn is between the previous and the current game update.
+     * This is set by the GameLoop before each draw.
+     */
+    public void setInterpolation(float interpolation) {
+        this.interpolation = interpolation;
+    }
+
+    /**
+     * Returns a value between 0 and 1 which specifies how far the frame being drawn is between
+     * the previous game update (0) and the current one (1).
+     */
+    public float getInterpolation() {
+        return interpolation;
+    }
+
     /**
      * Assigns the specified camera to this GameView.
      */
@@ -278,16 +299,19 @@ public class GameView extends View {
     public void drawImage(Bitmap image, VectorF pos, float rotation, ImageOrigin origin) {
         checkCanvas();
         canvas.save();
-        VectorF transformedPos = pos.copy();
+        // This is called many times per frame, so use a pooled vector instead of copying `pos`.
+        VectorPool pool = VectorPool.get();
+        int mark = pool.mark();
+        VectorF transformedPos = pool.obtain(pos);
         switch (origin) {
             case Middle:
-                transformedPos.sub(new VectorF(image.getWidth() / 2, image.getHeight() / 2));
+                transformedPos.sub(image.getWidth() / 2, image.getHeight() / 2);
                 break;
             case MiddleLeft:
-                transformedPos.sub(new VectorF(0, image.getHeight()/2));
+                transformedPos.sub(0, image.getHeight()/2);
                 break;
             case BottomLeft:
-                transformedPos.sub(new VectorF(0, image.getHeight()));
+                transformedPos.sub(0, image.getHeight());
                 break;
         }
 
@@ -295,6 +319,7 @@ public class GameView extends View {
                 transformedPos.y + (image.getHeight() / 2));
         canvas.drawBitmap(image, transformedPos.getX(), transformedPos.getY(), paint);
         canvas.restore();
+        pool.release(mark);
     }
 
     /**
@@ -113,8 +113,8 @@ public class Graphics {
     }
 
     public static void scalePos(VectorF pos, int w, int h) {
-        pos.div(new VectorF(1280, 768));
-        pos.mult(new VectorF(w, h));
+        pos.div(1280, 768);
+        pos.mult(w, h);
     }
 
     /**
@@ -8,6 +8,8 @@ import android.util.Log;
 
 import com.dragonfruitstudios.brokenbonez.AssetLoading.AssetLoader;
 import com.dragonfruitstudios.brokenbonez.Game.GameView;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.DistanceField;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Heightfield;
 import com.dragonfruitstudios.brokenbonez.Math.Collisions.Line;
 import com.dragonfruitstudios.brokenbonez.Math.Collisions.Polygon;
 import com.dragonfruitstudios.brokenbonez.Math.Collisions.Rect;
@@ -94,11 +96,39 @@ public class LevelInfo {
 
     /**
      * Adds the solids defined by this LevelInfo into the specified Physics simulator instance.
+     * The simulator's broadphase grid is built here, once all the solids are registered.
      */
     public void loadSolids(Simulator sim) {
+        loadSolids(sim, 0);
+    }
+
+    /**
+     * Same as `loadSolids(Simulator)`, but when `fieldBytes` is positive the solids are added
+     * as a single DistanceField which uses at most `fieldBytes` of memory, so that the wheels
+     * can be tested against the whole level at once.
+     *
+     * Solids whose surface runs from left to right are added as Heightfields either way, those
+     * are cheaper to test against than the DistanceField.
+     */
+    public void loadSolids(Simulator sim, int fieldBytes) {
+        ArrayList<SolidLayer> others = new ArrayList<SolidLayer>();
         for (SolidLayer sl : solids) {
-            sim.addStaticShape(sl);
+            if (sl.isMonotonic()) {
+                sim.addStaticShape(sl.createHeightfield());
+            }
+            else {
+                others.add(sl);
+            }
+        }
+        if (fieldBytes > 0 && others.size() > 0) {
+            sim.addStaticShape(new DistanceField(others, fieldBytes));
+        }
+        else {
+            for (SolidLayer sl : others) {
+                sim.addStaticShape(sl);
+            }
         }
+        sim.rebuildStaticIndex();
     }
 
     /**
@@ -329,6 +359,7 @@ public class LevelInfo {
         // Define a variable which determines whether this path is closed (and does not need
         // to be closed automatically).
         boolean selfClosed = false;
+        int monotonicLines = 0;
 
         // Check if the lines form a closed Polygon.
         VectorF firstPoint = lines.get(0).getStart();
@@ -343,6 +374,11 @@ public class LevelInfo {
             selfClosed = true;
         }
         else {
+            // Ground paths usually run from left to right, these can be simulated using a
+            // Heightfield.
+            if (Heightfield.isMonotonic(lines, lines.size())) {
+                monotonicLines = lines.size();
+            }
             // Otherwise we quickly close the Polygon.
             Line left = new Line(lines.get(0).getStart().copy(),
                     lines.get(0).getStart().added(new VectorF(0, 400)));
@@ -360,6 +396,7 @@ public class LevelInfo {
         }
         // Create a new SolidLayer using the specified `lines` and asset keys `keys`.
         SolidLayer newLayer = SolidLayer.createPolygon(this, lines, keys, theClass, selfClosed);
+        newLayer.setMonotonicLines(monotonicLines);
         return newLayer;
     }
 
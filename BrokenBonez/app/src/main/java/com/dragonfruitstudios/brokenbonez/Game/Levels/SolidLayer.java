@@ -1,5 +1,6 @@
 package com.dragonfruitstudios.brokenbonez.Game.Levels;
 
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Heightfield;
 import com.dragonfruitstudios.brokenbonez.Math.Collisions.Line;
 import com.dragonfruitstudios.brokenbonez.Math.Collisions.Polygon;
 import com.dragonfruitstudios.brokenbonez.Math.VectorF;
@@ -19,6 +20,9 @@ public class SolidLayer extends Polygon {
     // The class to look up for assets.
     private String theClass;
     private boolean selfClosed; // Whether this Polygon was closed in the SVG.
+    // How many of the first lines form a surface along which x increases, see `Heightfield`.
+    // Zero if the lines don't form one.
+    private int monotonicLines;
 
     private LevelInfo owner; // The LevelInfo that this SolidLayer is a part of.
 
@@ -102,6 +106,25 @@ public class SolidLayer extends Polygon {
         return !selfClosed;
     }
 
+    /**
+     * Determines whether this SolidLayer can be simulated as a `Heightfield`, see
+     * `createHeightfield`.
+     */
+    public boolean isMonotonic() {
+        return monotonicLines > 0;
+    }
+
+    void setMonotonicLines(int monotonicLines) {
+        this.monotonicLines = monotonicLines;
+    }
+
+    /**
+     * Creates a Heightfield over this SolidLayer's surface. Only valid if `isMonotonic`.
+     */
+    public Heightfield createHeightfield() {
+        return new Heightfield(this, monotonicLines);
+    }
+
     /**
      * A packed data structure which holds information about the asset type to use for drawing
      * of specific lines.
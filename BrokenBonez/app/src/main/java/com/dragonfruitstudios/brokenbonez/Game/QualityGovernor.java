@@ -0,0 +1,196 @@
+package com.dragonfruitstudios.brokenbonez.Game;
+
+import com.dragonfruitstudios.brokenbonez.GameLoop;
+import com.dragonfruitstudios.brokenbonez.Math.Physics.Simulator;
+import com.dragonfruitstudios.brokenbonez.Math.Physics.StepMetrics;
+
+/**
+ * Adjusts the quality of the physics and the effects to what the device can handle. It keeps
+ * rolling averages of how long frames and physics steps take, and every `windowFrames` frames
+ * moves one quality level down if the game isn't keeping up with `GameLoop.targetFPS`, or one
+ * level up if it keeps up with plenty of time to spare. So slow devices keep their frame rate
+ * and fast devices get more accurate physics.
+ *
+ * The governor listens to the Simulator's step metrics (see `Simulator.setMetricsListener`)
+ * to time the steps, `recordFrame` needs to be called once per frame drawn.
+ */
+public class QualityGovernor implements StepMetrics.Listener {
+    /**
+     * The settings used at a single quality level.
+     */
+    public static class Level {
+        public final int subSteps; // See `Simulator.setMaxSubSteps`.
+        public final int solverIterations; // See `Simulator.setSolverIterations`.
+        public final int particleBudget; // How many particles are emitted at a time.
+
+        Level(int subSteps, int solverIterations, int particleBudget) {
+            this.subSteps = subSteps;
+            this.solverIterations = solverIterations;
+            this.particleBudget = particleBudget;
+        }
+    }
+
+    // From the lowest quality to the highest. `defaultLevel` matches the Simulator's defaults.
+    static final Level[] levels = new Level[] {
+            new Level(2, 4, 0),
+            new Level(4, 6, 1),
+            new Level(8, 8, 1),
+            new Level(12, 12, 2),
+            new Level(16, 16, 3)
+    };
+    public static final int defaultLevel = 2;
+
+    // How many frames are measured before the level is changed again.
+    static final int windowFrames = 60;
+    // How much each new measurement counts towards the rolling averages.
+    static final float smoothing = 0.1f;
+    // Frames taking longer than this fraction of the target frame time are too slow.
+    static final float slowFrame = 1.1f;
+    // The level is only raised while the physics takes less than this fraction of the target
+    // frame time.
+    static final float physicsHeadroom = 0.25f;
+    // After lowering the level, this many windows pass before it is raised again, so that the
+    // governor doesn't keep switching between two levels.
+    static final int raiseDelayWindows = 5;
+
+    private Simulator simulator;
+    private int level;
+    private int minLevel;
+    private int maxLevel;
+
+    // Rolling averages, in milliseconds. Negative until the first measurement.
+    private float frameMs;
+    private float stepMs;
+    private int stepsInFrame; // Physics steps since the last frame.
+    private float stepsPerFrame;
+    private int framesInWindow;
+    private int raiseDelay;
+
+    public QualityGovernor(Simulator simulator) {
+        this.simulator = simulator;
+        minLevel = 0;
+        maxLevel = levels.length - 1;
+        frameMs = -1;
+        stepMs = -1;
+        stepsPerFrame = 1;
+        setLevel(defaultLevel);
+    }
+
+    /**
+     * Returns the highest level whose solver iterations don't exceed `iterations`, useful for
+     * starting at the level closest to the player's settings.
+     */
+    public static int levelForIterations(int iterations) {
+        int result = 0;
+        for (int i = 0; i < levels.length; i++) {
+            if (levels[i].solverIterations <= iterations) {
+                result = i;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sets the current level and applies it to the Simulator. The level is clamped to the
+     * bounds set with `setBounds`.
+     */
+    public void setLevel(int level) {
+        this.level = Math.max(minLevel, Math.min(maxLevel, level));
+        simulator.setMaxSubSteps(levels[this.level].subSteps);
+        simulator.setSolverIterations(levels[this.level].solverIterations);
+    }
+
+    /**
+     * Limits the levels which the governor moves between.
+     */
+    public void setBounds(int minLevel, int maxLevel) {
+        if (minLevel < 0 || maxLevel >= levels.length || minLevel > maxLevel) {
+            throw new IllegalArgumentException("Invalid quality levels: " + minLevel + " to " +
+                    maxLevel);
+        }
+        this.minLevel = minLevel;
+        this.maxLevel = maxLevel;
+        setLevel(level);
+    }
+
+    @Override
+    public void onStep(StepMetrics metrics) {
+        recordStep(metrics.getTotalNanos() / 1000000f);
+    }
+
+    /**
+     * Records how long a physics step took.
+     */
+    public void recordStep(float ms) {
+        stepMs = stepMs < 0 ? ms : stepMs + (ms - stepMs) * smoothing;
+        stepsInFrame++;
+    }
+
+    /**
+     * Records how long the last frame took, and adjusts the level once enough frames have
+     * been measured.
+     */
+    public void recordFrame(float ms) {
+        frameMs = frameMs < 0 ? ms : frameMs + (ms - frameMs) * smoothing;
+        stepsPerFrame += (stepsInFrame - stepsPerFrame) * smoothing;
+        stepsInFrame = 0;
+
+        framesInWindow++;
+        if (framesInWindow < windowFrames) {
+            return;
+        }
+        framesInWindow = 0;
+        if (raiseDelay > 0) {
+            raiseDelay--;
+        }
+
+        float targetMs = 1000f / GameLoop.targetFPS;
+        float physicsMs = Math.max(stepMs, 0) * stepsPerFrame;
+        if (frameMs > targetMs * slowFrame && level > minLevel) {
+            setLevel(level - 1);
+            raiseDelay = raiseDelayWindows;
+        }
+        else if (frameMs <= targetMs * slowFrame && physicsMs < targetMs * physicsHeadroom &&
+                raiseDelay == 0 && level < maxLevel) {
+            setLevel(level + 1);
+        }
+    }
+
+    // <editor-fold desc="Getters/Setters">
+
+    /**
+     * @return The current quality level, from 0 (lowest) to `getLevelCount() - 1`.
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    public Level getSettings() {
+        return levels[level];
+    }
+
+    public int getParticleBudget() {
+        return levels[level].particleBudget;
+    }
+
+    /**
+     * @return The rolling average frame time in milliseconds, or -1 before the first frame.
+     */
+    public float getFrameMs() {
+        return frameMs;
+    }
+
+    /**
+     * @return The rolling average physics step time in milliseconds, or -1 before the first
+     * step.
+     */
+    public float getStepMs() {
+        return stepMs;
+    }
+
+    // </editor-fold>
+}
@@ -44,6 +44,7 @@ public class GameScene extends Scene {
                         Bike.BodyType bikeBodyType, int bikeColor) {
         // The easiest way to create a new game is to recreate the GameState. Resetting the state
         // manually is very difficult to do reliably.
+        this.state.pause();
         this.state = new GameState(this, assetLoader, this.gameSceneManager,
                 levelID, characterType, bikeBodyType, bikeColor);
         // The state needs to receive at least one `updateSize` call to draw the Game properly.
@@ -64,6 +65,16 @@ public class GameScene extends Scene {
         state.onTouchEvent(event);
     }
 
+    @Override
+    public void pause() {
+        state.pause();
+    }
+
+    @Override
+    public void deactivate() {
+        state.pause();
+    }
+
     @Override
     public void activate() {
         this.settings = new Settings(gameSceneManager);
@@ -21,6 +21,12 @@ import java.util.concurrent.locks.ReentrantLock;
  */
 public class GameLoop implements Runnable {
     public static int targetFPS = 60; // Mutable so that we can slow down simulation -DP
+    // The game is always updated in fixed steps of this many milliseconds, no matter how long
+    // each frame takes. The physics simulator relies on this.
+    public static final float stepMs = 1000f / 60;
+    // When the game falls far behind (for example after a long GC pause) only this many steps
+    // are run to catch up, the rest of the time is dropped to avoid falling even further behind.
+    static final int maxCatchUpSteps = 5;
     final long targetTime;
     volatile boolean run = false;
     GameView gameView;
@@ -68,6 +74,10 @@ public class GameLoop implements Runnable {
 
     // These flags are used for timing the `update` method
     long lastUpdate = System.currentTimeMillis();
+    // The amount of milliseconds which have passed but haven't been simulated yet.
+    float accumulator = 0;
+    // How far the last frame is between the previous and the current step (0 to 1).
+    float interpolation = 1;
 
     // Fields used to store debugging information.
     // These flags are used to report the current FPS.
@@ -147,17 +157,26 @@ public class GameLoop implements Runnable {
             if (slowMotion) {
                 msSinceLastUpdate = 1;
             }
-            // Pass it to GameState's update method.
-            gameSceneManager.update(msSinceLastUpdate);
+
+            // Run as many fixed steps as are needed to catch up with real time. Whatever time
+            // is left over is carried over to the next frame.
+            accumulator = Math.min(accumulator + msSinceLastUpdate, maxCatchUpSteps * stepMs);
+            while (accumulator >= stepMs) {
+                gameSceneManager.update(stepMs);
+                accumulator -= stepMs;
+            }
+            interpolation = accumulator / stepMs;
+
             this.assetLoader.update(msSinceLastUpdate);
         }
 
         // Update the `lastUpdate` variable with the current time.
         lastUpdate = System.currentTimeMillis();
 
-        // Check to see if a simple 1ms step is wanted.
+        // Check to see if a single step is wanted.
         if (step) {
-            gameSceneManager.update(1);
+            gameSceneManager.update(stepMs);
+            interpolation = 1;
             step = !step;
         }
         updateLock.unlock();
@@ -173,6 +192,7 @@ public class GameLoop implements Runnable {
         updateLock.lock();
         gameView.clear(Color.BLACK);
 
+        gameView.setInterpolation(interpolation);
         gameSceneManager.draw();
 
         if (Graphics.drawDebugInfo) {
@@ -11,19 +11,23 @@ import com.dragonfruitstudios.brokenbonez.Math.Collisions.Circle;
 import com.dragonfruitstudios.brokenbonez.Game.GameObject;
 import com.dragonfruitstudios.brokenbonez.Game.GameView;
 import com.dragonfruitstudios.brokenbonez.Math.Collisions.Line;
-import com.dragonfruitstudios.brokenbonez.Math.Collisions.Rect;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.OrientedBox;
+import com.dragonfruitstudios.brokenbonez.Math.Physics.BodyStates;
 import com.dragonfruitstudios.brokenbonez.Math.Physics.Constraint;
 import com.dragonfruitstudios.brokenbonez.Math.Physics.DynamicBody;
+import com.dragonfruitstudios.brokenbonez.Math.Physics.PhysicsThread;
 import com.dragonfruitstudios.brokenbonez.Math.Physics.Simulator;
 import com.dragonfruitstudios.brokenbonez.Math.VectorF;
+import com.dragonfruitstudios.brokenbonez.Math.VectorPool;
 
 public class Bike implements GameObject {
     // Some constants related to the wheels.
-    final float wheelSeparation = 74f; // TODO: Change this depending on body type.
-    final float wheelRadius = 20f;
-    final float wheelMass = 200f;
-    final float tiltSensitivity = 2f; // Affects the rate of bike tilting.
-    final float maxTiltAngle = 30f;
+    static final float wheelSeparation = 74f; // TODO: Change this depending on body type.
+    static final float wheelRadius = 20f;
+    static final float wheelMass = 200f;
+    static final float bodyHeight = 43f;
+    static final float tiltSensitivity = 2f; // Affects the rate of bike tilting.
+    static final float maxTiltAngle = 30f;
 
     // The current level that this bike is on.
     Level currentLevel;
@@ -33,8 +37,13 @@ public class Bike implements GameObject {
     DynamicBody rightWheel;
     // The constraint between the two wheels (holds the two wheels a certain distance apart).
     Constraint wheelConstraint;
-    // The body of this bike.
-    Rect bodyRect;
+    // The body of this bike. Moved along with the wheels by `syncState`.
+    OrientedBox bodyRect;
+    // The body used to check whether the bike crashed. Unlike `bodyRect` it is placed at the
+    // wheels themselves, so it belongs to whichever thread steps them.
+    OrientedBox crashRect;
+    // A Line between the wheels' positions, used for tilting. See `tilt`.
+    Line wheelLine;
 
     // The start position of this bike.
     VectorF startPos;
@@ -46,11 +55,39 @@ public class Bike implements GameObject {
     CharacterType characterType;
     int color; // The bike color.
 
+    // The thread which steps the wheels, or null when the game updates the Simulator itself.
+    // While it runs the wheels belong to it, so everything which changes them is posted to it.
+    PhysicsThread physicsThread;
+
+    // The wheels' state at the latest game update, see `syncState`. The rest of the game reads
+    // the bike's state from these rather than from the wheels.
+    VectorF currentLeftPos = new VectorF(0, 0);
+    VectorF currentRightPos = new VectorF(0, 0);
+    float currentLeftRotation;
+    float currentRightRotation;
+    boolean leftOnGround;
+    boolean rightOnGround;
+
+    // The wheels' positions and rotations at the previous game update. When drawing, the bike is
+    // interpolated between these and the wheels' current state.
+    VectorF prevLeftPos = new VectorF(0, 0);
+    VectorF prevRightPos = new VectorF(0, 0);
+    float prevLeftRotation;
+    float prevRightRotation;
+    // Scratch vectors for `draw`, so that drawing doesn't create garbage every frame.
+    VectorF drawLeftPos = new VectorF(0, 0);
+    VectorF drawRightPos = new VectorF(0, 0);
+    VectorF drawBodyPos = new VectorF(0, 0);
+    VectorF drawDirection = new VectorF(0, 0);
+    VectorF drawNormal = new VectorF(0, 0);
+
     // Specifies how much the bike should be tilting per update.
-    float currentTiltForce = 0;
+    volatile float currentTiltForce = 0;
 
     // Has this bike crashed?
     boolean dead;
+    // Set by `updateWheels` when the bike's body hits the level, `update` then crashes the bike.
+    volatile boolean crashed;
 
     /**
      * The different Bike body types.
@@ -84,6 +121,7 @@ public class Bike implements GameObject {
         // Create a constraint between the two wheels so that they are kept together.
         wheelConstraint = currentLevel.getPhysicsSimulator().createConstraint(leftWheel,
                 rightWheel, wheelSeparation);
+        wheelLine = new Line(leftWheel.getPos(), rightWheel.getPos());
 
         // Store and compute variables holding customisation data (bike color, shape etc.)
         this.bodyType = bodyType;
@@ -92,52 +130,143 @@ public class Bike implements GameObject {
         setColor(Color.parseColor("#4d27f6"));
 
         // Create bounding rectangle around Bike body.
-        bodyRect = new Rect(new VectorF(0, 0), 1, 1);
+        bodyRect = new OrientedBox(0.5f, 0.5f, 0.5f, 0.5f, 0);
+        crashRect = new OrientedBox(0.5f, 0.5f, 0.5f, 0.5f, 0);
+        syncState();
+    }
+
+    /**
+     * Moves `box` so that it overlays the body of a bike whose wheels are at `leftPos` and
+     * `rightPos`.
+     */
+    private static void placeBody(OrientedBox box, VectorF leftPos, VectorF rightPos) {
+        float length = VectorF.distStatic(leftPos.x, leftPos.y, rightPos.x, rightPos.y);
+        if (length == 0) {
+            return; // The body's angle is unknown, so leave it where it was.
+        }
+        // The direction from the left wheel to the right wheel, and the normal to it.
+        float directionX = (rightPos.x - leftPos.x) / length;
+        float directionY = (rightPos.y - leftPos.y) / length;
+        float normalX = -directionY;
+        float normalY = directionX;
+        // The left wheel's position is the bottom left of the body rectangle. The rectangle
+        // extends towards the right wheel and up along the normal to the body's angle.
+        float centerX = leftPos.x + directionX * wheelSeparation / 2 - normalX * bodyHeight / 2;
+        float centerY = leftPos.y + directionY * wheelSeparation / 2 - normalY * bodyHeight / 2;
+        box.set(centerX, centerY, directionX, directionY, wheelSeparation / 2, bodyHeight / 2);
     }
 
-    private void updateBodyRect(VectorF bodyRotation, VectorF bodyNormal) {
-        // Use the left wheel's position as the position for the bottom left of the body rectangle.
-        VectorF bottomLeft = leftWheel.getPos().copy();
+    /**
+     * Copies the wheels' state into the fields which the rest of the game reads: from the wheels
+     * themselves, or from the latest published states when a PhysicsThread steps them. This is
+     * called after each physics step (or each game update when the steps run on their own
+     * thread), and moves `bodyRect` along with the wheels.
+     */
+    public void syncState() {
+        if (physicsThread == null) {
+            currentLeftPos.set(leftWheel.getPos().x, leftWheel.getPos().y);
+            currentRightPos.set(rightWheel.getPos().x, rightWheel.getPos().y);
+            currentLeftRotation = leftWheel.getRotation();
+            currentRightRotation = rightWheel.getRotation();
+            leftOnGround = leftWheel.isOnGround();
+            rightOnGround = rightWheel.isOnGround();
+        }
+        else {
+            BodyStates states = physicsThread.getLatest();
+            int left = leftWheel.getId();
+            int right = rightWheel.getId();
+            currentLeftPos.set(states.getX(left), states.getY(left));
+            currentRightPos.set(states.getX(right), states.getY(right));
+            currentLeftRotation = states.getRotation(left);
+            currentRightRotation = states.getRotation(right);
+            leftOnGround = states.isOnGround(left);
+            rightOnGround = states.isOnGround(right);
+        }
 
-        // Project the bottomLeft vector in the direction of the right wheel.
-        VectorF bottomRight = bottomLeft.copy();
-        bottomRight.multAdd(bodyRotation, wheelSeparation);
+        if (!dead) {
+            placeBody(bodyRect, currentLeftPos, currentRightPos);
+        }
+    }
+
+    /**
+     * Runs `command`, which changes the wheels, on the thread which steps them: right away, or
+     * before the next step of the PhysicsThread.
+     */
+    private void runOnWheels(Runnable command) {
+        if (physicsThread == null) {
+            command.run();
+        }
+        else {
+            physicsThread.post(command);
+        }
+    }
+
+    /**
+     * Saves the current state of the wheels. This is called before each game update so that
+     * `draw` can draw the bike between the previous and the current state.
+     */
+    public void savePreviousState() {
+        prevLeftPos.set(currentLeftPos.x, currentLeftPos.y);
+        prevRightPos.set(currentRightPos.x, currentRightPos.y);
+        prevLeftRotation = currentLeftRotation;
+        prevRightRotation = currentRightRotation;
+    }
 
-        // Project the bottomLeft vector up in the direction of the normal to the body's angle.
-        VectorF topLeft = bottomLeft.copy();
-        topLeft.multAdd(bodyNormal, -43);
+    private static float interpolate(float prev, float current, float alpha) {
+        return prev + (current - prev) * alpha;
+    }
 
-        // Project the bottomRight vector up in the direction of the normal to the body's angle.
-        VectorF topRight = bottomRight.copy();
-        topRight.multAdd(bodyNormal, -43);
+    /**
+     * Same as `getPos` but interpolated between the previous and current game update.
+     */
+    VectorF getDrawPos(float alpha, VectorF out) {
+        prevLeftPos.interpolated(currentLeftPos, alpha, out);
+        out.add(wheelSeparation/2, 0);
+        return out;
+    }
 
-        // Update the bodyRect with the new positions.
-        bodyRect.setLines(new Line(topLeft, topRight), new Line(topLeft, bottomLeft),
-                new Line(bottomLeft, bottomRight), new Line(bottomRight, topRight));
+    /**
+     * Same as `getRotation` but interpolated between the previous and current game update.
+     */
+    float getDrawRotation(float alpha) {
+        float leftX = interpolate(prevLeftPos.x, currentLeftPos.x, alpha);
+        float leftY = interpolate(prevLeftPos.y, currentLeftPos.y, alpha);
+        float rightX = interpolate(prevRightPos.x, currentRightPos.x, alpha);
+        float rightY = interpolate(prevRightPos.y, currentRightPos.y, alpha);
+        return (float)Math.atan2(rightY - leftY, rightX - leftX);
     }
 
     public void draw(GameView gameView) {
+        // Draw the bike between its previous and current state, so that its movement stays
+        // smooth regardless of how many updates happened since the last frame.
+        float alpha = gameView.getInterpolation();
+        VectorF leftPos = prevLeftPos.interpolated(currentLeftPos, alpha, drawLeftPos);
+        VectorF rightPos = prevRightPos.interpolated(currentRightPos, alpha, drawRightPos);
+
         gameView.enableCamera();
         // Draw the wheels.
         Bitmap wheel = currentLevel.getAssetLoader().getBitmapByName("bike/wheel_basic.png");
-        gameView.drawImage(wheel, leftWheel.getPos(), leftWheel.getRotation(),
+        gameView.drawImage(wheel, leftPos,
+                interpolate(prevLeftRotation, currentLeftRotation, alpha),
                 GameView.ImageOrigin.Middle);
-        gameView.drawImage(wheel, rightWheel.getPos(), rightWheel.getRotation(),
+        gameView.drawImage(wheel, rightPos,
+                interpolate(prevRightRotation, currentRightRotation, alpha),
                 GameView.ImageOrigin.Middle);
 
         // Draw the bike body as long as the bike hasn't crashed.
         if (!dead) {
             // Calculate the vector between the two wheels.
-            VectorF leftToRight = rightWheel.getPos().subtracted(leftWheel.getPos());
+            VectorF leftToRight = rightPos.subtracted(leftPos, drawDirection);
             // Check if the left wheel is in the same position as the right wheel.
-            if (!leftWheel.getPos().equals(rightWheel.getPos())) {
+            if (!leftPos.equals(rightPos)) {
                 float angle = leftToRight.angle();
                 leftToRight.normalise();
-                VectorF bodyPos = leftWheel.getPos().copy();
+                VectorF bodyPos = leftPos.copy(drawBodyPos);
                 // Move the body so that its positioned between the two wheels.
                 bodyPos.multAdd(leftToRight, wheelSeparation / 2);
                 // Calculate normal to `leftToRight` vector.
-                VectorF ltrNormal = new VectorF(-leftToRight.getY(), leftToRight.getX());
+                VectorF ltrNormal = drawNormal;
+                ltrNormal.set(-leftToRight.getY(), leftToRight.getX());
                 // Move the body so that its positioned above the wheels.
                 bodyPos.multAdd(ltrNormal, -wheelRadius);
                 // Draw the body at the specified position and with the specified rotation.
@@ -145,16 +274,14 @@ public class Bike implements GameObject {
                 // Draw the character at/with the specified position and rotation.
                 bodyPos.multAdd(ltrNormal, -10); // Move the character up a bit.
                 gameView.drawImage(character, bodyPos, angle, GameView.ImageOrigin.Middle);
-
-                // Set the `bodyRect` so that it overlays the bike body.
-                updateBodyRect(leftToRight, ltrNormal);
             } else {
                 // Handle the rare case when the wheels are in the same position.
-                gameView.drawImage(body, leftWheel.getPos(), 0, GameView.ImageOrigin.Middle);
+                gameView.drawImage(body, leftPos, 0, GameView.ImageOrigin.Middle);
             }
         }
 
-        // Draw the body rect for debugging purposes.
+        // Draw the body rect for debugging purposes. It is moved by `syncState`, so unlike the
+        // rest of the bike it isn't interpolated.
         bodyRect.draw(gameView);
 
         gameView.disableCamera();
@@ -165,7 +292,7 @@ public class Bike implements GameObject {
             String debugInfo = String.format(
                     "Bike[%s, OnGrnd: %s %s, A: %.1f°, Tilt: %.1f]",
                     debugWheel.toString(),
-                    leftWheel.isOnGround() ? "✓" : "✘", rightWheel.isOnGround() ? "✓" : "✘",
+                    leftOnGround ? "✓" : "✘", rightOnGround ? "✓" : "✘",
                     (Math.toDegrees(getRotation())),
                     currentTiltForce);
             gameView.drawText(debugInfo, 20, 60, Color.WHITE);
@@ -191,21 +318,68 @@ public class Bike implements GameObject {
         Log.d("Bike", "Updated start pos: " + startPos.toString());
         this.startPos = startPos;
 
-        // Calculate positions of the left and right wheels.
-        leftWheel.setPos(startPos.x, startPos.y);
-        rightWheel.setPos(leftWheel.getPos().x + wheelSeparation, startPos.y);
+        // Calculate positions of the left and right wheels. This also makes sure that the bike
+        // isn't interpolated from wherever it was before.
+        setPos(startPos.x, startPos.y);
     }
 
     public void update(float lastUpdate) {
-        float updateFactor = Simulator.calcUpdateFactor(lastUpdate);
+        final float updateFactor = Simulator.calcUpdateFactor(lastUpdate);
+        if (physicsThread == null) {
+            updateWheels(updateFactor);
+        }
+        else {
+            physicsThread.post(new Runnable() {
+                @Override
+                public void run() {
+                    updateWheels(updateFactor);
+                }
+            });
+        }
 
+        if (crashed && !dead) {
+            dead = true;
+
+            // Call the current level's onBikeCrash method. This method will take the necessary
+            // steps to end the game if necessary.
+            currentLevel.onBikeCrash();
+        }
+    }
+
+    /**
+     * The part of `update` which changes the wheels, run on the thread which steps them. Tilts
+     * the bike and checks whether its body collided with anything at the wheels' current
+     * positions.
+     */
+    private void updateWheels(float updateFactor) {
         // Handle tilting of the bike depending on the `currentTiltForce`.
+        tilt(leftWheel, rightWheel, wheelLine, currentTiltForce, updateFactor);
+
+        if (!crashed) {
+            placeBody(crashRect, leftWheel.getPos(), rightWheel.getPos());
+            if (currentLevel.collidesWith(crashRect)) {
+                // The bike collided with something, so let's remove the constraint between the
+                // wheels and make it fall apart.
+                currentLevel.getPhysicsSimulator().removeConstraint(wheelConstraint);
+                crashed = true;
+            }
+        }
+    }
+
+    /**
+     * Tilts the bike made up of `leftWheel` and `rightWheel` by rotating `wheelLine`, which
+     * must be a Line between the two wheels' positions. This is also used by `BikeRun`, so it
+     * doesn't create any garbage.
+     * @return Whether the bike was rotated.
+     */
+    static boolean tilt(DynamicBody leftWheel, DynamicBody rightWheel, Line wheelLine,
+                        float tiltForce, float updateFactor) {
         boolean rotate = false; // Determines whether rotation occurred.
-        if (Math.abs(currentTiltForce) > 0.08) {
+        if (Math.abs(tiltForce) > 0.08) {
             // This code is a tad magical. The Line constructor does not copy the wheels'
             // position vectors, so when the Line is rotated the position vectors belonging to the
             // wheel's are rotated directly.
-            Line leftToRight = new Line(leftWheel.getPos(), rightWheel.getPos());
+            Line leftToRight = wheelLine;
 
             // Assume that we want to rotate the Bike.
             rotate = true;
@@ -216,20 +390,22 @@ public class Bike implements GameObject {
                 if (angle < -maxTiltAngle) {
                     // The bike may be above the threshold, in that case we want it to tilt if
                     // the tilting direction is away from its threshold (towards ground).
-                    rotate = Math.abs(angle + tiltSensitivity * currentTiltForce) < Math.abs(angle);
+                    rotate = Math.abs(angle + tiltSensitivity * tiltForce) < Math.abs(angle);
                 }
             }
 
-            if ((leftWheel.isOnGround() || rightWheel.isOnGround()) && currentTiltForce > 0) {
+            if ((leftWheel.isOnGround() || rightWheel.isOnGround()) && tiltForce > 0) {
                 // Disallow lifting left wheel to prevent issues with no traction.
                 rotate = false;
             }
 
             if (rotate) {
-                Log.w("Bike", "Tilting at: " + currentTiltForce);
-                // Rotate the bike based on the currentTiltForce.
-                leftToRight.rotate(-tiltSensitivity * currentTiltForce * updateFactor,
-                        leftToRight.getCenter());
+                // Rotate the bike based on the tiltForce.
+                VectorPool pool = VectorPool.get();
+                int mark = pool.mark();
+                VectorF center = leftToRight.getCenter(pool.obtain(0, 0));
+                leftToRight.rotate(-tiltSensitivity * tiltForce * updateFactor, center);
+                pool.release(mark);
                 // Disable the gravity of the wheel that is in the air while tilting (to prevent it
                 // from dropping to ground).
                 rightWheel.setHasGravity(!leftWheel.isOnGround());
@@ -242,19 +418,7 @@ public class Bike implements GameObject {
             rightWheel.setHasGravity(true);
             leftWheel.setHasGravity(true);
         }
-
-        // Determine if Bike body collided with anything.
-        if (currentLevel.collidesWith(bodyRect) && !dead) {
-            // The bike collided with something, so let's remove the constraint between the wheels
-            // and make it fall apart.
-            currentLevel.getPhysicsSimulator().removeConstraint(wheelConstraint);
-
-            dead = true;
-
-            // Call the current level's onBikeCrash method. This method will take the necessary
-            // steps to end the game if necessary.
-            currentLevel.onBikeCrash();
-        }
+        return rotate;
     }
 
     /**
@@ -262,13 +426,20 @@ public class Bike implements GameObject {
      */
     public void reset() {
         updateStartPos(currentLevel.getStartPoint());
-        leftWheel.reset();
-        rightWheel.reset();
-
-        currentLevel.getPhysicsSimulator().addConstraint(wheelConstraint);
+        runOnWheels(new Runnable() {
+            @Override
+            public void run() {
+                leftWheel.reset();
+                rightWheel.reset();
+
+                currentLevel.getPhysicsSimulator().addConstraint(wheelConstraint);
+                crashed = false;
+            }
+        });
         dead = false;
+        savePreviousState();
 
-        bodyRect = new Rect(new VectorF(0, 0), 1, 1);
+        bodyRect.set(0.5f, 0.5f, 1, 0, 0.5f, 0.5f);
     }
 
     // <editor-fold desc="Getters/Setters">
@@ -279,6 +450,33 @@ public class Bike implements GameObject {
      */
     public void setTorque(float strength) {
         // Left wheel is controlled by the engine, so it gets the acceleration.
+        final float torque = calcBikeSpeed(bodyType) * strength;
+        runOnWheels(new Runnable() {
+            @Override
+            public void run() {
+                leftWheel.setTorque(torque);
+            }
+        });
+    }
+
+    /**
+     * Sets the velocity of the left wheel to `speed` px/s to the right, for example when the
+     * bike drives over a boost.
+     */
+    public void boost(final float speed) {
+        runOnWheels(new Runnable() {
+            @Override
+            public void run() {
+                leftWheel.getVelocity().set(speed, 0);
+            }
+        });
+    }
+
+    /**
+     * Returns the torque applied to the left wheel at full acceleration by a bike with the
+     * specified body type.
+     */
+    static int calcBikeSpeed(BodyType bodyType) {
         int bikeSpeed = 500;
         switch (bodyType) {
             case Bicycle:
@@ -288,8 +486,7 @@ public class Bike implements GameObject {
                 bikeSpeed = 500;
                 break;
         }
-
-        leftWheel.setTorque(bikeSpeed * strength);
+        return bikeSpeed;
     }
 
     public void setTilt(float value) {
@@ -297,7 +494,15 @@ public class Bike implements GameObject {
     }
 
     public VectorF getPos() {
-        return new VectorF(leftWheel.getPos().x + (wheelSeparation/2), leftWheel.getPos().y);
+        return getPos(new VectorF(0, 0));
+    }
+
+    /**
+     * Same as `getPos` but stores the position in `out` and returns it.
+     */
+    public VectorF getPos(VectorF out) {
+        out.set(currentLeftPos.x + (wheelSeparation/2), currentLeftPos.y);
+        return out;
     }
 
     public int getColor() {
@@ -313,13 +518,23 @@ public class Bike implements GameObject {
     }
 
     public float getRotation() {
-        VectorF leftToRight = rightWheel.getPos().subtracted(leftWheel.getPos());
-        return leftToRight.angle();
+        return (float)Math.atan2(currentRightPos.y - currentLeftPos.y,
+                currentRightPos.x - currentLeftPos.x);
     }
 
-    public void setPos(float x, float y) {
-        leftWheel.setPos(x, y);
-        rightWheel.setPos(x + wheelSeparation, y);
+    public void setPos(final float x, final float y) {
+        runOnWheels(new Runnable() {
+            @Override
+            public void run() {
+                leftWheel.setPos(x, y);
+                rightWheel.setPos(x + wheelSeparation, y);
+            }
+        });
+        // Show the bike at its new position straight away, even if the wheels are only moved
+        // before the next physics step.
+        currentLeftPos.set(x, y);
+        currentRightPos.set(x + wheelSeparation, y);
+        savePreviousState();
     }
 
     public void setColor(int color) {
@@ -372,6 +587,37 @@ public class Bike implements GameObject {
         character = currentLevel.getAssetLoader().getBitmapByName(characterKey);
     }
 
+    /**
+     * Sets the PhysicsThread which steps the wheels from now on, or null when the game updates
+     * the Simulator itself.
+     */
+    public void setPhysicsThread(PhysicsThread physicsThread) {
+        this.physicsThread = physicsThread;
+        syncState();
+    }
+
+    /**
+     * @return The left wheel's position at the latest game update, see `syncState`.
+     */
+    public VectorF getLeftPos() {
+        return currentLeftPos;
+    }
+
+    public VectorF getRightPos() {
+        return currentRightPos;
+    }
+
+    public float getLeftRotation() {
+        return currentLeftRotation;
+    }
+
+    public float getRightRotation() {
+        return currentRightRotation;
+    }
+
+    /**
+     * Only touch the wheels directly when no PhysicsThread steps them, see `setPhysicsThread`.
+     */
     public DynamicBody getLeftWheel() {
         return leftWheel;
     }
@@ -380,7 +626,7 @@ public class Bike implements GameObject {
         return rightWheel;
     }
 
-    public Rect getBodyRect(){
+    public OrientedBox getBodyRect(){
         return bodyRect;
     }
 
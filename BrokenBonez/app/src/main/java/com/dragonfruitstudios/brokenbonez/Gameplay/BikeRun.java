@@ -0,0 +1,124 @@
+package com.dragonfruitstudios.brokenbonez.Gameplay;
+
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Circle;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Line;
+import com.dragonfruitstudios.brokenbonez.Math.Physics.BatchSimulator;
+import com.dragonfruitstudios.brokenbonez.Math.Physics.DynamicBody;
+import com.dragonfruitstudios.brokenbonez.Math.Physics.Simulator;
+import com.dragonfruitstudios.brokenbonez.Math.VectorF;
+
+/**
+ * A headless version of the Bike for use with a BatchSimulator: the same wheels and constraint
+ * as the Bike, without any assets or drawing. The bike is driven at a constant throttle until
+ * its left wheel reaches `finishX`.
+ */
+public class BikeRun implements BatchSimulator.Run {
+    private VectorF startPos;
+    private Bike.BodyType bodyType;
+    private float throttle; // Between 0 and 1, like `Bike.setTorque`.
+    private float tilt; // Like `Bike.setTilt`.
+    private float finishX;
+
+    // The physics constants to simulate this run with.
+    private float gravity = Simulator.gravityScaled;
+    private float airResistance = Simulator.airResistance;
+    private float angularVelPreserved = Simulator.angularVelPreserved;
+
+    private DynamicBody leftWheel;
+    private DynamicBody rightWheel;
+    private Line wheelLine; // See `Bike.tilt`.
+
+    // The results of the run.
+    private int steps;
+    private boolean finished;
+    private long stateHash;
+
+    public BikeRun(VectorF startPos, Bike.BodyType bodyType, float throttle, float finishX) {
+        this.startPos = startPos.copy();
+        this.bodyType = bodyType;
+        this.throttle = throttle;
+        this.finishX = finishX;
+    }
+
+    @Override
+    public void setUp(Simulator sim) {
+        sim.setGravity(gravity);
+        sim.setAirResistance(airResistance);
+        sim.setAngularVelPreserved(angularVelPreserved);
+
+        // Same as the Bike's constructor and `updateStartPos`.
+        Circle circle = new Circle(new VectorF(0, 0), Bike.wheelRadius);
+        leftWheel = sim.createDynamicBody(circle, Bike.wheelMass);
+        rightWheel = sim.createDynamicBody(circle, Bike.wheelMass);
+        sim.createConstraint(leftWheel, rightWheel, Bike.wheelSeparation);
+        leftWheel.setPos(startPos.x, startPos.y);
+        rightWheel.setPos(startPos.x + Bike.wheelSeparation, startPos.y);
+        wheelLine = new Line(leftWheel.getPos(), rightWheel.getPos());
+    }
+
+    @Override
+    public boolean update(Simulator sim) {
+        if (leftWheel.getPos().x >= finishX) {
+            finished = true;
+            return false;
+        }
+        leftWheel.setTorque(Bike.calcBikeSpeed(bodyType) * throttle);
+        Bike.tilt(leftWheel, rightWheel, wheelLine, tilt, sim.getStepTime());
+        steps++;
+        return true;
+    }
+
+    @Override
+    public void finish(Simulator sim) {
+        stateHash = sim.stateHash();
+    }
+
+    // <editor-fold desc="Getters/Setters">
+
+    public void setTilt(float tilt) {
+        this.tilt = tilt;
+    }
+
+    public void setGravity(float gravity) {
+        this.gravity = gravity;
+    }
+
+    public void setAirResistance(float airResistance) {
+        this.airResistance = airResistance;
+    }
+
+    public void setAngularVelPreserved(float angularVelPreserved) {
+        this.angularVelPreserved = angularVelPreserved;
+    }
+
+    /**
+     * @return The amount of steps simulated.
+     */
+    public int getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return Whether the bike reached `finishX` before the run was stopped.
+     */
+    public boolean hasFinished() {
+        return finished;
+    }
+
+    /**
+     * @return The position of the left wheel.
+     */
+    public VectorF getPos() {
+        return leftWheel.getPos();
+    }
+
+    /**
+     * @return `Simulator.stateHash` after the last step, which can be used to check that a run
+     * gives the same result as it did before.
+     */
+    public long getStateHash() {
+        return stateHash;
+    }
+
+    // </editor-fold>
+}
@@ -22,6 +22,7 @@ import com.dragonfruitstudios.brokenbonez.Math.Collisions.Line;
 import com.dragonfruitstudios.brokenbonez.Game.GameView;
 import com.dragonfruitstudios.brokenbonez.Math.Physics.Simulator;
 import com.dragonfruitstudios.brokenbonez.Math.VectorF;
+import com.dragonfruitstudios.brokenbonez.Math.VectorPool;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -31,6 +32,9 @@ import java.util.Map;
  * Used to draw a Game level as defined by a LevelInfo.
  */
 public class GameLevel extends Level {
+    // How much memory the distance field over the level's solids may use.
+    static final int distanceFieldBytes = 512 * 1024;
+
     private GameState gameState; // Used to grab assets, and physics simulator.
 
     private VectorF startPoint; // Holds the coordinates which determine where the bike starts.
@@ -38,6 +42,7 @@ public class GameLevel extends Level {
     private LevelInfo info; // Holds information about the current level.
 
     private VectorF bikePos; // The current bike position.
+    private VectorF finishPos; // The scaled finish line position, reused by every update.
     private LevelInfo.LevelID currentLevelID;
 
     private boolean layersScaled = false; // Have the layers been scaled?
@@ -52,6 +57,7 @@ public class GameLevel extends Level {
 
         startPoint = new VectorF(0, 0); // Just a reasonable default.
         bikePos = new VectorF(0, 0);
+        finishPos = new VectorF(0, 0);
         layersScaled = false;
         bitmapsScaled = false;
         currentLevelID = levelID;
@@ -105,7 +111,7 @@ public class GameLevel extends Level {
 
         // Load the solid layers into the physics simulator, so that the bike can collide with them.
         Simulator physicsSimulator = gameState.getPhysicsSimulator();
-        info.loadSolids(physicsSimulator);
+        info.loadSolids(physicsSimulator, distanceFieldBytes);
 
         // Initialise the LevelObjects based on the ones specified in LevelInfo.
         levelObjects = new ArrayList<>();
@@ -132,6 +138,8 @@ public class GameLevel extends Level {
             for (SolidLayer sl : info.getSolids()) {
                 Graphics.scalePolygon(sl, w, h);
             }
+            // The solids moved, so the physics broadphase needs to be told about it.
+            getPhysicsSimulator().rebuildStaticIndex();
             layersScaled = true;
         }
 
@@ -159,11 +167,15 @@ public class GameLevel extends Level {
         // Calculate at which image index we need to start drawing at (the others
         // are off screen).
         int startAt = (int)Math.floor(screenLeft*scrollFactor / img.getWidth());
+        VectorPool pool = VectorPool.get();
+        int mark = pool.mark();
+        VectorF imgPos = pool.obtain(0, 0);
         for (int i = startAt; i <= imgCount+startAt; i++) {
             // Draw the image at the position given by `i` multiplied by `img.getWidth()`.
-            VectorF start = new VectorF(i*img.getWidth(), 0);
-            view.drawImage(img, pos.added(start), 0, origin);
+            imgPos.set(pos.x + i*img.getWidth(), pos.y);
+            view.drawImage(img, imgPos, 0, origin);
         }
+        pool.release(mark);
     }
 
     public void draw(GameView gameView) {
@@ -206,9 +218,11 @@ public class GameLevel extends Level {
 
     private void drawLayer(GameView gameView, Layer l) {
         // Copy the bike position so that we can make changes to it.
-        VectorF pos = bikePos.copy();
+        VectorPool pool = VectorPool.get();
+        int mark = pool.mark();
+        VectorF pos = pool.obtain(bikePos);
         // Multiply the position by the scrollFactor so that it moves left appropriate distance.
-        pos.mult(new VectorF(-l.scrollFactor, 0));
+        pos.mult(-l.scrollFactor, 0);
         Bitmap img = scaledBitmaps.get(info.getLayerKey(l));
 
         // Check what type the Layer actually is.
@@ -252,6 +266,7 @@ public class GameLevel extends Level {
             pos.add(0, Graphics.scaleY(l.yPos, gameView.getHeight()));
             drawScrolled(gameView, img, l.scrollFactor, pos, l.origin);
         }
+        pool.release(mark);
     }
 
     /**
@@ -387,26 +402,26 @@ public class GameLevel extends Level {
     private void drawFinishLine(SolidObject so, GameView view) {
         String finishLineKey = info.getFinishLineKey();
         Bitmap finishLine = scaledBitmaps.get(finishLineKey);
-        VectorF pos = so.pos.copy();
+        VectorF pos = so.pos.copy(finishPos);
         Graphics.scalePos(pos, view.getWidth(), view.getHeight());
         view.drawImage(finishLine, pos, 0, GameView.ImageOrigin.TopLeft);
     }
 
     public void update(float lastUpdate, Bike bike, HighScore score) {
         // Set the bike position.
-        this.bikePos = bike.getPos();
+        bike.getPos(bikePos);
 
         // Determine if Bike passed the finish line.
         SolidObject finishLine = info.getSolidObject("finish");
-        VectorF pos = finishLine.pos.copy();
+        VectorF pos = finishLine.pos.copy(finishPos);
         Graphics.scalePos(pos, Graphics.getScreenWidth(), Graphics.getScreenWidth());
         if (bikePos.x >= pos.x) {
             gameState.endGame(false);
         }
 
-        // Update the level objects.
-        for (LevelObject obj : levelObjects) {
-            obj.update(lastUpdate, bike, score);
+        // Update the level objects. Indexed so that no Iterator is created every update.
+        for (int i = 0; i < levelObjects.size(); i++) {
+            levelObjects.get(i).update(lastUpdate, bike, score);
         }
     }
 
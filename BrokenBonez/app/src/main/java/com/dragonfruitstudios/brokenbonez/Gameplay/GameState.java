@@ -1,4 +1,5 @@
 package com.dragonfruitstudios.brokenbonez.Gameplay;
+import android.graphics.Color;
 import android.util.Log;
 import android.view.MotionEvent;
 import com.dragonfruitstudios.brokenbonez.AssetLoading.AssetLoader;
@@ -6,10 +7,13 @@ import com.dragonfruitstudios.brokenbonez.Game.Camera;
 import com.dragonfruitstudios.brokenbonez.Game.GameView;
 import com.dragonfruitstudios.brokenbonez.Game.Graphics;
 import com.dragonfruitstudios.brokenbonez.Game.Levels.LevelInfo;
+import com.dragonfruitstudios.brokenbonez.Game.QualityGovernor;
 import com.dragonfruitstudios.brokenbonez.Game.Scenes.GameScene;
 import com.dragonfruitstudios.brokenbonez.GameLoop;
 import com.dragonfruitstudios.brokenbonez.Input.TouchHandler;
+import com.dragonfruitstudios.brokenbonez.Math.Physics.PhysicsThread;
 import com.dragonfruitstudios.brokenbonez.Math.Physics.Simulator;
+import com.dragonfruitstudios.brokenbonez.Math.VectorF;
 import com.dragonfruitstudios.brokenbonez.GameSceneManager;
 import com.dragonfruitstudios.brokenbonez.HighScores.HighScore;
 import java.io.IOException;
@@ -24,12 +28,18 @@ public class GameState {
     private AssetLoader assetLoader;
     private GameSceneManager gameSceneManager;
     private Simulator physicsSimulator;
+    // Steps the `physicsSimulator` on its own thread when threaded physics is enabled in the
+    // settings, otherwise null and the Simulator is updated by `update`.
+    private PhysicsThread physicsThread;
     private Ghost ghost;
     private ParticleManager particleManager;
     private HighScore score;
     private Camera camera;
     private FinishOverlay finishOverlay;
     private Settings settings;
+    private QualityGovernor qualityGovernor; // Adjusts the physics quality to the device.
+    private long lastDrawTime; // When the last frame was drawn, in nanoseconds.
+    private VectorF bikePos = new VectorF(0, 0); // Updated with the bike's position every update.
 
     private boolean askingForHighScore; // determines whether the `askName` dialog is shown.
     private boolean gameEnded; // determines whether the game ended.
@@ -68,19 +78,55 @@ public class GameState {
         bike.setBodyType(bikeBodyType);
 
         this.settings = new Settings(gameSceneManager);
+        // Start at the quality closest to the player's settings, the governor adjusts it to
+        // what the device can handle from there.
+        this.qualityGovernor = new QualityGovernor(physicsSimulator);
+        qualityGovernor.setLevel(
+                QualityGovernor.levelForIterations(settings.getPhysicsIterations()));
+        physicsSimulator.setMetricsListener(qualityGovernor);
+
+        if (settings.isBoolThreadedPhysics()) {
+            // The thread is started by the first update, from then on the bike is read from the
+            // states it publishes.
+            physicsThread = new PhysicsThread(physicsSimulator, GameLoop.targetFPS);
+            bike.setPhysicsThread(physicsThread);
+        }
     }
 
     public void update(float lastUpdate) {
+        // Remember where everything was, so that it can be drawn between this update and the
+        // next one.
+        bike.savePreviousState();
+        ghost.savePreviousState();
+        camera.savePreviousState();
+
         bike.update(lastUpdate);
-        physicsSimulator.update(lastUpdate);
+        if (physicsThread == null) {
+            physicsSimulator.update(lastUpdate);
+        }
+        else if (!physicsThread.isRunning()) {
+            physicsThread.start();
+        }
+        bike.syncState();
         currentLevel.update(lastUpdate, bike, score);
-        particleManager.update(lastUpdate, bike.getPos());
-        camera.centerHorizontally(bike.getPos().x);
+        particleManager.setParticleBudget(qualityGovernor.getParticleBudget());
+        bike.getPos(bikePos);
+        particleManager.update(lastUpdate, bikePos);
+        camera.centerHorizontally(bikePos.x);
         if (!finishOverlay.isShown()) {
             score.changeTimeBy(lastUpdate);
         }
-        ghost.createSlice(lastUpdate, bike.getLeftWheel().getPos(), bike.getRightWheel().getPos(),
-                bike.getLeftWheel().getRotation(), bike.getRightWheel().getRotation());
+        ghost.createSlice(lastUpdate, bike.getLeftPos(), bike.getRightPos(),
+                bike.getLeftRotation(), bike.getRightRotation());
+    }
+
+    /**
+     * Stops the physics thread, if there is one. The next `update` starts it again.
+     */
+    public void pause() {
+        if (physicsThread != null) {
+            physicsThread.stop();
+        }
     }
 
     public void updateSize(int w, int h) {
@@ -90,15 +136,32 @@ public class GameState {
     }
 
     public void draw(GameView view) {
+        long now = System.nanoTime();
+        if (lastDrawTime != 0) {
+            qualityGovernor.recordFrame((now - lastDrawTime) / 1000000f);
+        }
+        lastDrawTime = now;
+
         view.setCamera(camera);
         currentLevel.draw(view);
         ghost.draw(view);
         bike.draw(view);
-        physicsSimulator.draw(view);
+        // The Simulator belongs to the physics thread while there is one, so it can only be
+        // drawn for debugging when it is updated by the game.
+        if (physicsThread == null) {
+            physicsSimulator.draw(view);
+        }
         score.draw(view);
         finishOverlay.draw(view);
         particleManager.draw(view);
         currentLevel.drawForeground(view);
+
+        if (Graphics.drawDebugInfo) {
+            String debugInfo = String.format("Quality[Level: %d/%d, Frame: %.1fms, Step: %.2fms]",
+                    qualityGovernor.getLevel(), qualityGovernor.getLevelCount() - 1,
+                    qualityGovernor.getFrameMs(), qualityGovernor.getStepMs());
+            view.drawText(debugInfo, 20, 90, Color.WHITE);
+        }
     }
 
     private void onHighscoreNameSubmitted(boolean enteredName, String name) {
@@ -201,6 +264,17 @@ public class GameState {
         else {
             Simulator.setUpdateRate(GameLoop.targetFPS);
         }
+        if (physicsThread != null) {
+            // The physics thread steps at a fixed rate, so it is slowed down by simulating less
+            // time in each step instead.
+            final float stepTime = Simulator.calcUpdateFactor(0);
+            physicsThread.post(new Runnable() {
+                @Override
+                public void run() {
+                    physicsSimulator.setStepTime(stepTime);
+                }
+            });
+        }
     }
 
     public void endGame(boolean crashed) {
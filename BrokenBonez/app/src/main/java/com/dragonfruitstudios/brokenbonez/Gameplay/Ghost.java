@@ -148,11 +148,14 @@ public class Ghost extends Bike  {
             super.draw(view);
 
             view.enableCamera();
-            VectorF normal = new VectorF(getRotation()-(float)Math.toRadians(90));
-            VectorF pos = getPos().copy();
+            float rotation = getDrawRotation(view.getInterpolation());
+            VectorF normal = drawNormal;
+            normal.set((float)Math.cos(rotation-Math.toRadians(90)),
+                    (float)Math.sin(rotation-Math.toRadians(90)));
+            VectorF pos = getDrawPos(view.getInterpolation(), drawBodyPos);
             pos.multAdd(normal, -50);
             view.drawTextCenter(prevRun.getUsername(), pos.x, pos.y, Color.WHITE, 30,
-                    getRotation());
+                    rotation);
             view.disableCamera();
         }
     }
@@ -36,7 +36,7 @@ public class LevelBoost extends LevelObject {
 
     @Override
     public void update(float lastUpdate, Bike bike, HighScore score) {
-        if (this.rect.collisionTest(bike.getBodyRect()).hasCollisions()){
+        if (this.rect.overlaps(bike.getBodyRect())){
             this.onHit(bike, score);
         }
     }
@@ -51,7 +51,7 @@ public class LevelBoost extends LevelObject {
     public void onHit(Bike bike, HighScore score) {
         if (this.getVisible()) {
             this.setVisible(false);
-            bike.getLeftWheel().getVelocity().set(1000, 0);
+            bike.boost(1000);
         }
     }
 
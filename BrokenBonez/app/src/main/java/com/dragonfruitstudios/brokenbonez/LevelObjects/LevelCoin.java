@@ -36,7 +36,7 @@ public class LevelCoin extends LevelObject {
 
     @Override
     public void update(float lastUpdate, Bike bike, HighScore score) {
-        if (this.rect.collisionTest(bike.getBodyRect()).hasCollisions()){
+        if (this.rect.overlaps(bike.getBodyRect())){
             this.onHit(bike, score);
         }
     }
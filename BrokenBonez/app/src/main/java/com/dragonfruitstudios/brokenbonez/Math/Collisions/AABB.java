@@ -0,0 +1,95 @@
+package com.dragonfruitstudios.brokenbonez.Math.Collisions;
+
+/**
+ * An axis-aligned bounding box. Every Intersector can report one of these, it is used by the
+ * Physics simulator to quickly discard shapes which are too far away to collide.
+ *
+ * Unlike android.graphics.RectF this class has no dependencies on the Android framework, which
+ * means that it can be used in unit tests.
+ */
+public class AABB {
+    // Public because accessing these directly is much cleaner than using getters/setters.
+    public float minX;
+    public float minY;
+    public float maxX;
+    public float maxY;
+
+    /**
+     * Creates a new empty AABB. An empty AABB does not overlap with anything.
+     */
+    public AABB() {
+        setEmpty();
+    }
+
+    public AABB(float minX, float minY, float maxX, float maxY) {
+        set(minX, minY, maxX, maxY);
+    }
+
+    public void set(float minX, float minY, float maxX, float maxY) {
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    public void set(AABB other) {
+        set(other.minX, other.minY, other.maxX, other.maxY);
+    }
+
+    /**
+     * Makes this AABB empty, so that the next `include` call will define its bounds.
+     */
+    public void setEmpty() {
+        set(Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE);
+    }
+
+    /**
+     * Moves this AABB by (dx, dy).
+     */
+    public void translate(float dx, float dy) {
+        minX += dx;
+        minY += dy;
+        maxX += dx;
+        maxY += dy;
+    }
+
+    public boolean isEmpty() {
+        return minX > maxX || minY > maxY;
+    }
+
+    /**
+     * Grows this AABB so that it includes the point (x, y).
+     */
+    public void include(float x, float y) {
+        minX = Math.min(minX, x);
+        minY = Math.min(minY, y);
+        maxX = Math.max(maxX, x);
+        maxY = Math.max(maxY, y);
+    }
+
+    /**
+     * Determines whether this AABB overlaps the box defined by the specified coordinates.
+     * Touching boxes are considered to overlap.
+     */
+    public boolean overlaps(float minX, float minY, float maxX, float maxY) {
+        return this.minX <= maxX && this.maxX >= minX &&
+                this.minY <= maxY && this.maxY >= minY;
+    }
+
+    public boolean overlaps(AABB other) {
+        return overlaps(other.minX, other.minY, other.maxX, other.maxY);
+    }
+
+    public float getWidth() {
+        return maxX - minX;
+    }
+
+    public float getHeight() {
+        return maxY - minY;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AABB(%.1f, %.1f, %.1f, %.1f)", minX, minY, maxX, maxY);
+    }
+}
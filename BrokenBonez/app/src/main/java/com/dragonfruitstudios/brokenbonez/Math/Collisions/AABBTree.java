@@ -0,0 +1,324 @@
+package com.dragonfruitstudios.brokenbonez.Math.Collisions;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A static bounding volume hierarchy built over a list of AABBs. Items are referred to by their
+ * index in the list which the tree was built from.
+ *
+ * Polygons use this to find the Lines near a point or a shape without looking at every Line,
+ * which makes these tests logarithmic instead of linear in the amount of Lines.
+ *
+ * The tree is stored in flat arrays and never changes after it is built, so it can be queried
+ * from multiple threads as long as each one uses its own `Query`.
+ */
+public class AABBTree {
+    // The maximum amount of items stored in a leaf node.
+    static final int leafSize = 4;
+
+    // Node bounds.
+    private float[] minX;
+    private float[] minY;
+    private float[] maxX;
+    private float[] maxY;
+    // For inner nodes: index of the left child, the right child is always `left + 1`.
+    // For leaf nodes: index of the first item in `items`.
+    private int[] first;
+    // For inner nodes this is 0, for leaf nodes it is the amount of items in the leaf.
+    private int[] count;
+    private int nodeCount;
+    private int depth;
+
+    // Item indices, reordered so that each leaf's items are stored next to each other.
+    private int[] items;
+
+    // Copies of the item bounds, used to filter items inside leaves.
+    private float[] itemMinX;
+    private float[] itemMinY;
+    private float[] itemMaxX;
+    private float[] itemMaxY;
+
+    /**
+     * Builds a tree over `itemCount` items whose bounds are given by the specified arrays.
+     * The arrays are copied.
+     */
+    public AABBTree(float[] minX, float[] minY, float[] maxX, float[] maxY, int itemCount) {
+        itemMinX = Arrays.copyOf(minX, itemCount);
+        itemMinY = Arrays.copyOf(minY, itemCount);
+        itemMaxX = Arrays.copyOf(maxX, itemCount);
+        itemMaxY = Arrays.copyOf(maxY, itemCount);
+
+        items = new int[itemCount];
+        float[] centers = new float[itemCount * 2];
+        for (int i = 0; i < itemCount; i++) {
+            items[i] = i;
+            centers[i*2] = (minX[i] + maxX[i]) / 2;
+            centers[i*2 + 1] = (minY[i] + maxY[i]) / 2;
+        }
+
+        // A binary tree with at least one item per leaf never has more than 2n - 1 nodes.
+        int maxNodes = Math.max(1, itemCount * 2 - 1);
+        this.minX = new float[maxNodes];
+        this.minY = new float[maxNodes];
+        this.maxX = new float[maxNodes];
+        this.maxY = new float[maxNodes];
+        first = new int[maxNodes];
+        count = new int[maxNodes];
+
+        nodeCount = 1;
+        build(0, 0, itemCount, centers, 1);
+    }
+
+    /**
+     * Creates a tree over the specified Lines.
+     */
+    public static AABBTree fromLines(List<Line> lines) {
+        int n = lines.size();
+        float[] minX = new float[n];
+        float[] minY = new float[n];
+        float[] maxX = new float[n];
+        float[] maxY = new float[n];
+        for (int i = 0; i < n; i++) {
+            AABB box = lines.get(i).getAABB();
+            minX[i] = box.minX;
+            minY[i] = box.minY;
+            maxX[i] = box.maxX;
+            maxY[i] = box.maxY;
+        }
+        return new AABBTree(minX, minY, maxX, maxY, n);
+    }
+
+    private void build(int node, int start, int end, float[] centers, int level) {
+        depth = Math.max(depth, level);
+
+        // Calculate the bounds of this node, as well as the bounds of the item centers which
+        // are used to decide how to split it.
+        float nMinX = Float.MAX_VALUE, nMinY = Float.MAX_VALUE;
+        float nMaxX = -Float.MAX_VALUE, nMaxY = -Float.MAX_VALUE;
+        float cMinX = Float.MAX_VALUE, cMinY = Float.MAX_VALUE;
+        float cMaxX = -Float.MAX_VALUE, cMaxY = -Float.MAX_VALUE;
+        for (int i = start; i < end; i++) {
+            int item = items[i];
+            nMinX = Math.min(nMinX, itemMinX[item]);
+            nMinY = Math.min(nMinY, itemMinY[item]);
+            nMaxX = Math.max(nMaxX, itemMaxX[item]);
+            nMaxY = Math.max(nMaxY, itemMaxY[item]);
+            cMinX = Math.min(cMinX, centers[item*2]);
+            cMinY = Math.min(cMinY, centers[item*2 + 1]);
+            cMaxX = Math.max(cMaxX, centers[item*2]);
+            cMaxY = Math.max(cMaxY, centers[item*2 + 1]);
+        }
+        minX[node] = nMinX;
+        minY[node] = nMinY;
+        maxX[node] = nMaxX;
+        maxY[node] = nMaxY;
+
+        if (end - start <= leafSize) {
+            first[node] = start;
+            count[node] = end - start;
+            return;
+        }
+
+        // Split the items in half along the longest axis.
+        int axis = (cMaxX - cMinX) >= (cMaxY - cMinY) ? 0 : 1;
+        int mid = (start + end) / 2;
+        select(start, end - 1, mid, centers, axis);
+
+        int left = nodeCount;
+        nodeCount += 2;
+        first[node] = left;
+        count[node] = 0;
+        build(left, start, mid, centers, level + 1);
+        build(left + 1, mid, end, centers, level + 1);
+    }
+
+    /**
+     * Reorders `items` between `lo` and `hi` (inclusive) so that the item at `k` is the one
+     * which would be there if the range was sorted by center, with smaller items before it.
+     */
+    private void select(int lo, int hi, int k, float[] centers, int axis) {
+        while (lo < hi) {
+            float pivot = centers[items[(lo + hi) >>> 1]*2 + axis];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (centers[items[i]*2 + axis] < pivot) i++;
+                while (centers[items[j]*2 + axis] > pivot) j--;
+                if (i <= j) {
+                    int temp = items[i];
+                    items[i] = items[j];
+                    items[j] = temp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            }
+            else if (k >= i) {
+                lo = i;
+            }
+            else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Finds the items whose AABB overlaps the specified box. The item indices are stored in
+     * `query`, sorted in ascending order.
+     */
+    public void query(float qMinX, float qMinY, float qMaxX, float qMaxY, Query query) {
+        query.count = 0;
+        if (items.length == 0) {
+            return;
+        }
+        if (query.stack.length < depth * 2) {
+            query.stack = new int[depth * 2];
+        }
+
+        int[] stack = query.stack;
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            if (minX[node] > qMaxX || maxX[node] < qMinX ||
+                    minY[node] > qMaxY || maxY[node] < qMinY) {
+                continue;
+            }
+
+            if (count[node] == 0) {
+                stack[top++] = first[node];
+                stack[top++] = first[node] + 1;
+            }
+            else {
+                for (int i = first[node]; i < first[node] + count[node]; i++) {
+                    int item = items[i];
+                    if (itemMinX[item] <= qMaxX && itemMaxX[item] >= qMinX &&
+                            itemMinY[item] <= qMaxY && itemMaxY[item] >= qMinY) {
+                        query.add(item);
+                    }
+                }
+            }
+        }
+        query.sort();
+    }
+
+    /**
+     * Finds the smallest value returned by `measure` for any item. Nodes whose AABB is further
+     * away from (x, y) than the best distance found so far are skipped.
+     *
+     * @return The smallest squared distance, or -1 if this tree is empty.
+     */
+    public float nearestDistanceSquared(float x, float y, Measure measure, Query query) {
+        if (items.length == 0) {
+            return -1;
+        }
+        if (query.stack.length < depth * 2) {
+            query.stack = new int[depth * 2];
+        }
+
+        int[] stack = query.stack;
+        int top = 0;
+        stack[top++] = 0;
+        float best = Float.MAX_VALUE;
+        while (top > 0) {
+            int node = stack[--top];
+            if (distanceSquared(node, x, y) > best) {
+                continue;
+            }
+
+            if (count[node] == 0) {
+                // Visit the closer child first, as it's more likely to lower `best`.
+                int left = first[node];
+                if (distanceSquared(left, x, y) < distanceSquared(left + 1, x, y)) {
+                    stack[top++] = left + 1;
+                    stack[top++] = left;
+                }
+                else {
+                    stack[top++] = left;
+                    stack[top++] = left + 1;
+                }
+            }
+            else {
+                for (int i = first[node]; i < first[node] + count[node]; i++) {
+                    best = Math.min(best, measure.distanceSquared(items[i], x, y));
+                }
+            }
+        }
+        return best;
+    }
+
+    private float distanceSquared(int node, float x, float y) {
+        float dx = Math.max(0, Math.max(minX[node] - x, x - maxX[node]));
+        float dy = Math.max(0, Math.max(minY[node] - y, y - maxY[node]));
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Moves every node and item by (dx, dy). The items must all have moved by the same amount,
+     * in which case the tree doesn't need to be rebuilt.
+     */
+    public void translate(float dx, float dy) {
+        for (int i = 0; i < nodeCount; i++) {
+            minX[i] += dx;
+            minY[i] += dy;
+            maxX[i] += dx;
+            maxY[i] += dy;
+        }
+        for (int i = 0; i < items.length; i++) {
+            itemMinX[i] += dx;
+            itemMinY[i] += dy;
+            itemMaxX[i] += dx;
+            itemMaxY[i] += dy;
+        }
+    }
+
+    public int getItemCount() {
+        return items.length;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Measures the squared distance between an item and a point.
+     */
+    public interface Measure {
+        float distanceSquared(int item, float x, float y);
+    }
+
+    /**
+     * Holds the results of a query along with the scratch memory needed to perform it. Reuse
+     * these to avoid allocating memory for every query.
+     */
+    public static class Query {
+        public int[] results = new int[16];
+        public int count;
+        int[] stack = new int[0];
+
+        void add(int item) {
+            if (count == results.length) {
+                results = Arrays.copyOf(results, count * 2);
+            }
+            results[count++] = item;
+        }
+
+        /**
+         * Insertion sort, the result lists are tiny so this is faster than Arrays.sort.
+         */
+        void sort() {
+            for (int i = 1; i < count; i++) {
+                int value = results[i];
+                int j = i - 1;
+                while (j >= 0 && results[j] > value) {
+                    results[j + 1] = results[j];
+                    j--;
+                }
+                results[j + 1] = value;
+            }
+        }
+    }
+}
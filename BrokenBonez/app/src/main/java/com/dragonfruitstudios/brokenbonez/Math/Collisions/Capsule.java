@@ -0,0 +1,484 @@
+package com.dragonfruitstudios.brokenbonez.Math.Collisions;
+
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import com.dragonfruitstudios.brokenbonez.Game.Drawable;
+import com.dragonfruitstudios.brokenbonez.Game.GameView;
+import com.dragonfruitstudios.brokenbonez.Game.Graphics;
+import com.dragonfruitstudios.brokenbonez.Math.VectorF;
+
+/**
+ * A line segment with a radius, i.e. every point which is within `radius` of the segment.
+ * Useful for long round shapes, like a rider's limbs. Like the OrientedBox it can be moved at
+ * any time with `set` without allocating any memory.
+ *
+ * The collision tests all come down to finding the closest points between two segments: two
+ * shapes collide when those points are closer than the sum of their radii.
+ */
+public class Capsule extends Intersector implements Drawable {
+    private VectorF start;
+    private VectorF end;
+    private VectorF center;
+    private float radius;
+    // A Line over `start` and `end`, so it moves along with them.
+    private Line segment;
+
+    private VectorF size;
+    private AABB aabb;
+    // Scratch memory for querying a Polygon's segment tree.
+    private AABBTree.Query query = new AABBTree.Query();
+    // The closest points found by the last call to `closestPoints`.
+    private float closestX;
+    private float closestY;
+    private float otherClosestX;
+    private float otherClosestY;
+
+    public Capsule(float x1, float y1, float x2, float y2, float radius) {
+        this.start = new VectorF(0, 0);
+        this.end = new VectorF(0, 0);
+        this.center = new VectorF(0, 0);
+        this.segment = new Line(start, end);
+        this.radius = radius;
+        this.size = new VectorF(0, 0);
+        this.aabb = new AABB();
+        set(x1, y1, x2, y2);
+    }
+
+    /**
+     * Moves the end points of this Capsule's segment.
+     */
+    public void set(float x1, float y1, float x2, float y2) {
+        start.set(x1, y1);
+        end.set(x2, y2);
+        center.set((x1 + x2) / 2, (y1 + y2) / 2);
+        aabb.set(Math.min(x1, x2) - radius, Math.min(y1, y2) - radius,
+                Math.max(x1, x2) + radius, Math.max(y1, y2) + radius);
+        size.set(aabb.getWidth(), aabb.getHeight());
+    }
+
+    @Override
+    int getShapeType() {
+        return CollisionTable.capsule;
+    }
+
+    /**
+     * Finds the closest points between this Capsule's segment and the segment from (x1, y1) to
+     * (x2, y2), and stores them in `closestX/Y` and `otherClosestX/Y`.
+     *
+     * Based on the algorithm in Real-Time Collision Detection by Christer Ericson, section 5.1.9.
+     * @return The squared distance between the points.
+     */
+    private float closestPoints(float x1, float y1, float x2, float y2) {
+        float d1x = end.x - start.x;
+        float d1y = end.y - start.y;
+        float d2x = x2 - x1;
+        float d2y = y2 - y1;
+        float rx = start.x - x1;
+        float ry = start.y - y1;
+        float a = d1x * d1x + d1y * d1y;
+        float e = d2x * d2x + d2y * d2y;
+        float f = d2x * rx + d2y * ry;
+
+        // How far along each segment the closest points are, between 0 and 1.
+        float s;
+        float t;
+        if (a == 0 && e == 0) {
+            s = 0;
+            t = 0;
+        }
+        else if (a == 0) {
+            s = 0;
+            t = clamp(f / e);
+        }
+        else {
+            float c = d1x * rx + d1y * ry;
+            if (e == 0) {
+                t = 0;
+                s = clamp(-c / a);
+            }
+            else {
+                float b = d1x * d2x + d1y * d2y;
+                float denominator = a * e - b * b;
+                // The segments are parallel when the denominator is 0, any point will do.
+                s = denominator != 0 ? clamp((b * f - c * e) / denominator) : 0;
+                t = (b * s + f) / e;
+                if (t < 0) {
+                    t = 0;
+                    s = clamp(-c / a);
+                }
+                else if (t > 1) {
+                    t = 1;
+                    s = clamp((b - c) / a);
+                }
+            }
+        }
+
+        closestX = start.x + d1x * s;
+        closestY = start.y + d1y * s;
+        otherClosestX = x1 + d2x * t;
+        otherClosestY = y1 + d2y * t;
+        float dx = otherClosestX - closestX;
+        float dy = otherClosestY - closestY;
+        return dx * dx + dy * dy;
+    }
+
+    private static float clamp(float value) {
+        return Math.max(0, Math.min(1, value));
+    }
+
+    /**
+     * Adds a collision between the closest points found by `closestPoints`, if they are closer
+     * than `radii`. The normal points from this Capsule towards the other shape.
+     * @param crossNormalX The normal to use if the segments cross each other, pointing from
+     *                     this Capsule towards the other shape.
+     * @param crossDepth The penetration to use if the segments cross each other.
+     * @return Whether there is a collision.
+     */
+    private boolean addClosestPoints(float distanceSquared, float radii, float crossNormalX,
+                                     float crossNormalY, float crossDepth,
+                                     Manifold.Collection result) {
+        if (distanceSquared > radii * radii) {
+            return false;
+        }
+        if (result != null) {
+            float distance = (float)Math.sqrt(distanceSquared);
+            if (distance == 0) {
+                result.add(crossNormalX, crossNormalY, crossDepth);
+            }
+            else {
+                result.add((otherClosestX - closestX) / distance,
+                        (otherClosestY - closestY) / distance, radii - distance);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the specified circle collides with this Capsule. The normal points from this
+     * Capsule towards the circle.
+     * @param result The collection to add the collision to, or null if only whether they
+     *               overlap is needed.
+     * @return Whether they overlap.
+     */
+    boolean collisionTestWithCircle(Circle circle, Manifold.Collection result) {
+        VectorF c = circle.getCenter();
+        float distanceSquared = closestPoints(c.x, c.y, c.x, c.y);
+        float radii = radius + circle.getRadius();
+        // The circle's center is on the segment, push it out sideways.
+        float normalX = start.y - end.y;
+        float normalY = end.x - start.x;
+        float length = (float)Math.sqrt(normalX * normalX + normalY * normalY);
+        if (length == 0) {
+            normalX = 0;
+            normalY = 1;
+        }
+        else {
+            normalX /= length;
+            normalY /= length;
+        }
+        return addClosestPoints(distanceSquared, radii, normalX, normalY, radii, result);
+    }
+
+    /**
+     * Checks if the specified capsule collides with this Capsule. The normal points from this
+     * Capsule towards `capsule`.
+     * @param result The collection to add the collision to, or null if only whether they
+     *               overlap is needed.
+     * @return Whether they overlap.
+     */
+    boolean collisionTestWithCapsule(Capsule capsule, Manifold.Collection result) {
+        if (!aabb.overlaps(capsule.aabb)) {
+            return false;
+        }
+        VectorF a = capsule.start;
+        VectorF b = capsule.end;
+        return collisionTestWithSegment(a.x, a.y, b.x, b.y, radius + capsule.radius, result);
+    }
+
+    /**
+     * Checks if the specified line collides with this Capsule. The normal points from this
+     * Capsule towards the line.
+     * @param result The collection to add the collision to, or null if only whether they
+     *               overlap is needed.
+     * @return Whether they overlap.
+     */
+    boolean collisionTestWithLine(Line line, Manifold.Collection result) {
+        VectorF a = line.getStart();
+        VectorF b = line.getFinish();
+        return collisionTestWithSegment(a.x, a.y, b.x, b.y, radius, result);
+    }
+
+    /**
+     * Checks if the segment from (x1, y1) to (x2, y2) is within `radii` of this Capsule's
+     * segment.
+     */
+    private boolean collisionTestWithSegment(float x1, float y1, float x2, float y2,
+                                             float radii, Manifold.Collection result) {
+        float distanceSquared = closestPoints(x1, y1, x2, y2);
+        if (distanceSquared > radii * radii) {
+            return false;
+        }
+        if (result == null || distanceSquared > 0) {
+            return addClosestPoints(distanceSquared, radii, 0, 1, radii, result);
+        }
+
+        // The segments cross. Push the other segment out along its own normal, on the side
+        // that this Capsule's center isn't on, far enough for both of this Capsule's ends to
+        // clear it.
+        float normalX = y1 - y2;
+        float normalY = x2 - x1;
+        float length = (float)Math.sqrt(normalX * normalX + normalY * normalY);
+        if (length == 0) {
+            normalX = 0;
+            normalY = 1;
+        }
+        else {
+            normalX /= length;
+            normalY /= length;
+        }
+        if ((center.x - x1) * normalX + (center.y - y1) * normalY > 0) {
+            normalX = -normalX;
+            normalY = -normalY;
+        }
+        float across = Math.max((start.x - x1) * normalX + (start.y - y1) * normalY,
+                (end.x - x1) * normalX + (end.y - y1) * normalY);
+        return addClosestPoints(0, radii, normalX, normalY, radii + across, result);
+    }
+
+    /**
+     * Checks if the specified Polygon collides with this Capsule, like
+     * `Circle.collisionTestWithPolygon`. The normals point from this Capsule towards the
+     * Polygon.
+     * @param result The collection to add the collisions to, or null if only whether they
+     *               overlap is needed.
+     * @return Whether they overlap.
+     */
+    boolean collisionTestWithPolygon(Polygon shape, Manifold.Collection result) {
+        if (!aabb.overlaps(shape.getAABB())) {
+            return false;
+        }
+
+        // Check whether either end of the segment is inside the Polygon.
+        boolean inside = false;
+        for (int i = 0; i < 2; i++) {
+            VectorF point = i == 0 ? start : end;
+            if (result == null) {
+                inside |= shape.contains(point, query);
+            }
+            else {
+                int first = result.size();
+                if (shape.collisionTest(point, query, result)) {
+                    result.addPenetration(radius, first);
+                    inside = true;
+                }
+            }
+        }
+        if (inside) {
+            return true;
+        }
+
+        // Only the lines whose AABB overlaps this Capsule's AABB can collide with it.
+        boolean collided = false;
+        shape.getTree().query(aabb.minX, aabb.minY, aabb.maxX, aabb.maxY, query);
+        for (int i = 0; i < query.count; i++) {
+            if (collisionTestWithLine(shape.getLines().get(query.results[i]), result)) {
+                if (result == null) {
+                    return true;
+                }
+                collided = true;
+            }
+        }
+        return collided;
+    }
+
+    /**
+     * Checks if the specified box collides with this Capsule. The normal points from this
+     * Capsule towards the box.
+     * @param result The collection to add the collision to, or null if only whether they
+     *               overlap is needed.
+     * @return Whether they overlap.
+     */
+    boolean collisionTestWithBox(OrientedBox box, Manifold.Collection result) {
+        if (!aabb.overlaps(box.getAABB())) {
+            return false;
+        }
+
+        // An end of the segment inside the box is pushed out through the box's nearest side.
+        // `collisionTestWithPoint` gives the normal from the point towards the box.
+        int first = result == null ? 0 : result.size();
+        boolean inside = box.collisionTestWithPoint(start.x, start.y, result);
+        inside |= box.collisionTestWithPoint(end.x, end.y, result);
+        if (inside) {
+            if (result != null) {
+                result.addPenetration(radius, first);
+            }
+            return true;
+        }
+
+        // Otherwise the closest points between the segment and the box are on the box's edges.
+        float bestDistanceSquared = Float.MAX_VALUE;
+        float bestX = 0;
+        float bestY = 0;
+        float bestOtherX = 0;
+        float bestOtherY = 0;
+        VectorF[] corners = box.getCorners();
+        for (int i = 0; i < corners.length; i++) {
+            VectorF a = corners[i];
+            VectorF b = corners[(i + 1) % corners.length];
+            float distanceSquared = closestPoints(a.x, a.y, b.x, b.y);
+            if (distanceSquared < bestDistanceSquared) {
+                bestDistanceSquared = distanceSquared;
+                bestX = closestX;
+                bestY = closestY;
+                bestOtherX = otherClosestX;
+                bestOtherY = otherClosestY;
+            }
+        }
+        if (bestDistanceSquared > radius * radius) {
+            return false;
+        }
+        if (result == null) {
+            return true;
+        }
+        closestX = bestX;
+        closestY = bestY;
+        otherClosestX = bestOtherX;
+        otherClosestY = bestOtherY;
+
+        // If the segment goes right through the box, push the box out sideways.
+        float normalX = start.y - end.y;
+        float normalY = end.x - start.x;
+        float length = (float)Math.sqrt(normalX * normalX + normalY * normalY);
+        if (length == 0) {
+            normalX = 0;
+            normalY = 1;
+        }
+        else {
+            normalX /= length;
+            normalY /= length;
+        }
+        float side = (box.getPos().x - start.x) * normalX + (box.getPos().y - start.y) * normalY;
+        if (side < 0) {
+            normalX = -normalX;
+            normalY = -normalY;
+            side = -side;
+        }
+        float extent = box.getHalfWidth() *
+                Math.abs(box.getAxisX() * normalX + box.getAxisY() * normalY) +
+                box.getHalfHeight() *
+                Math.abs(box.getAxisX() * normalY - box.getAxisY() * normalX);
+        return addClosestPoints(bestDistanceSquared, radius, normalX, normalY,
+                radius + extent - side, result);
+    }
+
+    /**
+     * Casts a ray against this Capsule's outline: its two straight sides and its rounded ends.
+     * See `Intersector.raycast`. Like with a Circle, a ray which starts inside doesn't hit it.
+     */
+    @Override
+    public float raycast(float originX, float originY, float dx, float dy, VectorF normal) {
+        if (closestPoints(originX, originY, originX, originY) < radius * radius) {
+            return -1;
+        }
+
+        float result = -1;
+        // The sides are the segment moved out by the radius on either side.
+        float ex = end.x - start.x;
+        float ey = end.y - start.y;
+        float length = (float)Math.sqrt(ex * ex + ey * ey);
+        float denominator = dx * ey - dy * ex;
+        if (length > 0 && denominator != 0) {
+            float nx = -ey / length;
+            float ny = ex / length;
+            for (int side = -1; side <= 1; side += 2) {
+                // Solve origin + t * d = sideStart + u * (end - start) for t and u.
+                float sx = start.x + nx * radius * side - originX;
+                float sy = start.y + ny * radius * side - originY;
+                float t = (sx * ey - sy * ex) / denominator;
+                float u = (sx * dy - sy * dx) / denominator;
+                if (t >= 0 && t <= 1 && u >= 0 && u <= 1 && (result < 0 || t < result)) {
+                    result = t;
+                    normal.set(nx * side, ny * side);
+                }
+            }
+        }
+
+        // The rounded ends.
+        for (int i = 0; i < 2; i++) {
+            VectorF point = i == 0 ? start : end;
+            // Solve |origin + t * d - point|² = radius² for t.
+            float px = originX - point.x;
+            float py = originY - point.y;
+            float a = dx * dx + dy * dy;
+            float b = 2 * (px * dx + py * dy);
+            float c = px * px + py * py - radius * radius;
+            float discriminant = b * b - 4 * a * c;
+            if (a == 0 || discriminant < 0) {
+                continue;
+            }
+            float t = (-b - (float)Math.sqrt(discriminant)) / (2 * a);
+            if (t >= 0 && t <= 1 && (result < 0 || t < result)) {
+                result = t;
+                normal.set((px + dx * t) / radius, (py + dy * t) / radius);
+            }
+        }
+        return result;
+    }
+
+    public Capsule copy() {
+        return new Capsule(start.x, start.y, end.x, end.y, radius);
+    }
+
+    // <editor-fold desc="Getters/Setters">
+
+    public VectorF getStart() {
+        return start;
+    }
+
+    public VectorF getFinish() {
+        return end;
+    }
+
+    public float getRadius() {
+        return radius;
+    }
+
+    /**
+     * @return The Line between this Capsule's end points, which moves along with the Capsule.
+     */
+    public Line getSegment() {
+        return segment;
+    }
+
+    public VectorF getPos() {
+        return center;
+    }
+
+    public VectorF getSize() {
+        return size;
+    }
+
+    public AABB getAABB() {
+        return aabb;
+    }
+
+    // </editor-fold>
+
+    /**
+     * This draw method is used for debugging to show where the capsule is.
+     */
+    public void draw(GameView view) {
+        if (Graphics.drawDebugInfo) {
+            int color = Color.parseColor("#ff279c");
+            view.drawCircle(start.x, start.y, radius, color, Paint.Style.STROKE);
+            view.drawCircle(end.x, end.y, radius, color, Paint.Style.STROKE);
+            view.drawLine(start, end, color);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Capsule(Start: %s, Finish: %s, Radius: %.1f)", start, end, radius);
+    }
+}
@@ -15,6 +15,11 @@ public class Circle extends Intersector implements Drawable {
     private float radius;
 
     private VectorF size;
+    private AABB aabb;
+    // Scratch memory for querying a Polygon's segment tree.
+    private AABBTree.Query query = new AABBTree.Query();
+    // Scratch memory for sweeping against the shapes of a DistanceField.
+    private VectorF impactNormal = new VectorF(0, 0);
 
     /**
      * Creates a new Circle bounding shape with the specified center x and y position as well as
@@ -26,6 +31,7 @@ public class Circle extends Intersector implements Drawable {
         this.center = new VectorF(cx, cy);
         this.radius = radius;
         this.size = new VectorF(radius*radius, radius*radius);
+        this.aabb = new AABB();
     }
 
     /**
@@ -35,6 +41,7 @@ public class Circle extends Intersector implements Drawable {
         this.center = center;
         this.radius = radius;
         this.size = new VectorF(radius*radius, radius*radius);
+        this.aabb = new AABB();
     }
 
     /**
@@ -46,11 +53,13 @@ public class Circle extends Intersector implements Drawable {
         // Based on answer here: http://stackoverflow.com/a/402019/492186
 
         // Check whether Circle's centre lies within the rectangle.
-        if (shape.collisionTest(center).hasCollisions()) { return true; }
+        if (shape.contains(center, query)) { return true; }
 
-        // Check whether either of the sides intersect with the circle.
-        for (Line line : shape.getLines()) {
-            if (collidesWith(line.getStart(), line.getFinish())) {
+        // Check whether either of the sides near the circle intersect with it.
+        AABB box = getAABB();
+        shape.getTree().query(box.minX, box.minY, box.maxX, box.maxY, query);
+        for (int i = 0; i < query.count; i++) {
+            if (overlaps(shape.getLines().get(query.results[i]))) {
                 return true;
             }
         }
@@ -58,102 +67,327 @@ public class Circle extends Intersector implements Drawable {
 
     }
 
+    boolean overlapsLine(Line line) {
+        return Line.distanceSquared(line.getStart(), line.getFinish(), center) <= radius * radius;
+    }
+
+    boolean overlapsCircle(Circle circle) {
+        float radii = radius + circle.radius;
+        return center.distSquared(circle.center) <= radii * radii;
+    }
+
+    @Override
+    int getShapeType() {
+        return CollisionTable.circle;
+    }
+
     /**
-     * Checks if the specified shape collides with this Circle.
-     * @return A Manifold containing information about the collision.
+     * Checks if the specified circle collides with this Circle. The normal points from this
+     * Circle's center towards the other one's.
      */
-    @Override
-    public Manifold.Collection collisionTest(Intersector shape) {
-        if (shape instanceof Polygon) {
-            return collisionTestWithPolygon((Polygon)shape);
+    void collisionTestWithCircle(Circle circle, Manifold.Collection result) {
+        float x = circle.center.x - center.x;
+        float y = circle.center.y - center.y;
+        float radii = radius + circle.radius;
+        float distanceSquared = x * x + y * y;
+        if (distanceSquared > radii * radii) {
+            return;
         }
-        else if (shape instanceof Line) {
-            return new Manifold.Collection(collisionTestWithLine((Line)shape));
+        float distance = (float)Math.sqrt(distanceSquared);
+        if (distance == 0) {
+            // The circles are on top of each other, so any direction will do.
+            result.add(0, 1, radii);
+        }
+        else {
+            result.add(x / distance, y / distance, radii - distance);
         }
-
-        return collisionNotImplemented(shape);
     }
 
-
-    private Manifold.Collection collisionTestWithPolygon(Polygon shape) {
-        Manifold.Collection pointResult = shape.collisionTest(center);
-        if (pointResult.hasCollisions()) {
-            pointResult.addPenetration(radius);
-            return pointResult;
+    void collisionTestWithPolygon(Polygon shape, Manifold.Collection result) {
+        int start = result.size();
+        if (shape.collisionTest(center, query, result)) {
+            result.addPenetration(radius, start);
+            return;
         }
 
-        for (Line line : shape.getLines()) {
-            Manifold res = collisionTestWithLine(line);
-            if (res.hasCollided()) {
-                pointResult.add(res);
-            }
+        // Only the lines whose AABB overlaps this circle's AABB can collide with it.
+        AABB box = getAABB();
+        shape.getTree().query(box.minX, box.minY, box.maxX, box.maxY, query);
+        for (int i = 0; i < query.count; i++) {
+            collisionTestWithLine(shape.getLines().get(query.results[i]), result);
         }
-        return pointResult;
     }
 
     /**
-     * Checks if the specified line collides with this circle.
-     * @return A Manifold instance containing information about the collision.
+     * Checks if the specified line collides with this circle. If it does, a Manifold containing
+     * information about the collision is added to `result`.
+     * @return Whether the line collides with this circle.
      */
-    private Manifold collisionTestWithLine(Line line) {
+    boolean collisionTestWithLine(Line line, Manifold.Collection result) {
         // Diagram at the following link explains this algorithm:
         // http://stackoverflow.com/a/1079478/492186
         VectorF a = line.getStart();
         VectorF b = line.getFinish();
 
-        // Get the vector which represents the line segment.
-        VectorF BA = new VectorF(b.x - a.x, b.y - a.y);
         // Get the vector between the line start and the circle center.
-        VectorF CA = new VectorF(center.x - a.x, center.y - a.y);
+        float caX = center.x - a.x;
+        float caY = center.y - a.y;
 
-        // Calculate the length of the line segment.
-        float l = BA.magnitude();
+        // The length and direction of the line segment are cached by the Line.
+        float l = line.getLength();
+        if (l == 0) {
+            throw new ArithmeticException("Magnitude of vector is 0.");
+        }
+        float baX = line.getDirectionX();
+        float baY = line.getDirectionY();
 
-        // Make sure that CA is on the line segment and that it is the point closest to center.
-        BA.normalise();
-        float u = CA.dotProduct(BA);
+        // Find the point on the line segment which is closest to center.
+        float u = caX * baX + caY * baY;
+        float closestX, closestY;
         if (u <= 0) {
-            CA.set(a.x, a.y);
+            closestX = a.x;
+            closestY = a.y;
         }
         else if (u >= l) {
-            CA.set(b.x, b.y);
+            closestX = b.x;
+            closestY = b.y;
         }
         else {
-            BA.mult(u);
-            CA.set(BA.x + a.x, BA.y + a.y);
+            closestX = baX * u + a.x;
+            closestY = baY * u + a.y;
         }
 
-        float x = CA.x - center.x;
-        float y = CA.y - center.y;
+        float x = closestX - center.x;
+        float y = closestY - center.y;
 
         // Check if length of vector from point on line to center is less than the radius of
         // the circle. If so, then we have a collision.
         boolean collided = x * x + y * y <= radius*radius;
 
         if (collided) {
-            // Set a flag for debugging.
-            line.setTimeOfLastCollision(System.nanoTime());
-
             // Calculate how far the circle penetrated the line.
-            float depth = radius - (float)Math.sqrt(x * x + y * y);
+            float distance = (float)Math.sqrt(x * x + y * y);
+            float depth = radius - distance;
 
             // The normal points in the direction of the point on the line that collides with
             // the circle.
-            VectorF normal = new VectorF(x, y);
-            normal.normalise();
+            if (distance == 0) {
+                throw new ArithmeticException("Magnitude of vector is 0.");
+            }
+            result.add(x / distance, y / distance, depth, line);
+        }
+        return collided;
+    }
+
+    /**
+     * Sweeps this Circle along (dx, dy) and finds the time of impact with the specified shape,
+     * i.e. the fraction of the movement after which the Circle first touches it.
+     *
+     * This is used to stop fast bodies from tunnelling through thin shapes, so only impacts
+     * which `collisionTest` would miss or catch too late are reported: the Circle must not be
+     * touching the Line (or vertex) at the start of the movement and must end up penetrating
+     * it by more than `maxPenetration`. This allows bodies to roll along surfaces without
+     * their movement being cut short.
+     * @return A value between 0 and 1, or -1 if there is no such impact.
+     */
+    public float timeOfImpact(Intersector shape, float dx, float dy, float maxPenetration) {
+        return timeOfImpact(shape, dx, dy, maxPenetration, null);
+    }
 
-            return new Manifold(normal, depth, collided);
+    /**
+     * Same as `timeOfImpact(Intersector, float, float, float)`, but also sets `normal` (unless
+     * it is null) to the unit vector pointing from the point of impact towards the Circle's
+     * center at the time of impact.
+     */
+    public float timeOfImpact(Intersector shape, float dx, float dy, float maxPenetration,
+                              VectorF normal) {
+        Line hit = null;
+        float result = -1;
+        if (shape instanceof Line) {
+            hit = (Line)shape;
+            result = timeOfImpact(hit, radius, dx, dy, maxPenetration);
+        }
+        else if (shape instanceof OrientedBox) {
+            ArrayList<Line> edges = ((OrientedBox)shape).getLines();
+            for (int i = 0; i < edges.size(); i++) {
+                float t = timeOfImpact(edges.get(i), radius, dx, dy, maxPenetration);
+                if (t >= 0 && (result < 0 || t < result)) {
+                    result = t;
+                    hit = edges.get(i);
+                }
+            }
+        }
+        else if (shape instanceof Capsule) {
+            // Touching the capsule is the same as this Circle, grown by the capsule's radius,
+            // touching its segment.
+            Capsule capsule = (Capsule)shape;
+            hit = capsule.getSegment();
+            result = timeOfImpact(hit, radius + capsule.getRadius(), dx, dy, maxPenetration);
+        }
+        else if (shape instanceof DistanceField) {
+            // The field rounds off corners, so sweep against the shapes it was built from.
+            ArrayList<Polygon> shapes = ((DistanceField)shape).getShapes();
+            for (int i = 0; i < shapes.size(); i++) {
+                float t = timeOfImpact(shapes.get(i), dx, dy, maxPenetration,
+                        normal == null ? null : impactNormal);
+                if (t >= 0 && (result < 0 || t < result)) {
+                    result = t;
+                    if (normal != null) {
+                        normal.set(impactNormal.x, impactNormal.y);
+                    }
+                }
+            }
+            return result;
+        }
+        else if (shape instanceof Heightfield) {
+            return timeOfImpact(((Heightfield)shape).getSource(), dx, dy, maxPenetration, normal);
+        }
+        else if (shape instanceof Polygon) {
+            Polygon polygon = (Polygon)shape;
+            // Only the lines near the swept area can be hit.
+            AABB box = getAABB();
+            polygon.getTree().query(box.minX + Math.min(dx, 0), box.minY + Math.min(dy, 0),
+                    box.maxX + Math.max(dx, 0), box.maxY + Math.max(dy, 0), query);
+            for (int i = 0; i < query.count; i++) {
+                Line line = polygon.getLines().get(query.results[i]);
+                float t = timeOfImpact(line, radius, dx, dy, maxPenetration);
+                if (t >= 0 && (result < 0 || t < result)) {
+                    result = t;
+                    hit = line;
+                }
+            }
         }
         else {
-            return Manifold.noCollision();
+            collisionNotImplemented(shape);
+        }
+
+        if (result >= 0 && normal != null) {
+            // The point of impact is the point on the Line closest to the moved center.
+            float cx = center.x + dx * result;
+            float cy = center.y + dy * result;
+            VectorF a = hit.getStart();
+            float u = (cx - a.x) * hit.getDirectionX() + (cy - a.y) * hit.getDirectionY();
+            u = Math.max(0, Math.min(hit.getLength(), u));
+            float nx = cx - (a.x + hit.getDirectionX() * u);
+            float ny = cy - (a.y + hit.getDirectionY() * u);
+            float length = (float)Math.sqrt(nx * nx + ny * ny);
+            if (length == 0) {
+                normal.set(-dx, -dy);
+                normal.normalise();
+            }
+            else {
+                normal.set(nx / length, ny / length);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the time of impact between this Circle moving along (dx, dy) and the specified
+     * line segment AB. See `timeOfImpact(Intersector, float, float, float)`.
+     * @param reach How close the center has to get to the segment to touch it, normally this
+     *              Circle's radius.
+     */
+    private float timeOfImpact(Line line, float reach, float dx, float dy,
+                               float maxPenetration) {
+        float result = -1;
+        VectorF a = line.getStart();
+        VectorF b = line.getFinish();
+
+        // The segment's face. The circle hits it when its distance from the line through A and
+        // B becomes `reach`, as long as the contact point lies between A and B.
+        float baX = b.x - a.x;
+        float baY = b.y - a.y;
+        float lengthSquared = baX * baX + baY * baY;
+        if (lengthSquared > 0) {
+            // Make the normal point towards the circle's starting position.
+            float nx = line.getNormalX();
+            float ny = line.getNormalY();
+            float startDist = (center.x - a.x) * nx + (center.y - a.y) * ny;
+            if (startDist < 0) {
+                nx = -nx;
+                ny = -ny;
+                startDist = -startDist;
+            }
+            float approach = dx * nx + dy * ny;
+            float endDist = startDist + approach;
+            if (startDist > reach && approach < 0 && endDist < reach - maxPenetration) {
+                float t = (startDist - reach) / -approach;
+                float u = ((center.x + dx * t - a.x) * baX + (center.y + dy * t - a.y) * baY) /
+                        lengthSquared;
+                if (t <= 1 && u >= 0 && u <= 1) {
+                    result = t;
+                }
+            }
+        }
+
+        // The segment's vertices, in case the circle hits one of its ends.
+        float t = timeOfImpact(a, reach, dx, dy, maxPenetration);
+        if (t >= 0 && (result < 0 || t < result)) {
+            result = t;
+        }
+        t = timeOfImpact(b, reach, dx, dy, maxPenetration);
+        if (t >= 0 && (result < 0 || t < result)) {
+            result = t;
+        }
+        return result;
+    }
+
+    /**
+     * Finds the time of impact between this Circle moving along (dx, dy) and the specified
+     * point by solving |center + t * d - point|² = reach² for t.
+     */
+    private float timeOfImpact(VectorF point, float reach, float dx, float dy,
+                               float maxPenetration) {
+        float px = center.x - point.x;
+        float py = center.y - point.y;
+        float a = dx * dx + dy * dy;
+        float b = 2 * (px * dx + py * dy);
+        float c = px * px + py * py - reach * reach;
+        if (c <= 0 || a == 0 || b >= 0) {
+            // Already touching, not moving or moving away.
+            return -1;
+        }
+
+        // Check how close the circle gets to the point during the movement.
+        float closest = Math.min(1, -b / (2 * a));
+        float closestX = px + dx * closest;
+        float closestY = py + dy * closest;
+        float minDistance = reach - maxPenetration;
+        if (closestX * closestX + closestY * closestY >= minDistance * minDistance) {
+            return -1;
+        }
+
+        float discriminant = b * b - 4 * a * c;
+        if (discriminant < 0) {
+            return -1;
         }
+        float t = (-b - (float)Math.sqrt(discriminant)) / (2 * a);
+        return t <= 1 ? t : -1;
     }
 
     /**
-     * Determines whether Line AB intersects with this Circle.
+     * Casts a ray against this Circle, see `Intersector.raycast`. A ray which starts inside
+     * this Circle doesn't hit it.
      */
-    private boolean collidesWith(VectorF a, VectorF b) {
-        return collisionTest(new Line(a, b)).hasCollisions();
+    @Override
+    public float raycast(float originX, float originY, float dx, float dy, VectorF normal) {
+        // Solve |origin + t * d - center|² = radius² for t.
+        float px = originX - center.x;
+        float py = originY - center.y;
+        float a = dx * dx + dy * dy;
+        float b = 2 * (px * dx + py * dy);
+        float c = px * px + py * py - radius * radius;
+        float discriminant = b * b - 4 * a * c;
+        if (c < 0 || a == 0 || discriminant < 0) {
+            return -1;
+        }
+        float t = (-b - (float)Math.sqrt(discriminant)) / (2 * a);
+        if (t < 0 || t > 1) {
+            return -1;
+        }
+        normal.set((px + dx * t) / radius, (py + dy * t) / radius);
+        return t;
     }
 
     public Circle copy() {
@@ -186,6 +420,12 @@ public class Circle extends Intersector implements Drawable {
         return size;
     }
 
+    public AABB getAABB() {
+        // The center may have been moved, so the AABB is recalculated every time.
+        aabb.set(center.x - radius, center.y - radius, center.x + radius, center.y + radius);
+        return aabb;
+    }
+
     // </editor-fold>
 
     /**
@@ -0,0 +1,287 @@
+package com.dragonfruitstudios.brokenbonez.Math.Collisions;
+
+/**
+ * Finds the collision test written for a pair of shapes. Every Intersector reports its type
+ * from `getShapeType`, and the types index into a table of tests, so finding the right test
+ * takes an array lookup rather than a chain of `instanceof` checks.
+ *
+ * Only one test is written for each pair of types; the entry for the reversed pair calls it
+ * with the shapes swapped and flips the normals it added. So whichever way round the shapes
+ * are passed, the normals always point from the first shape towards the second.
+ */
+final class CollisionTable {
+    static final int circle = 0;
+    static final int line = 1;
+    static final int polygon = 2;
+    static final int orientedBox = 3;
+    static final int capsule = 4;
+    static final int distanceField = 5;
+    static final int heightfield = 6;
+    static final int typeCount = 7;
+
+    /**
+     * A collision test between two types of shape.
+     */
+    interface Test {
+        /**
+         * Checks if `a` collides with `b` and adds the resulting Manifolds to `result`. The
+         * normals point from `a` towards `b`.
+         */
+        void collisionTest(Intersector a, Intersector b, Manifold.Collection result);
+
+        /**
+         * Determines whether `a` overlaps `b`, without calculating any normals.
+         */
+        boolean overlaps(Intersector a, Intersector b);
+    }
+
+    // Indexed by `typeA * typeCount + typeB`. Pairs which no test is written for are null.
+    private static final Test[] tests = new Test[typeCount * typeCount];
+    // Whether the shapes need to be swapped before calling the test.
+    private static final boolean[] swapped = new boolean[typeCount * typeCount];
+
+    static {
+        register(circle, circle, new Test() {
+            @Override
+            public void collisionTest(Intersector a, Intersector b, Manifold.Collection result) {
+                ((Circle)a).collisionTestWithCircle((Circle)b, result);
+            }
+
+            @Override
+            public boolean overlaps(Intersector a, Intersector b) {
+                return ((Circle)a).overlapsCircle((Circle)b);
+            }
+        });
+        register(circle, line, new Test() {
+            @Override
+            public void collisionTest(Intersector a, Intersector b, Manifold.Collection result) {
+                ((Circle)a).collisionTestWithLine((Line)b, result);
+            }
+
+            @Override
+            public boolean overlaps(Intersector a, Intersector b) {
+                return ((Circle)a).overlapsLine((Line)b);
+            }
+        });
+        register(circle, polygon, new Test() {
+            @Override
+            public void collisionTest(Intersector a, Intersector b, Manifold.Collection result) {
+                ((Circle)a).collisionTestWithPolygon((Polygon)b, result);
+            }
+
+            @Override
+            public boolean overlaps(Intersector a, Intersector b) {
+                return ((Circle)a).collidesWith((Polygon)b);
+            }
+        });
+        register(polygon, polygon, new Test() {
+            @Override
+            public void collisionTest(Intersector a, Intersector b, Manifold.Collection result) {
+                ((Polygon)a).collisionTestWithPolygon((Polygon)b, result);
+            }
+
+            @Override
+            public boolean overlaps(Intersector a, Intersector b) {
+                return ((Polygon)a).overlapsPolygon((Polygon)b);
+            }
+        });
+        register(orientedBox, circle, new Test() {
+            @Override
+            public void collisionTest(Intersector a, Intersector b, Manifold.Collection result) {
+                ((OrientedBox)a).collisionTestWithCircle((Circle)b, result);
+            }
+
+            @Override
+            public boolean overlaps(Intersector a, Intersector b) {
+                return ((OrientedBox)a).collisionTestWithCircle((Circle)b, null);
+            }
+        });
+        register(orientedBox, line, new Test() {
+            @Override
+            public void collisionTest(Intersector a, Intersector b, Manifold.Collection result) {
+                ((OrientedBox)a).collisionTestWithLine((Line)b, result);
+            }
+
+            @Override
+            public boolean overlaps(Intersector a, Intersector b) {
+                return ((OrientedBox)a).collisionTestWithLine((Line)b, null);
+            }
+        });
+        register(polygon, orientedBox, new Test() {
+            @Override
+            public void collisionTest(Intersector a, Intersector b, Manifold.Collection result) {
+                ((Polygon)a).collisionTestWithBox((OrientedBox)b, result);
+            }
+
+            @Override
+            public boolean overlaps(Intersector a, Intersector b) {
+                return ((Polygon)a).collisionTestWithBox((OrientedBox)b, null);
+            }
+        });
+        register(orientedBox, orientedBox, new Test() {
+            @Override
+            public void collisionTest(Intersector a, Intersector b, Manifold.Collection result) {
+                ((OrientedBox)a).collisionTestWithBox((OrientedBox)b, result);
+            }
+
+            @Override
+            public boolean overlaps(Intersector a, Intersector b) {
+                return ((OrientedBox)a).collisionTestWithBox((OrientedBox)b, null);
+            }
+        });
+        register(capsule, circle, new Test() {
+            @Override
+            public void collisionTest(Intersector a, Intersector b, Manifold.Collection result) {
+                ((Capsule)a).collisionTestWithCircle((Circle)b, result);
+            }
+
+            @Override
+            public boolean overlaps(Intersector a, Intersector b) {
+                return ((Capsule)a).collisionTestWithCircle((Circle)b, null);
+            }
+        });
+        register(capsule, line, new Test() {
+            @Override
+            public void collisionTest(Intersector a, Intersector b, Manifold.Collection result) {
+                ((Capsule)a).collisionTestWithLine((Line)b, result);
+            }
+
+            @Override
+            public boolean overlaps(Intersector a, Intersector b) {
+                return ((Capsule)a).collisionTestWithLine((Line)b, null);
+            }
+        });
+        register(capsule, polygon, new Test() {
+            @Override
+            public void collisionTest(Intersector a, Intersector b, Manifold.Collection result) {
+                ((Capsule)a).collisionTestWithPolygon((Polygon)b, result);
+            }
+
+            @Override
+            public boolean overlaps(Intersector a, Intersector b) {
+                return ((Capsule)a).collisionTestWithPolygon((Polygon)b, null);
+            }
+        });
+        register(capsule, orientedBox, new Test() {
+            @Override
+            public void collisionTest(Intersector a, Intersector b, Manifold.Collection result) {
+                ((Capsule)a).collisionTestWithBox((OrientedBox)b, result);
+            }
+
+            @Override
+            public boolean overlaps(Intersector a, Intersector b) {
+                return ((Capsule)a).collisionTestWithBox((OrientedBox)b, null);
+            }
+        });
+        register(capsule, capsule, new Test() {
+            @Override
+            public void collisionTest(Intersector a, Intersector b, Manifold.Collection result) {
+                ((Capsule)a).collisionTestWithCapsule((Capsule)b, result);
+            }
+
+            @Override
+            public boolean overlaps(Intersector a, Intersector b) {
+                return ((Capsule)a).collisionTestWithCapsule((Capsule)b, null);
+            }
+        });
+        register(circle, distanceField, new Test() {
+            @Override
+            public void collisionTest(Intersector a, Intersector b, Manifold.Collection result) {
+                ((DistanceField)b).collisionTestWithCircle((Circle)a, result);
+            }
+
+            @Override
+            public boolean overlaps(Intersector a, Intersector b) {
+                return ((DistanceField)b).overlapsShapes(a);
+            }
+        });
+        // Only circles use the field itself, other shapes are tested against the shapes which
+        // it was built from.
+        Test fieldShapes = new Test() {
+            @Override
+            public void collisionTest(Intersector a, Intersector b, Manifold.Collection result) {
+                ((DistanceField)b).collisionTestWithShapes(a, result);
+            }
+
+            @Override
+            public boolean overlaps(Intersector a, Intersector b) {
+                return ((DistanceField)b).overlapsShapes(a);
+            }
+        };
+        register(line, distanceField, fieldShapes);
+        register(polygon, distanceField, fieldShapes);
+        register(orientedBox, distanceField, fieldShapes);
+        register(capsule, distanceField, fieldShapes);
+        register(circle, heightfield, new Test() {
+            @Override
+            public void collisionTest(Intersector a, Intersector b, Manifold.Collection result) {
+                ((Heightfield)b).collisionTestWithCircle((Circle)a, result);
+            }
+
+            @Override
+            public boolean overlaps(Intersector a, Intersector b) {
+                return ((Heightfield)b).collisionTestWithCircle((Circle)a, null);
+            }
+        });
+        // Likewise only circles use a Heightfield's arrays.
+        Test heightfieldSource = new Test() {
+            @Override
+            public void collisionTest(Intersector a, Intersector b, Manifold.Collection result) {
+                CollisionTable.collisionTest(a, ((Heightfield)b).getSource(), result);
+            }
+
+            @Override
+            public boolean overlaps(Intersector a, Intersector b) {
+                return CollisionTable.overlaps(a, ((Heightfield)b).getSource());
+            }
+        };
+        register(line, heightfield, heightfieldSource);
+        register(polygon, heightfield, heightfieldSource);
+        register(orientedBox, heightfield, heightfieldSource);
+        register(capsule, heightfield, heightfieldSource);
+    }
+
+    private CollisionTable() {
+    }
+
+    private static void register(int typeA, int typeB, Test test) {
+        tests[typeA * typeCount + typeB] = test;
+        if (typeA != typeB) {
+            tests[typeB * typeCount + typeA] = test;
+            swapped[typeB * typeCount + typeA] = true;
+        }
+    }
+
+    /**
+     * Checks if `a` collides with `b` and adds the resulting Manifolds to `result`.
+     */
+    static void collisionTest(Intersector a, Intersector b, Manifold.Collection result) {
+        int index = a.getShapeType() * typeCount + b.getShapeType();
+        Test test = tests[index];
+        if (test == null) {
+            a.collisionNotImplemented(b);
+        }
+        else if (swapped[index]) {
+            int start = result.size();
+            test.collisionTest(b, a, result);
+            // The test's normals point from `b` towards `a`.
+            result.negateNormals(start);
+        }
+        else {
+            test.collisionTest(a, b, result);
+        }
+    }
+
+    /**
+     * Determines whether `a` overlaps `b`.
+     */
+    static boolean overlaps(Intersector a, Intersector b) {
+        int index = a.getShapeType() * typeCount + b.getShapeType();
+        Test test = tests[index];
+        if (test == null) {
+            a.collisionNotImplemented(b);
+            return false;
+        }
+        return swapped[index] ? test.overlaps(b, a) : test.overlaps(a, b);
+    }
+}
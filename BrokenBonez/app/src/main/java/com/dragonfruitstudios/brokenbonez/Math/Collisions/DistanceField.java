@@ -0,0 +1,357 @@
+package com.dragonfruitstudios.brokenbonez.Math.Collisions;
+
+import com.dragonfruitstudios.brokenbonez.Game.Drawable;
+import com.dragonfruitstudios.brokenbonez.Game.GameView;
+import com.dragonfruitstudios.brokenbonez.Math.VectorF;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A signed distance field over a level's static Polygons. The distance to the nearest edge is
+ * precomputed at the nodes of a grid, negative inside the Polygons, so that testing a circle
+ * against the whole level takes a single lookup: the distance at the circle's center gives the
+ * penetration and its gradient gives the normal. Collision tests therefore don't depend on how
+ * many edges the level has, and wheels roll over the joins between edges smoothly.
+ *
+ * The field is an approximation, sharp corners are slightly rounded off by it. Only circles use
+ * it, every other shape (and raycasts) is tested against the Polygons themselves.
+ *
+ * The size of the grid's cells is chosen so that the field fits in the specified amount of
+ * memory. Distances are only calculated exactly near the edges, further away they are clamped.
+ */
+public class DistanceField extends Intersector implements Drawable {
+    // The smallest cell size which is used, no matter how much memory is available.
+    static final float minCellSize = 2f;
+    // Distances are calculated up to at least this far (in px) from the edges.
+    static final float minBand = 64f;
+
+    private ArrayList<Polygon> shapes;
+    private int maxBytes;
+
+    // The grid. Node (x, y) is at (originX + x * cellSize, originY + y * cellSize) and its
+    // distance is stored at `distances[y * columns + x]`. Null until the field is built.
+    private float[] distances;
+    private int columns;
+    private int rows;
+    private float originX;
+    private float originY;
+    private float cellSize;
+    private float band;
+    // The bounds of the shapes when the field was built, used to notice when they move.
+    private AABB builtBounds;
+
+    private AABB aabb;
+    private VectorF size;
+    private VectorF pos;
+    private final VectorF rayNormal = new VectorF(0, 0);
+
+    /**
+     * Creates a distance field over the specified Polygons. The field isn't built until `update`
+     * or `rebuild` is called, which the Simulator does when its static bodies change.
+     * @param maxBytes The most memory which the grid may use.
+     */
+    public DistanceField(List<? extends Polygon> shapes, int maxBytes) {
+        this.shapes = new ArrayList<Polygon>(shapes);
+        this.maxBytes = maxBytes;
+        aabb = new AABB();
+        builtBounds = new AABB();
+        size = new VectorF(0, 0);
+        pos = new VectorF(0, 0);
+        calcBounds();
+    }
+
+    private void calcBounds() {
+        aabb.setEmpty();
+        for (Polygon shape : shapes) {
+            AABB box = shape.getAABB();
+            aabb.include(box.minX, box.minY);
+            aabb.include(box.maxX, box.maxY);
+        }
+        size.set(aabb.getWidth(), aabb.getHeight());
+        pos.set(aabb.minX, aabb.minY);
+    }
+
+    /**
+     * Builds the field if it hasn't been built yet, or rebuilds it if the Polygons have been
+     * moved or scaled since. Changing the Polygons' shapes without changing their bounds isn't
+     * noticed, call `rebuild` after doing that.
+     */
+    public void update() {
+        calcBounds();
+        if (distances == null || aabb.minX != builtBounds.minX || aabb.minY != builtBounds.minY ||
+                aabb.maxX != builtBounds.maxX || aabb.maxY != builtBounds.maxY) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Calculates the distance at every node of the grid.
+     */
+    public void rebuild() {
+        calcBounds();
+        builtBounds.set(aabb);
+        if (aabb.isEmpty()) {
+            distances = new float[0];
+            columns = 0;
+            rows = 0;
+            return;
+        }
+
+        // Find the smallest cells for which the grid fits in memory. The grid extends past the
+        // shapes by the band, so that circles approaching them from outside are covered.
+        int maxNodes = Math.max(4, maxBytes / 4);
+        cellSize = Math.max(minCellSize,
+                (float)Math.sqrt(aabb.getWidth() * aabb.getHeight() / maxNodes));
+        while (true) {
+            band = Math.max(minBand, cellSize * 3);
+            columns = (int)Math.ceil((aabb.getWidth() + band * 2) / cellSize) + 1;
+            rows = (int)Math.ceil((aabb.getHeight() + band * 2) / cellSize) + 1;
+            if ((long)columns * rows <= maxNodes) {
+                break;
+            }
+            cellSize *= 1.1f;
+        }
+        originX = aabb.minX - band;
+        originY = aabb.minY - band;
+
+        distances = new float[columns * rows];
+        Arrays.fill(distances, band);
+        for (Polygon shape : shapes) {
+            for (Line l : shape.getLines()) {
+                addLine(l);
+            }
+        }
+        for (Polygon shape : shapes) {
+            markInside(shape);
+        }
+    }
+
+    /**
+     * Lowers the distance of the nodes near `line` to their distance from it.
+     */
+    private void addLine(Line line) {
+        VectorF a = line.getStart();
+        VectorF b = line.getFinish();
+        int startX = Math.max(0, (int)Math.floor((Math.min(a.x, b.x) - band - originX) / cellSize));
+        int endX = Math.min(columns - 1,
+                (int)Math.ceil((Math.max(a.x, b.x) + band - originX) / cellSize));
+        int startY = Math.max(0, (int)Math.floor((Math.min(a.y, b.y) - band - originY) / cellSize));
+        int endY = Math.min(rows - 1,
+                (int)Math.ceil((Math.max(a.y, b.y) + band - originY) / cellSize));
+        for (int y = startY; y <= endY; y++) {
+            float nodeY = originY + y * cellSize;
+            for (int x = startX; x <= endX; x++) {
+                float distance = (float)Math.sqrt(Line.distanceSquared(a.x, a.y, b.x, b.y,
+                        originX + x * cellSize, nodeY));
+                int node = y * columns + x;
+                if (distance < distances[node]) {
+                    distances[node] = distance;
+                }
+            }
+        }
+    }
+
+    /**
+     * Negates the distance of the nodes inside `shape`. Each row of nodes is scanned from left
+     * to right, using the Even-odd rule like `Polygon.collisionTest(VectorF)`.
+     */
+    private void markInside(Polygon shape) {
+        AABB box = shape.getAABB();
+        int startY = Math.max(0, (int)Math.floor((box.minY - originY) / cellSize));
+        int endY = Math.min(rows - 1, (int)Math.ceil((box.maxY - originY) / cellSize));
+        ArrayList<Line> lines = shape.getLines();
+        float[] crossings = new float[lines.size()];
+        for (int y = startY; y <= endY; y++) {
+            float nodeY = originY + y * cellSize;
+            int count = 0;
+            for (int i = 0; i < lines.size(); i++) {
+                VectorF a = lines.get(i).getStart();
+                VectorF b = lines.get(i).getFinish();
+                if (a.y > nodeY != b.y > nodeY) {
+                    crossings[count++] = (b.x - a.x) * (nodeY - a.y) / (b.y - a.y) + a.x;
+                }
+            }
+            Arrays.sort(crossings, 0, count);
+            for (int i = 0; i + 1 < count; i += 2) {
+                int startX = Math.max(0, (int)Math.ceil((crossings[i] - originX) / cellSize));
+                int endX = Math.min(columns - 1,
+                        (int)Math.floor((crossings[i + 1] - originX) / cellSize));
+                for (int x = startX; x <= endX; x++) {
+                    int node = y * columns + x;
+                    distances[node] = -Math.abs(distances[node]);
+                }
+            }
+        }
+    }
+
+    @Override
+    int getShapeType() {
+        return CollisionTable.distanceField;
+    }
+
+    /**
+     * Checks if the specified circle collides with the shapes in this field, using the field.
+     * The normal points from the circle towards the shapes, like
+     * `Circle.collisionTestWithPolygon`.
+     */
+    void collisionTestWithCircle(Circle circle, Manifold.Collection result) {
+        VectorF center = circle.getCenter();
+        float radius = circle.getRadius();
+        float gridX = (center.x - originX) / cellSize;
+        float gridY = (center.y - originY) / cellSize;
+        int x = (int)Math.floor(gridX);
+        int y = (int)Math.floor(gridY);
+        if (distances == null || radius + cellSize >= band || x < 0 || y < 0 ||
+                x >= columns - 1 || y >= rows - 1) {
+            // Not covered by the field (or the circle is too big for it).
+            collisionTestWithShapes(circle, result);
+            return;
+        }
+
+        // Interpolate between the four nodes around the center.
+        float fx = gridX - x;
+        float fy = gridY - y;
+        int node = y * columns + x;
+        float d00 = distances[node];
+        float d10 = distances[node + 1];
+        float d01 = distances[node + columns];
+        float d11 = distances[node + columns + 1];
+        float top = d00 + (d10 - d00) * fx;
+        float bottom = d01 + (d11 - d01) * fx;
+        float distance = top + (bottom - top) * fy;
+        if (distance > radius) {
+            return;
+        }
+
+        // The gradient points away from the shapes.
+        float gradientX = (d10 - d00) * (1 - fy) + (d11 - d01) * fy;
+        float gradientY = bottom - top;
+        float length = (float)Math.sqrt(gradientX * gradientX + gradientY * gradientY);
+        if (length == 0) {
+            collisionTestWithShapes(circle, result);
+            return;
+        }
+        result.add(-gradientX / length, -gradientY / length, radius - distance);
+    }
+
+    /**
+     * Tests `shape` against each of the shapes this field was built from.
+     */
+    void collisionTestWithShapes(Intersector shape, Manifold.Collection result) {
+        AABB box = shape.getAABB();
+        for (int i = 0; i < shapes.size(); i++) {
+            if (shapes.get(i).getAABB().overlaps(box)) {
+                CollisionTable.collisionTest(shape, shapes.get(i), result);
+            }
+        }
+    }
+
+    /**
+     * Determines whether `shape` overlaps any of the shapes this field was built from.
+     */
+    boolean overlapsShapes(Intersector shape) {
+        AABB box = shape.getAABB();
+        for (int i = 0; i < shapes.size(); i++) {
+            if (shapes.get(i).getAABB().overlaps(box) &&
+                    CollisionTable.overlaps(shape, shapes.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Casts a ray against the shapes which this field was built from, see
+     * `Intersector.raycast`.
+     */
+    @Override
+    public float raycast(float originX, float originY, float dx, float dy, VectorF normal) {
+        float result = -1;
+        for (int i = 0; i < shapes.size(); i++) {
+            float t = shapes.get(i).raycast(originX, originY, dx, dy, rayNormal);
+            if (t >= 0 && (result < 0 || t < result)) {
+                result = t;
+                normal.set(rayNormal.x, rayNormal.y);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a DistanceField which shares this field's grid and the geometry of its shapes
+     * (see `Polygon.shareGeometry`), but has its own scratch memory. The field is built first
+     * if it hasn't been yet, afterwards it is only ever read.
+     */
+    public DistanceField shareGeometry() {
+        if (distances == null) {
+            rebuild();
+        }
+        ArrayList<Polygon> shared = new ArrayList<Polygon>();
+        for (Polygon shape : shapes) {
+            shared.add(shape.shareGeometry());
+        }
+        DistanceField result = new DistanceField(shared, maxBytes);
+        result.distances = distances;
+        result.columns = columns;
+        result.rows = rows;
+        result.originX = originX;
+        result.originY = originY;
+        result.cellSize = cellSize;
+        result.band = band;
+        result.builtBounds.set(builtBounds);
+        return result;
+    }
+
+    /**
+     * Same as `shareGeometry`, the grid is never modified once it is built so it doesn't need
+     * to be copied.
+     */
+    public DistanceField copy() {
+        return shareGeometry();
+    }
+
+    // <editor-fold desc="Getters/Setters">
+
+    public ArrayList<Polygon> getShapes() {
+        return shapes;
+    }
+
+    /**
+     * Returns the size of the grid's cells, in px. Only valid once the field has been built.
+     */
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Returns how much memory the grid uses, in bytes.
+     */
+    public int getByteCount() {
+        return distances == null ? 0 : distances.length * 4;
+    }
+
+    public VectorF getPos() {
+        return pos;
+    }
+
+    public VectorF getSize() {
+        return size;
+    }
+
+    public AABB getAABB() {
+        return aabb;
+    }
+
+    // </editor-fold>
+
+    /**
+     * Draws the shapes which this field was built from, for debugging purposes only.
+     */
+    public void draw(GameView view) {
+        for (Polygon shape : shapes) {
+            shape.draw(view);
+        }
+    }
+}
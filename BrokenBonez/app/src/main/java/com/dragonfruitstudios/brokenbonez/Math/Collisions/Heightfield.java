@@ -0,0 +1,278 @@
+package com.dragonfruitstudios.brokenbonez.Math.Collisions;
+
+import com.dragonfruitstudios.brokenbonez.Game.Drawable;
+import com.dragonfruitstudios.brokenbonez.Game.GameView;
+import com.dragonfruitstudios.brokenbonez.Math.VectorF;
+
+import java.util.ArrayList;
+
+/**
+ * The ground under a surface whose x coordinates only ever increase, like the open paths in the
+ * level SVGs. The surface's points are kept in sorted arrays, so the segments near a circle are
+ * found with a binary search on x instead of walking the Polygon's lines.
+ *
+ * A Heightfield is built from a Polygon whose first lines are the surface and whose last three
+ * lines close it: the right side, the bottom and the left side, as `LevelInfo` closes open
+ * paths. Only circles use the arrays, every other shape (and raycasts) is tested against the
+ * Polygon itself.
+ */
+public class Heightfield extends Intersector implements Drawable {
+    private Polygon source;
+    private int surfaceLines;
+
+    // The surface's points, sorted by x. Segment i goes from point i to point i + 1.
+    private float[] xs;
+    private float[] ys;
+    // The y coordinate of the bottom at the left and right ends of the surface.
+    private float bottomLeft;
+    private float bottomRight;
+    // The bounds of the source when the arrays were filled, used to notice when it moves.
+    private AABB builtBounds;
+
+    private AABB aabb;
+
+    /**
+     * Creates a Heightfield over `source`, whose first `surfaceLines` lines are the surface.
+     * Use `isMonotonic` to check that they are suitable first.
+     */
+    public Heightfield(Polygon source, int surfaceLines) {
+        if (!isMonotonic(source.getLines(), surfaceLines) ||
+                source.getLines().size() != surfaceLines + 3) {
+            throw new IllegalArgumentException("Source is not a closed monotonic surface.");
+        }
+        this.source = source;
+        this.surfaceLines = surfaceLines;
+        xs = new float[surfaceLines + 1];
+        ys = new float[surfaceLines + 1];
+        builtBounds = new AABB();
+        aabb = new AABB();
+        rebuild();
+    }
+
+    /**
+     * Determines whether the first `count` lines of `lines` form a connected surface along
+     * which x strictly increases.
+     */
+    public static boolean isMonotonic(ArrayList<Line> lines, int count) {
+        if (count < 1 || count > lines.size()) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            Line l = lines.get(i);
+            if (l.getFinish().x <= l.getStart().x) {
+                return false;
+            }
+            if (i > 0 && !l.getStart().equals(lines.get(i - 1).getFinish())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Refills the arrays if the source has been moved or scaled since they were filled.
+     */
+    public void update() {
+        AABB box = source.getAABB();
+        if (box.minX != builtBounds.minX || box.minY != builtBounds.minY ||
+                box.maxX != builtBounds.maxX || box.maxY != builtBounds.maxY) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Copies the source's surface into the arrays.
+     */
+    public void rebuild() {
+        ArrayList<Line> lines = source.getLines();
+        for (int i = 0; i < surfaceLines; i++) {
+            xs[i] = lines.get(i).getStart().x;
+            ys[i] = lines.get(i).getStart().y;
+        }
+        xs[surfaceLines] = lines.get(surfaceLines - 1).getFinish().x;
+        ys[surfaceLines] = lines.get(surfaceLines - 1).getFinish().y;
+        bottomRight = lines.get(surfaceLines).getFinish().y;
+        bottomLeft = lines.get(surfaceLines + 2).getStart().y;
+        builtBounds.set(source.getAABB());
+        aabb.set(source.getAABB());
+    }
+
+    @Override
+    int getShapeType() {
+        return CollisionTable.heightfield;
+    }
+
+    /**
+     * Returns the index of the first segment which ends at or to the right of `x`.
+     */
+    private int findSegment(float x) {
+        int low = 0;
+        int high = surfaceLines - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (xs[mid + 1] < x) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the height of the surface at `x`, which must be within the surface.
+     */
+    private float surfaceAt(int segment, float x) {
+        float t = (x - xs[segment]) / (xs[segment + 1] - xs[segment]);
+        return ys[segment] + (ys[segment + 1] - ys[segment]) * t;
+    }
+
+    /**
+     * Checks if the specified circle collides with this Heightfield. The normals point from
+     * the circle towards the ground, like `Circle.collisionTestWithPolygon`.
+     * @param result The collection to add the collisions to, or null if only whether they
+     *               overlap is needed.
+     * @return Whether they overlap.
+     */
+    boolean collisionTestWithCircle(Circle circle, Manifold.Collection result) {
+        VectorF center = circle.getCenter();
+        float radius = circle.getRadius();
+        if (!aabb.overlaps(circle.getAABB())) {
+            return false;
+        }
+
+        if (center.x >= xs[0] && center.x <= xs[surfaceLines]) {
+            int segment = findSegment(center.x);
+            float surface = surfaceAt(segment, center.x);
+            float t = (center.x - xs[0]) / (xs[surfaceLines] - xs[0]);
+            float bottom = bottomLeft + (bottomRight - bottomLeft) * t;
+            if (center.y > surface && center.y < bottom) {
+                // The center is in the ground, push the circle back up out of it.
+                if (result != null) {
+                    result.add(0, 1, center.y - surface + radius);
+                }
+                return true;
+            }
+        }
+
+        boolean collided = false;
+        ArrayList<Line> lines = source.getLines();
+        for (int i = findSegment(center.x - radius);
+             i < surfaceLines && xs[i] <= center.x + radius; i++) {
+            if (collisionTestWithSegment(circle, i, result)) {
+                if (result == null) {
+                    return true;
+                }
+                collided = true;
+            }
+        }
+        // The sides and the bottom.
+        for (int i = surfaceLines; i < lines.size(); i++) {
+            Line l = lines.get(i);
+            if (l.getAABB().overlaps(circle.getAABB())) {
+                if (result == null) {
+                    if (circle.overlapsLine(l)) {
+                        return true;
+                    }
+                }
+                else if (circle.collisionTestWithLine(l, result)) {
+                    collided = true;
+                }
+            }
+        }
+        return collided;
+    }
+
+    /**
+     * Checks if the circle collides with segment `i` of the surface, see
+     * `Circle.collisionTestWithLine`.
+     */
+    private boolean collisionTestWithSegment(Circle circle, int i, Manifold.Collection result) {
+        VectorF center = circle.getCenter();
+        float radius = circle.getRadius();
+        float abX = xs[i + 1] - xs[i];
+        float abY = ys[i + 1] - ys[i];
+        float u = ((center.x - xs[i]) * abX + (center.y - ys[i]) * abY) /
+                (abX * abX + abY * abY);
+        u = Math.max(0, Math.min(1, u));
+        float x = xs[i] + abX * u - center.x;
+        float y = ys[i] + abY * u - center.y;
+        float distanceSquared = x * x + y * y;
+        if (distanceSquared > radius * radius) {
+            return false;
+        }
+        if (result != null) {
+            float distance = (float)Math.sqrt(distanceSquared);
+            if (distance == 0) {
+                throw new ArithmeticException("Magnitude of vector is 0.");
+            }
+            // Pass the Line along so that the Solver can recognise the same contact in the
+            // next step.
+            result.add(x / distance, y / distance, radius - distance,
+                    source.getLines().get(i));
+        }
+        return true;
+    }
+
+    /**
+     * Casts a ray against the source Polygon, see `Intersector.raycast`.
+     */
+    @Override
+    public float raycast(float originX, float originY, float dx, float dy, VectorF normal) {
+        return source.raycast(originX, originY, dx, dy, normal);
+    }
+
+    /**
+     * Creates a Heightfield which shares this one's arrays and the geometry of its source
+     * (see `Polygon.shareGeometry`). The arrays are only written when the source moves, so
+     * don't move it while the copies are in use.
+     */
+    public Heightfield copy() {
+        return new Heightfield(source.shareGeometry(), surfaceLines, this);
+    }
+
+    private Heightfield(Polygon source, int surfaceLines, Heightfield other) {
+        this.source = source;
+        this.surfaceLines = surfaceLines;
+        xs = other.xs;
+        ys = other.ys;
+        bottomLeft = other.bottomLeft;
+        bottomRight = other.bottomRight;
+        builtBounds = new AABB();
+        builtBounds.set(other.builtBounds);
+        aabb = new AABB();
+        aabb.set(other.aabb);
+    }
+
+    // <editor-fold desc="Getters/Setters">
+
+    public Polygon getSource() {
+        return source;
+    }
+
+    public int getPointCount() {
+        return surfaceLines + 1;
+    }
+
+    public VectorF getPos() {
+        return source.getPos();
+    }
+
+    public VectorF getSize() {
+        return source.getSize();
+    }
+
+    public AABB getAABB() {
+        return aabb;
+    }
+
+    // </editor-fold>
+
+    /**
+     * Draws the source Polygon, for debugging purposes only.
+     */
+    public void draw(GameView view) {
+        source.draw(view);
+    }
+}
@@ -20,7 +20,50 @@ public abstract class Intersector implements Drawable {
                 this.getClass() + " and " + shape.getClass());
     }
 
-    public abstract Manifold.Collection collisionTest(Intersector shape);
+    /**
+     * Returns the type of this shape, one of the types in CollisionTable. The collision tests
+     * are looked up by the types of both shapes.
+     */
+    abstract int getShapeType();
+
+    /**
+     * Checks if the specified shape collides with this shape.
+     * @return A Manifold containing information about the collision.
+     */
+    public Manifold.Collection collisionTest(Intersector shape) {
+        Manifold.Collection result = new Manifold.Collection();
+        collisionTest(shape, result);
+        return result;
+    }
+
+    /**
+     * Checks if the specified shape collides with this shape and adds the resulting Manifolds
+     * to `result`. This does not allocate any memory, so it is what the physics simulator uses.
+     */
+    public void collisionTest(Intersector shape, Manifold.Collection result) {
+        CollisionTable.collisionTest(this, shape, result);
+    }
+
+    /**
+     * Determines whether the specified shape overlaps this shape. Unlike `collisionTest` this
+     * doesn't calculate any normals or penetration depths and can stop at the first overlap
+     * it finds. This doesn't allocate any memory.
+     */
+    public boolean overlaps(Intersector shape) {
+        return CollisionTable.overlaps(this, shape);
+    }
+
+    /**
+     * Casts a ray from (originX, originY) along (dx, dy) and finds where it first hits this
+     * shape's outline.
+     * @param normal Set to the unit normal of the outline at the point of impact, pointing back
+     *               towards the ray's origin.
+     * @return The fraction of (dx, dy) after which the ray hits this shape, between 0 and 1,
+     * or -1 if it doesn't hit it.
+     */
+    public float raycast(float originX, float originY, float dx, float dy, VectorF normal) {
+        throw new RuntimeException("Raycast needs to be implemented for " + this.getClass());
+    }
 
     public abstract Intersector copy();
 
@@ -38,4 +81,10 @@ public abstract class Intersector implements Drawable {
      * This is cached by the bounding shapes for efficiency.
      */
     public abstract VectorF getSize();
+
+    /**
+     * Returns the axis-aligned bounding box of this shape. The returned AABB is owned by the
+     * shape and may be reused, so copy it if you need to keep it around.
+     */
+    public abstract AABB getAABB();
 }
@@ -21,23 +21,47 @@ public class Line extends Intersector implements Drawable {
     private VectorF end;
 
     private VectorF size;
-
-    private long timeOfLastCollision;
+    private AABB aabb;
+
+    // In simulation time (seconds), see `Simulator.getTime`.
+    private double timeOfLastCollision = Double.NEGATIVE_INFINITY;
+    // The simulation time which Lines are drawn at, set by the Simulator before drawing.
+    private static double debugDrawTime;
+
+    // Data derived from the start and end points, kept up to date by `updateCache`. The points
+    // are mutable VectorFs which are moved directly (for example by Rect.setPos and
+    // Graphics.scaleLine), so the points which the cache was calculated for are remembered and
+    // compared instead of relying on every caller to invalidate it.
+    private float cachedStartX = Float.NaN;
+    private float cachedStartY;
+    private float cachedEndX;
+    private float cachedEndY;
+    private float length;
+    private float inverseLength; // 0 when this Line is a point.
+    private float directionX; // Unit vector from the start to the end.
+    private float directionY;
+    private float normalX; // Unit vector perpendicular to the direction.
+    private float normalY;
+    // The angle is only needed for drawing, so it is calculated on demand.
+    private float angle;
+    private boolean angleValid;
 
     private VectorF calcSize() {
-        return this.size = new VectorF(end.subtracted(start).magnitude(), 1);
+        return this.size = new VectorF(VectorF.distStatic(start.x, start.y, end.x, end.y), 1);
     }
 
     public Line(VectorF start, VectorF end) {
         this.start = start;
         this.end = end;
         this.size = calcSize();
+        this.aabb = new AABB();
     }
 
     public Line(float x1, float y1, float x2, float y2) {
         this.start = new VectorF(x1, y1);
         this.end = new VectorF(x2, y2);
         this.size = calcSize();
+        this.aabb = new AABB();
     }
 
     /**
@@ -90,26 +114,65 @@ public class Line extends Intersector implements Drawable {
             // Calculate the penetration depth and collision normal.
             // The depth will always be 0
             float depth = 0f;
-            // Get vector for line start to finish.
-            VectorF startToFinish = end.subtracted(start);
-            VectorF normal = new VectorF(-startToFinish.getY(), startToFinish.getX());
-            normal.normalise();
-            return new Manifold(normal, depth, true);
+            updateCache();
+            if (length == 0) {
+                throw new ArithmeticException("Magnitude of vector is 0.");
+            }
+            return new Manifold(new VectorF(normalX, normalY), depth, true);
         }
         return Manifold.noCollision();
     }
 
     /**
-     * Checks if the specified shape collides with this Line.
-     * @return A Manifold containing information about the collision.
+     * Same as `collisionTest(VectorF)` but adds the Manifold to `result` instead of allocating
+     * a new one.
+     * @return Whether `point` collides with this line.
+     */
+    public boolean collisionTest(VectorF point, Manifold.Collection result) {
+        if (collidesWith(point)) {
+            updateCache();
+            if (length == 0) {
+                throw new ArithmeticException("Magnitude of vector is 0.");
+            }
+            result.add(normalX, normalY, 0, this);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    int getShapeType() {
+        return CollisionTable.line;
+    }
+
+    /**
+     * Casts a ray against this line segment, see `Intersector.raycast`.
      */
     @Override
-    public Manifold.Collection collisionTest(Intersector shape) {
-        if (shape instanceof Circle) {
-            return ((Circle)shape).collisionTest(this);
+    public float raycast(float originX, float originY, float dx, float dy, VectorF normal) {
+        // Solve origin + t * d = start + u * (end - start) for t and u.
+        float ex = end.x - start.x;
+        float ey = end.y - start.y;
+        float denominator = dx * ey - dy * ex;
+        if (denominator == 0) {
+            return -1; // Parallel.
+        }
+        float sx = start.x - originX;
+        float sy = start.y - originY;
+        float t = (sx * ey - sy * ex) / denominator;
+        float u = (sx * dy - sy * dx) / denominator;
+        if (t < 0 || t > 1 || u < 0 || u > 1) {
+            return -1;
         }
 
-        return collisionNotImplemented(shape);
+        updateCache();
+        if (normalX * dx + normalY * dy > 0) {
+            normal.set(-normalX, -normalY);
+        }
+        else {
+            normal.set(normalX, normalY);
+        }
+        return t;
     }
 
     /**
@@ -118,25 +181,33 @@ public class Line extends Intersector implements Drawable {
      * @return The distance squared between `point` and specified line segment.
      */
     public static float distanceSquared(VectorF lineStart, VectorF lineEnd, VectorF point) {
+        return distanceSquared(lineStart.x, lineStart.y, lineEnd.x, lineEnd.y, point.x, point.y);
+    }
+
+    /**
+     * Same as the above but takes the coordinates directly, so no VectorF's need to be created.
+     */
+    public static float distanceSquared(float startX, float startY, float endX, float endY,
+                                        float x, float y) {
         // Based on http://stackoverflow.com/a/1501725/492186
-        final float len = lineStart.distSquared(lineEnd);
+        final float dx = endX - startX;
+        final float dy = endY - startY;
+        final float len = dx * dx + dy * dy;
         if (len == 0.0f) { // When lineStart == lineEnd
-            return point.distSquared(lineStart);
+            return (x - startX) * (x - startX) + (y - startY) * (y - startY);
         }
 
-        // var t = ((p.x - v.x) * (w.x - v.x) + (p.y - v.y) * (w.y - v.y)) / l2;
-        final float t = (point.subtracted(lineStart)).dotProduct(lineEnd.subtracted(lineStart)) / len;
+        final float t = ((x - startX) * dx + (y - startY) * dy) / len;
         if (t < 0.0f) {
-            return point.distSquared(lineStart);
+            return (x - startX) * (x - startX) + (y - startY) * (y - startY);
         }
         else if (t > 1.0f) {
-            return point.distSquared(lineEnd);
+            return (x - endX) * (x - endX) + (y - endY) * (y - endY);
         }
 
-        return point.distSquared(
-                new VectorF(lineStart.x + t * (lineEnd.x - lineStart.x),
-                        lineStart.y + t * (lineEnd.y - lineStart.y)
-                ));
+        final float projX = startX + t * dx;
+        final float projY = startY + t * dy;
+        return (x - projX) * (x - projX) + (y - projY) * (y - projY);
     }
 
     /**
@@ -147,9 +218,63 @@ public class Line extends Intersector implements Drawable {
         return distanceSq < 10*10;
     }
 
+    /**
+     * Returns the angle (in radians) of the vector from this Line's start to its end.
+     */
     public float calcRotation() {
-        VectorF sub = end.subtracted(start);
-        return sub.angle();
+        updateCache();
+        if (!angleValid) {
+            angle = (float)Math.atan2(end.y - start.y, end.x - start.x);
+            angleValid = true;
+        }
+        return angle;
+    }
+
+    /**
+     * Recalculates the cached length, direction, normal and AABB if the start or end point has
+     * moved since they were last calculated. Once calculated, the cache is only read until the
+     * points move again, which is what makes it safe to share Lines between threads (see
+     * `prepareForSharing`).
+     */
+    private void updateCache() {
+        if (start.x == cachedStartX && start.y == cachedStartY &&
+                end.x == cachedEndX && end.y == cachedEndY) {
+            return;
+        }
+        cachedStartX = start.x;
+        cachedStartY = start.y;
+        cachedEndX = end.x;
+        cachedEndY = end.y;
+
+        float dx = end.x - start.x;
+        float dy = end.y - start.y;
+        length = (float)Math.sqrt(dx * dx + dy * dy);
+        if (length == 0) {
+            inverseLength = 0;
+            directionX = 0;
+            directionY = 0;
+        }
+        else {
+            inverseLength = 1 / length;
+            directionX = dx / length;
+            directionY = dy / length;
+        }
+        normalX = -directionY;
+        normalY = directionX;
+        size.x = length;
+        aabb.set(Math.min(start.x, end.x), Math.min(start.y, end.y),
+                Math.max(start.x, end.x), Math.max(start.y, end.y));
+        angleValid = false;
+    }
+
+    /**
+     * Calculates everything which is otherwise calculated lazily, so that afterwards this Line
+     * is only read (until it is moved). Call this before sharing the Line between threads, for
+     * example in `Polygon.shareGeometry`.
+     */
+    public void prepareForSharing() {
+        updateCache();
+        calcRotation();
     }
 
     public Line copy() {
@@ -178,6 +303,14 @@ public class Line extends Intersector implements Drawable {
         return new VectorF((this.start.x + this.end.x) / 2, (this.start.y + this.end.y) / 2);
     }
 
+    /**
+     * Same as `getCenter` but stores the center in `out` and returns it.
+     */
+    public VectorF getCenter(VectorF out) {
+        out.set((this.start.x + this.end.x) / 2, (this.start.y + this.end.y) / 2);
+        return out;
+    }
+
     /**
      * Determines whether this Line starts and ends at the same point.
      */
@@ -206,16 +339,72 @@ public class Line extends Intersector implements Drawable {
     }
 
     public VectorF getSize() {
+        updateCache();
         return size;
     }
 
+    public float getLength() {
+        updateCache();
+        return length;
+    }
+
+    /**
+     * Returns 1 / `getLength()`, or 0 if this Line is a point.
+     */
+    public float getInverseLength() {
+        updateCache();
+        return inverseLength;
+    }
+
     /**
-     * This is used for debugging. Sets the last time that this Line was involved in a collision.
+     * Returns the x component of the unit vector pointing from this Line's start to its end.
      */
-    public void setTimeOfLastCollision(long time) {
+    public float getDirectionX() {
+        updateCache();
+        return directionX;
+    }
+
+    public float getDirectionY() {
+        updateCache();
+        return directionY;
+    }
+
+    /**
+     * Returns the x component of this Line's unit normal, which is the direction rotated by
+     * 90 degrees: (-directionY, directionX).
+     */
+    public float getNormalX() {
+        updateCache();
+        return normalX;
+    }
+
+    public float getNormalY() {
+        updateCache();
+        return normalY;
+    }
+
+    public AABB getAABB() {
+        // The start and end vectors are mutable, so the AABB is recalculated whenever they move.
+        updateCache();
+        return aabb;
+    }
+
+    /**
+     * This is used for debugging. Sets the last time (in simulation time) that this Line was
+     * involved in a collision.
+     */
+    public void setTimeOfLastCollision(double time) {
         timeOfLastCollision = time;
     }
 
+    /**
+     * This is used for debugging. Sets the simulation time which the following draws compare
+     * the time of each Line's last collision with.
+     */
+    public static void setDebugDrawTime(double time) {
+        debugDrawTime = time;
+    }
+
     // </editor-fold>
 
     /**
@@ -224,7 +413,7 @@ public class Line extends Intersector implements Drawable {
     public void draw(GameView view) {
         if (Graphics.drawDebugInfo) {
             // Color the line differently if it was involved in a recent collision.
-            if (System.nanoTime() - timeOfLastCollision <= 1e8) {
+            if (debugDrawTime - timeOfLastCollision <= 0.1) {
                 view.drawLine(start, end, Color.parseColor("#00c80a"));
             } else {
                 view.drawLine(start, end, Color.parseColor("#ff1122"));
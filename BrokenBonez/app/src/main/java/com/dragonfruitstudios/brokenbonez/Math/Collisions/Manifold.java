@@ -21,6 +21,9 @@ public class Manifold {
 
     private Body bodyA;
     private Body bodyB;
+    // The Line which the collision is with, if it is known. Used to recognise the same contact
+    // in consecutive physics steps.
+    private Line line;
 
     public Manifold(VectorF normal, float penetration, boolean collided) {
         this.normal = normal;
@@ -28,6 +31,33 @@ public class Manifold {
         this.collided = collided;
     }
 
+    /**
+     * Copies the collision information (but not the bodies) from `other` into this Manifold,
+     * reusing this Manifold's normal vector.
+     */
+    void set(Manifold other) {
+        set(other.normal.x, other.normal.y, other.penetration);
+        this.collided = other.collided;
+        this.line = other.line;
+    }
+
+    /**
+     * Sets this Manifold to describe a collision with the specified normal and penetration depth.
+     */
+    void set(float normalX, float normalY, float penetration) {
+        if (normal == null) {
+            normal = new VectorF(normalX, normalY);
+        }
+        else {
+            normal.set(normalX, normalY);
+        }
+        this.penetration = penetration;
+        this.collided = true;
+        this.bodyA = null;
+        this.bodyB = null;
+        this.line = null;
+    }
+
     /**
      * Creates a new empty Manifold which specifies that no collision occurred.
      */
@@ -101,13 +131,28 @@ public class Manifold {
         return bodyB;
     }
 
+    /**
+     * @return The Line which the collision is with, or null if it isn't known (for example when
+     * the collision is with the inside of a Polygon).
+     */
+    public Line getLine() {
+        return line;
+    }
+
     // </editor-fold>
 
     /**
      * Stores a list of Manifolds and provides methods for dealing with this list.
+     *
+     * The Manifolds are pooled: `clear` only resets the size of the collection and the Manifold
+     * objects are reused by subsequent `add` calls. This means that a collection which is
+     * cleared and refilled every physics step stops allocating memory once it has grown large
+     * enough. Because of this, Manifolds returned by `get` are only valid until `clear` is
+     * called, and `add(Manifold)` stores a copy of the Manifold rather than the Manifold itself.
      */
     public static class Collection implements Iterable<Manifold> {
         private ArrayList<Manifold> manifolds;
+        private int size;
 
         public Collection() {
             manifolds = new ArrayList<>();
@@ -115,31 +160,76 @@ public class Manifold {
 
         public Collection(Manifold manifold) {
             manifolds = new ArrayList<>();
-            manifolds.add(manifold);
+            add(manifold);
         }
 
         public boolean hasCollisions() {
-            return manifolds.size() != 0;
+            return size != 0;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Removes all Manifolds from this collection. Their memory is kept for reuse.
+         */
+        public void clear() {
+            size = 0;
+        }
+
+        /**
+         * Returns the next unused Manifold in the pool, allocating one if necessary.
+         */
+        private Manifold next() {
+            if (size == manifolds.size()) {
+                manifolds.add(new Manifold(null, -1, false));
+            }
+            return manifolds.get(size++);
         }
 
         public void add(Manifold manifold) {
             Assert.assertTrue("Only Manifold's that collided should be added.",
                     manifold.hasCollided());
-            manifolds.add(manifold);
+            Manifold m = next();
+            m.set(manifold);
+            m.bodyA = manifold.bodyA;
+            m.bodyB = manifold.bodyB;
+        }
+
+        /**
+         * Adds a collision with the specified normal and penetration to this collection without
+         * allocating a new Manifold.
+         */
+        public void add(float normalX, float normalY, float penetration) {
+            next().set(normalX, normalY, penetration);
+        }
+
+        /**
+         * Same as `add(float, float, float)` but also records the Line which the collision is
+         * with.
+         */
+        public void add(float normalX, float normalY, float penetration, Line line) {
+            Manifold m = next();
+            m.set(normalX, normalY, penetration);
+            m.line = line;
         }
 
         public void addAll(Manifold.Collection collection) {
-            for (Manifold m : collection) {
-                this.add(m);
+            for (int i = 0; i < collection.size; i++) {
+                this.add(collection.get(i));
             }
         }
 
         public Manifold get(int index) {
+            if (index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
             return manifolds.get(index);
         }
 
         public Iterator<Manifold> iterator() {
-            return manifolds.iterator();
+            return manifolds.subList(0, size).iterator();
         }
 
         // <editor-fold desc="Methods applied to all Manifolds in collection">
@@ -148,20 +238,48 @@ public class Manifold {
          * Adds the specified penetration to each Manifold in this collection.
          */
         public void addPenetration(float penetration) {
-            for (Manifold m : manifolds) {
+            addPenetration(penetration, 0);
+        }
+
+        /**
+         * Adds the specified penetration to each Manifold starting at index `start`.
+         */
+        public void addPenetration(float penetration, int start) {
+            for (int i = start; i < size; i++) {
+                Manifold m = manifolds.get(i);
                 m.setPenetration(m.getPenetration() + penetration);
             }
         }
 
+        /**
+         * Reverses the normal of each Manifold starting at index `start`.
+         */
+        public void negateNormals(int start) {
+            for (int i = start; i < size; i++) {
+                manifolds.get(i).getNormal().mult(-1);
+            }
+        }
+
         public void setFirstBody(Body body) {
-            for (Manifold m : manifolds) {
-                m.setFirstBody(body);
+            for (int i = 0; i < size; i++) {
+                manifolds.get(i).setFirstBody(body);
             }
         }
 
         public void setSecondBody(Body body) {
-            for (Manifold m : manifolds) {
-                m.setSecondBody(body);
+            for (int i = 0; i < size; i++) {
+                manifolds.get(i).setSecondBody(body);
+            }
+        }
+
+        /**
+         * Sets the first and second bodies of each Manifold starting at index `start`.
+         */
+        public void setBodies(Body first, Body second, int start) {
+            for (int i = start; i < size; i++) {
+                Manifold m = manifolds.get(i);
+                m.setFirstBody(first);
+                m.setSecondBody(second);
             }
         }
 
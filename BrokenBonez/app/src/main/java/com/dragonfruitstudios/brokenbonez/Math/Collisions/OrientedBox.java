@@ -0,0 +1,362 @@
+package com.dragonfruitstudios.brokenbonez.Math.Collisions;
+
+import com.dragonfruitstudios.brokenbonez.Game.Drawable;
+import com.dragonfruitstudios.brokenbonez.Game.GameView;
+import com.dragonfruitstudios.brokenbonez.Game.Graphics;
+import com.dragonfruitstudios.brokenbonez.Math.VectorF;
+
+import java.util.ArrayList;
+
+/**
+ * A rectangle which can be rotated. It is defined by its center, the direction of its width
+ * (its axis) and its half width and height, all of which can be changed at any time with `set`
+ * without allocating any memory. This makes it suitable for shapes which follow a moving
+ * object, like the bike's body.
+ */
+public class OrientedBox extends Intersector implements Drawable {
+    private VectorF center;
+    // Unit vector along the box's width. The height runs along (-axisY, axisX).
+    private float axisX;
+    private float axisY;
+    private float halfWidth;
+    private float halfHeight;
+
+    // The corners, in order around the box, and the edges between them. The edges share the
+    // corners' VectorFs, so moving the corners moves the edges too.
+    private VectorF[] corners;
+    private ArrayList<Line> edges;
+    // Scratch memory for testing this box against a single Line.
+    private ArrayList<Line> singleLine;
+    private final VectorF rayNormal = new VectorF(0, 0);
+
+    private VectorF size;
+    private AABB aabb;
+
+    /**
+     * Creates a new OrientedBox with the specified center, half width and half height, rotated
+     * by `angle` radians.
+     */
+    public OrientedBox(float cx, float cy, float halfWidth, float halfHeight, float angle) {
+        center = new VectorF(0, 0);
+        corners = new VectorF[4];
+        for (int i = 0; i < corners.length; i++) {
+            corners[i] = new VectorF(0, 0);
+        }
+        edges = new ArrayList<Line>();
+        for (int i = 0; i < corners.length; i++) {
+            edges.add(new Line(corners[i], corners[(i + 1) % corners.length]));
+        }
+        singleLine = new ArrayList<Line>();
+        singleLine.add(null);
+        size = new VectorF(0, 0);
+        aabb = new AABB();
+        set(cx, cy, (float)Math.cos(angle), (float)Math.sin(angle), halfWidth, halfHeight);
+    }
+
+    /**
+     * Moves, rotates and resizes this box.
+     * @param axisX The x component of the unit vector along the box's width.
+     * @param axisY The y component of the unit vector along the box's width.
+     */
+    public void set(float cx, float cy, float axisX, float axisY, float halfWidth,
+                    float halfHeight) {
+        center.set(cx, cy);
+        this.axisX = axisX;
+        this.axisY = axisY;
+        this.halfWidth = halfWidth;
+        this.halfHeight = halfHeight;
+
+        float wx = axisX * halfWidth;
+        float wy = axisY * halfWidth;
+        float hx = -axisY * halfHeight;
+        float hy = axisX * halfHeight;
+        corners[0].set(cx - wx - hx, cy - wy - hy);
+        corners[1].set(cx + wx - hx, cy + wy - hy);
+        corners[2].set(cx + wx + hx, cy + wy + hy);
+        corners[3].set(cx - wx + hx, cy - wy + hy);
+
+        aabb.setEmpty();
+        for (VectorF corner : corners) {
+            aabb.include(corner.x, corner.y);
+        }
+        size.set(halfWidth * 2, halfHeight * 2);
+    }
+
+    @Override
+    int getShapeType() {
+        return CollisionTable.orientedBox;
+    }
+
+    /**
+     * Determines whether the point (x, y) is inside this box or on its outline.
+     */
+    public boolean contains(float x, float y) {
+        float dx = x - center.x;
+        float dy = y - center.y;
+        return Math.abs(dx * axisX + dy * axisY) <= halfWidth &&
+                Math.abs(dy * axisX - dx * axisY) <= halfHeight;
+    }
+
+    /**
+     * Returns half the length of this box's projection onto the specified axis.
+     */
+    private float extent(float x, float y) {
+        return halfWidth * Math.abs(axisX * x + axisY * y) +
+                halfHeight * Math.abs(axisX * y - axisY * x);
+    }
+
+    /**
+     * Checks if the specified circle collides with this box. The normal points from this box
+     * towards the circle.
+     * @param result The collection to add the collision to, or null if only whether they
+     *               overlap is needed.
+     * @return Whether they overlap.
+     */
+    boolean collisionTestWithCircle(Circle circle, Manifold.Collection result) {
+        // Work in the box's own coordinates, in which it is axis-aligned.
+        float dx = circle.getCenter().x - center.x;
+        float dy = circle.getCenter().y - center.y;
+        float localX = dx * axisX + dy * axisY;
+        float localY = dy * axisX - dx * axisY;
+        float radius = circle.getRadius();
+
+        if (Math.abs(localX) <= halfWidth && Math.abs(localY) <= halfHeight) {
+            // The center is inside, push the circle out through the nearest side.
+            if (result != null) {
+                float depthX = halfWidth - Math.abs(localX);
+                float depthY = halfHeight - Math.abs(localY);
+                if (depthX <= depthY) {
+                    float sign = localX >= 0 ? 1 : -1;
+                    result.add(axisX * sign, axisY * sign, depthX + radius);
+                }
+                else {
+                    float sign = localY >= 0 ? 1 : -1;
+                    result.add(-axisY * sign, axisX * sign, depthY + radius);
+                }
+            }
+            return true;
+        }
+
+        float closestX = Math.max(-halfWidth, Math.min(halfWidth, localX));
+        float closestY = Math.max(-halfHeight, Math.min(halfHeight, localY));
+        float x = localX - closestX;
+        float y = localY - closestY;
+        float distanceSquared = x * x + y * y;
+        if (distanceSquared > radius * radius) {
+            return false;
+        }
+        if (result != null) {
+            float distance = (float)Math.sqrt(distanceSquared);
+            // Back to world coordinates.
+            float normalX = (x * axisX - y * axisY) / distance;
+            float normalY = (x * axisY + y * axisX) / distance;
+            result.add(normalX, normalY, radius - distance);
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the specified line collides with this box. The normal points from this box
+     * towards the line.
+     * @param result The collection to add the collision to, or null if only whether they
+     *               overlap is needed.
+     * @return Whether they overlap.
+     */
+    boolean collisionTestWithLine(Line line, Manifold.Collection result) {
+        if (!aabb.overlaps(line.getAABB())) {
+            return false;
+        }
+        singleLine.set(0, line);
+        boolean collided = separatingAxisTest(singleLine, true, result);
+        singleLine.set(0, null);
+        return collided;
+    }
+
+    /**
+     * Checks if the specified box collides with this box. The normal points from this box
+     * towards `box`.
+     * @param result The collection to add the collision to, or null if only whether they
+     *               overlap is needed.
+     * @return Whether they overlap.
+     */
+    boolean collisionTestWithBox(OrientedBox box, Manifold.Collection result) {
+        if (!aabb.overlaps(box.aabb)) {
+            return false;
+        }
+        return separatingAxisTest(box.edges, true, result);
+    }
+
+    /**
+     * Tests this box against the convex shape formed by the end points of `lines` using the
+     * separating axis theorem, like `Polygon.separatingAxisTest`. The axes are this box's two
+     * axes and the normals of the lines.
+     * @param boxFirst Whether the normal should point from this box towards the shape, rather
+     *                 than from the shape towards this box.
+     * @param result The collection to add the collision to, or null if only whether they
+     *               overlap is needed.
+     * @return Whether they overlap.
+     */
+    boolean separatingAxisTest(ArrayList<Line> lines, boolean boxFirst,
+                               Manifold.Collection result) {
+        float bestX = 0;
+        float bestY = 0;
+        float bestOverlap = Float.MAX_VALUE;
+        for (int i = -2; i < lines.size(); i++) {
+            float x;
+            float y;
+            if (i == -2) {
+                x = axisX;
+                y = axisY;
+            }
+            else if (i == -1) {
+                x = -axisY;
+                y = axisX;
+            }
+            else {
+                Line edge = lines.get(i);
+                if (edge.getLength() == 0) {
+                    continue;
+                }
+                x = edge.getNormalX();
+                y = edge.getNormalY();
+            }
+
+            float boxCenter = center.x * x + center.y * y;
+            float boxExtent = extent(x, y);
+            float minShape = Polygon.minProjection(lines, x, y);
+            float maxShape = Polygon.maxProjection(lines, x, y);
+            float minA = boxFirst ? boxCenter - boxExtent : minShape;
+            float maxA = boxFirst ? boxCenter + boxExtent : maxShape;
+            float minB = boxFirst ? minShape : boxCenter - boxExtent;
+            float maxB = boxFirst ? maxShape : boxCenter + boxExtent;
+            float forwards = maxA - minB;
+            float backwards = maxB - minA;
+            float overlap = Math.min(forwards, backwards);
+            if (overlap < 0) {
+                return false; // Found a separating axis.
+            }
+            if (overlap < bestOverlap) {
+                bestOverlap = overlap;
+                bestX = forwards <= backwards ? x : -x;
+                bestY = forwards <= backwards ? y : -y;
+            }
+        }
+
+        if (result != null) {
+            result.add(bestX, bestY, bestOverlap);
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the point (x, y) is inside this box and if so adds a collision which
+     * pushes this box away from the point through the nearest side. The normal points from
+     * the point towards this box.
+     * @return Whether the point is inside this box.
+     */
+    boolean collisionTestWithPoint(float x, float y, Manifold.Collection result) {
+        float dx = x - center.x;
+        float dy = y - center.y;
+        float localX = dx * axisX + dy * axisY;
+        float localY = dy * axisX - dx * axisY;
+        float depthX = halfWidth - Math.abs(localX);
+        float depthY = halfHeight - Math.abs(localY);
+        if (depthX < 0 || depthY < 0) {
+            return false;
+        }
+        if (result != null) {
+            if (depthX <= depthY) {
+                float sign = localX >= 0 ? -1 : 1;
+                result.add(axisX * sign, axisY * sign, depthX);
+            }
+            else {
+                float sign = localY >= 0 ? -1 : 1;
+                result.add(-axisY * sign, axisX * sign, depthY);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Casts a ray against this box's edges, see `Intersector.raycast`.
+     */
+    @Override
+    public float raycast(float originX, float originY, float dx, float dy, VectorF normal) {
+        float result = -1;
+        for (int i = 0; i < edges.size(); i++) {
+            float t = edges.get(i).raycast(originX, originY, dx, dy, rayNormal);
+            if (t >= 0 && (result < 0 || t < result)) {
+                result = t;
+                normal.set(rayNormal.x, rayNormal.y);
+            }
+        }
+        return result;
+    }
+
+    public OrientedBox copy() {
+        OrientedBox result = new OrientedBox(center.x, center.y, halfWidth, halfHeight, 0);
+        result.set(center.x, center.y, axisX, axisY, halfWidth, halfHeight);
+        return result;
+    }
+
+    // <editor-fold desc="Getters/Setters">
+
+    public VectorF getPos() {
+        return center;
+    }
+
+    public VectorF getSize() {
+        return size;
+    }
+
+    public float getAxisX() {
+        return axisX;
+    }
+
+    public float getAxisY() {
+        return axisY;
+    }
+
+    public float getHalfWidth() {
+        return halfWidth;
+    }
+
+    public float getHalfHeight() {
+        return halfHeight;
+    }
+
+    /**
+     * Returns the corners of this box, in order around it. They are moved by `set`, so copy
+     * them if you need to keep them around.
+     */
+    public VectorF[] getCorners() {
+        return corners;
+    }
+
+    public ArrayList<Line> getLines() {
+        return edges;
+    }
+
+    public AABB getAABB() {
+        return aabb;
+    }
+
+    // </editor-fold>
+
+    /**
+     * This method is used to show where the box is on the screen, for debugging purposes only.
+     */
+    public void draw(GameView view) {
+        if (Graphics.drawDebugInfo) {
+            for (Line l : edges) {
+                l.draw(view);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("OrientedBox(Center: %s, Axis: (%.2f, %.2f), Half size: %.1fx%.1f)",
+                center, axisX, axisY, halfWidth, halfHeight);
+    }
+}
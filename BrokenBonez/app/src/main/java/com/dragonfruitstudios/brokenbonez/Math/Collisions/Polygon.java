@@ -10,55 +10,85 @@ import com.dragonfruitstudios.brokenbonez.Math.VectorF;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
 
 /**
  * This class implements an irregular shape composed of multiple line segments. It also implements
  * collision detection between this shape and other shapes.
  */
 public class Polygon extends Intersector implements Drawable {
+    // How far away from a Line a point can be and still be checked for a collision with it.
+    private static final float pointMargin = 1f;
+
     private ArrayList<Line> lines;
 
     private VectorF size;
     private RectF rect;
+    private AABB aabb = new AABB();
+    // Used to quickly find the Lines near a point or shape. Built in `recalculateBounds`.
+    private AABBTree tree;
+
+    // How far apart the end of one Line and the start of the next can be for them to still be
+    // treated as connected. LevelInfo treats paths which end this close to their start as closed.
+    private static final float chainTolerance = 5f;
+    // Distance from an edge within which a vertex still counts as lying on it when checking
+    // whether this Polygon is convex.
+    private static final float convexTolerance = 0.01f;
+    // Marks a Polygon whose Lines don't form a single loop and so can't be split into pieces.
+    private static final Polygon[] noPieces = new Polygon[0];
+
+    // The convex pieces which this Polygon is split into for collision tests with other
+    // Polygons. A convex Polygon is its own only piece. Built lazily by `getPieces` and
+    // thrown away in `recalculateBounds`.
+    private Polygon[] pieces;
+    // Used to quickly find the pieces near a shape, when there is more than one.
+    private AABBTree pieceTree;
+    private final AABBTree.Query pieceQuery = new AABBTree.Query();
+    // Scratch memory for raycasts.
+    private final AABBTree.Query rayQuery = new AABBTree.Query();
+    // Scratch memory for the point tests and `distanceSquared`.
+    private final AABBTree.Query pointQuery = new AABBTree.Query();
+    private final VectorF rayNormal = new VectorF(0, 0);
+    // Every distinct point of the Lines. Consecutive Lines often share their end points, so
+    // these are what `translate` moves. Built lazily and thrown away in `recalculateBounds`.
+    private VectorF[] vertices;
+
+    // Measures the distance between a point and one of this Polygon's lines, used by the tree.
+    private final AABBTree.Measure lineDistance = new AABBTree.Measure() {
+        @Override
+        public float distanceSquared(int item, float x, float y) {
+            Line l = lines.get(item);
+            return Line.distanceSquared(l.getStart().x, l.getStart().y,
+                    l.getFinish().x, l.getFinish().y, x, y);
+        }
+    };
 
     private android.graphics.RectF calcRect() {
-        // TODO: This is a quick and dirty way to calculate the rectangle, find better way.
-        float minX = Float.MAX_VALUE;
-        float maxX = -Float.MAX_VALUE;
-        float minY = Float.MAX_VALUE;
-        float maxY = -Float.MAX_VALUE;
+        aabb.setEmpty();
         for (Line l : lines) {
-            minX = Math.min(minX, l.getStart().x);
-            maxX = Math.max(maxX, l.getStart().x);
-            minY = Math.min(minY, l.getStart().y);
-            maxY = Math.max(maxY, l.getStart().y);
-
-            minX = Math.min(minX, l.getFinish().x);
-            maxX = Math.max(maxX, l.getFinish().x);
-            minY = Math.min(minY, l.getFinish().y);
-            maxY = Math.max(maxY, l.getFinish().y);
+            aabb.include(l.getStart().x, l.getStart().y);
+            aabb.include(l.getFinish().x, l.getFinish().y);
         }
-        return new RectF(minX, minY, maxX, maxY);
+        return new RectF(aabb.minX, aabb.minY, aabb.maxX, aabb.maxY);
     }
 
     private VectorF calcSize() {
-        return new VectorF(rect.right - rect.left, rect.bottom - rect.top);
+        return new VectorF(aabb.getWidth(), aabb.getHeight());
     }
 
     protected Polygon() {
         this.lines = new ArrayList<Line>();
+        this.tree = AABBTree.fromLines(lines);
     }
 
     public Polygon(Line[] lines) {
         this.lines = new ArrayList<Line>(Arrays.asList(lines));
-        rect = calcRect();
-        size = calcSize();
+        recalculateBounds();
     }
 
     public Polygon(ArrayList<Line> lines) {
         this.lines = lines;
-        rect = calcRect();
-        size = calcSize();
+        recalculateBounds();
     }
 
     protected void addVertices(VectorF[] vertices) {
@@ -69,43 +99,476 @@ public class Polygon extends Intersector implements Drawable {
         recalculateBounds();
     }
 
+    @Override
+    int getShapeType() {
+        return CollisionTable.polygon;
+    }
+
+    boolean overlapsPolygon(Polygon shape) {
+        if (!aabb.overlaps(shape.aabb)) {
+            return false;
+        }
+
+        Polygon[] ownPieces = getPieces();
+        Polygon[] otherPieces = shape.getPieces();
+        if (ownPieces == noPieces || otherPieces == noPieces) {
+            // Either a vertex of one Polygon is inside the other, or they don't overlap.
+            for (Line l : shape.lines) {
+                if (contains(l.getStart(), pieceQuery) || contains(l.getFinish(), pieceQuery)) {
+                    return true;
+                }
+            }
+            for (Line l : lines) {
+                if (shape.contains(l.getStart(), shape.pieceQuery) ||
+                        shape.contains(l.getFinish(), shape.pieceQuery)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        queryPieces(shape.aabb);
+        for (int i = 0; i < pieceQuery.count; i++) {
+            Polygon piece = ownPieces[pieceQuery.results[i]];
+            shape.queryPieces(piece.aabb);
+            for (int j = 0; j < shape.pieceQuery.count; j++) {
+                if (piece.separatingAxisTest(otherPieces[shape.pieceQuery.results[j]], null)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
-     * Checks if the specified shape collides with this Polygon.
-     * @return A Manifold containing information about the collision.
+     * Casts a ray against this Polygon's Lines, see `Intersector.raycast`. A ray which starts
+     * inside this Polygon hits the edge that it leaves through.
      */
     @Override
-    public Manifold.Collection collisionTest(Intersector shape) {
-        if (shape instanceof Circle) {
-            return ((Circle)shape).collisionTest(this);
+    public float raycast(float originX, float originY, float dx, float dy, VectorF normal) {
+        // Only the lines near the ray can be hit.
+        tree.query(Math.min(originX, originX + dx), Math.min(originY, originY + dy),
+                Math.max(originX, originX + dx), Math.max(originY, originY + dy), rayQuery);
+        float result = -1;
+        for (int i = 0; i < rayQuery.count; i++) {
+            float t = lines.get(rayQuery.results[i]).raycast(originX, originY, dx, dy, rayNormal);
+            if (t >= 0 && (result < 0 || t < result)) {
+                result = t;
+                normal.set(rayNormal.x, rayNormal.y);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tests this Polygon against `shape` by testing the convex pieces of both Polygons which
+     * are near each other using the separating axis theorem. The normals point from this
+     * Polygon towards `shape`.
+     */
+    void collisionTestWithPolygon(Polygon shape, Manifold.Collection result) {
+        if (!aabb.overlaps(shape.aabb)) {
+            return;
+        }
+
+        Polygon[] ownPieces = getPieces();
+        Polygon[] otherPieces = shape.getPieces();
+        if (ownPieces == noPieces || otherPieces == noPieces) {
+            collisionTestWithVertices(shape, result);
+            return;
+        }
+
+        queryPieces(shape.aabb);
+        for (int i = 0; i < pieceQuery.count; i++) {
+            Polygon piece = ownPieces[pieceQuery.results[i]];
+            shape.queryPieces(piece.aabb);
+            for (int j = 0; j < shape.pieceQuery.count; j++) {
+                piece.separatingAxisTest(otherPieces[shape.pieceQuery.results[j]], result);
+            }
+        }
+    }
+
+    /**
+     * Tests this Polygon against `box` by testing the convex pieces of this Polygon which are
+     * near it using the separating axis theorem. The normals point from this Polygon towards
+     * `box`.
+     * @param result The collection to add the collisions to, or null if only whether they
+     *               overlap is needed.
+     * @return Whether they overlap.
+     */
+    boolean collisionTestWithBox(OrientedBox box, Manifold.Collection result) {
+        if (!aabb.overlaps(box.getAABB())) {
+            return false;
         }
-        else if (shape instanceof Polygon) {
-            return ((Polygon)shape).collisionTestWithPolygon(this);
+
+        boolean collided = false;
+        Polygon[] ownPieces = getPieces();
+        if (ownPieces == noPieces) {
+            // Like `collisionTestWithVertices`, check whether a vertex of either shape is
+            // inside the other one.
+            for (VectorF corner : box.getCorners()) {
+                collided |= result == null ? contains(corner, pieceQuery) :
+                        collisionTest(corner, pieceQuery, result);
+            }
+            for (Line l : lines) {
+                collided |= box.collisionTestWithPoint(l.getStart().x, l.getStart().y, result);
+                collided |= box.collisionTestWithPoint(l.getFinish().x, l.getFinish().y, result);
+            }
+            return collided;
         }
 
-        return collisionNotImplemented(shape);
+        queryPieces(box.getAABB());
+        for (int i = 0; i < pieceQuery.count; i++) {
+            if (box.separatingAxisTest(ownPieces[pieceQuery.results[i]].lines, false, result)) {
+                if (result == null) {
+                    return true;
+                }
+                collided = true;
+            }
+        }
+        return collided;
     }
 
-    private Manifold.Collection collisionTestWithLine(Line line) {
-        Manifold.Collection result = this.collisionTest(line.getStart());
-        result.addAll(this.collisionTest(line.getFinish()));
+    /**
+     * Finds the pieces of this Polygon whose AABB overlaps the specified box and stores their
+     * indices in `pieceQuery`.
+     */
+    private void queryPieces(AABB box) {
+        if (pieceTree != null) {
+            pieceTree.query(box.minX, box.minY, box.maxX, box.maxY, pieceQuery);
+        }
+        else {
+            pieceQuery.count = 0;
+            if (pieces[0].aabb.overlaps(box)) {
+                pieceQuery.results[0] = 0;
+                pieceQuery.count = 1;
+            }
+        }
+    }
+
+    /**
+     * Tests this convex Polygon against the convex Polygon `other` using the separating axis
+     * theorem: two convex shapes don't intersect if there is an axis on which their
+     * projections don't overlap, and the only axes that need to be checked are the normals
+     * of their edges. If the projections overlap on every axis then the axis with the smallest
+     * overlap gives the collision normal and the penetration depth.
+     *
+     * More information: http://www.dyn4j.org/2010/01/sat/
+     * @param result The collection to add the collision to, or null if only whether the
+     *               Polygons overlap is needed.
+     * @return Whether the Polygons overlap.
+     */
+    private boolean separatingAxisTest(Polygon other, Manifold.Collection result) {
+        float bestX = 0;
+        float bestY = 0;
+        float bestOverlap = Float.MAX_VALUE;
+        for (int p = 0; p < 2; p++) {
+            ArrayList<Line> edges = p == 0 ? lines : other.lines;
+            for (int i = 0; i < edges.size(); i++) {
+                Line edge = edges.get(i);
+                if (edge.getLength() == 0) {
+                    continue;
+                }
+                float axisX = edge.getNormalX();
+                float axisY = edge.getNormalY();
+
+                float minA = minProjection(lines, axisX, axisY);
+                float maxA = maxProjection(lines, axisX, axisY);
+                float minB = minProjection(other.lines, axisX, axisY);
+                float maxB = maxProjection(other.lines, axisX, axisY);
+                // `other` is pushed out in whichever direction needs the smaller movement.
+                float forwards = maxA - minB;
+                float backwards = maxB - minA;
+                float overlap = Math.min(forwards, backwards);
+                if (overlap < 0) {
+                    return false; // Found a separating axis.
+                }
+                if (overlap < bestOverlap) {
+                    bestOverlap = overlap;
+                    bestX = forwards <= backwards ? axisX : -axisX;
+                    bestY = forwards <= backwards ? axisY : -axisY;
+                }
+            }
+        }
+
+        if (bestOverlap == Float.MAX_VALUE) {
+            return false; // Neither Polygon has any edges.
+        }
+        if (result != null) {
+            result.add(bestX, bestY, bestOverlap);
+        }
+        return true;
+    }
+
+    static float minProjection(ArrayList<Line> lines, float axisX, float axisY) {
+        float result = Float.MAX_VALUE;
+        for (int i = 0; i < lines.size(); i++) {
+            Line l = lines.get(i);
+            result = Math.min(result, l.getStart().x * axisX + l.getStart().y * axisY);
+            result = Math.min(result, l.getFinish().x * axisX + l.getFinish().y * axisY);
+        }
         return result;
     }
 
-    private Manifold.Collection collisionTestWithPolygon(Polygon shape) {
-        // To determine whether two Polygon's intersect we simply check each vertex inside each
-        // Polygon and see if it is inside the other Polygon using `collisionTest`.
-        // TODO: There is likely a more efficient way of testing whether two Polygons intersect.
+    static float maxProjection(ArrayList<Line> lines, float axisX, float axisY) {
+        float result = -Float.MAX_VALUE;
+        for (int i = 0; i < lines.size(); i++) {
+            Line l = lines.get(i);
+            result = Math.max(result, l.getStart().x * axisX + l.getStart().y * axisY);
+            result = Math.max(result, l.getFinish().x * axisX + l.getFinish().y * axisY);
+        }
+        return result;
+    }
 
-        // TODO: Test this method!
-        Manifold.Collection result = new Manifold.Collection();
+    /**
+     * Tests this Polygon against `shape` by checking whether the vertices of each Polygon are
+     * inside the other one. This is slow and doesn't give proper normals, so it is only used
+     * for Polygons which can't be split into convex pieces.
+     */
+    private void collisionTestWithVertices(Polygon shape, Manifold.Collection result) {
         for (Line l : shape.lines) {
-            result.addAll(this.collisionTestWithLine(l));
+            collisionTest(l.getStart(), pieceQuery, result);
+            collisionTest(l.getFinish(), pieceQuery, result);
         }
 
         for (Line l : this.lines) {
-            result.addAll(shape.collisionTestWithLine(l));
+            shape.collisionTest(l.getStart(), shape.pieceQuery, result);
+            shape.collisionTest(l.getFinish(), shape.pieceQuery, result);
         }
-        return result;
+    }
+
+    /**
+     * Returns the convex pieces of this Polygon, splitting it up first if necessary. Returns
+     * `noPieces` if this Polygon can't be split.
+     */
+    private Polygon[] getPieces() {
+        if (pieces == null) {
+            pieces = isConvex() ? new Polygon[] {this} : decompose();
+            if (pieces.length > 1) {
+                float[] minX = new float[pieces.length];
+                float[] minY = new float[pieces.length];
+                float[] maxX = new float[pieces.length];
+                float[] maxY = new float[pieces.length];
+                for (int i = 0; i < pieces.length; i++) {
+                    AABB box = pieces[i].aabb;
+                    minX[i] = box.minX;
+                    minY[i] = box.minY;
+                    maxX[i] = box.maxX;
+                    maxY[i] = box.maxY;
+                }
+                pieceTree = new AABBTree(minX, minY, maxX, maxY, pieces.length);
+            }
+        }
+        return pieces;
+    }
+
+    /**
+     * Determines whether this Polygon is convex, i.e. whether all of its vertices lie on the
+     * same side of each of its edges. This doesn't depend on the order or direction of the
+     * Lines.
+     */
+    private boolean isConvex() {
+        if (lines.isEmpty()) {
+            return false;
+        }
+        for (Line edge : lines) {
+            VectorF s = edge.getStart();
+            VectorF f = edge.getFinish();
+            if (edge.getLength() == 0) {
+                continue;
+            }
+            float tolerance = convexTolerance * edge.getLength();
+            boolean left = false;
+            boolean right = false;
+            for (Line l : lines) {
+                for (int e = 0; e < 2; e++) {
+                    VectorF v = e == 0 ? l.getStart() : l.getFinish();
+                    float cross = cross(s.x, s.y, f.x, f.y, v.x, v.y);
+                    left |= cross > tolerance;
+                    right |= cross < -tolerance;
+                }
+            }
+            if (left && right) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Splits this Polygon into triangles using ear clipping: a corner whose triangle doesn't
+     * contain any other vertex (an ear) is cut off, and this repeats until one triangle is
+     * left. Every simple polygon has an ear, so this only fails for Polygons whose Lines cross.
+     *
+     * More information: https://www.geometrictools.com/Documentation/TriangulationByEarClipping.pdf
+     */
+    private Polygon[] decompose() {
+        float[] ring = chainLines();
+        if (ring == null) {
+            return noPieces;
+        }
+        int count = ring.length / 2;
+        int[] remaining = new int[count];
+        float area = 0;
+        for (int i = 0; i < count; i++) {
+            remaining[i] = i;
+            int j = (i + 1) % count;
+            area += ring[i*2] * ring[j*2 + 1] - ring[j*2] * ring[i*2 + 1];
+        }
+        // Convex corners turn the same way as the loop winds.
+        float winding = Math.signum(area);
+        if (winding == 0) {
+            return noPieces;
+        }
+
+        ArrayList<Polygon> result = new ArrayList<Polygon>();
+        int i = 0;
+        int checked = 0;
+        while (count > 3) {
+            int a = remaining[(i + count - 1) % count];
+            int b = remaining[i];
+            int c = remaining[(i + 1) % count];
+            float turn = cross(ring[a*2], ring[a*2 + 1], ring[b*2], ring[b*2 + 1],
+                    ring[c*2], ring[c*2 + 1]) * winding;
+            boolean clip = turn == 0; // A corner on a straight edge can simply be removed.
+            if (turn > 0 && isEar(ring, remaining, count, a, b, c, winding)) {
+                result.add(createTriangle(ring, a, b, c));
+                clip = true;
+            }
+
+            if (clip) {
+                System.arraycopy(remaining, i + 1, remaining, i, count - i - 1);
+                count--;
+                i %= count;
+                checked = 0;
+            }
+            else {
+                i = (i + 1) % count;
+                if (++checked > count) {
+                    return noPieces; // No ear left, the Lines must cross each other.
+                }
+            }
+        }
+        if (cross(ring[remaining[0]*2], ring[remaining[0]*2 + 1],
+                ring[remaining[1]*2], ring[remaining[1]*2 + 1],
+                ring[remaining[2]*2], ring[remaining[2]*2 + 1]) != 0) {
+            result.add(createTriangle(ring, remaining[0], remaining[1], remaining[2]));
+        }
+        return result.toArray(new Polygon[result.size()]);
+    }
+
+    /**
+     * Determines whether none of the `remaining` vertices lie inside the triangle ABC.
+     */
+    private static boolean isEar(float[] ring, int[] remaining, int count, int a, int b, int c,
+                                 float winding) {
+        for (int i = 0; i < count; i++) {
+            int v = remaining[i];
+            float x = ring[v*2];
+            float y = ring[v*2 + 1];
+            if (isVertex(ring, a, x, y) || isVertex(ring, b, x, y) || isVertex(ring, c, x, y)) {
+                continue;
+            }
+            if (cross(ring[a*2], ring[a*2 + 1], ring[b*2], ring[b*2 + 1], x, y) * winding >= 0 &&
+                    cross(ring[b*2], ring[b*2 + 1], ring[c*2], ring[c*2 + 1], x, y) *
+                            winding >= 0 &&
+                    cross(ring[c*2], ring[c*2 + 1], ring[a*2], ring[a*2 + 1], x, y) *
+                            winding >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isVertex(float[] ring, int v, float x, float y) {
+        return ring[v*2] == x && ring[v*2 + 1] == y;
+    }
+
+    private static Polygon createTriangle(float[] ring, int a, int b, int c) {
+        return new Polygon(new Line[] {
+                new Line(ring[a*2], ring[a*2 + 1], ring[b*2], ring[b*2 + 1]),
+                new Line(ring[b*2], ring[b*2 + 1], ring[c*2], ring[c*2 + 1]),
+                new Line(ring[c*2], ring[c*2 + 1], ring[a*2], ring[a*2 + 1])
+        });
+    }
+
+    /**
+     * Returns the z component of the cross product of AB and AC. It is positive when C lies
+     * to the left of AB (in screen coordinates), negative when it lies to the right and 0 when
+     * A, B and C lie on the same line.
+     */
+    private static float cross(float ax, float ay, float bx, float by, float cx, float cy) {
+        return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+    }
+
+    /**
+     * Chains this Polygon's Lines into a single loop of vertices, stored as x and y pairs. The
+     * Lines can be in any order and point in either direction. Lines which start and end at
+     * the same point are ignored.
+     * @return The vertices, or null if the Lines don't form a single loop.
+     */
+    private float[] chainLines() {
+        int n = lines.size();
+        boolean[] used = new boolean[n];
+        int first = -1;
+        int lineCount = 0;
+        for (int i = 0; i < n; i++) {
+            Line l = lines.get(i);
+            if (l.getStart().x == l.getFinish().x && l.getStart().y == l.getFinish().y) {
+                used[i] = true;
+            }
+            else {
+                lineCount++;
+                if (first < 0) {
+                    first = i;
+                }
+            }
+        }
+        if (lineCount < 3) {
+            return null;
+        }
+
+        float[] ring = new float[lineCount * 2];
+        used[first] = true;
+        ring[0] = lines.get(first).getStart().x;
+        ring[1] = lines.get(first).getStart().y;
+        VectorF end = lines.get(first).getFinish();
+        int last = first;
+        for (int count = 1; count < lineCount; count++) {
+            // The Lines are usually in order, so start looking just after the last one.
+            int found = -1;
+            boolean reversed = false;
+            for (int k = 1; k < n && found < 0; k++) {
+                int j = (last + k) % n;
+                if (used[j]) {
+                    continue;
+                }
+                if (lines.get(j).getStart().distSquared(end) <= chainTolerance * chainTolerance) {
+                    found = j;
+                }
+                else if (lines.get(j).getFinish().distSquared(end) <=
+                        chainTolerance * chainTolerance) {
+                    found = j;
+                    reversed = true;
+                }
+            }
+            if (found < 0) {
+                return null;
+            }
+
+            used[found] = true;
+            ring[count*2] = end.x;
+            ring[count*2 + 1] = end.y;
+            end = reversed ? lines.get(found).getStart() : lines.get(found).getFinish();
+            last = found;
+        }
+
+        // The last Line has to lead back to the start of the loop.
+        float dx = end.x - ring[0];
+        float dy = end.y - ring[1];
+        if (dx * dx + dy * dy > chainTolerance * chainTolerance) {
+            return null;
+        }
+        return ring;
     }
 
     /**
@@ -120,21 +583,67 @@ public class Polygon extends Intersector implements Drawable {
      * whether `point` is inside the Polygon. It does so by drawing a ray from `point` to
      * infinity in an arbitrary direction and counting the number of times the ray crosses with
      * the Polygon's edges. If the number is odd then the point is inside.
+     *
+     * Both checks only look at the Lines which the segment tree reports as being near `point`
+     * or near the ray.
      */
     public Manifold.Collection collisionTest(VectorF point) {
-        // TODO: This implementation may be too slow when more complex polygons are involved.
+        return collisionTest(point, pointQuery);
+    }
+
+    /**
+     * Same as `collisionTest(VectorF)` but uses the specified `query` as scratch memory.
+     */
+    public Manifold.Collection collisionTest(VectorF point, AABBTree.Query query) {
         Manifold.Collection result = new Manifold.Collection();
-        boolean odd = false;
-        for (Line l : lines) {
-            // Check if `point` is on the line segment `l`.
-            Manifold res = l.collisionTest(point);
-            if (res.hasCollided()) {
-                result.add(res);
+        collisionTest(point, query, result);
+        return result;
+    }
+
+    /**
+     * Same as `collisionTest(VectorF)` but adds the Manifolds to `result`, which means that no
+     * memory is allocated.
+     * @return Whether `point` collides with this Polygon.
+     */
+    public boolean collisionTest(VectorF point, AABBTree.Query query,
+                                 Manifold.Collection result) {
+        boolean onEdge = false;
+
+        // Check if `point` is on any of the line segments. Only the lines whose AABB is
+        // around `point` can be touching it.
+        tree.query(point.x - pointMargin, point.y - pointMargin,
+                point.x + pointMargin, point.y + pointMargin, query);
+        for (int i = 0; i < query.count; i++) {
+            if (lines.get(query.results[i]).collisionTest(point, result)) {
+                onEdge = true;
             }
+        }
 
+        boolean odd = isInside(point, query);
+        if (odd && !onEdge) {
+            // Need to find the normal and penetration depth.
+            // Do this by finding the line closest to `point`.
+            float closestDist = tree.nearestDistanceSquared(point.x, point.y, lineDistance, query);
+            // TODO: Calculate normal correctly. The following approximation works rather
+            // TODO: well though.
+            result.add(0, 1, (float)Math.sqrt(closestDist));
+        }
+        return odd || onEdge;
+    }
+
+    /**
+     * Determines whether `point` is inside this Polygon using the Even-odd rule, see
+     * `collisionTest(VectorF)`.
+     */
+    private boolean isInside(VectorF point, AABBTree.Query query) {
+        // The ray goes from `point` to positive infinity along the x axis, so only lines
+        // which overlap it need to be looked at.
+        boolean odd = false;
+        tree.query(point.x, point.y, Float.MAX_VALUE, point.y, query);
+        for (int i = 0; i < query.count; i++) {
+            Line l = lines.get(query.results[i]);
             // Code carefully translated from the C code available here:
             // https://www.ecse.rpi.edu/Homepages/wrf/Research/Short_Notes/pnpoly.html
-            // I reused the for loop for efficiency and it seems to be working well.
             // The following code draws a ray from `point` to infinity and checks if it
             // collides with `l`.
             if (l.getStart().y > point.y != l.getFinish().y > point.y) {
@@ -147,21 +656,25 @@ public class Polygon extends Intersector implements Drawable {
         }
         // Check if ray from `point` to infinity collided with an odd number of lines.
         // If so, this suggests that the point is inside the Polygon (See Even-odd rule).
-        if (odd && !result.hasCollisions()) {
-            // Need to find the normal and penetration depth.
-            // Do this by finding the line closest to `point`.
-            float closestDist = lines.get(0).distanceSquared(point);
-            for (int i = 1; i < lines.size(); i++) {
-                float dist = lines.get(i).distanceSquared(point);
-                if (dist < closestDist) {
-                    closestDist = dist;
-                }
+        return odd;
+    }
+
+    /**
+     * Determines whether `point` is inside this Polygon or on one of its edges. This gives the
+     * same answer as `collisionTest(VectorF)` without calculating any normals.
+     */
+    public boolean contains(VectorF point, AABBTree.Query query) {
+        if (isInside(point, query)) {
+            return true;
+        }
+        tree.query(point.x - pointMargin, point.y - pointMargin,
+                point.x + pointMargin, point.y + pointMargin, query);
+        for (int i = 0; i < query.count; i++) {
+            if (lines.get(query.results[i]).collidesWith(point)) {
+                return true;
             }
-            // TODO: Calculate normal correctly. The following approximation works rather
-            // TODO: well though.
-            result.add(new Manifold(new VectorF(0, 1), (float)Math.sqrt(closestDist), true));
         }
-        return result;
+        return false;
     }
 
     /**
@@ -171,8 +684,10 @@ public class Polygon extends Intersector implements Drawable {
      * if it's inside it `false` may be returned.
      */
     public boolean collidesWith(VectorF point) {
-        for (Line l : lines) {
-            if (l.collidesWith(point)) {
+        tree.query(point.x - pointMargin, point.y - pointMargin,
+                point.x + pointMargin, point.y + pointMargin, pointQuery);
+        for (int i = 0; i < pointQuery.count; i++) {
+            if (lines.get(pointQuery.results[i]).collidesWith(point)) {
                 return true;
             }
         }
@@ -181,23 +696,53 @@ public class Polygon extends Intersector implements Drawable {
     }
 
     public float distanceSquared(VectorF point) {
-        float result = -1;
-        for (Line l : lines) {
-            float temp = l.distanceSquared(point);
-            if (result == -1 || temp < result) {
-                result = temp;
-            }
-        }
-        return result;
+        return tree.nearestDistanceSquared(point.x, point.y, lineDistance, pointQuery);
     }
 
     /**
-     * Recalculates the this Polygon's rectangle and size cache. This should be called when
-     * modifying the Polygon.
+     * Recalculates this Polygon's rectangle, size, segment tree and convex piece caches. This
+     * should be called when modifying the Polygon.
      */
     public void recalculateBounds() {
         rect = calcRect();
         size = calcSize();
+        tree = AABBTree.fromLines(lines);
+        pieces = null;
+        pieceTree = null;
+        vertices = null;
+    }
+
+    /**
+     * Moves this Polygon by (dx, dy). Unlike changing the Lines and calling
+     * `recalculateBounds`, this moves the segment tree and the convex pieces along instead of
+     * building them again, and doesn't allocate any memory after the first call.
+     */
+    public void translate(float dx, float dy) {
+        Polygon[] ownPieces = getPieces();
+        if (vertices == null) {
+            IdentityHashMap<VectorF, Boolean> seen = new IdentityHashMap<VectorF, Boolean>();
+            for (Line l : lines) {
+                seen.put(l.getStart(), true);
+                seen.put(l.getFinish(), true);
+            }
+            vertices = seen.keySet().toArray(new VectorF[seen.size()]);
+        }
+        for (VectorF v : vertices) {
+            v.x += dx;
+            v.y += dy;
+        }
+        aabb.translate(dx, dy);
+        rect.offset(dx, dy);
+        tree.translate(dx, dy);
+
+        for (Polygon piece : ownPieces) {
+            if (piece != this) {
+                piece.translate(dx, dy);
+            }
+        }
+        if (pieceTree != null) {
+            pieceTree.translate(dx, dy);
+        }
     }
 
     // <editor-fold desc="Getters/Setters">
@@ -208,12 +753,43 @@ public class Polygon extends Intersector implements Drawable {
 
     public void setLines(ArrayList<Line> lines) {
         this.lines = lines;
+        recalculateBounds();
     }
 
     public Intersector copy() {
         return new Polygon(new ArrayList<Line>(lines));
     }
 
+    /**
+     * Creates a Polygon which shares this Polygon's Lines, segment tree and convex pieces, but
+     * has its own scratch memory. Collision tests against the shared Polygons can then be run
+     * on multiple threads at once, as long as none of them are modified.
+     *
+     * Everything which is otherwise calculated lazily is calculated here, so that the shared
+     * data is only ever read afterwards.
+     */
+    public Polygon shareGeometry() {
+        Polygon[] ownPieces = getPieces();
+        for (Polygon piece : ownPieces) {
+            for (Line l : piece.lines) {
+                l.prepareForSharing();
+            }
+        }
+        for (Line l : lines) {
+            l.prepareForSharing();
+        }
+
+        Polygon result = new Polygon();
+        result.lines = lines;
+        result.size = size;
+        result.rect = rect;
+        result.aabb = aabb;
+        result.tree = tree;
+        result.pieces = ownPieces;
+        result.pieceTree = pieceTree;
+        return result;
+    }
+
     public VectorF getPos() {
         return lines.get(0).getPos();
     }
@@ -225,6 +801,21 @@ public class Polygon extends Intersector implements Drawable {
     public RectF getRect() {
         return rect;
     }
+
+    /**
+     * Returns the cached AABB of this Polygon. Like `getRect` this is only updated when
+     * `recalculateBounds` is called.
+     */
+    public AABB getAABB() {
+        return aabb;
+    }
+
+    /**
+     * Returns the tree of this Polygon's Lines. Item `i` in the tree is `getLines().get(i)`.
+     */
+    public AABBTree getTree() {
+        return tree;
+    }
     // </editor-fold>
 
     /**
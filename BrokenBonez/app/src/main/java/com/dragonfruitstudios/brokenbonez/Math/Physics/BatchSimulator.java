@@ -0,0 +1,146 @@
+package com.dragonfruitstudios.brokenbonez.Math.Physics;
+
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.DistanceField;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Intersector;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Line;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Polygon;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs many independent simulations of the same level in parallel, without a GameView or any
+ * assets. Each Run gets its own Simulator, while the level's geometry is shared read-only
+ * between all of them. This is meant for tuning the physics constants and validating runs
+ * offline (for example from a unit test), where one run at a time on a device is too slow.
+ *
+ * The Runs are spread over a ForkJoinPool, so throughput scales with the amount of cores.
+ * Note that ForkJoinPool is only available from Android API 21.
+ */
+public class BatchSimulator {
+    /**
+     * A single simulation. Its methods are called on one of the pool's threads, so a Run must
+     * not share any mutable state with the other Runs.
+     */
+    public interface Run {
+        /**
+         * Called once before the first step. Creates the dynamic bodies and constraints and
+         * sets any physics constants which are being tuned.
+         */
+        void setUp(Simulator sim);
+
+        /**
+         * Called before each step, e.g. to apply input.
+         * @return Whether the simulation should continue.
+         */
+        boolean update(Simulator sim);
+
+        /**
+         * Called once after the last step, so that the results can be recorded.
+         */
+        void finish(Simulator sim);
+    }
+
+    // The level's geometry. Polygons are shared between the Simulators, other shapes are small
+    // and hold scratch memory, so each Simulator gets a copy of them.
+    private ArrayList<Intersector> staticShapes;
+    private ForkJoinPool pool;
+
+    /**
+     * Creates a BatchSimulator which uses a pool with one thread per core.
+     * @param staticShapes The level's geometry, e.g. `LevelInfo.getSolids()`. The shapes must
+     *                     not be modified while the batch is running.
+     */
+    public BatchSimulator(List<? extends Intersector> staticShapes) {
+        this(staticShapes, new ForkJoinPool());
+    }
+
+    public BatchSimulator(List<? extends Intersector> staticShapes, ForkJoinPool pool) {
+        this.staticShapes = new ArrayList<Intersector>(staticShapes);
+        this.pool = pool;
+        for (int i = 0; i < this.staticShapes.size(); i++) {
+            Intersector shape = this.staticShapes.get(i);
+            if (shape instanceof Polygon) {
+                this.staticShapes.set(i, ((Polygon)shape).shareGeometry());
+            }
+            else if (shape instanceof DistanceField) {
+                // Builds the field now, rather than in every thread at once.
+                this.staticShapes.set(i, ((DistanceField)shape).shareGeometry());
+            }
+            else if (shape instanceof Line) {
+                ((Line)shape).prepareForSharing();
+            }
+        }
+    }
+
+    /**
+     * Performs all of the specified runs and waits for them to finish. Each run is stepped
+     * until its `update` returns false or `maxSteps` steps have been performed.
+     */
+    public void run(List<? extends Run> runs, int maxSteps) {
+        pool.invoke(new RunTask(runs, 0, runs.size(), maxSteps));
+    }
+
+    /**
+     * Creates a Simulator containing the level's geometry.
+     */
+    Simulator createSimulator() {
+        Simulator sim = new Simulator();
+        for (int i = 0; i < staticShapes.size(); i++) {
+            Intersector shape = staticShapes.get(i);
+            if (shape instanceof Polygon) {
+                // Each Simulator needs its own scratch memory, so share again.
+                sim.addStaticShape(((Polygon)shape).shareGeometry());
+            }
+            else {
+                sim.addStaticShape(shape.copy());
+            }
+        }
+        sim.rebuildStaticIndex();
+        return sim;
+    }
+
+    private void perform(Run run, int maxSteps) {
+        Simulator sim = createSimulator();
+        run.setUp(sim);
+        for (int step = 0; step < maxSteps && run.update(sim); step++) {
+            sim.update(0);
+        }
+        run.finish(sim);
+    }
+
+    /**
+     * Performs the runs between `start` (inclusive) and `end` (exclusive), by splitting them in
+     * half until only one is left.
+     */
+    private class RunTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private List<? extends Run> runs;
+        private int start;
+        private int end;
+        private int maxSteps;
+
+        RunTask(List<? extends Run> runs, int start, int end, int maxSteps) {
+            this.runs = runs;
+            this.start = start;
+            this.end = end;
+            this.maxSteps = maxSteps;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= 1) {
+                if (end > start) {
+                    perform(runs.get(start), maxSteps);
+                }
+                return;
+            }
+            int middle = (start + end) / 2;
+            invokeAll(new RunTask(runs, start, middle, maxSteps),
+                    new RunTask(runs, middle, end, maxSteps));
+        }
+    }
+}
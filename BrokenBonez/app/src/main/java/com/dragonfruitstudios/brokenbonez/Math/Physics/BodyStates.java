@@ -0,0 +1,119 @@
+package com.dragonfruitstudios.brokenbonez.Math.Physics;
+
+import java.util.ArrayList;
+
+/**
+ * A copy of the positions, velocities and rotations of a Simulator's dynamic bodies after a
+ * step, as published by a `PhysicsThread`. Body `i` is the i-th dynamic body created in the
+ * Simulator (see `DynamicBody.getId`).
+ *
+ * Unlike a `Snapshot` this can't be restored, it only exists so that other threads can read
+ * the bodies' state without locking the Simulator. The PhysicsThread reuses its BodyStates, so
+ * they can't be changed by readers and are only valid for as long as `PhysicsThread.getLatest`
+ * says.
+ */
+public final class BodyStates {
+    private volatile long sequence;
+    private long tick;
+    private double time;
+    private long publishedNanos;
+    private int bodyCount;
+    // posX, posY, velX, velY and rotation of each body.
+    private float[] state;
+    private boolean[] onGround;
+
+    static final int stride = 5;
+
+    BodyStates(Simulator sim) {
+        state = new float[0];
+        onGround = new boolean[0];
+        copyFrom(sim, 0);
+    }
+
+    /**
+     * Copies the current state of `sim`'s bodies into these states, reusing the arrays unless
+     * bodies were added since they were last filled.
+     * @param sequence How many states were published before these, used by the PhysicsThread
+     *                 to tell which of its buffers is the newest.
+     */
+    void copyFrom(Simulator sim, long sequence) {
+        this.sequence = sequence;
+        tick = sim.getTick();
+        time = sim.getTime();
+        publishedNanos = System.nanoTime();
+        ArrayList<DynamicBody> bodies = sim.dynamicBodies;
+        bodyCount = bodies.size();
+        if (onGround.length < bodyCount) {
+            state = new float[bodyCount * stride];
+            onGround = new boolean[bodyCount];
+        }
+        for (int i = 0; i < bodyCount; i++) {
+            DynamicBody body = bodies.get(i);
+            int s = i * stride;
+            state[s] = body.getPos().x;
+            state[s + 1] = body.getPos().y;
+            state[s + 2] = body.getVelocity().x;
+            state[s + 3] = body.getVelocity().y;
+            state[s + 4] = body.getRotation();
+            onGround[i] = body.isOnGround();
+        }
+    }
+
+    // <editor-fold desc="Getters/Setters">
+
+    long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return The Simulator's step count after the step which these states are from.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * @return The simulated time (in seconds) after the step, see `Simulator.getTime`.
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * @return When these states were published, in `System.nanoTime` time. Useful for
+     * interpolating between two of them.
+     */
+    public long getPublishedNanos() {
+        return publishedNanos;
+    }
+
+    public int getBodyCount() {
+        return bodyCount;
+    }
+
+    public float getX(int body) {
+        return state[body * stride];
+    }
+
+    public float getY(int body) {
+        return state[body * stride + 1];
+    }
+
+    public float getVelocityX(int body) {
+        return state[body * stride + 2];
+    }
+
+    public float getVelocityY(int body) {
+        return state[body * stride + 3];
+    }
+
+    public float getRotation(int body) {
+        return state[body * stride + 4];
+    }
+
+    public boolean isOnGround(int body) {
+        return onGround[body];
+    }
+
+    // </editor-fold>
+}
@@ -0,0 +1,465 @@
+package com.dragonfruitstudios.brokenbonez.Math.Physics;
+
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Manifold;
+import com.dragonfruitstudios.brokenbonez.Math.VectorF;
+
+import java.util.Arrays;
+
+/**
+ * Holds the state of a Simulator's dynamic bodies in primitive arrays indexed by body id
+ * (structure-of-arrays). The physics step works on these arrays, which keeps its loops cache
+ * friendly even when there are hundreds of bodies.
+ *
+ * DynamicBody is a handle into this store. Its scalar state (rotation, torque etc.) lives only
+ * here, but its position, velocity and acceleration are also exposed as VectorF's which the
+ * game modifies directly (e.g. the Bike rotates its wheels' position vectors). Those are copied
+ * into the arrays at the start of each step by `gather` and copied back by `scatter`.
+ */
+class BodyStore {
+    int count;
+    DynamicBody[] bodies;
+
+    // The Simulator's clock, in seconds. This is used instead of the system's clock so that
+    // the simulation gives the same results every time it is run.
+    double time;
+    // How long (in seconds) a body needs to be off the ground to count as being in the air.
+    static final double airTime = 0.1;
+
+    // The physics constants used by this store's Simulator. These default to the constants in
+    // Simulator, but can be changed per Simulator (e.g. to tune them in a BatchSimulator).
+    float gravityScaled = Simulator.gravityScaled;
+    float airResistance = Simulator.airResistance;
+    float angularVelPreserved = Simulator.angularVelPreserved;
+
+    float[] posX;
+    float[] posY;
+    float[] velX; // Measured in px/s
+    float[] velY;
+    float[] accX; // Measured in px/s²
+    float[] accY;
+
+    float[] rotation; // Measured in radians
+    float[] angularVelocity; // Radians per second
+    float[] angularAcceleration; // Radians per second per second
+    float[] torque; // Determines what engine power to apply to the body about its center.
+    double[] lastTimeOnGround; // Determines the simulation time when the body was last on the ground.
+    boolean[] hasGravity;
+
+    float[] inverseMass;
+    float[] radius;
+
+    // How much time `integrate` advances each body by, as an update factor. Fast bodies are
+    // split into sub-steps by the Simulator so their factor is smaller than the step's.
+    float[] stepFactor;
+    // The fraction (0 to 1) of its velocity that each body moves by in `integrate`. Less than
+    // 1 when the body would otherwise tunnel through a static body.
+    float[] travel;
+
+    // Bodies which have been resting for a while are put to sleep, which means that the
+    // Simulator skips them until they are woken up again.
+    boolean[] asleep;
+    // How long (in seconds) each body has been moving slower than the sleep thresholds.
+    float[] stillTime;
+    // Whether each sleeping body was on the ground when it fell asleep.
+    boolean[] sleptOnGround;
+
+    // Where each body was when the narrowphase last looked for its contacts, NaN when its
+    // contacts need to be looked for in the next step. See `Simulator.contactReuseDistance`.
+    float[] contactX;
+    float[] contactY;
+    // Where each body was when its contacts were last found or reused from the last step.
+    float[] lastContactX;
+    float[] lastContactY;
+
+    // `manifold.getNormal().rotated(-90)` precalculated, so that it doesn't need to be
+    // allocated for every collision.
+    // StrictMath gives the same result on every device.
+    private static final float frictionCos = (float)StrictMath.cos(-90);
+    private static final float frictionSin = (float)StrictMath.sin(-90);
+
+    BodyStore() {
+        resize(8);
+    }
+
+    private void resize(int capacity) {
+        bodies = bodies == null ? new DynamicBody[capacity] : Arrays.copyOf(bodies, capacity);
+        posX = grow(posX, capacity);
+        posY = grow(posY, capacity);
+        velX = grow(velX, capacity);
+        velY = grow(velY, capacity);
+        accX = grow(accX, capacity);
+        accY = grow(accY, capacity);
+        rotation = grow(rotation, capacity);
+        angularVelocity = grow(angularVelocity, capacity);
+        angularAcceleration = grow(angularAcceleration, capacity);
+        torque = grow(torque, capacity);
+        lastTimeOnGround = grow(lastTimeOnGround, capacity);
+        hasGravity = grow(hasGravity, capacity);
+        inverseMass = grow(inverseMass, capacity);
+        radius = grow(radius, capacity);
+        stepFactor = grow(stepFactor, capacity);
+        travel = grow(travel, capacity);
+        asleep = grow(asleep, capacity);
+        stillTime = grow(stillTime, capacity);
+        sleptOnGround = grow(sleptOnGround, capacity);
+        contactX = grow(contactX, capacity);
+        contactY = grow(contactY, capacity);
+        lastContactX = grow(lastContactX, capacity);
+        lastContactY = grow(lastContactY, capacity);
+    }
+
+    private static float[] grow(float[] array, int capacity) {
+        return array == null ? new float[capacity] : Arrays.copyOf(array, capacity);
+    }
+
+    private static double[] grow(double[] array, int capacity) {
+        return array == null ? new double[capacity] : Arrays.copyOf(array, capacity);
+    }
+
+    private static boolean[] grow(boolean[] array, int capacity) {
+        return array == null ? new boolean[capacity] : Arrays.copyOf(array, capacity);
+    }
+
+    /**
+     * Adds the specified body to this store.
+     * @return The id of the body.
+     */
+    int add(DynamicBody body) {
+        if (count == bodies.length) {
+            resize(count * 2);
+        }
+        int id = count++;
+        bodies[id] = body;
+        inverseMass[id] = body.getInverseMass();
+        radius[id] = body.boundingShape.getRadius();
+        hasGravity[id] = true;
+        lastTimeOnGround[id] = Double.NEGATIVE_INFINITY;
+        invalidateContacts(id);
+        return id;
+    }
+
+    /**
+     * Copies the state which the bodies expose as VectorF's into the arrays. Sleeping bodies
+     * whose VectorF's were changed by the game since the last step are woken up.
+     */
+    void gather() {
+        for (int i = 0; i < count; i++) {
+            DynamicBody body = bodies[i];
+            VectorF pos = body.getPos();
+            if (asleep[i] && (pos.x != posX[i] || pos.y != posY[i] ||
+                    body.velocity.x != velX[i] || body.velocity.y != velY[i] ||
+                    body.acceleration.x != accX[i] || body.acceleration.y != accY[i])) {
+                wake(i);
+            }
+            posX[i] = pos.x;
+            posY[i] = pos.y;
+            velX[i] = body.velocity.x;
+            velY[i] = body.velocity.y;
+            accX[i] = body.acceleration.x;
+            accY[i] = body.acceleration.y;
+        }
+    }
+
+    /**
+     * Copies the state in the arrays back into the bodies' VectorF's. Sleeping bodies don't
+     * change, so they are skipped.
+     */
+    void scatter() {
+        for (int i = 0; i < count; i++) {
+            if (asleep[i]) {
+                continue;
+            }
+            DynamicBody body = bodies[i];
+            body.getPos().set(posX[i], posY[i]);
+            body.velocity.set(velX[i], velY[i]);
+            body.acceleration.set(accX[i], accY[i]);
+        }
+    }
+
+    /**
+     * Returns true only when the body was in air for longer than `airTime` (100ms of
+     * simulation time).
+     */
+    boolean wasInAir(int id) {
+        if (asleep[id]) {
+            return !sleptOnGround[id];
+        }
+        return time - lastTimeOnGround[id] > airTime;
+    }
+
+    /**
+     * Puts body `id` to sleep. Its velocity is cleared, both in the arrays and in its VectorF,
+     * so that it stays exactly where it is.
+     */
+    void sleep(int id) {
+        sleptOnGround[id] = !wasInAir(id);
+        asleep[id] = true;
+        // Sleeping bodies aren't collided, so there are no contacts to reuse when it wakes up.
+        invalidateContacts(id);
+        velX[id] = 0;
+        velY[id] = 0;
+        angularVelocity[id] = 0;
+        bodies[id].getPos().set(posX[id], posY[id]);
+        bodies[id].velocity.set(0, 0);
+        bodies[id].acceleration.set(accX[id], accY[id]);
+    }
+
+    /**
+     * Makes the Simulator look for the contacts of body `id` in the next step, rather than
+     * reusing the ones from the last step.
+     */
+    void invalidateContacts(int id) {
+        contactX[id] = Float.NaN;
+        contactY[id] = Float.NaN;
+    }
+
+    /**
+     * Wakes up body `id` so that it is simulated again.
+     */
+    void wake(int id) {
+        if (asleep[id]) {
+            asleep[id] = false;
+            // Don't treat the body as in the air straight away.
+            if (sleptOnGround[id]) {
+                lastTimeOnGround[id] = time;
+            }
+        }
+        stillTime[id] = 0;
+    }
+
+    /**
+     * Returns the inverse mass of body `id` in contacts with other dynamic bodies. Sleeping
+     * bodies aren't moved, so they act as if their mass was infinite.
+     */
+    float pairInverseMass(int id) {
+        return asleep[id] ? 0 : inverseMass[id];
+    }
+
+    /**
+     * Returns true when body `id` is moving slowly enough to fall asleep.
+     */
+    boolean isStill(int id) {
+        return velX[id] * velX[id] + velY[id] * velY[id] <
+                Simulator.sleepVelocity * Simulator.sleepVelocity &&
+                Math.abs(angularVelocity[id]) < Simulator.sleepAngularVelocity &&
+                torque[id] == 0;
+    }
+
+    /**
+     * Moves body `id` out of the bodies it collided with, based on the collisions between
+     * `firstContact` (inclusive) and `endContact` (exclusive) in `contacts`. The body is left
+     * overlapping them by `Simulator.contactSlop` so that it still touches them in the next
+     * step, which keeps resting contacts (and their warm started impulses) alive.
+     */
+    void resolvePenetration(int id, Manifold.Collection contacts, int firstContact,
+                            int endContact) {
+        if (endContact > firstContact) {
+            // Update the field which stores the last time the bike was on the ground.
+            lastTimeOnGround[id] = time;
+        }
+        // The body may be colliding with multiple objects. That's why we get multiple
+        // manifolds and have to look at all of them.
+        for (int i = firstContact; i < endContact; i++) {
+            Manifold manifold = contacts.get(i);
+            VectorF normal = manifold.getNormal();
+            float push = -Math.max(manifold.getPenetration() - Simulator.contactSlop, 0);
+            posX[id] += normal.x * push;
+            posY[id] += normal.y * push;
+        }
+    }
+
+    /**
+     * Updates the velocity of body `id` based on gravity, torque and air resistance.
+     * @param touching Whether the body collided with anything during this step.
+     */
+    void applyForces(int id, float updateFactor, boolean touching) {
+        if (!touching) {
+            // Resolve forces when body is in air.
+
+            // Acceleration due to gravity.
+            // TODO: This probably shouldn't set accel, but add/sub to/from it.
+            if (hasGravity[id]) {
+                accY[id] = gravityScaled;
+            }
+            else {
+                accY[id] = 0;
+            }
+        }
+
+        if (!wasInAir(id)) {
+            // Add torque to velocity if the body is on the ground.
+            velX[id] += torque[id] * updateFactor;
+        }
+
+        // Calculate the air resistance. This is a deceleration which acts in the opposite
+        // direction to the velocity.
+        float airResistanceX = -(airResistance * velX[id]);
+        float airResistanceY = -(airResistance * velY[id]);
+
+        // Update the bodies' velocity based on the resultant acceleration.
+        velX[id] += (accX[id] + airResistanceX) * updateFactor;
+        velY[id] += (accY[id] + airResistanceY) * updateFactor;
+    }
+
+    /**
+     * Updates the angular velocity of body `id` after its contacts have been solved, based on
+     * the collisions between `firstContact` (inclusive) and `endContact` (exclusive) in
+     * `contacts`.
+     */
+    void updateSpin(int id, Manifold.Collection contacts, int firstContact, int endContact) {
+        for (int i = firstContact; i < endContact; i++) {
+            VectorF normal = contacts.get(i).getNormal();
+            if (wasInAir(id)) {
+                // Velocity = ω * radius
+                // Calculate the magnitude of the new velocity based on the bodies angular
+                // velocity. Use the magnitude to find the new vector velocity based on
+                // the direction of the old velocity.
+                float frictionalVel = Math.abs(angularVelocity[id]) * radius[id] *
+                    angularVelPreserved;
+
+                velX[id] += (normal.x * frictionCos - normal.y * frictionSin) *
+                        frictionalVel;
+                velY[id] += (normal.x * frictionSin + normal.y * frictionCos) *
+                        frictionalVel;
+            } else {
+                // Calculate the body's angular velocity based on its linear velocity.
+                // i.e. make the wheels spin!
+                // Using the equation: ω = velocity / radius
+                float speed = (float)Math.sqrt(velX[id] * velX[id] + velY[id] * velY[id]);
+                float newAngularVelocity = speed / radius[id];
+                // Determine the direction of rotation.
+                if (velX[id] < 0) {
+                    newAngularVelocity = -newAngularVelocity;
+                }
+                angularVelocity[id] = newAngularVelocity;
+            }
+        }
+    }
+
+    /**
+     * Copies the state of every body into `snapshot`, which must be large enough.
+     */
+    void save(Snapshot snapshot) {
+        float[] state = snapshot.bodyState;
+        for (int i = 0; i < count; i++) {
+            // The VectorF's hold the current position, velocity and acceleration, since the
+            // game may have changed them since the last step.
+            DynamicBody body = bodies[i];
+            int s = i * Snapshot.bodyStride;
+            state[s] = body.getPos().x;
+            state[s + 1] = body.getPos().y;
+            state[s + 2] = body.velocity.x;
+            state[s + 3] = body.velocity.y;
+            state[s + 4] = body.acceleration.x;
+            state[s + 5] = body.acceleration.y;
+            state[s + 6] = rotation[i];
+            state[s + 7] = angularVelocity[i];
+            state[s + 8] = angularAcceleration[i];
+            state[s + 9] = torque[i];
+            state[s + 10] = stillTime[i];
+            state[s + 11] = contactX[i];
+            state[s + 12] = contactY[i];
+            state[s + 13] = lastContactX[i];
+            state[s + 14] = lastContactY[i];
+            snapshot.lastTimeOnGround[i] = lastTimeOnGround[i];
+            snapshot.bodyFlags[i] = (byte)((hasGravity[i] ? 1 : 0) | (asleep[i] ? 2 : 0) |
+                    (sleptOnGround[i] ? 4 : 0));
+        }
+        snapshot.bodyCount = count;
+        snapshot.time = time;
+    }
+
+    /**
+     * Puts the state of the bodies stored in `snapshot` back, including into their VectorF's.
+     */
+    void restore(Snapshot snapshot) {
+        float[] state = snapshot.bodyState;
+        for (int i = 0; i < snapshot.bodyCount; i++) {
+            int s = i * Snapshot.bodyStride;
+            posX[i] = state[s];
+            posY[i] = state[s + 1];
+            velX[i] = state[s + 2];
+            velY[i] = state[s + 3];
+            accX[i] = state[s + 4];
+            accY[i] = state[s + 5];
+            rotation[i] = state[s + 6];
+            angularVelocity[i] = state[s + 7];
+            angularAcceleration[i] = state[s + 8];
+            torque[i] = state[s + 9];
+            stillTime[i] = state[s + 10];
+            contactX[i] = state[s + 11];
+            contactY[i] = state[s + 12];
+            lastContactX[i] = state[s + 13];
+            lastContactY[i] = state[s + 14];
+            lastTimeOnGround[i] = snapshot.lastTimeOnGround[i];
+            byte flags = snapshot.bodyFlags[i];
+            hasGravity[i] = (flags & 1) != 0;
+            asleep[i] = (flags & 2) != 0;
+            sleptOnGround[i] = (flags & 4) != 0;
+
+            DynamicBody body = bodies[i];
+            body.getPos().set(posX[i], posY[i]);
+            body.velocity.set(velX[i], velY[i]);
+            body.acceleration.set(accX[i], accY[i]);
+        }
+        time = snapshot.time;
+    }
+
+    /**
+     * Mixes the state of every body into `hash`, see `Simulator.stateHash`.
+     */
+    long hash(long hash) {
+        hash = Simulator.hash(hash, count);
+        for (int i = 0; i < count; i++) {
+            // The VectorF's hold the current position, velocity and acceleration, since the
+            // game may have changed them since the last step.
+            DynamicBody body = bodies[i];
+            hash = Simulator.hash(hash, body.getPos().x);
+            hash = Simulator.hash(hash, body.getPos().y);
+            hash = Simulator.hash(hash, body.velocity.x);
+            hash = Simulator.hash(hash, body.velocity.y);
+            hash = Simulator.hash(hash, body.acceleration.x);
+            hash = Simulator.hash(hash, body.acceleration.y);
+            hash = Simulator.hash(hash, rotation[i]);
+            hash = Simulator.hash(hash, angularVelocity[i]);
+            hash = Simulator.hash(hash, angularAcceleration[i]);
+            hash = Simulator.hash(hash, torque[i]);
+            hash = Simulator.hash(hash, Double.doubleToLongBits(lastTimeOnGround[i]));
+            hash = Simulator.hash(hash, stillTime[i]);
+            hash = Simulator.hash(hash, contactX[i]);
+            hash = Simulator.hash(hash, contactY[i]);
+            hash = Simulator.hash(hash, lastContactX[i]);
+            hash = Simulator.hash(hash, lastContactY[i]);
+            hash = Simulator.hash(hash, (hasGravity[i] ? 1 : 0) | (asleep[i] ? 2 : 0) |
+                    (sleptOnGround[i] ? 4 : 0));
+        }
+        return hash;
+    }
+
+    /**
+     * Changes every body's position, rotation and angular velocity based on its velocity and
+     * acceleration, using each body's `stepFactor` and `travel`. Sleeping bodies are skipped.
+     */
+    void integrate() {
+        for (int i = 0; i < count; i++) {
+            if (!asleep[i]) {
+                integrate(i, stepFactor[i], travel[i]);
+            }
+        }
+    }
+
+    /**
+     * Changes the position, rotation and angular velocity of body `id`. Its position only
+     * changes by `travel` times its velocity.
+     */
+    void integrate(int id, float updateFactor, float travel) {
+        // Change position based on velocity.
+        posX[id] += velX[id] * updateFactor * travel;
+        posY[id] += velY[id] * updateFactor * travel;
+
+        // Change angular velocity based on angular acceleration.
+        angularVelocity[id] += angularAcceleration[id] * updateFactor;
+        // Change rotation based on angular velocity.
+        rotation[id] += angularVelocity[id] * updateFactor;
+    }
+}
@@ -1,7 +1,5 @@
 package com.dragonfruitstudios.brokenbonez.Math.Physics;
 
-import com.dragonfruitstudios.brokenbonez.Math.VectorF;
-
 /**
  * This class implements a constraint between two arbitrary bodies which ensures that they
  * are always within a certain distance of each other.
@@ -14,53 +12,113 @@ public class Constraint {
 
     float separation;
 
+    // The fraction of the error in the separation which is corrected during each step.
+    static final float stiffness = 0.2f;
+
+    // State used by the Solver. The impulse is kept between steps for warm starting.
+    private float directionX;
+    private float directionY;
+    private float bias;
+    private float massAlongDirection;
+    private float impulse;
+
     Constraint(DynamicBody bodyA, DynamicBody bodyB, float separation) {
         this.bodyA = bodyA;
         this.bodyB = bodyB;
         this.separation = separation;
     }
 
-    void update(float updateFactor) {
+    /**
+     * Prepares this constraint for being solved by the Solver and applies the impulse from the
+     * last step (warm starting).
+     */
+    void prepare(float updateFactor) {
         // The equations used in this code have been taken from the following article:
         // http://www.wildbunny.co.uk/blog/2011/04/06/physics-engines-for-dummies/
         // (Under the Constraints section).
-        // TODO: There is currently a small bug here which prevents the bike bouncing off walls
-        // TODO: realistically.
 
-        // Resolve constraint between left wheel and right wheel.
+        // This works directly on the state in the BodyStore, which both bodies share.
+        BodyStore store = bodyA.store;
+        int a = bodyA.id;
+        int b = bodyB.id;
+
         // Find a vector from the left wheel to the right wheel.
-        VectorF leftToRight = bodyB.getPos().subtracted(bodyA.getPos());
+        float leftToRightX = store.posX[b] - store.posX[a];
+        float leftToRightY = store.posY[b] - store.posY[a];
         // Calculate the distance between the two wheels.
-        float distance = leftToRight.magnitude();
+        float distance = (float)Math.sqrt(leftToRightX * leftToRightX +
+                leftToRightY * leftToRightY);
 
-        // Ensure that the magnitude is not 0 which leads to an exception.
+        // Ensure that the magnitude is not 0 which leads to a division by 0.
         if (distance != 0) {
-            leftToRight.normalise();
+            directionX = leftToRightX / distance;
+            directionY = leftToRightY / distance;
         }
         else {
-            leftToRight.set(1, 0);
+            directionX = 1;
+            directionY = 0;
         }
 
+        // Correct a fraction of the error in the separation during each step.
+        bias = stiffness * (distance - separation) / updateFactor;
+        massAlongDirection = 1 / (store.inverseMass[a] + store.inverseMass[b]);
+
+        applyImpulse(store, a, b, impulse);
+    }
+
+    /**
+     * Performs one iteration of the Solver on this constraint, applying the impulse that's
+     * needed to reach the correct separation.
+     */
+    void solve() {
+        BodyStore store = bodyA.store;
+        int a = bodyA.id;
+        int b = bodyB.id;
+
         // Calculate the velocity relative to the vector between the wheels.
-        VectorF leftToRightVel = bodyB.getVelocity().subtracted(bodyA.getVelocity());
-        float relativeVelocity = leftToRightVel.dotProduct(leftToRight);
-        float relativeDistance = distance - separation;
+        float relativeVelocity = (store.velX[b] - store.velX[a]) * directionX +
+                (store.velY[b] - store.velY[a]) * directionY;
 
         // Calculate the impulse to remove.
-        float distRemove = relativeVelocity+relativeDistance;
-        float impulseRemove = distRemove / (bodyA.getInverseMass() + bodyA.getInverseMass());
-
-        // Generate impulse vectors
-        VectorF impulse = leftToRight.copy();
-        impulse.mult(impulseRemove);
-        VectorF bodyAImpulse = impulse.copy();
-        bodyAImpulse.mult(bodyA.getInverseMass());
-        VectorF bodyBImpulse = impulse.copy();
-        bodyBImpulse.mult(bodyB.getInverseMass());
+        float change = -(relativeVelocity + bias) * massAlongDirection;
+        impulse += change;
+        applyImpulse(store, a, b, change);
+    }
 
+    private void applyImpulse(BodyStore store, int a, int b, float amount) {
         // Apply the impulse to the velocity of each wheel appropriately.
-        bodyA.getVelocity().add(bodyAImpulse);
-        bodyB.getVelocity().sub(bodyBImpulse);
+        float impulseX = directionX * amount;
+        float impulseY = directionY * amount;
+        store.velX[a] -= impulseX * store.inverseMass[a];
+        store.velY[a] -= impulseY * store.inverseMass[a];
+        store.velX[b] += impulseX * store.inverseMass[b];
+        store.velY[b] += impulseY * store.inverseMass[b];
+    }
+
+    /**
+     * Mixes the state of this constraint into `hash`, see `Simulator.stateHash`.
+     */
+    long hash(long hash) {
+        hash = Simulator.hash(hash, bodyA.id);
+        hash = Simulator.hash(hash, bodyB.id);
+        hash = Simulator.hash(hash, separation);
+        return Simulator.hash(hash, impulse);
+    }
+
+    float getImpulse() {
+        return impulse;
+    }
+
+    void setImpulse(float impulse) {
+        this.impulse = impulse;
+    }
+
+    /**
+     * Forgets the impulse applied during the last step, so that it's not used to warm start
+     * the next one.
+     */
+    void resetImpulse() {
+        impulse = 0;
     }
 
 }
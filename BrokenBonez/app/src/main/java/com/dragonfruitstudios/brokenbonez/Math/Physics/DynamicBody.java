@@ -15,6 +15,8 @@ import java.util.Vector;
 /**
  * Implements a dynamic body. That is, a body which is affected by physics. Currently only
  * circle bodies are supported.
+ *
+ * The body's state is stored in its Simulator's BodyStore, this class is a handle into it.
  */
 public class DynamicBody extends Body {
     Circle boundingShape;
@@ -22,22 +24,21 @@ public class DynamicBody extends Body {
     VectorF velocity; // Measured in px/s
     VectorF acceleration; // Measured in px/s²
 
-    float rotation; // Measured in radians
-    float angularVelocity; // Radians per second
-    float angularAcceleration; // Radians per second per second
+    // The store which holds this body's state, and this body's index in it.
+    final BodyStore store;
+    final int id;
 
-    float lastTimeOnGround; // Determines the time when the body was last on the ground.
-    float torque; // Determines what engine power to apply to the body about its center.
-
-    boolean hasGravity = true;
-
-    ArrayList<Manifold> lastManifolds;
+    // The collisions from the last update, kept for debugging. Only the Manifolds between
+    // `lastFirstContact` and `lastEndContact` belong to this body.
+    Manifold.Collection lastContacts;
+    int lastFirstContact;
+    int lastEndContact;
 
     /**
      * The constructor for the DynamicBody is only accessible in the package. To create a new
      * DynamicBody you need to use the `createDynamicBody` method in your Simulator instance.
      */
-    DynamicBody(Circle shape, float mass) {
+    DynamicBody(Circle shape, float mass, BodyStore store) {
         boundingShape = shape.copy();
         this.mass = mass;
         // Calculate inverse mass here so that it's not recalculated every frame.
@@ -45,143 +46,44 @@ public class DynamicBody extends Body {
         this.restitution = 0.1f;
 
         // Initialise fields used for physics calculations with sensible defaults explicitly.
+        // The rest of the state is initialised to 0 by the store.
         velocity = new VectorF(0, 0);
         acceleration = new VectorF(0, 0);
-        rotation = 0; // Rotation is towards x-axis, so 0 means the body is pointing to the right.
-        angularAcceleration = 0;
-        angularVelocity = 0;
-        torque = 0;
-        lastTimeOnGround = 0;
-
-        // Initialise debugging fields.
-        lastManifolds = new ArrayList<Manifold>();
-    }
 
-    void updatePos(float updateFactor) {
-        // Change position based on velocity.
-        getPos().multAdd(velocity, updateFactor);
+        this.store = store;
+        this.id = store.add(this);
 
-        // Change angular velocity based on angular acceleration.
-        angularVelocity += angularAcceleration * updateFactor;
-        // Change rotation based on angular velocity.
-        rotation += angularVelocity * updateFactor;
-    }
-
-    private VectorF calcAirResistance() {
-        // Deceleration due to air resistance. It acts in the opposite direction to the
-        // velocity.
-        return new VectorF(-(Simulator.airResistance * velocity.getX()),
-                -(Simulator.airResistance * velocity.getY()));
+        // Initialise debugging fields.
+        lastContacts = new Manifold.Collection();
     }
 
     /**
-     * Returns true only when the body was in air for longer than 100ms.
+     * Saves the range of collisions used in the last update so that the normals can be drawn
+     * in the next frame (just for debugging).
      */
-    private boolean wasInAir() {
-        return System.nanoTime() - lastTimeOnGround > 1e8;
-    }
-
-    void update(float updateFactor, ArrayList<Manifold> manifolds) {
-        // Save the collision info so that the normals can be drawn in the next frame.
-        // (Just for debugging).
-        lastManifolds = manifolds;
-
-        if (manifolds.size() > 0) {
-            // Update the field which stores the last time the bike was on the ground.
-            lastTimeOnGround = System.nanoTime();
-            // The body may be colliding with multiple objects. That's why we get multiple
-            // manifolds and have to look at all of them.
-            for (Manifold manifold : manifolds) {
-                // Move the body so that it is just above the body it collided with.
-                getPos().multAdd(manifold.getNormal(), -(manifold.getPenetration()+0.1f));
-
-                // The formula used to calculate the impulse is defined here:
-                // http://gamedevelopment.tutsplus.com/tutorials/how-to-create-a-custom-2d-physics-engine-the-basics-and-impulse-resolution--gamedev-6331
-                // The Impulse Engine (which the article above describes) was a great resource for
-                // understanding the way that Physics Engines are implemented, but please keep in
-                // mind that there was no code taken from it verbatim.
-
-                // Calculate the impulses that the normals enact on the body.
-
-                // Calculate relative velocity in terms of the normal direction.
-                float velRelativeToNormal = velocity.dotProduct(manifold.getNormal());
-
-                // Calculate restitution: ratio of how much energy remains to how much is lost.
-                // https://en.wikipedia.org/wiki/Coefficient_of_restitution
-                // Affects bounciness. The minimum of the colliding bodies is used.
-                float e = Math.min(manifold.getFirstBody().getRestitution(),
-                        manifold.getSecondBody().getRestitution());
-
-                // Calculate the impulse scalar.
-                float j = -(1 + e) * velRelativeToNormal;
-                j /= inverseMass;
-
-                // Apply the impulse.
-                VectorF impulse = new VectorF(manifold.getNormal());
-                impulse.mult(j);
-
-                velocity.multAdd(impulse, inverseMass);
-                // TODO: Apply the impulse to the Body we are colliding with too?
-
-                if (wasInAir()) {
-                    // Velocity = ω * radius
-                    // Calculate the magnitude of the new velocity based on the bodies angular
-                    // velocity. Use the magnitude to find the new vector velocity based on
-                    // the direction of the old velocity.
-                    float frictionalVel = Math.abs(angularVelocity) * boundingShape.getRadius() *
-                        Simulator.angularVelPreserved;
-
-                    velocity.multAdd(manifold.getNormal().rotated(-90), frictionalVel);
-                } else {
-                    // Calculate the body's angular velocity based on its linear velocity.
-                    // i.e. make the wheels spin!
-                    // Using the equation: ω = velocity / radius
-                    float newAngularVelocity = velocity.magnitude() / boundingShape.getRadius();
-                    // Determine the direction of rotation.
-                    if (velocity.getX() < 0) {
-                        newAngularVelocity = -newAngularVelocity;
-                    }
-                    angularVelocity = newAngularVelocity;
-                }
-            }
-        }
-        else {
-            // Resolve forces when body is in air.
-
-            // Acceleration due to gravity.
-            // TODO: This probably shouldn't set accel, but add/sub to/from it.
-            if (hasGravity) {
-                acceleration.setY(Simulator.gravityScaled);
-            }
-            else {
-                acceleration.setY(0);
-            }
-        }
-
-        if (!wasInAir()) {
-            // Add torque to velocity if the body is on the ground.
-            velocity.multAdd(new VectorF(torque, 0), updateFactor);
-        }
-
-        // Calculate the air resistance.
-        VectorF airResistance = calcAirResistance();
-
-        // Calculate the resultant acceleration.
-        VectorF resultantAccel = new VectorF(acceleration);
-        resultantAccel.add(airResistance);
-
-        // Update the bodies' velocity based on acceleration.
-        velocity.multAdd(resultantAccel, updateFactor);
+    void setLastContacts(Manifold.Collection contacts, int firstContact, int endContact) {
+        lastContacts = contacts;
+        lastFirstContact = firstContact;
+        lastEndContact = endContact;
     }
 
     public void reset() {
+        store.wake(id);
         velocity.set(0, 0);
         acceleration.set(0, 0);
-        rotation = 0;
-        angularVelocity = 0;
-        angularAcceleration = 0;
-        lastTimeOnGround = 0;
-        torque = 0;
+        store.rotation[id] = 0;
+        store.angularVelocity[id] = 0;
+        store.angularAcceleration[id] = 0;
+        store.lastTimeOnGround[id] = Double.NEGATIVE_INFINITY;
+        store.torque[id] = 0;
+    }
+
+    /**
+     * @return This body's index among its Simulator's dynamic bodies, which is also its index
+     * in the `BodyStates` published by a `PhysicsThread`.
+     */
+    public int getId() {
+        return id;
     }
 
     public Circle getBoundingShape() {
@@ -197,7 +99,10 @@ public class DynamicBody extends Body {
     }
 
     public void setTorque(float torque) {
-        this.torque = torque;
+        if (store.torque[id] != torque) {
+            store.torque[id] = torque;
+            store.wake(id);
+        }
     }
 
     public VectorF getVelocity() {
@@ -205,11 +110,12 @@ public class DynamicBody extends Body {
     }
 
     public void setAngularVelocity(float angularVelocity) {
-        this.angularVelocity = angularVelocity;
+        store.angularVelocity[id] = angularVelocity;
+        store.wake(id);
     }
 
     public float getRotation() {
-        return rotation;
+        return store.rotation[id];
     }
 
     public VectorF getSize() {
@@ -225,15 +131,33 @@ public class DynamicBody extends Body {
     }
 
     public void setHasGravity(boolean value) {
-        this.hasGravity = value;
+        if (store.hasGravity[id] != value) {
+            store.hasGravity[id] = value;
+            store.wake(id);
+        }
     }
 
     public boolean isOnGround() {
-        return !wasInAir();
+        return !store.wasInAir(id);
     }
 
     public void setRotation(float rotation) {
-        this.rotation = rotation;
+        store.rotation[id] = rotation;
+    }
+
+    /**
+     * Returns true when this body has been resting for a while and is therefore not being
+     * simulated. Changing the body's position, velocity, torque etc. wakes it up.
+     */
+    public boolean isAsleep() {
+        return store.asleep[id];
+    }
+
+    /**
+     * Wakes this body up, so that it is simulated again in the next step.
+     */
+    public void wake() {
+        store.wake(id);
     }
 
     /**
@@ -244,14 +168,15 @@ public class DynamicBody extends Body {
             // Draw a yellow line to show the body's rotation.
             // A rotation of `0` will show the line horizontally to the right.
             VectorF rotatedFinish = new VectorF(boundingShape.getRadius(), 0);
-            rotatedFinish.rotate(rotation);
+            rotatedFinish.rotate(getRotation());
             view.drawLine(getPos(), getPos().added(rotatedFinish), Color.parseColor("#ffe961"));
 
             boundingShape.draw(view);
 
             // Just for testing.
             // Draw a green line to show the normal of each manifold.
-            for (Manifold manifold : lastManifolds) {
+            for (int i = lastFirstContact; i < lastEndContact; i++) {
+                Manifold manifold = lastContacts.get(i);
                 VectorF x = new VectorF(boundingShape.getCenter());
                 x.multAdd(manifold.getNormal(), boundingShape.getRadius());
                 view.drawLine(boundingShape.getCenter(), x,
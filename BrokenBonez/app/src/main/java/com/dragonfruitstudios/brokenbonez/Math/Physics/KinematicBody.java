@@ -0,0 +1,75 @@
+package com.dragonfruitstudios.brokenbonez.Math.Physics;
+
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Line;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Polygon;
+import com.dragonfruitstudios.brokenbonez.Math.VectorF;
+
+import java.util.ArrayList;
+
+/**
+ * Implements a kinematic body. That is, a body which moves at the velocity it is given (e.g. a
+ * moving platform or a lift) but, like a static body, has infinite mass and isn't affected by
+ * gravity or collisions. Dynamic bodies which touch it are pushed along by its velocity.
+ *
+ * The velocity can be changed at any time to script the body's motion; the Simulator moves the
+ * body at the start of each step.
+ */
+public class KinematicBody extends StaticBody {
+    private Polygon shape;
+    private VectorF velocity; // Measured in px/s
+
+    // How far the body has moved since it was created.
+    float offsetX;
+    float offsetY;
+
+    // This body's index in its Simulator's kinematic bodies.
+    final int id;
+
+    /**
+     * The constructor for the KinematicBody is only accessible in the package. To create a new
+     * KinematicBody you need to use the `createKinematicBody` method in your Simulator instance.
+     */
+    KinematicBody(Polygon shape, int id) {
+        // The shape is moved, so it can't share its points with the template.
+        ArrayList<Line> lines = new ArrayList<Line>();
+        for (Line l : shape.getLines()) {
+            lines.add(new Line(l.getStart().copy(), l.getFinish().copy()));
+        }
+        this.shape = new Polygon(lines);
+        setBoundingShape(this.shape);
+        velocity = new VectorF(0, 0);
+        this.id = id;
+    }
+
+    /**
+     * Moves this body by its velocity.
+     */
+    void move(float updateFactor) {
+        moveBy(velocity.x * updateFactor, velocity.y * updateFactor);
+    }
+
+    void moveBy(float dx, float dy) {
+        shape.translate(dx, dy);
+        offsetX += dx;
+        offsetY += dy;
+    }
+
+    /**
+     * Returns the speed at which this body's surface moves along the specified normal.
+     */
+    float velocityAlong(float normalX, float normalY) {
+        return velocity.x * normalX + velocity.y * normalY;
+    }
+
+    public Polygon getShape() {
+        return shape;
+    }
+
+    public VectorF getVelocity() {
+        return velocity;
+    }
+
+    public void setVelocity(float x, float y) {
+        velocity.set(x, y);
+    }
+}
@@ -0,0 +1,174 @@
+package com.dragonfruitstudios.brokenbonez.Math.Physics;
+
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.AABB;
+
+import java.util.Arrays;
+
+/**
+ * A hashed grid which holds the AABBs of a Simulator's kinematic bodies. Unlike the StaticGrid
+ * it is updated incrementally: when a body moves, it is only moved between cells if the range
+ * of cells which its AABB overlaps has changed. Moving platforms usually stay within the same
+ * cells for many steps, so most updates just copy the new AABB.
+ *
+ * The grid is unbounded: cells are hashed into a fixed amount of buckets, so bodies in cells
+ * which share a bucket are filtered out by their AABB when querying.
+ */
+class KinematicGrid {
+    static final float cellSize = 256f;
+    // Must be a power of two.
+    static final int bucketCount = 64;
+
+    // The bodies in each bucket. A body which overlaps several cells that hash to the same
+    // bucket is stored in it several times.
+    private int[][] buckets;
+    private int[] bucketSize;
+
+    // The bodies' AABBs and the range of cells which they were registered in.
+    private float[] minX;
+    private float[] minY;
+    private float[] maxX;
+    private float[] maxY;
+    private int[] cellMinX;
+    private int[] cellMinY;
+    private int[] cellMaxX;
+    private int[] cellMaxY;
+    private int bodyCount;
+
+    KinematicGrid() {
+        buckets = new int[bucketCount][4];
+        bucketSize = new int[bucketCount];
+        resize(4);
+    }
+
+    private void resize(int capacity) {
+        minX = Arrays.copyOf(minX == null ? new float[0] : minX, capacity);
+        minY = Arrays.copyOf(minY == null ? new float[0] : minY, capacity);
+        maxX = Arrays.copyOf(maxX == null ? new float[0] : maxX, capacity);
+        maxY = Arrays.copyOf(maxY == null ? new float[0] : maxY, capacity);
+        cellMinX = Arrays.copyOf(cellMinX == null ? new int[0] : cellMinX, capacity);
+        cellMinY = Arrays.copyOf(cellMinY == null ? new int[0] : cellMinY, capacity);
+        cellMaxX = Arrays.copyOf(cellMaxX == null ? new int[0] : cellMaxX, capacity);
+        cellMaxY = Arrays.copyOf(cellMaxY == null ? new int[0] : cellMaxY, capacity);
+    }
+
+    /**
+     * Adds a body with the specified AABB. Bodies are numbered in the order they are added.
+     */
+    void add(AABB box) {
+        if (bodyCount == minX.length) {
+            resize(bodyCount * 2);
+        }
+        int body = bodyCount++;
+        setBounds(body, box);
+        insert(body);
+    }
+
+    /**
+     * Updates the AABB of `body` after it has moved.
+     */
+    void update(int body, AABB box) {
+        setBounds(body, box);
+        if (cell(box.minX) == cellMinX[body] && cell(box.minY) == cellMinY[body] &&
+                cell(box.maxX) == cellMaxX[body] && cell(box.maxY) == cellMaxY[body]) {
+            return;
+        }
+        remove(body);
+        insert(body);
+    }
+
+    private void setBounds(int body, AABB box) {
+        minX[body] = box.minX;
+        minY[body] = box.minY;
+        maxX[body] = box.maxX;
+        maxY[body] = box.maxY;
+    }
+
+    private void insert(int body) {
+        cellMinX[body] = cell(minX[body]);
+        cellMinY[body] = cell(minY[body]);
+        cellMaxX[body] = cell(maxX[body]);
+        cellMaxY[body] = cell(maxY[body]);
+        for (int y = cellMinY[body]; y <= cellMaxY[body]; y++) {
+            for (int x = cellMinX[body]; x <= cellMaxX[body]; x++) {
+                int bucket = bucket(x, y);
+                if (bucketSize[bucket] == buckets[bucket].length) {
+                    buckets[bucket] = Arrays.copyOf(buckets[bucket], bucketSize[bucket] * 2);
+                }
+                buckets[bucket][bucketSize[bucket]++] = body;
+            }
+        }
+    }
+
+    private void remove(int body) {
+        for (int y = cellMinY[body]; y <= cellMaxY[body]; y++) {
+            for (int x = cellMinX[body]; x <= cellMaxX[body]; x++) {
+                int bucket = bucket(x, y);
+                int[] bodies = buckets[bucket];
+                for (int i = 0; i < bucketSize[bucket]; i++) {
+                    if (bodies[i] == body) {
+                        bodies[i] = bodies[--bucketSize[bucket]];
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int cell(float coordinate) {
+        return (int)Math.floor(coordinate / cellSize);
+    }
+
+    private static int bucket(int x, int y) {
+        return (x * 73856093 ^ y * 19349663) & (bucketCount - 1);
+    }
+
+    /**
+     * Finds the kinematic bodies whose AABB overlaps the specified box. The indices are stored
+     * in `query` sorted in ascending order, i.e. the order in which the bodies were added.
+     */
+    void query(float qMinX, float qMinY, float qMaxX, float qMaxY, StaticGrid.Query query) {
+        query.begin(bodyCount);
+        if (bodyCount == 0) {
+            return;
+        }
+
+        int startX = cell(qMinX);
+        int endX = cell(qMaxX);
+        int startY = cell(qMinY);
+        int endY = cell(qMaxY);
+        if ((long)(endX - startX + 1) * (endY - startY + 1) >= bucketCount) {
+            // The box covers at least as many cells as there are buckets, so just look at
+            // every body.
+            for (int body = 0; body < bodyCount; body++) {
+                addIfOverlapping(body, qMinX, qMinY, qMaxX, qMaxY, query);
+            }
+            return;
+        }
+        for (int y = startY; y <= endY; y++) {
+            for (int x = startX; x <= endX; x++) {
+                int bucket = bucket(x, y);
+                for (int i = 0; i < bucketSize[bucket]; i++) {
+                    addIfOverlapping(buckets[bucket][i], qMinX, qMinY, qMaxX, qMaxY, query);
+                }
+            }
+        }
+        query.sort();
+    }
+
+    private void addIfOverlapping(int body, float qMinX, float qMinY, float qMaxX, float qMaxY,
+                                  StaticGrid.Query query) {
+        // A body which is in more than one of the cells will be seen more than once.
+        if (query.marks[body] == query.stamp) {
+            return;
+        }
+        query.marks[body] = query.stamp;
+        if (minX[body] <= qMaxX && maxX[body] >= qMinX &&
+                minY[body] <= qMaxY && maxY[body] >= qMinY) {
+            query.add(body);
+        }
+    }
+
+    int getBodyCount() {
+        return bodyCount;
+    }
+}
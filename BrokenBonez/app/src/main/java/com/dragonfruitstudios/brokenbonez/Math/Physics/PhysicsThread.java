@@ -0,0 +1,175 @@
+package com.dragonfruitstudios.brokenbonez.Math.Physics;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a Simulator on its own thread at a fixed rate, independently of the game loop. This
+ * way a slow frame doesn't delay the physics and a slow physics step doesn't delay drawing.
+ *
+ * Once started, the Simulator and its bodies belong to the physics thread. Other threads must
+ * not touch them directly:
+ *  - Changes (applying forces, moving bodies, adding shapes...) are posted with `post` and
+ *    run on the physics thread before the next step.
+ *  - The state of the bodies is read from the latest `BodyStates`, which is published after
+ *    every step. Publishing and reading are lock-free, readers never wait for a step to end.
+ *
+ * The states are triple buffered so that publishing them doesn't allocate any memory: the
+ * physics thread fills its back buffer and swaps it with the shared buffer, and `getLatest`
+ * swaps the reader's front buffer with the shared buffer when that holds newer states. Each
+ * buffer is only ever owned by one side, so the reader's buffer is never overwritten while it
+ * is being read. This means that only a single thread (e.g. the game loop) may read them.
+ */
+public class PhysicsThread implements Runnable {
+    // When the physics falls far behind (for example after a long GC pause) only this many
+    // steps are run to catch up, like `GameLoop.maxCatchUpSteps`.
+    static final int maxCatchUpSteps = 5;
+
+    private final Simulator simulator;
+    private final long stepNanos;
+    private final ConcurrentLinkedQueue<Runnable> commands;
+    // The newest published states which the reader hasn't taken yet, or the reader's previous
+    // buffer once it has.
+    private final AtomicReference<BodyStates> latest;
+    private BodyStates back; // Only touched by the physics thread.
+    private BodyStates front; // Only touched by the reader.
+    private long published; // The number of states published, for `BodyStates.getSequence`.
+
+    private volatile boolean run = false;
+    private Thread thread;
+
+    /**
+     * Creates a PhysicsThread which steps `simulator` `rate` times per second. Each step
+     * simulates 1 / `rate` seconds, see `Simulator.setStepTime`.
+     */
+    public PhysicsThread(Simulator simulator, float rate) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("The rate must be positive.");
+        }
+        this.simulator = simulator;
+        stepNanos = (long)(1000000000 / rate);
+        simulator.setStepTime(1 / rate);
+        commands = new ConcurrentLinkedQueue<Runnable>();
+        back = new BodyStates(simulator);
+        front = new BodyStates(simulator);
+        latest = new AtomicReference<BodyStates>(new BodyStates(simulator));
+    }
+
+    /**
+     * Starts stepping the Simulator on a new thread.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        run = true;
+        thread = new Thread(this, "Physics");
+        thread.start();
+    }
+
+    /**
+     * Stops the physics thread and waits for it to finish. Commands which haven't been run yet
+     * are run by the next `start` or `step`.
+     */
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+        run = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        }
+        catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    public boolean isRunning() {
+        return thread != null;
+    }
+
+    /**
+     * Runs `command` on the physics thread before the next step. Commands run in the order in
+     * which they were posted. This is the only safe way to change the Simulator or its bodies
+     * while the thread is running.
+     */
+    public void post(Runnable command) {
+        commands.add(command);
+    }
+
+    /**
+     * Returns the state of the bodies after the most recent step. Never blocks.
+     *
+     * The returned states are reused once they have been handed back by the next call, so they
+     * are only valid until then, and only one thread may call this.
+     */
+    public BodyStates getLatest() {
+        if (latest.get().getSequence() > front.getSequence()) {
+            // The physics thread may publish newer states in the meantime, in that case those
+            // are taken instead.
+            front = latest.getAndSet(front);
+        }
+        return front;
+    }
+
+    @Override
+    public void run() {
+        long nextStep = System.nanoTime();
+        while (run) {
+            long now = System.nanoTime();
+            int steps = 0;
+            while (now - nextStep >= 0 && steps < maxCatchUpSteps) {
+                step();
+                nextStep += stepNanos;
+                steps++;
+            }
+            if (steps == maxCatchUpSteps && now - nextStep >= 0) {
+                // Too far behind, drop the time which can't be caught up with.
+                nextStep = now + stepNanos;
+            }
+
+            long wait = nextStep - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+            }
+        }
+    }
+
+    /**
+     * Runs the posted commands, performs a single step and publishes the result. Called by the
+     * physics thread, but can also be called directly while the thread isn't running, for
+     * example to step the simulation deterministically in tests.
+     */
+    public void step() {
+        Runnable command;
+        while ((command = commands.poll()) != null) {
+            command.run();
+        }
+        simulator.update(stepNanos / 1000000f);
+        published++;
+        back.copyFrom(simulator, published);
+        back = latest.getAndSet(back);
+    }
+
+    // <editor-fold desc="Getters/Setters">
+
+    /**
+     * Returns the Simulator which this thread steps. Only touch it from posted commands while
+     * the thread is running.
+     */
+    public Simulator getSimulator() {
+        return simulator;
+    }
+
+    /**
+     * @return The number of steps performed per second.
+     */
+    public float getRate() {
+        return 1000000000f / stepNanos;
+    }
+
+    // </editor-fold>
+}
@@ -0,0 +1,71 @@
+package com.dragonfruitstudios.brokenbonez.Math.Physics;
+
+import com.dragonfruitstudios.brokenbonez.Math.VectorF;
+
+/**
+ * Describes where a ray or a shape cast by `Simulator.raycast` or `Simulator.shapeCast` first hit
+ * a static body. A RaycastHit can be passed to those methods again, in which case it is
+ * overwritten rather than a new one being allocated.
+ */
+public class RaycastHit {
+    private VectorF point;
+    private VectorF normal;
+    private float fraction;
+    private float distance;
+    private StaticBody body;
+
+    public RaycastHit() {
+        point = new VectorF(0, 0);
+        normal = new VectorF(0, 0);
+    }
+
+    void set(float pointX, float pointY, float normalX, float normalY, float fraction,
+             float distance, StaticBody body) {
+        this.point.set(pointX, pointY);
+        this.normal.set(normalX, normalY);
+        this.fraction = fraction;
+        this.distance = distance;
+        this.body = body;
+    }
+
+    // <editor-fold desc="Getters/Setters">
+
+    /**
+     * @return The point where the ray hit the body. For shape casts this is the point where the
+     * shape touches the body.
+     */
+    public VectorF getPoint() {
+        return point;
+    }
+
+    /**
+     * @return The unit normal of the body's surface at the hit point, pointing away from the
+     * body (back towards where the ray or shape came from).
+     */
+    public VectorF getNormal() {
+        return normal;
+    }
+
+    /**
+     * @return How far along the ray or movement the hit occurred, between 0 and 1.
+     */
+    public float getFraction() {
+        return fraction;
+    }
+
+    /**
+     * @return How far (in px) the ray or shape travelled before hitting the body.
+     */
+    public float getDistance() {
+        return distance;
+    }
+
+    /**
+     * @return The static body which was hit.
+     */
+    public StaticBody getBody() {
+        return body;
+    }
+
+    // </editor-fold>
+}
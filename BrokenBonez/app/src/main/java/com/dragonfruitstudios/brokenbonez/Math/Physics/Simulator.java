@@ -4,81 +4,690 @@ import android.util.Log;
 
 import com.dragonfruitstudios.brokenbonez.Game.Camera;
 import com.dragonfruitstudios.brokenbonez.Game.GameView;
+import com.dragonfruitstudios.brokenbonez.Game.Graphics;
 import com.dragonfruitstudios.brokenbonez.GameLoop;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.AABB;
 import com.dragonfruitstudios.brokenbonez.Math.Collisions.Circle;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.DistanceField;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Heightfield;
 import com.dragonfruitstudios.brokenbonez.Math.Collisions.Intersector;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Line;
 import com.dragonfruitstudios.brokenbonez.Math.Collisions.Manifold;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Polygon;
 import com.dragonfruitstudios.brokenbonez.Math.MathUtils;
+import com.dragonfruitstudios.brokenbonez.Math.VectorF;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * This class simulates physics.
+ *
+ * The simulation is deterministic: it has its own clock which advances by a fixed amount each
+ * step, bodies and contacts are always processed in the same order, and nothing depends on the
+ * system's clock. Running the same steps with the same input therefore always gives exactly
+ * the same result, which `stateHash` can be used to check (e.g. when verifying replays).
  */
 public class Simulator {
     ArrayList<StaticBody> staticBodies;
     ArrayList<DynamicBody> dynamicBodies;
     ArrayList<Constraint> constraints;
+    // The pairs of bodies connected by a constraint, packed by `pairKey` and sorted so that
+    // `isConstrained` is a binary search. Rebuilt by `updateConstrainedPairs` whenever the
+    // constraints change.
+    private long[] constrainedPairs;
+    private int constrainedPairCount;
+    ArrayList<KinematicBody> kinematicBodies;
+
+    // Broadphase used to find the static bodies near each dynamic body.
+    private StaticGrid staticGrid;
+    private StaticGrid.Query staticQuery;
+    // Scratch memory for the queries which the game makes in between steps (`collidesWith`,
+    // `raycast` and `shapeCast`).
+    private StaticGrid.Query gameQuery;
+    private VectorF castNormal;
+    private boolean staticGridDirty;
+    // Broadphase for the kinematic bodies. It is kept separate from the static grid, which
+    // would have to be rebuilt every time they move.
+    private KinematicGrid kinematicGrid;
+    private StaticGrid.Query kinematicQuery;
+    // Broadphase used to find the pairs of dynamic bodies which might collide with each other.
+    private SweepAndPrune sweepAndPrune;
+
+    // Holds the collisions found during a step. It is cleared at the start of each step and the
+    // Manifolds inside it are reused, so that stepping does not allocate any memory.
+    private Manifold.Collection contacts;
+    // The index of each dynamic body's first collision in `contacts`, plus one extra entry.
+    private int[] contactStart;
+
+    // Holds the state of the dynamic bodies in primitive arrays.
+    private BodyStore bodyStore;
+    // The number of steps simulated so far.
+    private long tick;
+    // Scratch memory for the collisions of a fast body's sub-steps.
+    private Manifold.Collection subStepContacts;
+
+    // Resolves the collisions and constraints. More iterations make the simulation more
+    // stable, at the cost of CPU time.
+    private Solver solver;
+    private int solverIterations;
+    // The most sub-steps a fast body is split into, see `maxSubSteps`.
+    private int subStepLimit;
+
+    // Union-find forest used to group the dynamic bodies into islands of bodies connected by
+    // constraints. Each island's state is stored at the index of its root body.
+    private int[] islandParent;
+    private boolean[] islandAwake;
+    private float[] islandStillTime;
+
+    // Only set while a metrics listener is set, so that stepping doesn't count or time
+    // anything otherwise.
+    private StepMetrics metrics;
+    private StepMetrics.Listener metricsListener;
 
     // Used to calculate update factor.
     private static float updateRate = 60f;
+    // The time (in seconds) simulated by each of this Simulator's steps, or 0 to use the
+    // global update rate. See `setStepTime`.
+    private float stepTime;
 
     public final static float gravity = 9.81f;
     public final static float gravityScaled = 10*gravity;
     public final static float airResistance = 0.1f; // Percentage of velocity lost due to air resistance.
     public final static float angularVelPreserved = 0.01f; // Percentage of angular velocity preserved when bike hits ground.
+    public final static float contactSlop = 0.1f; // How far (in px) bodies are allowed to overlap the bodies they rest on.
+    public final static int defaultSolverIterations = 8;
+
+    // Bodies which would move further than this fraction of their radius in a single step are
+    // moved in multiple smaller sub-steps instead, so that they don't tunnel through thin
+    // static bodies. Slower bodies are stepped once as usual. `maxSubSteps` is the default
+    // limit on the number of sub-steps, see `setMaxSubSteps`.
+    final static float maxTravel = 0.5f;
+    final static int maxSubSteps = 8;
+
+    // Bodies which have moved less than this (in px) since the narrowphase last looked for
+    // their contacts reuse the contacts from the last step, with their penetration adjusted
+    // for the movement. Static bodies don't move, so the contacts can't have changed much.
+    final static float contactReuseDistance = 0.25f;
+
+    // Bodies which move slower than these thresholds for `timeToSleep` seconds are put to
+    // sleep. Bodies connected by constraints form an island and fall asleep and wake up
+    // together.
+    public final static float sleepVelocity = 10f; // px/s
+    public final static float sleepAngularVelocity = 0.5f; // Radians per second
+    public final static float timeToSleep = 0.5f;
 
     public Simulator() {
         dynamicBodies = new ArrayList<DynamicBody>();
         staticBodies = new ArrayList<StaticBody>();
         constraints = new ArrayList<Constraint>();
+        constrainedPairs = new long[0];
+        kinematicBodies = new ArrayList<KinematicBody>();
+        staticGrid = new StaticGrid();
+        staticQuery = new StaticGrid.Query();
+        gameQuery = new StaticGrid.Query();
+        kinematicGrid = new KinematicGrid();
+        kinematicQuery = new StaticGrid.Query();
+        sweepAndPrune = new SweepAndPrune();
+        castNormal = new VectorF(0, 0);
+        contacts = new Manifold.Collection();
+        contactStart = new int[1];
+        bodyStore = new BodyStore();
+        subStepContacts = new Manifold.Collection();
+        solver = new Solver();
+        solverIterations = defaultSolverIterations;
+        subStepLimit = maxSubSteps;
+        islandParent = new int[0];
+        islandAwake = new boolean[0];
+        islandStillTime = new float[0];
     }
 
     public void update(float lastUpdate) {
         // Use a fixed update factor to make the physics simulation deterministic.
-        float updateFactor = Simulator.calcUpdateFactor(lastUpdate);
+        float updateFactor = stepTime > 0 ? stepTime : Simulator.calcUpdateFactor(lastUpdate);
+        tick++;
+        bodyStore.time += updateFactor;
+        long start = 0;
+        if (metrics != null) {
+            metrics.reset(tick);
+            start = System.nanoTime();
+        }
+
+        if (staticGridDirty) {
+            rebuildStaticIndex();
+        }
+
+        int bodyCount = dynamicBodies.size();
+        if (contactStart.length < bodyCount + 1) {
+            contactStart = new int[bodyCount + 1];
+        }
+
+        // The rest of the step works on the body store's arrays. The bodies' positions and
+        // velocities may have been changed by the game since the last step, so grab them first.
+        bodyStore.gather();
+        wakeNearKinematicBodies(bodyCount, updateFactor);
+        // A body that is about to hit a sleeping body wakes it up.
+        sweepAndPrune.findPairs(bodyStore, updateFactor);
+        for (int p = 0; p < sweepAndPrune.pairCount; p++) {
+            wakeIfHit(sweepAndPrune.pairA[p], sweepAndPrune.pairB[p]);
+            wakeIfHit(sweepAndPrune.pairB[p], sweepAndPrune.pairA[p]);
+        }
+        // A body that was woken up wakes up the rest of its island too.
+        buildIslands(bodyCount);
+        for (int d = 0; d < bodyCount; d++) {
+            if (!bodyStore.asleep[d]) {
+                islandAwake[findIsland(d)] = true;
+            }
+        }
+        for (int d = 0; d < bodyCount; d++) {
+            if (bodyStore.asleep[d] && islandAwake[findIsland(d)]) {
+                bodyStore.wake(d);
+            }
+        }
 
-        // TODO: Use Manifold.Collection to hold collection of Manifolds instead of custom
-        // ArrayList?
+        // Bodies that are moving fast are split into sub-steps. All but the last of them are
+        // performed here, the last one is performed together with all the other bodies below.
+        for (int d = 0; d < bodyCount; d++) {
+            if (bodyStore.asleep[d]) {
+                continue;
+            }
+            int subSteps = calcSubSteps(d, updateFactor);
+            float factor = updateFactor / subSteps;
+            bodyStore.stepFactor[d] = factor;
+            for (int s = 1; s < subSteps; s++) {
+                subStep(d, factor);
+            }
+            if (metrics != null) {
+                metrics.awakeBodies++;
+                metrics.subSteps += subSteps - 1;
+            }
+        }
+        long phaseStart = 0;
+        if (metrics != null) {
+            phaseStart = System.nanoTime();
+            metrics.subStepNanos = phaseStart - start;
+        }
 
         // Go through each dynamic body and determine if it collides with any static bodies.
-        // TODO: This is O(n*m) which isn't terribly efficient. Only simulate what is on screen.
-        for (DynamicBody dBody : dynamicBodies) {
-            ArrayList<Manifold> collisions = new ArrayList<>();
-            for (StaticBody sBody : staticBodies) {
-                // Check if the two bodies are sufficiently close together for a collision to occur.
-                if (!sBody.mightCollide(dBody)) {
-                    // Don't test for collision if sufficiently far enough.
+        // Index based loops are used throughout to avoid allocating iterators.
+        contacts.clear();
+        for (int d = 0; d < bodyCount; d++) {
+            contactStart[d] = contacts.size();
+            if (!bodyStore.asleep[d]) {
+                findContacts(d);
+            }
+        }
+        contactStart[bodyCount] = contacts.size();
+        if (metrics != null) {
+            long now = System.nanoTime();
+            metrics.collideNanos = now - phaseStart;
+            phaseStart = now;
+        }
+
+        // Move each dynamic body out of the static bodies it collided with and apply the
+        // forces acting on it. The bodies were added to the store in the same order as
+        // `dynamicBodies`.
+        for (int d = 0; d < bodyCount; d++) {
+            dynamicBodies.get(d).setLastContacts(contacts, contactStart[d], contactStart[d + 1]);
+            if (bodyStore.asleep[d]) {
+                continue;
+            }
+            bodyStore.resolvePenetration(d, contacts, contactStart[d], contactStart[d + 1]);
+            bodyStore.applyForces(d, bodyStore.stepFactor[d],
+                    contactStart[d + 1] > contactStart[d]);
+        }
+        collideDynamicBodies();
+
+        // Solve the contacts and constraints together. Both bodies of a constraint are in the
+        // same island, so they are either both awake or both asleep.
+        solver.solve(bodyStore, contacts, contactStart, bodyCount, constraints,
+                solverIterations, updateFactor);
+        if (metrics != null) {
+            long now = System.nanoTime();
+            metrics.solveNanos = now - phaseStart;
+            phaseStart = now;
+            metrics.manifolds += contacts.size() + solver.getPairContactCount();
+            metrics.constraintIterations += solverIterations * (contacts.size() +
+                    solver.getPairContactCount() + countAwakeConstraints());
+        }
+
+        for (int d = 0; d < bodyCount; d++) {
+            if (bodyStore.asleep[d]) {
+                continue;
+            }
+            bodyStore.updateSpin(d, contacts, contactStart[d], contactStart[d + 1]);
+            bodyStore.travel[d] = calcTravel(d, bodyStore.stepFactor[d]);
+        }
+
+        // Change the dynamic bodies position, rotation and angular velocity based on
+        // their acceleration, velocity etc.
+        bodyStore.integrate();
+        // The kinematic bodies move at the same time, so that the bodies resting on them,
+        // which were given their velocity by the solver, stay in contact with them.
+        moveKinematicBodies(updateFactor);
+
+        updateSleep(bodyCount, updateFactor);
+        bodyStore.scatter();
+        if (Graphics.drawDebugInfo) {
+            recordDebugHits();
+        }
+
+        if (metrics != null) {
+            long now = System.nanoTime();
+            metrics.integrateNanos = now - phaseStart;
+            metrics.totalNanos = now - start;
+            metricsListener.onStep(metrics);
+        }
+    }
+
+    /**
+     * Finds the dynamic bodies which overlap each other or will hit each other during this
+     * step, out of the pairs found by the sweep and prune. Overlapping bodies are moved apart
+     * and all the contacts are passed on to the solver. Bodies which are connected by a
+     * constraint (e.g. a bike's wheels) don't collide.
+     */
+    private void collideDynamicBodies() {
+        solver.clearPairContacts();
+        if (metrics != null) {
+            metrics.candidatePairs += sweepAndPrune.pairCount;
+            metrics.narrowphaseTests += sweepAndPrune.pairCount;
+        }
+        for (int p = 0; p < sweepAndPrune.pairCount; p++) {
+            int a = sweepAndPrune.pairA[p];
+            int b = sweepAndPrune.pairB[p];
+            if (bodyStore.asleep[a] && bodyStore.asleep[b]) {
+                continue;
+            }
+            float dx = bodyStore.posX[b] - bodyStore.posX[a];
+            float dy = bodyStore.posY[b] - bodyStore.posY[a];
+            float radii = bodyStore.radius[a] + bodyStore.radius[b];
+            float dist = (float)Math.sqrt(dx * dx + dy * dy);
+            float normalX = 0;
+            float normalY = 1;
+            if (dist > 0) {
+                normalX = dx / dist;
+                normalY = dy / dist;
+            }
+            // Sub-stepped bodies only move by their last sub-step in `integrate`.
+            float factor = Math.max(bodyStore.asleep[a] ? 0 : bodyStore.stepFactor[a],
+                    bodyStore.asleep[b] ? 0 : bodyStore.stepFactor[b]);
+            float separation = dist - radii;
+            float approach = (bodyStore.velX[a] - bodyStore.velX[b]) * normalX +
+                    (bodyStore.velY[a] - bodyStore.velY[b]) * normalY;
+            if (separation >= Math.max(approach * factor, 0) || isConstrained(a, b)) {
+                continue;
+            }
+            // Move the bodies apart, the lighter body moves further. A sleeping body doesn't
+            // move at all.
+            float inverseMassA = bodyStore.pairInverseMass(a);
+            float inverseMassB = bodyStore.pairInverseMass(b);
+            float correction = Math.max(-separation - contactSlop, 0) /
+                    (inverseMassA + inverseMassB);
+            bodyStore.posX[a] -= normalX * correction * inverseMassA;
+            bodyStore.posY[a] -= normalY * correction * inverseMassA;
+            bodyStore.posX[b] += normalX * correction * inverseMassB;
+            bodyStore.posY[b] += normalY * correction * inverseMassB;
+
+            float restitution = Math.min(dynamicBodies.get(a).getRestitution(),
+                    dynamicBodies.get(b).getRestitution());
+            solver.addPairContact(bodyStore, a, b, normalX, normalY, Math.max(separation, 0),
+                    restitution, factor);
+        }
+    }
+
+    /**
+     * Wakes up `sleeper` if it is asleep and `other` is moving fast enough to stay awake.
+     * Bodies which are just resting against a sleeping body leave it asleep, it acts like a
+     * static body towards them until it wakes up.
+     */
+    private void wakeIfHit(int sleeper, int other) {
+        if (!bodyStore.asleep[sleeper] || bodyStore.asleep[other]) {
+            return;
+        }
+        float velX = bodyStore.velX[other];
+        float velY = bodyStore.velY[other];
+        if (velX * velX + velY * velY > sleepVelocity * sleepVelocity) {
+            bodyStore.wake(sleeper);
+        }
+    }
+
+    private boolean isConstrained(int a, int b) {
+        return Arrays.binarySearch(constrainedPairs, 0, constrainedPairCount, pairKey(a, b)) >= 0;
+    }
+
+    /**
+     * Packs the IDs of two bodies into a single key, which is the same regardless of their
+     * order.
+     */
+    private static long pairKey(int a, int b) {
+        return ((long)Math.min(a, b) << 32) | Math.max(a, b);
+    }
+
+    /**
+     * Rebuilds `constrainedPairs` from `constraints`. Called whenever a constraint is added or
+     * removed, which happens far less often than the pairs are looked up.
+     */
+    private void updateConstrainedPairs() {
+        if (constrainedPairs.length < constraints.size()) {
+            constrainedPairs = new long[constraints.size()];
+        }
+        constrainedPairCount = constraints.size();
+        for (int i = 0; i < constrainedPairCount; i++) {
+            Constraint constraint = constraints.get(i);
+            constrainedPairs[i] = pairKey(constraint.bodyA.id, constraint.bodyB.id);
+        }
+        Arrays.sort(constrainedPairs, 0, constrainedPairCount);
+    }
+
+    private int countAwakeConstraints() {
+        int count = 0;
+        for (int i = 0; i < constraints.size(); i++) {
+            if (!bodyStore.asleep[constraints.get(i).bodyA.id]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Wakes up the sleeping bodies which the moving kinematic bodies touch or are about to
+     * move into during this step.
+     */
+    private void wakeNearKinematicBodies(int bodyCount, float updateFactor) {
+        // How far the kinematic bodies move during this step at most.
+        float maxDx = 0;
+        float maxDy = 0;
+        for (int k = 0; k < kinematicBodies.size(); k++) {
+            VectorF velocity = kinematicBodies.get(k).getVelocity();
+            maxDx = Math.max(maxDx, Math.abs(velocity.x * updateFactor));
+            maxDy = Math.max(maxDy, Math.abs(velocity.y * updateFactor));
+        }
+        if (maxDx == 0 && maxDy == 0) {
+            return;
+        }
+
+        // A kinematic body can only reach a sleeping body if its AABB is within `maxDx` and
+        // `maxDy` of it, so only those are looked up in the grid and then tested exactly.
+        for (int d = 0; d < bodyCount; d++) {
+            if (!bodyStore.asleep[d]) {
+                continue;
+            }
+            float margin = bodyStore.radius[d] + contactSlop;
+            float x = bodyStore.posX[d];
+            float y = bodyStore.posY[d];
+            kinematicGrid.query(x - margin - maxDx, y - margin - maxDy, x + margin + maxDx,
+                    y + margin + maxDy, kinematicQuery);
+            for (int i = 0; i < kinematicQuery.count; i++) {
+                KinematicBody kBody = kinematicBodies.get(kinematicQuery.results[i]);
+                float dx = kBody.getVelocity().x * updateFactor;
+                float dy = kBody.getVelocity().y * updateFactor;
+                if (dx == 0 && dy == 0) {
                     continue;
                 }
-                Manifold.Collection collision = sBody.collisionTest(dBody);
-                if (collision.hasCollisions()) {
-                    for (Manifold m : collision) {
-                        collisions.add(m);
-                    }
+                AABB box = kBody.getShape().getAABB();
+                if (box.minX + Math.min(dx, 0) <= x + margin &&
+                        box.maxX + Math.max(dx, 0) >= x - margin &&
+                        box.minY + Math.min(dy, 0) <= y + margin &&
+                        box.maxY + Math.max(dy, 0) >= y - margin) {
+                    bodyStore.wake(d);
+                    break;
                 }
             }
+        }
+    }
+
+    /**
+     * Moves the kinematic bodies by their velocity.
+     */
+    private void moveKinematicBodies(float updateFactor) {
+        for (int k = 0; k < kinematicBodies.size(); k++) {
+            KinematicBody kBody = kinematicBodies.get(k);
+            if (kBody.getVelocity().x != 0 || kBody.getVelocity().y != 0) {
+                kBody.move(updateFactor);
+                kinematicGrid.update(k, kBody.getShape().getAABB());
+            }
+        }
+    }
+
+    /**
+     * Groups the dynamic bodies into islands, i.e. sets of bodies connected by constraints.
+     */
+    private void buildIslands(int bodyCount) {
+        if (islandParent.length < bodyCount) {
+            islandParent = new int[bodyCount];
+            islandAwake = new boolean[bodyCount];
+            islandStillTime = new float[bodyCount];
+        }
+        for (int d = 0; d < bodyCount; d++) {
+            islandParent[d] = d;
+            islandAwake[d] = false;
+            islandStillTime[d] = Float.MAX_VALUE;
+        }
+        for (int i = 0; i < constraints.size(); i++) {
+            Constraint constraint = constraints.get(i);
+            int a = findIsland(constraint.bodyA.id);
+            int b = findIsland(constraint.bodyB.id);
+            islandParent[a] = b;
+        }
+    }
+
+    /**
+     * Returns the index of the root body of the island which body `id` belongs to.
+     */
+    private int findIsland(int id) {
+        while (islandParent[id] != id) {
+            // Path halving, keeps the trees flat.
+            islandParent[id] = islandParent[islandParent[id]];
+            id = islandParent[id];
+        }
+        return id;
+    }
+
+    /**
+     * Keeps track of how long each body has been still for, and puts islands in which every
+     * body has been still for `timeToSleep` seconds to sleep.
+     */
+    private void updateSleep(int bodyCount, float updateFactor) {
+        for (int d = 0; d < bodyCount; d++) {
+            if (bodyStore.asleep[d]) {
+                continue;
+            }
+            if (bodyStore.isStill(d)) {
+                bodyStore.stillTime[d] += updateFactor;
+            }
+            else {
+                bodyStore.stillTime[d] = 0;
+            }
+            int island = findIsland(d);
+            islandStillTime[island] = Math.min(islandStillTime[island], bodyStore.stillTime[d]);
+        }
+
+        for (int d = 0; d < bodyCount; d++) {
+            if (!bodyStore.asleep[d] && islandStillTime[findIsland(d)] >= timeToSleep) {
+                bodyStore.sleep(d);
+            }
+        }
+    }
+
+    /**
+     * Adds the contacts of body `d` to `contacts`. Unless the body has moved further than
+     * `contactReuseDistance` since its contacts were last looked for or is near a kinematic
+     * body, the contacts from the last step are reused.
+     */
+    private void findContacts(int d) {
+        float x = bodyStore.posX[d];
+        float y = bodyStore.posY[d];
+        float dx = x - bodyStore.contactX[d];
+        float dy = y - bodyStore.contactY[d];
+        // The distance is NaN when the body's contacts were invalidated.
+        if (dx * dx + dy * dy < contactReuseDistance * contactReuseDistance &&
+                solver.hasCachedContacts(d) && !nearKinematicBody(d)) {
+            solver.addCachedContacts(d, dynamicBodies.get(d), x - bodyStore.lastContactX[d],
+                    y - bodyStore.lastContactY[d], contacts);
+            if (metrics != null) {
+                metrics.reusedContacts++;
+            }
+        }
+        else {
+            collide(dynamicBodies.get(d), contacts);
+            bodyStore.contactX[d] = x;
+            bodyStore.contactY[d] = y;
+        }
+        bodyStore.lastContactX[d] = x;
+        bodyStore.lastContactY[d] = y;
+    }
 
-            // Update the dynamic body with the collection of collisions.
-            dBody.update(updateFactor, collisions);
+    /**
+     * Returns whether body `d` is near a kinematic body. The kinematic body may have moved, so
+     * the contacts with it need to be looked for again.
+     */
+    private boolean nearKinematicBody(int d) {
+        if (kinematicGrid.getBodyCount() == 0) {
+            return false;
+        }
+        float margin = bodyStore.radius[d] + contactReuseDistance;
+        kinematicGrid.query(bodyStore.posX[d] - margin, bodyStore.posY[d] - margin,
+                bodyStore.posX[d] + margin, bodyStore.posY[d] + margin, kinematicQuery);
+        return kinematicQuery.count > 0;
+    }
+
+    /**
+     * Adds the collisions between the specified body and the static and kinematic bodies near
+     * it to `result`.
+     */
+    private void collide(DynamicBody dBody, Manifold.Collection result) {
+        // Only look at the bodies whose bounding boxes overlap this body's.
+        AABB box = dBody.getBoundingShape().getAABB();
+        staticGrid.query(box.minX, box.minY, box.maxX, box.maxY, staticQuery);
+        collide(staticBodies, staticQuery, dBody, result);
+        if (kinematicGrid.getBodyCount() > 0) {
+            kinematicGrid.query(box.minX, box.minY, box.maxX, box.maxY, kinematicQuery);
+            collide(kinematicBodies, kinematicQuery, dBody, result);
+        }
+    }
+
+    private void collide(ArrayList<? extends StaticBody> bodies, StaticGrid.Query query,
+                         DynamicBody dBody, Manifold.Collection result) {
+        for (int i = 0; i < query.count; i++) {
+            StaticBody sBody = bodies.get(query.results[i]);
+            sBody.collisionTest(dBody, result);
+        }
+        if (metrics != null) {
+            metrics.candidatePairs += query.count;
+            metrics.narrowphaseTests += query.count;
+        }
+    }
+
+    /**
+     * Calculates how many sub-steps body `id` needs so that it moves no further than
+     * `maxTravel` times its radius in each of them.
+     */
+    private int calcSubSteps(int id, float updateFactor) {
+        float distance = (float)Math.sqrt(bodyStore.velX[id] * bodyStore.velX[id] +
+                bodyStore.velY[id] * bodyStore.velY[id]) * updateFactor;
+        float allowed = bodyStore.radius[id] * maxTravel;
+        if (distance <= allowed) {
+            return 1;
+        }
+        return Math.min(subStepLimit, (int)Math.ceil(distance / allowed));
+    }
+
+    /**
+     * Performs a full step (collision, update and integration) of body `id` on its own.
+     */
+    private void subStep(int id, float updateFactor) {
+        DynamicBody dBody = dynamicBodies.get(id);
+        subStepContacts.clear();
+        collide(dBody, subStepContacts);
+        int end = subStepContacts.size();
+        bodyStore.resolvePenetration(id, subStepContacts, 0, end);
+        bodyStore.applyForces(id, updateFactor, end > 0);
+        solver.solve(bodyStore, id, subStepContacts, 0, end, solverIterations);
+        if (metrics != null) {
+            metrics.manifolds += end;
+            metrics.constraintIterations += solverIterations * end;
+        }
+        bodyStore.updateSpin(id, subStepContacts, 0, end);
+        bodyStore.integrate(id, updateFactor, calcTravel(id, updateFactor));
+        // The next sub-step's collision tests use the body's shape.
+        dBody.setPos(bodyStore.posX[id], bodyStore.posY[id]);
+    }
+
+    /**
+     * Continuous collision detection. Calculates the fraction of its velocity that body `id`
+     * can move by before hitting a static body which it would otherwise tunnel through. This
+     * is only needed for bodies which move further than `maxTravel` times their radius, which
+     * only happens when the sub-steps are capped by `setMaxSubSteps` or when the body's velocity
+     * changed during the step.
+     * @return A value between 0 and 1.
+     */
+    private float calcTravel(int id, float updateFactor) {
+        float dx = bodyStore.velX[id] * updateFactor;
+        float dy = bodyStore.velY[id] * updateFactor;
+        float allowed = bodyStore.radius[id] * maxTravel;
+        if (dx * dx + dy * dy <= allowed * allowed) {
+            return 1;
+        }
+
+        // The collision response may have moved the body, so sweep from where it is now.
+        Circle circle = dynamicBodies.get(id).getBoundingShape();
+        circle.setCenter(bodyStore.posX[id], bodyStore.posY[id]);
+        AABB box = circle.getAABB();
+        staticGrid.query(box.minX + Math.min(dx, 0), box.minY + Math.min(dy, 0),
+                box.maxX + Math.max(dx, 0), box.maxY + Math.max(dy, 0), staticQuery);
+        float travel = 1;
+        for (int i = 0; i < staticQuery.count; i++) {
+            StaticBody sBody = staticBodies.get(staticQuery.results[i]);
+            float t = circle.timeOfImpact(sBody.getBoundingShape(), dx, dy, allowed);
+            if (t >= 0 && t < travel) {
+                travel = t;
+            }
+        }
+        if (metrics != null) {
+            metrics.candidatePairs += staticQuery.count;
+            metrics.narrowphaseTests += staticQuery.count;
+        }
+        return travel;
+    }
 
-            // Change the dynamic bodies position, rotation and angular velocity based on
-            // its acceleration, velocity etc.
-            dBody.updatePos(updateFactor);
+    /**
+     * Sets the listener which is given the metrics of each step, or disables the metrics when
+     * `listener` is null.
+     */
+    public void setMetricsListener(StepMetrics.Listener listener) {
+        metricsListener = listener;
+        if (listener == null) {
+            metrics = null;
         }
+        else if (metrics == null) {
+            metrics = new StepMetrics();
+        }
+    }
 
-        // Solve constraints.
-        for (Constraint c : constraints) {
-            c.update(updateFactor);
+    /**
+     * Marks the Lines which the dynamic bodies collided with during this step, so that they are
+     * drawn differently for debugging.
+     */
+    private void recordDebugHits() {
+        for (int i = 0; i < contacts.size(); i++) {
+            Line line = contacts.get(i).getLine();
+            if (line != null) {
+                line.setTimeOfLastCollision(bodyStore.time);
+            }
         }
     }
 
     public void draw(GameView view) {
+        Line.setDebugDrawTime(bodyStore.time);
         view.enableCamera();
         for (StaticBody sBody : staticBodies) {
             sBody.draw(view);
         }
 
+        for (KinematicBody kBody : kinematicBodies) {
+            kBody.draw(view);
+        }
+
         for (DynamicBody dBody : dynamicBodies) {
             dBody.draw(view);
         }
@@ -92,7 +701,7 @@ public class Simulator {
      * @param mass The mass of this body.
      */
     public DynamicBody createDynamicBody(Circle shape, float mass) {
-        DynamicBody body = new DynamicBody(shape, mass);
+        DynamicBody body = new DynamicBody(shape, mass, bodyStore);
         dynamicBodies.add(body);
         return body;
     }
@@ -107,6 +716,20 @@ public class Simulator {
     public StaticBody createStaticBody(Intersector shape) {
         StaticBody body = new StaticBody(shape);
         staticBodies.add(body);
+        staticGridDirty = true;
+        return body;
+    }
+
+    /**
+     * Creates a new kinematic body belonging to this Simulator. See KinematicBody.
+     * @param shape The shape of this body. This will be copied so you can reuse a single shape.
+     */
+    public KinematicBody createKinematicBody(Polygon shape) {
+        KinematicBody body = new KinematicBody(shape, kinematicBodies.size());
+        kinematicBodies.add(body);
+        kinematicGrid.add(body.getShape().getAABB());
+        // The body may have been put on top of sleeping bodies.
+        wakeAll();
         return body;
     }
 
@@ -121,6 +744,9 @@ public class Simulator {
     public Constraint createConstraint(DynamicBody bodyA, DynamicBody bodyB, float separation) {
         Constraint c = new Constraint(bodyA, bodyB, separation);
         constraints.add(c);
+        updateConstrainedPairs();
+        bodyA.wake();
+        bodyB.wake();
         return c;
     }
 
@@ -133,6 +759,41 @@ public class Simulator {
         StaticBody body = new StaticBody();
         body.setBoundingShape(shape);
         staticBodies.add(body);
+        staticGridDirty = true;
+    }
+
+    /**
+     * Rebuilds the broadphase grid which holds the static bodies' bounding boxes.
+     *
+     * The grid is rebuilt automatically when static bodies are added, but since shapes added
+     * via `addStaticShape` are not copied you need to call this yourself after moving or
+     * scaling them. Any DistanceFields and Heightfields whose shapes have moved are rebuilt too.
+     */
+    public void rebuildStaticIndex() {
+        for (StaticBody sBody : staticBodies) {
+            if (sBody.getBoundingShape() instanceof DistanceField) {
+                ((DistanceField)sBody.getBoundingShape()).update();
+            }
+            else if (sBody.getBoundingShape() instanceof Heightfield) {
+                ((Heightfield)sBody.getBoundingShape()).update();
+            }
+        }
+        staticGrid.build(staticBodies);
+        staticGridDirty = false;
+        // The bodies may have been resting on shapes that moved.
+        wakeAll();
+        for (int d = 0; d < bodyStore.count; d++) {
+            bodyStore.invalidateContacts(d);
+        }
+    }
+
+    /**
+     * Wakes up all of this Simulator's dynamic bodies.
+     */
+    public void wakeAll() {
+        for (int d = 0; d < dynamicBodies.size(); d++) {
+            bodyStore.wake(d);
+        }
     }
 
     /**
@@ -142,6 +803,10 @@ public class Simulator {
     public void addConstraint(Constraint constraint) {
         if (!constraints.contains(constraint)) {
             constraints.add(constraint);
+            updateConstrainedPairs();
+            constraint.resetImpulse();
+            constraint.bodyA.wake();
+            constraint.bodyB.wake();
         }
     }
 
@@ -149,27 +814,374 @@ public class Simulator {
      * Removes the specified constraint from this simulator.
      */
     public void removeConstraint(Constraint constraint) {
-        constraints.remove(constraint);
+        if (constraints.remove(constraint)) {
+            updateConstrainedPairs();
+            constraint.bodyA.wake();
+            constraint.bodyB.wake();
+        }
     }
 
     /**
      * Determines whether the specified shape collides with any StaticBodies in this Simulator.
+     * Only the static bodies near the shape are tested, and only for overlap, so this is cheap
+     * enough to call every frame and doesn't allocate any memory.
      */
     public boolean collidesWith(Intersector shape) {
-        for (StaticBody sb : staticBodies) {
-            // TODO: Optimise this.
-            if (sb.getBoundingShape().collisionTest(shape).hasCollisions()) {
+        if (staticGridDirty) {
+            rebuildStaticIndex();
+        }
+        AABB box = shape.getAABB();
+        staticGrid.query(box.minX, box.minY, box.maxX, box.maxY, gameQuery);
+        if (overlapsAny(staticBodies, gameQuery, shape)) {
+            return true;
+        }
+        kinematicGrid.query(box.minX, box.minY, box.maxX, box.maxY, gameQuery);
+        return overlapsAny(kinematicBodies, gameQuery, shape);
+    }
+
+    private boolean overlapsAny(ArrayList<? extends StaticBody> bodies, StaticGrid.Query query,
+                                Intersector shape) {
+        for (int i = 0; i < query.count; i++) {
+            StaticBody sb = bodies.get(query.results[i]);
+            if (sb.getBoundingShape().overlaps(shape)) {
                 return true;
             }
         }
         return false;
     }
 
+    /**
+     * Casts a ray from `origin` in the direction `dir` and finds the first static body it hits
+     * within `maxDist` pixels.
+     * @return The hit, or null if the ray doesn't hit anything.
+     */
+    public RaycastHit raycast(VectorF origin, VectorF dir, float maxDist) {
+        RaycastHit hit = new RaycastHit();
+        return raycast(origin, dir, maxDist, hit) ? hit : null;
+    }
+
+    /**
+     * Same as `raycast(VectorF, VectorF, float)` but stores the hit in `hit`, so that no memory
+     * is allocated.
+     * @return Whether the ray hit anything.
+     */
+    public boolean raycast(VectorF origin, VectorF dir, float maxDist, RaycastHit hit) {
+        float length = (float)Math.sqrt(dir.x * dir.x + dir.y * dir.y);
+        if (length == 0 || maxDist <= 0) {
+            return false;
+        }
+        if (staticGridDirty) {
+            rebuildStaticIndex();
+        }
+        float dx = dir.x / length * maxDist;
+        float dy = dir.y / length * maxDist;
+
+        // Only the bodies whose AABB the ray passes through can be hit.
+        float minX = Math.min(origin.x, origin.x + dx);
+        float minY = Math.min(origin.y, origin.y + dy);
+        float maxX = Math.max(origin.x, origin.x + dx);
+        float maxY = Math.max(origin.y, origin.y + dy);
+        staticGrid.query(minX, minY, maxX, maxY, gameQuery);
+        float best = raycast(staticBodies, gameQuery, origin, dx, dy, maxDist, -1, hit);
+        kinematicGrid.query(minX, minY, maxX, maxY, gameQuery);
+        best = raycast(kinematicBodies, gameQuery, origin, dx, dy, maxDist, best, hit);
+        return best >= 0;
+    }
+
+    /**
+     * Casts the ray against the bodies in `query`, storing the hit in `hit` if it is closer
+     * than `best`.
+     * @return The fraction of the closest hit so far, -1 if there is none.
+     */
+    private float raycast(ArrayList<? extends StaticBody> bodies, StaticGrid.Query query,
+                          VectorF origin, float dx, float dy, float maxDist, float best,
+                          RaycastHit hit) {
+        for (int i = 0; i < query.count; i++) {
+            StaticBody sb = bodies.get(query.results[i]);
+            float t = sb.getBoundingShape().raycast(origin.x, origin.y, dx, dy, castNormal);
+            if (t >= 0 && (best < 0 || t < best)) {
+                best = t;
+                hit.set(origin.x + dx * t, origin.y + dy * t, castNormal.x, castNormal.y, t,
+                        t * maxDist, sb);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Moves `circle` along `motion` and finds the first static body it hits. The circle itself
+     * is not moved. Bodies which the circle is already touching are ignored, so a wheel resting
+     * on the ground can be cast along it.
+     * @return The hit, or null if the circle doesn't hit anything.
+     */
+    public RaycastHit shapeCast(Circle circle, VectorF motion) {
+        RaycastHit hit = new RaycastHit();
+        return shapeCast(circle, motion, hit) ? hit : null;
+    }
+
+    /**
+     * Same as `shapeCast(Circle, VectorF)` but stores the hit in `hit`, so that no memory is
+     * allocated.
+     * @return Whether the circle hit anything.
+     */
+    public boolean shapeCast(Circle circle, VectorF motion, RaycastHit hit) {
+        if (staticGridDirty) {
+            rebuildStaticIndex();
+        }
+        float dx = motion.x;
+        float dy = motion.y;
+        float distance = (float)Math.sqrt(dx * dx + dy * dy);
+        AABB box = circle.getAABB();
+        float minX = box.minX + Math.min(dx, 0);
+        float minY = box.minY + Math.min(dy, 0);
+        float maxX = box.maxX + Math.max(dx, 0);
+        float maxY = box.maxY + Math.max(dy, 0);
+        staticGrid.query(minX, minY, maxX, maxY, gameQuery);
+        float best = shapeCast(staticBodies, gameQuery, circle, dx, dy, distance, -1, hit);
+        kinematicGrid.query(minX, minY, maxX, maxY, gameQuery);
+        best = shapeCast(kinematicBodies, gameQuery, circle, dx, dy, distance, best, hit);
+        return best >= 0;
+    }
+
+    /**
+     * Casts the circle against the bodies in `query`, storing the hit in `hit` if it is
+     * closer than `best`.
+     * @return The fraction of the closest hit so far, -1 if there is none.
+     */
+    private float shapeCast(ArrayList<? extends StaticBody> bodies, StaticGrid.Query query,
+                            Circle circle, float dx, float dy, float distance, float best,
+                            RaycastHit hit) {
+        for (int i = 0; i < query.count; i++) {
+            StaticBody sb = bodies.get(query.results[i]);
+            float t = circle.timeOfImpact(sb.getBoundingShape(), dx, dy, 0, castNormal);
+            if (t >= 0 && (best < 0 || t < best)) {
+                best = t;
+                VectorF center = circle.getCenter();
+                float radius = circle.getRadius();
+                hit.set(center.x + dx * t - castNormal.x * radius,
+                        center.y + dy * t - castNormal.y * radius,
+                        castNormal.x, castNormal.y, t, t * distance, sb);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Sets how many iterations the solver performs on the contacts and constraints during each
+     * step. More iterations make the bike more stable (especially at low update rates), but
+     * use more CPU time.
+     */
+    public void setSolverIterations(int iterations) {
+        solverIterations = Math.max(1, iterations);
+    }
+
+    public int getSolverIterations() {
+        return solverIterations;
+    }
+
+    /**
+     * Sets the most sub-steps which a fast body is split into during each step. Fewer
+     * sub-steps save CPU time, the continuous collision detection still stops the bodies from
+     * tunnelling through thin static bodies but their collisions become less accurate.
+     */
+    public void setMaxSubSteps(int subSteps) {
+        subStepLimit = Math.max(1, subSteps);
+    }
+
+    public int getMaxSubSteps() {
+        return subStepLimit;
+    }
+
+    /**
+     * Creates a new Snapshot of this simulation's current state. See `saveSnapshot`.
+     */
+    public Snapshot createSnapshot() {
+        Snapshot snapshot = new Snapshot();
+        saveSnapshot(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Copies the state of every dynamic and kinematic body and every constraint into
+     * `snapshot`, reusing its memory. This includes the bodies' positions, velocities,
+     * rotations, torques and gravity flags, as well as which constraints are part of the
+     * simulation. The static bodies are not saved.
+     */
+    public void saveSnapshot(Snapshot snapshot) {
+        snapshot.ensureCapacity(bodyStore.count, constraints.size(),
+                solver.getCachedContactCount(), kinematicBodies.size());
+        snapshot.tick = tick;
+        bodyStore.save(snapshot);
+        snapshot.kinematicCount = kinematicBodies.size();
+        for (int k = 0; k < kinematicBodies.size(); k++) {
+            KinematicBody kBody = kinematicBodies.get(k);
+            snapshot.kinematicState[k*4] = kBody.offsetX;
+            snapshot.kinematicState[k*4 + 1] = kBody.offsetY;
+            snapshot.kinematicState[k*4 + 2] = kBody.getVelocity().x;
+            snapshot.kinematicState[k*4 + 3] = kBody.getVelocity().y;
+        }
+        snapshot.constraintCount = constraints.size();
+        for (int i = 0; i < constraints.size(); i++) {
+            snapshot.constraints[i] = constraints.get(i);
+            snapshot.constraintImpulse[i] = constraints.get(i).getImpulse();
+        }
+        solver.save(snapshot);
+    }
+
+    /**
+     * Puts this simulation back into the state saved in `snapshot`, after which it continues
+     * exactly like it did after the snapshot was saved. Bodies can't be removed, so this
+     * Simulator must not have gained any dynamic or kinematic bodies since.
+     */
+    public void restoreSnapshot(Snapshot snapshot) {
+        if (snapshot.bodyCount != bodyStore.count) {
+            throw new IllegalArgumentException("The snapshot has " + snapshot.bodyCount +
+                    " dynamic bodies, but the Simulator has " + bodyStore.count + ".");
+        }
+        if (snapshot.kinematicCount != kinematicBodies.size()) {
+            throw new IllegalArgumentException("The snapshot has " + snapshot.kinematicCount +
+                    " kinematic bodies, but the Simulator has " + kinematicBodies.size() + ".");
+        }
+        tick = snapshot.tick;
+        bodyStore.restore(snapshot);
+        for (int k = 0; k < kinematicBodies.size(); k++) {
+            KinematicBody kBody = kinematicBodies.get(k);
+            kBody.moveBy(snapshot.kinematicState[k*4] - kBody.offsetX,
+                    snapshot.kinematicState[k*4 + 1] - kBody.offsetY);
+            kBody.setVelocity(snapshot.kinematicState[k*4 + 2],
+                    snapshot.kinematicState[k*4 + 3]);
+            kinematicGrid.update(k, kBody.getShape().getAABB());
+        }
+        constraints.clear();
+        for (int i = 0; i < snapshot.constraintCount; i++) {
+            constraints.add(snapshot.constraints[i]);
+            snapshot.constraints[i].setImpulse(snapshot.constraintImpulse[i]);
+        }
+        updateConstrainedPairs();
+        solver.restore(snapshot);
+        // The last step's contacts no longer belong to the bodies.
+        for (int d = 0; d < dynamicBodies.size(); d++) {
+            dynamicBodies.get(d).setLastContacts(contacts, 0, 0);
+        }
+    }
+
+    /**
+     * Returns the number of steps which this Simulator has performed.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Returns the amount of time (in seconds) which this Simulator has simulated. This is the
+     * clock used for everything time based in the simulation.
+     */
+    public double getTime() {
+        return bodyStore.time;
+    }
+
+    /**
+     * Sets the time (in seconds) which each of this Simulator's steps simulates, for
+     * Simulators which are stepped at a different rate than the game, like the one run by a
+     * `PhysicsThread`. Pass 0 to go back to using the global update rate (see
+     * `setUpdateRate`).
+     */
+    public void setStepTime(float seconds) {
+        stepTime = Math.max(0, seconds);
+    }
+
+    public float getStepTime() {
+        return stepTime > 0 ? stepTime : calcUpdateFactor(0);
+    }
+
+    /**
+     * Sets the downwards acceleration (in px/s²) of bodies which are in the air. Defaults to
+     * `gravityScaled`.
+     */
+    public void setGravity(float gravity) {
+        bodyStore.gravityScaled = gravity;
+    }
+
+    public float getGravity() {
+        return bodyStore.gravityScaled;
+    }
+
+    /**
+     * Sets the percentage of velocity which bodies lose to air resistance. Defaults to
+     * `airResistance`.
+     */
+    public void setAirResistance(float airResistance) {
+        bodyStore.airResistance = airResistance;
+    }
+
+    public float getAirResistance() {
+        return bodyStore.airResistance;
+    }
+
+    /**
+     * Sets the percentage of angular velocity preserved when bodies hit the ground. Defaults
+     * to `angularVelPreserved`.
+     */
+    public void setAngularVelPreserved(float angularVelPreserved) {
+        bodyStore.angularVelPreserved = angularVelPreserved;
+    }
+
+    public float getAngularVelPreserved() {
+        return bodyStore.angularVelPreserved;
+    }
+
+    /**
+     * Calculates a hash of the whole state of this simulation: the clock, every dynamic and
+     * kinematic body, every constraint and the impulses cached by the solver. Two Simulators
+     * which were set up the same way and given the same input have the same hash after each
+     * step. This is cheap enough to be called after every step.
+     *
+     * The static bodies are not included, they are assumed to be the same level.
+     */
+    public long stateHash() {
+        long hash = fnvOffsetBasis;
+        hash = hash(hash, tick);
+        hash = hash(hash, Double.doubleToLongBits(bodyStore.time));
+        hash = bodyStore.hash(hash);
+        for (int k = 0; k < kinematicBodies.size(); k++) {
+            KinematicBody kBody = kinematicBodies.get(k);
+            hash = hash(hash, kBody.offsetX);
+            hash = hash(hash, kBody.offsetY);
+            hash = hash(hash, kBody.getVelocity().x);
+            hash = hash(hash, kBody.getVelocity().y);
+        }
+        hash = hash(hash, constraints.size());
+        for (int i = 0; i < constraints.size(); i++) {
+            hash = constraints.get(i).hash(hash);
+        }
+        return solver.hash(hash);
+    }
+
+    // Constants of the 64 bit FNV-1a hash: http://www.isthe.com/chongo/tech/comp/fnv/
+    private static final long fnvOffsetBasis = 0xcbf29ce484222325L;
+    private static final long fnvPrime = 0x100000001b3L;
+
+    /**
+     * Mixes `value` into `hash`. This is FNV-1a, but working on ints instead of bytes.
+     */
+    static long hash(long hash, int value) {
+        return (hash ^ (value & 0xffffffffL)) * fnvPrime;
+    }
+
+    static long hash(long hash, long value) {
+        return hash(hash(hash, (int)value), (int)(value >>> 32));
+    }
+
+    static long hash(long hash, float value) {
+        return hash(hash, Float.floatToIntBits(value));
+    }
+
     /**
      * Calculates the update factor based on the update rate stored in this class.
      *
      * I decided against reusing GameLoop.targetFPS, as this allows for the update rate to be
-     * independent of the frame rate.
+     * independent of the frame rate. The GameLoop runs fixed steps of `GameLoop.stepMs`, so
+     * at the default update rate each step simulates exactly the time that passed.
      * @param lastUpdate This isn't used, but passed in case it becomes useful later on.
      */
     public static float calcUpdateFactor(float lastUpdate) {
@@ -0,0 +1,92 @@
+package com.dragonfruitstudios.brokenbonez.Math.Physics;
+
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Line;
+
+import java.util.Arrays;
+
+/**
+ * Holds a copy of the state of a Simulator's dynamic and kinematic bodies and constraints,
+ * taken with `Simulator.saveSnapshot` and put back with `Simulator.restoreSnapshot`.
+ *
+ * The state is stored in primitive arrays which are reused when the same Snapshot is saved
+ * into again, so saving and restoring doesn't allocate memory once the arrays are large enough.
+ * Static bodies are not part of a snapshot.
+ */
+public class Snapshot {
+    // The amount of floats stored per body in `bodyState`.
+    static final int bodyStride = 15;
+
+    long tick;
+    double time;
+    int bodyCount;
+    // posX, posY, velX, velY, accX, accY, rotation, angularVelocity, angularAcceleration,
+    // torque, stillTime, contactX, contactY, lastContactX and lastContactY of each body.
+    float[] bodyState = new float[0];
+    double[] lastTimeOnGround = new double[0];
+    // hasGravity, asleep and sleptOnGround of each body, as bit flags.
+    byte[] bodyFlags = new byte[0];
+
+    // The constraints which were part of the simulation and their warm start impulses.
+    int constraintCount;
+    Constraint[] constraints = new Constraint[0];
+    float[] constraintImpulse = new float[0];
+
+    // The solver's cached contact impulses, so that the simulation continues exactly like it
+    // did after the snapshot was saved.
+    int contactCount;
+    // The contacts of body `d` are between `contactStart[d]` and `contactStart[d + 1]`, for
+    // the first `contactBodyCount` bodies.
+    int contactBodyCount;
+    int[] contactStart = new int[0];
+    // normalX, normalY, impulse and penetration of each contact.
+    float[] contactState = new float[0];
+    Body[] contactOther = new Body[0];
+    Line[] contactLine = new Line[0];
+    int[] contactAge = new int[0];
+
+    // offsetX, offsetY, velocityX and velocityY of each kinematic body.
+    int kinematicCount;
+    float[] kinematicState = new float[0];
+
+    /**
+     * Makes sure that the arrays can hold the specified amounts of state.
+     */
+    void ensureCapacity(int bodyCount, int constraintCount, int contactCount,
+                        int kinematicCount) {
+        if (bodyFlags.length < bodyCount) {
+            bodyState = Arrays.copyOf(bodyState, bodyCount * bodyStride);
+            lastTimeOnGround = Arrays.copyOf(lastTimeOnGround, bodyCount);
+            bodyFlags = Arrays.copyOf(bodyFlags, bodyCount);
+        }
+        if (contactStart.length < bodyCount + 1) {
+            contactStart = Arrays.copyOf(contactStart, bodyCount + 1);
+        }
+        if (constraints.length < constraintCount) {
+            constraints = Arrays.copyOf(constraints, constraintCount);
+            constraintImpulse = Arrays.copyOf(constraintImpulse, constraintCount);
+        }
+        if (contactOther.length < contactCount) {
+            contactState = Arrays.copyOf(contactState, contactCount * 4);
+            contactOther = Arrays.copyOf(contactOther, contactCount);
+            contactLine = Arrays.copyOf(contactLine, contactCount);
+            contactAge = Arrays.copyOf(contactAge, contactCount);
+        }
+        if (kinematicState.length < kinematicCount * 4) {
+            kinematicState = Arrays.copyOf(kinematicState, kinematicCount * 4);
+        }
+    }
+
+    /**
+     * Returns the Simulator's step count when this snapshot was saved.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Returns the Simulator's time (in seconds) when this snapshot was saved.
+     */
+    public double getTime() {
+        return time;
+    }
+}
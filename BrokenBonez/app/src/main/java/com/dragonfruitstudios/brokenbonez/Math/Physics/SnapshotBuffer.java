@@ -0,0 +1,76 @@
+package com.dragonfruitstudios.brokenbonez.Math.Physics;
+
+/**
+ * A ring buffer of the most recent Snapshots of a Simulator. Recording a snapshot every step
+ * allows the simulation to be rewound by up to `capacity` steps, for example to replay the
+ * last few seconds before a crash or to restart a level without reloading it.
+ *
+ * The Snapshots are reused once the buffer is full, so recording doesn't allocate memory.
+ */
+public class SnapshotBuffer {
+    private Snapshot[] snapshots;
+    private int newest; // Index of the most recent snapshot.
+    private int size;
+
+    /**
+     * Creates a new buffer which holds up to `capacity` snapshots.
+     */
+    public SnapshotBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive.");
+        }
+        snapshots = new Snapshot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            snapshots[i] = new Snapshot();
+        }
+        newest = capacity - 1;
+    }
+
+    /**
+     * Saves the current state of `sim`, replacing the oldest snapshot when the buffer is full.
+     */
+    public void record(Simulator sim) {
+        newest = (newest + 1) % snapshots.length;
+        sim.saveSnapshot(snapshots[newest]);
+        size = Math.min(size + 1, snapshots.length);
+    }
+
+    /**
+     * Returns the snapshot recorded `stepsAgo` recordings ago, 0 being the most recent one.
+     */
+    public Snapshot get(int stepsAgo) {
+        if (stepsAgo < 0 || stepsAgo >= size) {
+            throw new IndexOutOfBoundsException("Only " + size + " snapshots are recorded.");
+        }
+        return snapshots[(newest - stepsAgo + snapshots.length) % snapshots.length];
+    }
+
+    /**
+     * Restores `sim` to the snapshot recorded `stepsAgo` recordings ago and forgets the
+     * snapshots recorded after it, so that recording can continue from there.
+     */
+    public void rewind(Simulator sim, int stepsAgo) {
+        sim.restoreSnapshot(get(stepsAgo));
+        newest = (newest - stepsAgo + snapshots.length) % snapshots.length;
+        size -= stepsAgo;
+    }
+
+    /**
+     * Restores `sim` to the oldest recorded snapshot.
+     */
+    public void rewindToOldest(Simulator sim) {
+        rewind(sim, size - 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return snapshots.length;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,475 @@
+package com.dragonfruitstudios.brokenbonez.Math.Physics;
+
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Line;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Manifold;
+import com.dragonfruitstudios.brokenbonez.Math.VectorF;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Sequential impulse solver. Solves the contacts between dynamic and static bodies together
+ * with the contacts and constraints between dynamic bodies, by repeatedly going through all of
+ * them and applying impulses to the bodies' velocities. Each iteration brings the velocities
+ * closer to satisfying everything at once, so more iterations give a more stable (but slower)
+ * simulation.
+ *
+ * The contacts of each step are remembered, keyed by the dynamic body, the static body and the
+ * Line which they are with. A contact found again in the next step starts with the impulse
+ * that was applied to it (warm starting). Resting contacts and the bike's wheels need roughly
+ * the same impulses every step, so few iterations are needed. The remembered contacts also
+ * let the Simulator skip the narrowphase for bodies which have barely moved, see
+ * `addCachedContacts`.
+ *
+ * More information about this technique is available in Erin Catto's "Iterative Dynamics with
+ * Temporal Coherence": http://box2d.org/files/GDC2005/IterativeDynamics.pdf
+ */
+class Solver {
+    // Contacts moving into a surface slower than this (in px/s) don't bounce. This stops
+    // resting bodies from jittering.
+    static final float restitutionThreshold = 20f;
+    // Contacts which aren't with the same Line as one of the previous step's contacts are
+    // matched with a contact with the same body whose normal is closer than this (cosine of the
+    // angle between them). This carries the impulse over when a wheel rolls from one short
+    // segment onto the next.
+    static final float warmStartNormalTolerance = 0.9f;
+
+    // The contacts being solved, indexed like the Manifold.Collection that they came from.
+    private int[] body;
+    private float[] normalX;
+    private float[] normalY;
+    private float[] targetVelocity; // The velocity along the normal the contact aims for.
+    // The velocity of the other body's surface along the normal, only non-zero for kinematic
+    // bodies. Velocities along the normal are relative to it.
+    private float[] surfaceVelocity;
+    private float[] impulse; // The total impulse applied to the contact during this step.
+    private float[] penetration;
+    private Body[] other; // The static body which the contact is with.
+    private Line[] line; // The Line which the contact is with, null if not known.
+    private int[] age; // How many consecutive steps before this one the contact existed in.
+
+    // Contacts between two dynamic bodies, found by the Simulator's SweepAndPrune. The normal
+    // points from `pairBodyA` towards `pairBodyB`. These aren't warm started.
+    private int pairCount;
+    private int[] pairBodyA;
+    private int[] pairBodyB;
+    private float[] pairNormalX;
+    private float[] pairNormalY;
+    private float[] pairTargetVelocity;
+    private float[] pairImpulse;
+
+    // The contacts solved during the last step, used for warm starting. The contacts of
+    // dynamic body `d` are stored between `prevStart[d]` and `prevStart[d + 1]`.
+    private int[] prevStart;
+    private int prevBodyCount;
+    private float[] prevNormalX;
+    private float[] prevNormalY;
+    private float[] prevImpulse;
+    private float[] prevPenetration;
+    private Body[] prevOther;
+    private Line[] prevLine;
+    private int[] prevAge;
+
+    Solver() {
+        body = new int[0];
+        normalX = new float[0];
+        normalY = new float[0];
+        targetVelocity = new float[0];
+        surfaceVelocity = new float[0];
+        impulse = new float[0];
+        penetration = new float[0];
+        other = new Body[0];
+        line = new Line[0];
+        age = new int[0];
+        pairBodyA = new int[0];
+        pairBodyB = new int[0];
+        pairNormalX = new float[0];
+        pairNormalY = new float[0];
+        pairTargetVelocity = new float[0];
+        pairImpulse = new float[0];
+        prevStart = new int[1];
+        prevNormalX = new float[0];
+        prevNormalY = new float[0];
+        prevImpulse = new float[0];
+        prevPenetration = new float[0];
+        prevOther = new Body[0];
+        prevLine = new Line[0];
+        prevAge = new int[0];
+    }
+
+    /**
+     * Solves all the contacts in `contacts` together with the specified constraints. The
+     * contacts of body `d` are those between `contactStart[d]` and `contactStart[d + 1]`.
+     * Constraints between sleeping bodies are skipped.
+     */
+    void solve(BodyStore store, Manifold.Collection contacts, int[] contactStart, int bodyCount,
+               ArrayList<Constraint> constraints, int iterations, float updateFactor) {
+        int count = contacts.size();
+        ensureCapacity(count);
+        for (int d = 0; d < bodyCount; d++) {
+            for (int i = contactStart[d]; i < contactStart[d + 1]; i++) {
+                prepareContact(store, d, i, contacts.get(i));
+                warmStart(store, d, i);
+            }
+        }
+        for (int i = 0; i < constraints.size(); i++) {
+            Constraint constraint = constraints.get(i);
+            if (!store.asleep[constraint.bodyA.id]) {
+                constraint.prepare(updateFactor);
+            }
+        }
+
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            for (int i = 0; i < constraints.size(); i++) {
+                Constraint constraint = constraints.get(i);
+                if (!store.asleep[constraint.bodyA.id]) {
+                    constraint.solve();
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                solveContact(store, i);
+            }
+            for (int i = 0; i < pairCount; i++) {
+                solvePairContact(store, i);
+            }
+        }
+
+        rememberContacts(contactStart, bodyCount);
+    }
+
+    /**
+     * Forgets the contacts between dynamic bodies from the last step.
+     */
+    void clearPairContacts() {
+        pairCount = 0;
+    }
+
+    /**
+     * Adds a contact between dynamic bodies `a` and `b` to be solved in the next call to
+     * `solve`. The normal points from `a` towards `b`.
+     *
+     * The bodies don't have to be touching yet: when they are `separation` px apart the contact
+     * is speculative, and only stops them from closing more than that gap during the next
+     * `updateFactor`. Fast bodies therefore can't pass through each other in a single step.
+     */
+    void addPairContact(BodyStore store, int a, int b, float normalX, float normalY,
+                        float separation, float restitution, float updateFactor) {
+        if (pairCount == pairBodyA.length) {
+            int capacity = Math.max(8, pairCount * 2);
+            pairBodyA = Arrays.copyOf(pairBodyA, capacity);
+            pairBodyB = Arrays.copyOf(pairBodyB, capacity);
+            pairNormalX = Arrays.copyOf(pairNormalX, capacity);
+            pairNormalY = Arrays.copyOf(pairNormalY, capacity);
+            pairTargetVelocity = Arrays.copyOf(pairTargetVelocity, capacity);
+            pairImpulse = Arrays.copyOf(pairImpulse, capacity);
+        }
+        int i = pairCount++;
+        pairBodyA[i] = a;
+        pairBodyB[i] = b;
+        pairNormalX[i] = normalX;
+        pairNormalY[i] = normalY;
+        pairImpulse[i] = 0;
+        // Positive when the bodies are moving towards each other.
+        float velAlongNormal = (store.velX[a] - store.velX[b]) * normalX +
+                (store.velY[a] - store.velY[b]) * normalY;
+        if (separation > 0) {
+            pairTargetVelocity[i] = separation / updateFactor;
+        }
+        else {
+            pairTargetVelocity[i] = velAlongNormal > restitutionThreshold ?
+                    -restitution * velAlongNormal : 0;
+        }
+    }
+
+    int getPairContactCount() {
+        return pairCount;
+    }
+
+    private void solvePairContact(BodyStore store, int i) {
+        int a = pairBodyA[i];
+        int b = pairBodyB[i];
+        float velAlongNormal = (store.velX[a] - store.velX[b]) * pairNormalX[i] +
+                (store.velY[a] - store.velY[b]) * pairNormalY[i];
+        float inverseMassA = store.pairInverseMass(a);
+        float inverseMassB = store.pairInverseMass(b);
+        float change = (velAlongNormal - pairTargetVelocity[i]) / (inverseMassA + inverseMassB);
+        float newImpulse = Math.max(pairImpulse[i] + change, 0);
+        change = newImpulse - pairImpulse[i];
+        pairImpulse[i] = newImpulse;
+
+        store.velX[a] -= pairNormalX[i] * change * inverseMassA;
+        store.velY[a] -= pairNormalY[i] * change * inverseMassA;
+        store.velX[b] += pairNormalX[i] * change * inverseMassB;
+        store.velY[b] += pairNormalY[i] * change * inverseMassB;
+    }
+
+    /**
+     * Solves the contacts of body `id` between `first` (inclusive) and `end` (exclusive) on
+     * their own, without warm starting. Used for the sub-steps of fast bodies.
+     */
+    void solve(BodyStore store, int id, Manifold.Collection contacts, int first, int end,
+               int iterations) {
+        ensureCapacity(end);
+        for (int i = first; i < end; i++) {
+            prepareContact(store, id, i, contacts.get(i));
+        }
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            for (int i = first; i < end; i++) {
+                solveContact(store, i);
+            }
+        }
+    }
+
+    private void ensureCapacity(int count) {
+        body = grow(body, count);
+        normalX = grow(normalX, count);
+        normalY = grow(normalY, count);
+        targetVelocity = grow(targetVelocity, count);
+        surfaceVelocity = grow(surfaceVelocity, count);
+        impulse = grow(impulse, count);
+        penetration = grow(penetration, count);
+        age = grow(age, count);
+        if (other.length < count) {
+            other = Arrays.copyOf(other, Math.max(count, other.length * 2));
+        }
+        if (line.length < count) {
+            line = Arrays.copyOf(line, Math.max(count, line.length * 2));
+        }
+    }
+
+    private static int[] grow(int[] array, int count) {
+        return array.length < count ? Arrays.copyOf(array, Math.max(count, array.length * 2)) :
+                array;
+    }
+
+    private static float[] grow(float[] array, int count) {
+        return array.length < count ? Arrays.copyOf(array, Math.max(count, array.length * 2)) :
+                array;
+    }
+
+    private void prepareContact(BodyStore store, int id, int i, Manifold manifold) {
+        VectorF normal = manifold.getNormal();
+        body[i] = id;
+        normalX[i] = normal.x;
+        normalY[i] = normal.y;
+        other[i] = manifold.getFirstBody();
+        line[i] = manifold.getLine();
+        penetration[i] = manifold.getPenetration();
+        impulse[i] = 0;
+        age[i] = 0;
+
+        // The formula used to calculate the impulse is defined here:
+        // http://gamedevelopment.tutsplus.com/tutorials/how-to-create-a-custom-2d-physics-engine-the-basics-and-impulse-resolution--gamedev-6331
+        // The Impulse Engine (which the article above describes) was a great resource for
+        // understanding the way that Physics Engines are implemented, but please keep in
+        // mind that there was no code taken from it verbatim.
+
+        // Calculate restitution: ratio of how much energy remains to how much is lost.
+        // https://en.wikipedia.org/wiki/Coefficient_of_restitution
+        // Affects bounciness. The minimum of the colliding bodies is used.
+        float e = Math.min(manifold.getFirstBody().getRestitution(),
+                manifold.getSecondBody().getRestitution());
+        // A kinematic body's surface moves, so the velocities are relative to it.
+        surfaceVelocity[i] = other[i] instanceof KinematicBody ?
+                ((KinematicBody)other[i]).velocityAlong(normal.x, normal.y) : 0;
+        // The normal points towards the surface, so a positive velocity along it means that
+        // the body is moving into the surface.
+        float velAlongNormal = store.velX[id] * normal.x + store.velY[id] * normal.y -
+                surfaceVelocity[i];
+        targetVelocity[i] = velAlongNormal > restitutionThreshold ? -e * velAlongNormal : 0;
+    }
+
+    /**
+     * Applies the impulse of the matching contact from the last step to contact `i`.
+     */
+    private void warmStart(BodyStore store, int id, int i) {
+        int match = findCachedContact(id, i);
+        if (match < 0) {
+            return;
+        }
+        if (line[i] != null && prevLine[match] == line[i]) {
+            // The same contact as in the last step. It is resting or rolling rather than
+            // hitting the surface, so it shouldn't bounce.
+            age[i] = prevAge[match] + 1;
+            targetVelocity[i] = 0;
+        }
+        impulse[i] = prevImpulse[match];
+        store.velX[id] -= normalX[i] * impulse[i] * store.inverseMass[id];
+        store.velY[id] -= normalY[i] * impulse[i] * store.inverseMass[id];
+    }
+
+    /**
+     * Finds the contact from the last step which contact `i` of body `id` continues: the one
+     * with the same Line if there is one, otherwise one with a similar normal.
+     * @return The index of the cached contact, or -1 if there is none.
+     */
+    private int findCachedContact(int id, int i) {
+        if (id >= prevBodyCount) {
+            return -1;
+        }
+        int similar = -1;
+        for (int p = prevStart[id]; p < prevStart[id + 1]; p++) {
+            if (prevOther[p] != other[i]) {
+                continue;
+            }
+            if (line[i] != null && prevLine[p] == line[i]) {
+                return p;
+            }
+            if (similar < 0 && prevNormalX[p] * normalX[i] +
+                    prevNormalY[p] * normalY[i] > warmStartNormalTolerance) {
+                similar = p;
+            }
+        }
+        return similar;
+    }
+
+    private void solveContact(BodyStore store, int i) {
+        int id = body[i];
+        float velAlongNormal = store.velX[id] * normalX[i] + store.velY[id] * normalY[i] -
+                surfaceVelocity[i];
+        // Calculate the impulse needed to reach the target velocity. The total impulse must
+        // never pull the body towards the surface, so it is clamped to be positive.
+        float change = (velAlongNormal - targetVelocity[i]) / store.inverseMass[id];
+        float newImpulse = Math.max(impulse[i] + change, 0);
+        change = newImpulse - impulse[i];
+        impulse[i] = newImpulse;
+
+        store.velX[id] -= normalX[i] * change * store.inverseMass[id];
+        store.velY[id] -= normalY[i] * change * store.inverseMass[id];
+    }
+
+    /**
+     * Returns whether body `id` was part of the last step, so that its contacts from that step
+     * are cached. Sleeping bodies have no contacts.
+     */
+    boolean hasCachedContacts(int id) {
+        return id < prevBodyCount;
+    }
+
+    /**
+     * Adds the contacts of body `id` from the last step to `result` instead of running the
+     * narrowphase again. The body has moved by (dx, dy) since then, which changes how deep
+     * it penetrates the surfaces; contacts which it has moved out of are left out.
+     */
+    void addCachedContacts(int id, DynamicBody body, float dx, float dy,
+                           Manifold.Collection result) {
+        for (int p = prevStart[id]; p < prevStart[id + 1]; p++) {
+            float depth = prevPenetration[p] + dx * prevNormalX[p] + dy * prevNormalY[p];
+            if (depth >= 0) {
+                result.add(prevNormalX[p], prevNormalY[p], depth, prevLine[p]);
+                Manifold manifold = result.get(result.size() - 1);
+                manifold.setFirstBody(prevOther[p]);
+                manifold.setSecondBody(body);
+            }
+        }
+    }
+
+    /**
+     * Returns the amount of contacts which are cached for warm starting.
+     */
+    int getCachedContactCount() {
+        return prevStart[prevBodyCount];
+    }
+
+    /**
+     * Copies the contacts cached for warm starting into `snapshot`, which must be large enough.
+     */
+    void save(Snapshot snapshot) {
+        int count = getCachedContactCount();
+        System.arraycopy(prevStart, 0, snapshot.contactStart, 0, prevBodyCount + 1);
+        for (int i = 0; i < count; i++) {
+            snapshot.contactState[i*4] = prevNormalX[i];
+            snapshot.contactState[i*4 + 1] = prevNormalY[i];
+            snapshot.contactState[i*4 + 2] = prevImpulse[i];
+            snapshot.contactState[i*4 + 3] = prevPenetration[i];
+            snapshot.contactOther[i] = prevOther[i];
+            snapshot.contactLine[i] = prevLine[i];
+            snapshot.contactAge[i] = prevAge[i];
+        }
+        snapshot.contactCount = count;
+        snapshot.contactBodyCount = prevBodyCount;
+    }
+
+    /**
+     * Puts the contacts cached for warm starting stored in `snapshot` back.
+     */
+    void restore(Snapshot snapshot) {
+        int count = snapshot.contactCount;
+        prevBodyCount = snapshot.contactBodyCount;
+        if (prevStart.length < prevBodyCount + 1) {
+            prevStart = new int[prevBodyCount + 1];
+        }
+        System.arraycopy(snapshot.contactStart, 0, prevStart, 0, prevBodyCount + 1);
+        prevNormalX = grow(prevNormalX, count);
+        prevNormalY = grow(prevNormalY, count);
+        prevImpulse = grow(prevImpulse, count);
+        prevPenetration = grow(prevPenetration, count);
+        prevAge = grow(prevAge, count);
+        if (prevOther.length < count) {
+            prevOther = Arrays.copyOf(prevOther, count);
+        }
+        if (prevLine.length < count) {
+            prevLine = Arrays.copyOf(prevLine, count);
+        }
+        for (int i = 0; i < count; i++) {
+            prevNormalX[i] = snapshot.contactState[i*4];
+            prevNormalY[i] = snapshot.contactState[i*4 + 1];
+            prevImpulse[i] = snapshot.contactState[i*4 + 2];
+            prevPenetration[i] = snapshot.contactState[i*4 + 3];
+            prevOther[i] = snapshot.contactOther[i];
+            prevLine[i] = snapshot.contactLine[i];
+            prevAge[i] = snapshot.contactAge[i];
+        }
+    }
+
+    /**
+     * Mixes the impulses which will be used to warm start the next step into `hash`, see
+     * `Simulator.stateHash`.
+     */
+    long hash(long hash) {
+        int count = prevStart[prevBodyCount];
+        hash = Simulator.hash(hash, count);
+        for (int i = 0; i < count; i++) {
+            hash = Simulator.hash(hash, prevNormalX[i]);
+            hash = Simulator.hash(hash, prevNormalY[i]);
+            hash = Simulator.hash(hash, prevImpulse[i]);
+            hash = Simulator.hash(hash, prevPenetration[i]);
+            hash = Simulator.hash(hash, prevAge[i]);
+        }
+        return hash;
+    }
+
+    /**
+     * Saves the contacts of this step so that the next step can be warm started.
+     */
+    private void rememberContacts(int[] contactStart, int bodyCount) {
+        if (prevStart.length < bodyCount + 1) {
+            prevStart = new int[contactStart.length];
+        }
+        System.arraycopy(contactStart, 0, prevStart, 0, bodyCount + 1);
+        prevBodyCount = bodyCount;
+
+        // Swap the arrays rather than copying them.
+        float[] tempFloats = prevNormalX;
+        prevNormalX = normalX;
+        normalX = tempFloats;
+        tempFloats = prevNormalY;
+        prevNormalY = normalY;
+        normalY = tempFloats;
+        tempFloats = prevImpulse;
+        prevImpulse = impulse;
+        impulse = tempFloats;
+        tempFloats = prevPenetration;
+        prevPenetration = penetration;
+        penetration = tempFloats;
+        Body[] tempBodies = prevOther;
+        prevOther = other;
+        other = tempBodies;
+        Line[] tempLines = prevLine;
+        prevLine = line;
+        line = tempLines;
+        int[] tempInts = prevAge;
+        prevAge = age;
+        age = tempInts;
+    }
+}
@@ -44,12 +44,20 @@ public class StaticBody extends Body {
     }
 
     Manifold.Collection collisionTest(DynamicBody dBody) {
-        Manifold.Collection result = dBody.getBoundingShape().collisionTest(boundingShape);
-        result.setFirstBody(this);
-        result.setSecondBody(dBody);
+        Manifold.Collection result = new Manifold.Collection();
+        collisionTest(dBody, result);
         return result;
     }
 
+    /**
+     * Tests the specified body against this body and adds any collisions to `result`.
+     */
+    void collisionTest(DynamicBody dBody, Manifold.Collection result) {
+        int start = result.size();
+        dBody.getBoundingShape().collisionTest(boundingShape, result);
+        result.setBodies(this, dBody, start);
+    }
+
     public VectorF getPos() {
         return boundingShape.getPos();
     }
@@ -0,0 +1,204 @@
+package com.dragonfruitstudios.brokenbonez.Math.Physics;
+
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.AABB;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A uniform grid which holds the AABBs of a Simulator's static bodies. It is used as a
+ * broadphase: instead of testing every dynamic body against every static body, each dynamic body
+ * only looks at the static bodies registered in the cells that its AABB overlaps.
+ *
+ * The grid is built once (static bodies do not move) and is stored in a packed form, every cell
+ * is a range in the `cellBodies` array. This keeps queries fast and allocation free.
+ */
+class StaticGrid {
+    // The default width/height of a cell. A wheel is 40px wide so it usually overlaps 1-4 cells.
+    static final float defaultCellSize = 128f;
+    // Upper bound on the amount of cells, the cell size is increased to stay below this.
+    static final int maxCells = 1 << 16;
+
+    private float cellSize;
+    private float originX;
+    private float originY;
+    private int columns;
+    private int rows;
+
+    // `cellStart[i]` to `cellStart[i+1]` is the range in `cellBodies` which belongs to cell `i`.
+    private int[] cellStart;
+    private int[] cellBodies;
+
+    // Copies of the bodies' AABBs, taken when the grid was built.
+    private float[] minX;
+    private float[] minY;
+    private float[] maxX;
+    private float[] maxY;
+    private int bodyCount;
+
+    StaticGrid() {
+        cellStart = new int[1];
+        cellBodies = new int[0];
+        minX = minY = maxX = maxY = new float[0];
+    }
+
+    /**
+     * Builds the grid from the specified static bodies. The index of each body in the list is
+     * what queries report.
+     */
+    void build(ArrayList<StaticBody> bodies) {
+        bodyCount = bodies.size();
+        minX = new float[bodyCount];
+        minY = new float[bodyCount];
+        maxX = new float[bodyCount];
+        maxY = new float[bodyCount];
+
+        // Find the bounds of the whole grid.
+        AABB bounds = new AABB();
+        for (int i = 0; i < bodyCount; i++) {
+            AABB box = bodies.get(i).getBoundingShape().getAABB();
+            minX[i] = box.minX;
+            minY[i] = box.minY;
+            maxX[i] = box.maxX;
+            maxY[i] = box.maxY;
+            bounds.include(box.minX, box.minY);
+            bounds.include(box.maxX, box.maxY);
+        }
+
+        if (bodyCount == 0) {
+            columns = rows = 0;
+            cellStart = new int[1];
+            cellBodies = new int[0];
+            return;
+        }
+
+        // Grow the cell size until the grid fits within the cell budget.
+        cellSize = defaultCellSize;
+        originX = bounds.minX;
+        originY = bounds.minY;
+        while (true) {
+            columns = (int)(bounds.getWidth() / cellSize) + 1;
+            rows = (int)(bounds.getHeight() / cellSize) + 1;
+            if ((long)columns * rows <= maxCells) {
+                break;
+            }
+            cellSize *= 2;
+        }
+
+        // Count how many bodies fall into each cell, then turn the counts into offsets.
+        cellStart = new int[columns * rows + 1];
+        for (int i = 0; i < bodyCount; i++) {
+            for (int y = row(minY[i]); y <= row(maxY[i]); y++) {
+                for (int x = column(minX[i]); x <= column(maxX[i]); x++) {
+                    cellStart[y * columns + x + 1]++;
+                }
+            }
+        }
+        for (int i = 1; i < cellStart.length; i++) {
+            cellStart[i] += cellStart[i-1];
+        }
+
+        // Fill in the cells. Bodies are added in order, so each cell's list is sorted.
+        cellBodies = new int[cellStart[cellStart.length - 1]];
+        int[] fill = new int[columns * rows];
+        for (int i = 0; i < bodyCount; i++) {
+            for (int y = row(minY[i]); y <= row(maxY[i]); y++) {
+                for (int x = column(minX[i]); x <= column(maxX[i]); x++) {
+                    int cell = y * columns + x;
+                    cellBodies[cellStart[cell] + fill[cell]] = i;
+                    fill[cell]++;
+                }
+            }
+        }
+    }
+
+    private int column(float x) {
+        return Math.max(0, Math.min(columns - 1, (int)((x - originX) / cellSize)));
+    }
+
+    private int row(float y) {
+        return Math.max(0, Math.min(rows - 1, (int)((y - originY) / cellSize)));
+    }
+
+    /**
+     * Finds the static bodies whose AABB overlaps the specified box. The indices are stored in
+     * `query` sorted in ascending order, i.e. the order in which the bodies were added to the
+     * Simulator.
+     */
+    void query(float qMinX, float qMinY, float qMaxX, float qMaxY, Query query) {
+        query.begin(bodyCount);
+        if (columns == 0) {
+            return;
+        }
+
+        int startX = column(qMinX);
+        int endX = column(qMaxX);
+        int startY = row(qMinY);
+        int endY = row(qMaxY);
+        for (int y = startY; y <= endY; y++) {
+            for (int x = startX; x <= endX; x++) {
+                int cell = y * columns + x;
+                for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                    int body = cellBodies[i];
+                    // A body which spans multiple cells will be seen more than once.
+                    if (query.marks[body] == query.stamp) {
+                        continue;
+                    }
+                    query.marks[body] = query.stamp;
+                    if (minX[body] <= qMaxX && maxX[body] >= qMinX &&
+                            minY[body] <= qMaxY && maxY[body] >= qMinY) {
+                        query.add(body);
+                    }
+                }
+            }
+        }
+        query.sort();
+    }
+
+    int getBodyCount() {
+        return bodyCount;
+    }
+
+    /**
+     * Holds the results of a grid query along with the scratch memory needed to perform one.
+     * Each Simulator owns one of these so that queries do not allocate.
+     */
+    static class Query {
+        int[] results = new int[16];
+        int count;
+
+        // Used to avoid reporting the same body twice. A body is seen when its mark == stamp.
+        int[] marks = new int[0];
+        int stamp;
+
+        void begin(int bodyCount) {
+            count = 0;
+            if (marks.length < bodyCount) {
+                marks = new int[bodyCount];
+                stamp = 0;
+            }
+            stamp++;
+            if (stamp == Integer.MAX_VALUE) {
+                // Very unlikely, but make sure stale marks are not mistaken for new ones.
+                Arrays.fill(marks, 0);
+                stamp = 1;
+            }
+        }
+
+        void add(int body) {
+            if (count == results.length) {
+                results = Arrays.copyOf(results, count * 2);
+            }
+            results[count++] = body;
+        }
+
+        /**
+         * Sorts the results. Long raycasts and shape casts can gather hundreds of bodies, so
+         * this uses Arrays.sort (which already switches to an insertion sort for the tiny lists
+         * gathered during a step) rather than sorting them by hand.
+         */
+        void sort() {
+            Arrays.sort(results, 0, count);
+        }
+    }
+}
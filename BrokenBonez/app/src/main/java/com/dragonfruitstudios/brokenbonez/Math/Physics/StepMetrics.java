@@ -0,0 +1,148 @@
+package com.dragonfruitstudios.brokenbonez.Math.Physics;
+
+/**
+ * Counts the work done by a single `Simulator.update` call and times its phases. Metrics are
+ * only collected while a `Listener` is set with `Simulator.setMetricsListener`; otherwise
+ * stepping doesn't count or time anything.
+ *
+ * The same StepMetrics is passed to the listener after every step, so copy anything which
+ * needs to be kept around.
+ */
+public class StepMetrics {
+    public interface Listener {
+        /**
+         * Called at the end of each step.
+         */
+        void onStep(StepMetrics metrics);
+    }
+
+    long tick;
+    int awakeBodies;
+    int subSteps;
+    int candidatePairs;
+    int narrowphaseTests;
+    int reusedContacts;
+    int manifolds;
+    int constraintIterations;
+
+    long subStepNanos;
+    long collideNanos;
+    long solveNanos;
+    long integrateNanos;
+    long totalNanos;
+
+    void reset(long tick) {
+        this.tick = tick;
+        awakeBodies = 0;
+        subSteps = 0;
+        candidatePairs = 0;
+        narrowphaseTests = 0;
+        reusedContacts = 0;
+        manifolds = 0;
+        constraintIterations = 0;
+        subStepNanos = 0;
+        collideNanos = 0;
+        solveNanos = 0;
+        integrateNanos = 0;
+        totalNanos = 0;
+    }
+
+    // <editor-fold desc="Getters/Setters">
+
+    /**
+     * @return The Simulator's step count at the step which was measured.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * @return The number of dynamic bodies which were awake during the step.
+     */
+    public int getAwakeBodies() {
+        return awakeBodies;
+    }
+
+    /**
+     * @return The number of extra sub-steps performed for fast bodies.
+     */
+    public int getSubSteps() {
+        return subSteps;
+    }
+
+    /**
+     * @return The number of dynamic/static body pairs found by the broadphase, including the
+     * ones found for sub-steps and sweeps.
+     */
+    public int getCandidatePairs() {
+        return candidatePairs;
+    }
+
+    /**
+     * @return The number of collision tests and sweeps performed between the candidate pairs.
+     */
+    public int getNarrowphaseTests() {
+        return narrowphaseTests;
+    }
+
+    /**
+     * @return The number of bodies which reused their contacts from the last step instead of
+     * looking for new ones.
+     */
+    public int getReusedContacts() {
+        return reusedContacts;
+    }
+
+    /**
+     * @return The number of contacts (Manifolds) given to the solver, including sub-steps.
+     */
+    public int getManifolds() {
+        return manifolds;
+    }
+
+    /**
+     * @return The number of contacts and constraints solved, times the solver's iterations.
+     */
+    public int getConstraintIterations() {
+        return constraintIterations;
+    }
+
+    /**
+     * @return The time spent performing the sub-steps of fast bodies, in nanoseconds.
+     */
+    public long getSubStepNanos() {
+        return subStepNanos;
+    }
+
+    /**
+     * @return The time spent finding the contacts, in nanoseconds.
+     */
+    public long getCollideNanos() {
+        return collideNanos;
+    }
+
+    /**
+     * @return The time spent resolving penetration and solving the contacts and constraints,
+     * in nanoseconds.
+     */
+    public long getSolveNanos() {
+        return solveNanos;
+    }
+
+    /**
+     * @return The time spent on continuous collision detection, integrating and putting
+     * bodies to sleep, in nanoseconds.
+     */
+    public long getIntegrateNanos() {
+        return integrateNanos;
+    }
+
+    /**
+     * @return The time the whole step took, in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    // </editor-fold>
+}
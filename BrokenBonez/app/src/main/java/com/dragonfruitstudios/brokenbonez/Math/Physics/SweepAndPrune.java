@@ -0,0 +1,117 @@
+package com.dragonfruitstudios.brokenbonez.Math.Physics;
+
+import java.util.Arrays;
+
+/**
+ * Broadphase used to find the pairs of dynamic bodies which might collide with each other
+ * (sort and sweep). The bodies are kept sorted by the left edge of their AABB; sweeping along
+ * the x-axis then only needs to compare each body with the bodies which start before it ends.
+ * Levels are long and flat, so few bodies overlap along the x-axis.
+ *
+ * The bodies barely move between steps, so the order from the last step is almost sorted
+ * already. Insertion sort fixes it up in close to linear time.
+ */
+class SweepAndPrune {
+    // Body ids, sorted by `minX`.
+    private int[] order;
+    private int count;
+    // The bounds of each body, indexed by body id.
+    private float[] minX;
+    private float[] maxX;
+    private float[] minY;
+    private float[] maxY;
+
+    // The pairs found by `findPairs`, with `pairA[i] < pairB[i]`.
+    int[] pairA;
+    int[] pairB;
+    int pairCount;
+
+    SweepAndPrune() {
+        order = new int[0];
+        minX = maxX = minY = maxY = new float[0];
+        pairA = new int[8];
+        pairB = new int[8];
+    }
+
+    /**
+     * Finds the pairs of bodies whose AABBs, grown by the distance the bodies move during this
+     * step, overlap. Pairs in which both bodies are asleep are left out. The pairs are sorted by
+     * their body ids, so they don't depend on the order in which they were found.
+     */
+    void findPairs(BodyStore store, float updateFactor) {
+        if (order.length < store.count) {
+            order = Arrays.copyOf(order, store.count);
+            minX = Arrays.copyOf(minX, store.count);
+            maxX = Arrays.copyOf(maxX, store.count);
+            minY = Arrays.copyOf(minY, store.count);
+            maxY = Arrays.copyOf(maxY, store.count);
+        }
+        // Bodies are never removed, so new ones are appended.
+        while (count < store.count) {
+            order[count] = count;
+            count++;
+        }
+
+        for (int id = 0; id < count; id++) {
+            float dx = Math.abs(store.velX[id] * updateFactor);
+            float dy = Math.abs(store.velY[id] * updateFactor);
+            float extent = store.radius[id] + Simulator.contactSlop;
+            minX[id] = store.posX[id] - extent - dx;
+            maxX[id] = store.posX[id] + extent + dx;
+            minY[id] = store.posY[id] - extent - dy;
+            maxY[id] = store.posY[id] + extent + dy;
+        }
+
+        for (int i = 1; i < count; i++) {
+            int id = order[i];
+            float value = minX[id];
+            int j = i - 1;
+            while (j >= 0 && minX[order[j]] > value) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = id;
+        }
+
+        pairCount = 0;
+        for (int i = 0; i < count; i++) {
+            int a = order[i];
+            for (int j = i + 1; j < count && minX[order[j]] <= maxX[a]; j++) {
+                int b = order[j];
+                if (minY[a] <= maxY[b] && maxY[a] >= minY[b] &&
+                        !(store.asleep[a] && store.asleep[b])) {
+                    addPair(Math.min(a, b), Math.max(a, b));
+                }
+            }
+        }
+        sortPairs();
+    }
+
+    private void addPair(int a, int b) {
+        if (pairCount == pairA.length) {
+            pairA = Arrays.copyOf(pairA, pairCount * 2);
+            pairB = Arrays.copyOf(pairB, pairCount * 2);
+        }
+        pairA[pairCount] = a;
+        pairB[pairCount] = b;
+        pairCount++;
+    }
+
+    /**
+     * Insertion sort, there are usually only a handful of pairs.
+     */
+    private void sortPairs() {
+        for (int i = 1; i < pairCount; i++) {
+            int a = pairA[i];
+            int b = pairB[i];
+            int j = i - 1;
+            while (j >= 0 && (pairA[j] > a || (pairA[j] == a && pairB[j] > b))) {
+                pairA[j + 1] = pairA[j];
+                pairB[j + 1] = pairB[j];
+                j--;
+            }
+            pairA[j + 1] = a;
+            pairB[j + 1] = b;
+        }
+    }
+}
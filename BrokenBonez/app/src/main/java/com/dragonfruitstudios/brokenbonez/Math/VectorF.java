@@ -47,6 +47,15 @@ public class VectorF implements Serializable {
         return new VectorF(this);
     }
 
+    /**
+     * Copies this VectorF into `out`, which is returned. Unlike `copy` this doesn't allocate,
+     * so it can be used in code that runs every update.
+     */
+    public VectorF copy(VectorF out) {
+        out.set(x, y);
+        return out;
+    }
+
     /**
      * Rotate this instance of VectorF by `radians` amount of radians.
      * @param radians The amount of radians to rotate by.
@@ -73,6 +82,16 @@ public class VectorF implements Serializable {
         return result;
     }
 
+    /**
+     * Same as `rotated` but stores the result in `out` (which may be this VectorF) and returns
+     * it instead of creating a new VectorF.
+     */
+    public VectorF rotated(float radians, VectorF out) {
+        out.set(x, y);
+        out.rotate(radians);
+        return out;
+    }
+
     /**
      * Calculates the magnitude or length of this vector from origin which is (0, 0)
      * @return The length of this vector.
@@ -117,6 +136,15 @@ public class VectorF implements Serializable {
         return result;
     }
 
+    /**
+     * Same as `added` but stores the result in `out` (which may be this VectorF or `v`) and
+     * returns it instead of creating a new VectorF.
+     */
+    public VectorF added(VectorF v, VectorF out) {
+        out.set(x + v.x, y + v.y);
+        return out;
+    }
+
     /**
      * Returns a new copy of this vector with the decimal number `scalar` added to it.
      *
@@ -139,6 +167,14 @@ public class VectorF implements Serializable {
         y -= v.y;
     }
 
+    /**
+     * Subtract the specified x and y coordinates from this VectorF.
+     */
+    public void sub(float x, float y) {
+        this.x -= x;
+        this.y -= y;
+    }
+
     /**
      * Same as `sub` but returns a copy of VectorF.
      */
@@ -148,6 +184,15 @@ public class VectorF implements Serializable {
         return result;
     }
 
+    /**
+     * Same as `subtracted` but stores the result in `out` (which may be this VectorF or `v`)
+     * and returns it instead of creating a new VectorF.
+     */
+    public VectorF subtracted(VectorF v, VectorF out) {
+        out.set(x - v.x, y - v.y);
+        return out;
+    }
+
     /**
      * Multiply the specified VectorF `v` by the decimal number `scalar` and add the resulting
      * vector to this instance of VectorF.
@@ -174,6 +219,15 @@ public class VectorF implements Serializable {
         y *= v.y;
     }
 
+    /**
+     * Multiply this vector's x coordinate by `x` and its y coordinate by `y`. Same as
+     * `mult(VectorF)` without needing a VectorF to hold the factors.
+     */
+    public void mult(float x, float y) {
+        this.x *= x;
+        this.y *= y;
+    }
+
     public void div(float scalar) {
         x /= scalar;
         y /= scalar;
@@ -184,6 +238,31 @@ public class VectorF implements Serializable {
         y /= v.y;
     }
 
+    /**
+     * Divide this vector's x coordinate by `x` and its y coordinate by `y`.
+     */
+    public void div(float x, float y) {
+        this.x /= x;
+        this.y /= y;
+    }
+
+    /**
+     * Returns a new vector which is between this vector and `target`. An `alpha` of 0 returns a
+     * copy of this vector and an `alpha` of 1 returns a copy of `target` (linear interpolation).
+     */
+    public VectorF interpolated(VectorF target, float alpha) {
+        return new VectorF(x + (target.x - x) * alpha, y + (target.y - y) * alpha);
+    }
+
+    /**
+     * Same as `interpolated` but stores the result in `out` and returns it instead of creating
+     * a new VectorF.
+     */
+    public VectorF interpolated(VectorF target, float alpha, VectorF out) {
+        out.set(x + (target.x - x) * alpha, y + (target.y - y) * alpha);
+        return out;
+    }
+
     /**
      * Convert this vector instance into a Unit vector (i.e. a vector of magnitude 1).
      */
@@ -207,6 +286,16 @@ public class VectorF implements Serializable {
         return result;
     }
 
+    /**
+     * Same as `normalised` but stores the result in `out` (which may be this VectorF) and
+     * returns it instead of creating a new VectorF.
+     */
+    public VectorF normalised(VectorF out) {
+        out.set(x, y);
+        out.normalise();
+        return out;
+    }
+
     /**
      * Calculate the angle that this vector makes with the horizontal.
      */
@@ -302,6 +391,14 @@ public class VectorF implements Serializable {
 
     }
 
+    /**
+     * Sets this VectorF's coordinates to those of `v`.
+     */
+    public void set(VectorF v) {
+        this.x = v.x;
+        this.y = v.y;
+    }
+
     /**
      * Getter for the `x` field of this VectorF, which contains the x coordinate of this vector.
      * @return The x coordinate of this vector.
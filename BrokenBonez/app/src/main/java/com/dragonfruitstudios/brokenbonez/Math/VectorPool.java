@@ -0,0 +1,92 @@
+package com.dragonfruitstudios.brokenbonez.Math;
+
+import java.util.Arrays;
+
+/**
+ * A pool of temporary VectorFs for code which runs every update or every frame, where creating
+ * new VectorFs would produce garbage and eventually cause garbage collection pauses.
+ *
+ * Each thread has its own pool, so it can be used from the game loop and the physics thread at
+ * the same time. Vectors are obtained between a `mark` and a `release`:
+ *
+ *   VectorPool pool = VectorPool.get();
+ *   int mark = pool.mark();
+ *   VectorF tmp = pool.obtain(x, y);
+ *   ...
+ *   pool.release(mark);
+ *
+ * `release` returns every vector obtained since the `mark` to the pool, so they must not be
+ * used or kept after that.
+ */
+public final class VectorPool {
+    private static final ThreadLocal<VectorPool> pools = new ThreadLocal<VectorPool>() {
+        @Override
+        protected VectorPool initialValue() {
+            return new VectorPool();
+        }
+    };
+
+    private VectorF[] vectors;
+    private int used; // The amount of vectors currently obtained.
+
+    private VectorPool() {
+        vectors = new VectorF[16];
+    }
+
+    /**
+     * Returns the calling thread's pool.
+     */
+    public static VectorPool get() {
+        return pools.get();
+    }
+
+    /**
+     * Returns a value to pass to `release` once the vectors obtained after this call are no
+     * longer needed.
+     */
+    public int mark() {
+        return used;
+    }
+
+    /**
+     * Returns all vectors obtained since `mark` was returned to the pool.
+     */
+    public void release(int mark) {
+        if (mark < 0 || mark > used) {
+            throw new IllegalArgumentException("Invalid mark: " + mark);
+        }
+        used = mark;
+    }
+
+    /**
+     * Returns a temporary VectorF set to (`x`, `y`). The pool only grows when more vectors are
+     * in use at once than ever before.
+     */
+    public VectorF obtain(float x, float y) {
+        if (used == vectors.length) {
+            vectors = Arrays.copyOf(vectors, vectors.length * 2);
+        }
+        VectorF result = vectors[used];
+        if (result == null) {
+            result = new VectorF(0, 0);
+            vectors[used] = result;
+        }
+        used++;
+        result.set(x, y);
+        return result;
+    }
+
+    /**
+     * Returns a temporary copy of `v`.
+     */
+    public VectorF obtain(VectorF v) {
+        return obtain(v.x, v.y);
+    }
+
+    /**
+     * @return The amount of vectors obtained and not yet released.
+     */
+    public int getUsed() {
+        return used;
+    }
+}
@@ -4,11 +4,17 @@ import android.content.Context;
 import android.content.SharedPreferences;
 
 import com.dragonfruitstudios.brokenbonez.GameSceneManager;
+import com.dragonfruitstudios.brokenbonez.Math.Physics.Simulator;
 
 public class Settings {
     private boolean boolSoundEnabled;
     private boolean boolAccelEnabled;
     private boolean boolParticlesEnabled;
+    // How many solver iterations the physics simulation performs per step. Weaker devices can
+    // lower this to save CPU time.
+    private int physicsIterations;
+    // Whether the physics simulation runs on its own thread instead of in the game loop.
+    private boolean boolThreadedPhysics;
     private final GameSceneManager gameSceneManager;
 
     public Settings(GameSceneManager gameSceneManager){
@@ -43,11 +49,31 @@ public class Settings {
         this.boolParticlesEnabled = boolParticlesEnabled;
     }
 
+    public int getPhysicsIterations() {
+        load();
+        return physicsIterations;
+    }
+
+    public void setPhysicsIterations(int physicsIterations) {
+        this.physicsIterations = physicsIterations;
+    }
+
+    public boolean isBoolThreadedPhysics() {
+        load();
+        return boolThreadedPhysics;
+    }
+
+    public void setBoolThreadedPhysics(boolean boolThreadedPhysics) {
+        this.boolThreadedPhysics = boolThreadedPhysics;
+    }
+
     private void load(){
         SharedPreferences gamePrefs = this.gameSceneManager.gameView.getContext().getSharedPreferences("BrokenPrefs", Context.MODE_PRIVATE);
         this.boolSoundEnabled = gamePrefs.getBoolean("boolSoundEnabled", true);
         this.boolAccelEnabled = gamePrefs.getBoolean("boolAccelEnabled", true);
         this.boolParticlesEnabled = gamePrefs.getBoolean("boolParticlesEnabled", false);
+        this.physicsIterations = gamePrefs.getInt("physicsIterations", Simulator.defaultSolverIterations);
+        this.boolThreadedPhysics = gamePrefs.getBoolean("boolThreadedPhysics", false);
     }
 
     public void save(){
@@ -56,6 +82,8 @@ public class Settings {
         editor.putBoolean("boolSoundEnabled", this.boolSoundEnabled);
         editor.putBoolean("boolAccelEnabled", this.boolAccelEnabled);
         editor.putBoolean("boolParticlesEnabled", this.boolParticlesEnabled);
+        editor.putInt("physicsIterations", this.physicsIterations);
+        editor.putBoolean("boolThreadedPhysics", this.boolThreadedPhysics);
         editor.commit();
     }
 }
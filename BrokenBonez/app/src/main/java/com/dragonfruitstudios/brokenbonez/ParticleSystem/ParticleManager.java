@@ -19,6 +19,7 @@ public class ParticleManager implements GameObject{
 
     private int i = 0;
     private int j = 2;
+    private int particleBudget = 1; // How many particles are emitted at a time.
 
     public ParticleManager(AssetLoader assetLoader, GameSceneManager gameSceneManager){
         this.gameSceneManager = gameSceneManager;
@@ -57,13 +58,23 @@ public class ParticleManager implements GameObject{
             }
             j = 1;
         }
-        this.smokeParticleSystem = new ParticleSystem((int) bikePos.y - 25, 790, 100, 1, 10, smokeParticles[i], j, gameSceneManager);
+        int count = j * particleBudget;
+        if (smokeParticleSystem != null && smokeParticleSystem.getParticleCount() == count) {
+            // Reuse the particles instead of creating a new system every update.
+            smokeParticleSystem.reset((int) bikePos.y - 25, 790, 100, 1, 10, smokeParticles[i]);
+        } else {
+            this.smokeParticleSystem = new ParticleSystem((int) bikePos.y - 25, 790, 100, 1, 10, smokeParticles[i], count, gameSceneManager);
+        }
 
     }
     public void update(float lastUpdate) {
         smokeParticleSystem.updatePhysics((int) lastUpdate);
     }
 
+    public void setParticleBudget(int particleBudget) {
+        this.particleBudget = particleBudget;
+    }
+
     public void updateSize(int width, int height) {
 
     }
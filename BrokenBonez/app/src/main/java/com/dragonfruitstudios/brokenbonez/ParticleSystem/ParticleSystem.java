@@ -27,6 +27,21 @@ public class ParticleSystem {
         }
     }
 
+    /**
+     * Re-emits the existing particles from a new position, so that the same ParticleSystem can
+     * be reused every update instead of creating a new one.
+     */
+    public void reset(int startYPos, int startXPos,
+                      int xPosRange, int minSpeed, int speedRange, Bitmap bitmap) {
+        for (int i = 0; i < particles.length; i++) {
+            particles[i].reset(startYPos, startXPos, xPosRange, minSpeed, speedRange, bitmap);
+        }
+    }
+
+    public int getParticleCount() {
+        return particles.length;
+    }
+
     public void doDraw(GameView view) {
         for(int i = 0; i < particles.length; i++) {
             Particle particle = particles[i];
@@ -55,6 +70,13 @@ class Particle {
     public Particle(int startYPos, int startXPos,
                     int xPosRange, int minSpeed, int speedRange,
                     Bitmap bitmap) {
+        pos = new VectorF(0, 0);
+        reset(startYPos, startXPos, xPosRange, minSpeed, speedRange, bitmap);
+    }
+
+    public void reset(int startYPos, int startXPos,
+                      int xPosRange, int minSpeed, int speedRange,
+                      Bitmap bitmap) {
         ypos = startYPos;
         xpos = (int) (startXPos + Math.random() * xPosRange);
 
@@ -62,7 +84,7 @@ class Particle {
         this.startXPos = startXPos;
         this.speed = (minSpeed + speedRange);
         this.bitmap = bitmap;
-        pos = new VectorF(xpos, ypos);
+        pos.set(xpos, ypos);
         this.rotation = 0;
     }
 
@@ -1,8 +1,10 @@
 package com.dragonfruitstudios.brokenbonez;
 
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Capsule;
 import com.dragonfruitstudios.brokenbonez.Math.Collisions.Circle;
 import com.dragonfruitstudios.brokenbonez.Math.Collisions.Line;
 import com.dragonfruitstudios.brokenbonez.Math.Collisions.Manifold;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.OrientedBox;
 import com.dragonfruitstudios.brokenbonez.Math.Collisions.Polygon;
 import com.dragonfruitstudios.brokenbonez.Math.Collisions.Rect;
 import com.dragonfruitstudios.brokenbonez.Math.Collisions.Triangle;
@@ -45,6 +47,24 @@ public class CollisionTests {
         assertFalse(l2.collidesWith(new VectorF(0, 5)));
     }
 
+    @Test
+    public void lineCache_followsMovedPoints() {
+        Line l = new Line(0, 0, 30, 40);
+        assertEquals(50, l.getLength(), 0.0001);
+        assertEquals(0.02, l.getInverseLength(), 0.0001);
+        assertEquals(-0.8, l.getNormalX(), 0.0001);
+        assertEquals(0.6, l.getNormalY(), 0.0001);
+        assertEquals(Math.atan2(40, 30), l.calcRotation(), 0.0001);
+
+        // Moving the points directly, like Graphics.scaleLine does.
+        l.getFinish().set(0, 20);
+        assertEquals(20, l.getLength(), 0.0001);
+        assertEquals(0, l.getDirectionX(), 0.0001);
+        assertEquals(1, l.getDirectionY(), 0.0001);
+        assertEquals(Math.PI / 2, l.calcRotation(), 0.0001);
+        assertEquals(20, l.getSize().x, 0.0001);
+    }
+
     @Test
     public void polygonCollision_isCorrect() {
         Line triangleLeft = new Line(200, 300, 200, 150);
@@ -112,6 +132,152 @@ public class CollisionTests {
         assertTrue(collisionTest.hasCollisions());
     }
 
+    @Test
+    public void polygonSegmentTree_isCorrect() {
+        // A bumpy piece of ground made of many short lines, closed off by a skirt below it.
+        ArrayList<Line> lines = new ArrayList<Line>();
+        VectorF prev = new VectorF(0, 400);
+        for (int i = 1; i <= 2000; i++) {
+            VectorF next = new VectorF(i * 5, 400 + 40 * (float)Math.sin(i / 10.0));
+            lines.add(new Line(prev, next));
+            prev = next;
+        }
+        lines.add(new Line(prev, new VectorF(prev.x, 800)));
+        lines.add(new Line(new VectorF(prev.x, 800), new VectorF(0, 800)));
+        lines.add(new Line(new VectorF(0, 800), lines.get(0).getStart()));
+        Polygon polygon = new Polygon(lines);
+
+        for (float x = -20; x < 10100; x += 37) {
+            for (float y = 300; y < 850; y += 13) {
+                VectorF point = new VectorF(x, y);
+
+                // Brute force even-odd test.
+                boolean odd = false;
+                float closest = Float.MAX_VALUE;
+                for (Line l : lines) {
+                    if (l.getStart().y > y != l.getFinish().y > y &&
+                            x < (l.getFinish().x - l.getStart().x) * (y - l.getStart().y) /
+                            (l.getFinish().y - l.getStart().y) + l.getStart().x) {
+                        odd = !odd;
+                    }
+                    closest = Math.min(closest, l.distanceSquared(point));
+                }
+
+                assertEquals(odd, polygon.collisionTest(point).hasCollisions());
+                assertEquals(closest, polygon.distanceSquared(point), 0.01f);
+            }
+        }
+
+        // Circles which only touch one of the lines.
+        Circle wheel = new Circle(new VectorF(2500, 350), 20);
+        assertFalse(wheel.collisionTest(polygon).hasCollisions());
+        wheel.setCenter(2500, 400 + 40 * (float)Math.sin(50) - 15);
+        assertTrue(wheel.collisionTest(polygon).hasCollisions());
+    }
+
+    @Test
+    public void polygonPolygonCollision_isCorrect() {
+        // Two overlapping rectangles, the second one is pushed out upwards.
+        Rect ground = new Rect(new VectorF(0, 500), 1000, 50);
+        Rect box = new Rect(new VectorF(400, 460), 80, 50);
+        Manifold.Collection collisionTest = box.collisionTest(ground);
+        assertEquals(1, collisionTest.size());
+        assertEquals(0, collisionTest.get(0).getNormal().getX(), 0.0001);
+        assertEquals(1, collisionTest.get(0).getNormal().getY(), 0.0001);
+        assertEquals(10, collisionTest.get(0).getPenetration(), 0.0001);
+        box.setPos(new VectorF(400, 440));
+        assertFalse(box.collisionTest(ground).hasCollisions());
+
+        // An L shaped (concave) polygon, with its lines out of order and pointing either way.
+        Polygon l = new Polygon(new Line[] {
+                new Line(0, 0, 100, 0),
+                new Line(100, 100, 100, 0),
+                new Line(300, 100, 300, 200),
+                new Line(100, 100, 300, 100),
+                new Line(0, 200, 0, 0),
+                new Line(300, 200, 0, 200)
+        });
+        // A box in the notch of the L is inside its AABB but doesn't touch it.
+        box.setPos(new VectorF(150, 20));
+        assertFalse(l.collisionTest(box).hasCollisions());
+        assertFalse(box.collisionTest(l).hasCollisions());
+        // Lowering it into the bottom part of the L.
+        box.setPos(new VectorF(150, 55));
+        collisionTest = box.collisionTest(l);
+        assertTrue(collisionTest.hasCollisions());
+        for (Manifold m : collisionTest) {
+            assertEquals(0, m.getNormal().getX(), 0.0001);
+            assertEquals(1, m.getNormal().getY(), 0.0001);
+            assertEquals(5, m.getPenetration(), 0.0001);
+        }
+    }
+
+    @Test
+    public void orientedBoxAndCapsuleCollision_isCorrect() {
+        Rect ground = new Rect(new VectorF(0, 500), 1000, 50);
+
+        // A box rotated by 45 degrees, its lowest corner is sqrt(2) * 20 below its center.
+        OrientedBox box = new OrientedBox(500, 460, 20, 20, (float)Math.PI / 4);
+        assertFalse(box.overlaps(ground));
+        box.set(500, 480, (float)Math.sqrt(0.5), (float)Math.sqrt(0.5), 20, 20);
+        Manifold.Collection collisionTest = ground.collisionTest(box);
+        assertEquals(1, collisionTest.size());
+        assertEquals(0, collisionTest.get(0).getNormal().getX(), 0.0001);
+        assertEquals(-1, collisionTest.get(0).getNormal().getY(), 0.0001);
+        assertEquals(Math.sqrt(2) * 20 - 20, collisionTest.get(0).getPenetration(), 0.001);
+        assertTrue(box.overlaps(ground));
+
+        // Circles and boxes, the normal points from the box towards the circle.
+        Circle wheel = new Circle(500, 410, 20);
+        assertFalse(box.overlaps(wheel));
+        box.set(500, 480, 1, 0, 20, 20);
+        wheel.setCenter(500, 445);
+        collisionTest = box.collisionTest(wheel);
+        assertEquals(1, collisionTest.size());
+        assertEquals(-1, collisionTest.get(0).getNormal().getY(), 0.0001);
+        assertEquals(5, collisionTest.get(0).getPenetration(), 0.0001);
+        // Tested the other way round, the normal points from the circle towards the box.
+        collisionTest = wheel.collisionTest(box);
+        assertEquals(1, collisionTest.size());
+        assertEquals(1, collisionTest.get(0).getNormal().getY(), 0.0001);
+        assertEquals(5, collisionTest.get(0).getPenetration(), 0.0001);
+        OrientedBox other = new OrientedBox(535, 480, 20, 20, 0);
+        collisionTest = box.collisionTest(other);
+        assertEquals(1, collisionTest.size());
+        assertEquals(1, collisionTest.get(0).getNormal().getX(), 0.0001);
+        assertEquals(5, collisionTest.get(0).getPenetration(), 0.0001);
+
+        // A lying capsule resting slightly in the ground.
+        Capsule capsule = new Capsule(100, 490, 200, 490, 12);
+        collisionTest = capsule.collisionTest(ground);
+        assertTrue(collisionTest.hasCollisions());
+        for (Manifold m : collisionTest) {
+            assertEquals(1, m.getNormal().getY(), 0.0001);
+            assertEquals(2, m.getPenetration(), 0.0001);
+        }
+        capsule.set(100, 480, 200, 480);
+        assertFalse(capsule.overlaps(ground));
+        assertFalse(ground.overlaps(capsule));
+
+        // Capsules against capsules and circles.
+        Capsule crossing = new Capsule(150, 450, 150, 475, 10);
+        collisionTest = capsule.collisionTest(crossing);
+        assertEquals(1, collisionTest.size());
+        assertEquals(-1, collisionTest.get(0).getNormal().getY(), 0.0001);
+        assertEquals(17, collisionTest.get(0).getPenetration(), 0.0001);
+        wheel.setCenter(230, 480);
+        assertTrue(capsule.overlaps(wheel));
+        assertTrue(wheel.overlaps(capsule));
+        wheel.setCenter(233, 480);
+        assertFalse(capsule.overlaps(wheel));
+
+        // A capsule going right through a box.
+        box.set(150, 480, 1, 0, 5, 30);
+        assertTrue(capsule.overlaps(box));
+        collisionTest = capsule.collisionTest(box);
+        assertEquals(1, collisionTest.size());
+        assertEquals(42, collisionTest.get(0).getPenetration(), 0.0001);
+    }
 
     /*
     @Test
@@ -0,0 +1,120 @@
+package com.dragonfruitstudios.brokenbonez;
+
+import com.dragonfruitstudios.brokenbonez.Game.Levels.LevelInfo;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Circle;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Rect;
+import com.dragonfruitstudios.brokenbonez.Math.Physics.DynamicBody;
+import com.dragonfruitstudios.brokenbonez.Math.Physics.Simulator;
+import com.dragonfruitstudios.brokenbonez.Math.VectorF;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures how many physics ticks per second the Simulator manages as levels grow. Thanks to the
+ * broadphase the amount of static bodies in a level should barely affect this.
+ *
+ * The benchmark takes a while and its timings depend on the machine, so it is skipped unless it
+ * is asked for: `./gradlew test -Dbenchmarks=true`. The measured ticks per second are part of
+ * the assertion messages.
+ */
+public class PhysicsBenchmarkTests {
+    // Unit tests are run from the app module's directory.
+    static final String levelsDir = "src/main/assets/levels/";
+    static final int warmupTicks = 2000;
+    static final int measuredTicks = 20000;
+
+    @Before
+    public void checkEnabled() {
+        Assume.assumeTrue("Benchmarks are only run with -Dbenchmarks=true.",
+                Boolean.getBoolean("benchmarks"));
+    }
+
+    private LevelInfo loadLevel(String fileName) throws IOException {
+        String data = new String(Files.readAllBytes(new File(levelsDir, fileName).toPath()),
+                "UTF-8");
+        // Remove the DOCTYPE so that the parser doesn't try to download the DTD.
+        data = data.replaceFirst("(?s)<!DOCTYPE.*?>", "");
+        LevelInfo levelInfo = new LevelInfo(LevelInfo.LevelID.Level1, "", "", "");
+        levelInfo.loadSVG(new ByteArrayInputStream(data.getBytes("UTF-8")), new VectorF(-600, 0));
+        return levelInfo;
+    }
+
+    /**
+     * Creates a level made up of `count` small tiles laid out as a long floor which is two tiles
+     * thick.
+     */
+    private Simulator createTiledLevel(int count) {
+        Simulator sim = new Simulator();
+        for (int i = 0; i < count; i++) {
+            float x = (i / 2) * 50 - 600;
+            float y = 518 + (i % 2) * 50;
+            sim.createStaticBody(new Rect(new VectorF(x, y), 50, 50));
+        }
+        sim.rebuildStaticIndex();
+        return sim;
+    }
+
+    /**
+     * Drives a bike-like pair of wheels along the level and returns the ticks per second.
+     */
+    private double measure(Simulator sim) {
+        DynamicBody leftWheel = sim.createDynamicBody(new Circle(20, 480, 20), 200);
+        DynamicBody rightWheel = sim.createDynamicBody(new Circle(94, 480, 20), 200);
+        sim.createConstraint(leftWheel, rightWheel, 74);
+        leftWheel.setTorque(300);
+
+        for (int i = 0; i < warmupTicks; i++) {
+            tick(sim, leftWheel, rightWheel, i);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < measuredTicks; i++) {
+            tick(sim, leftWheel, rightWheel, i);
+        }
+        long elapsed = System.nanoTime() - start;
+        return measuredTicks / (elapsed / 1e9);
+    }
+
+    private void tick(Simulator sim, DynamicBody leftWheel, DynamicBody rightWheel, int i) {
+        // Put the bike back at the start regularly so that it never leaves the level.
+        if (i % 300 == 0) {
+            leftWheel.reset();
+            rightWheel.reset();
+            leftWheel.setPos(20, 480);
+            rightWheel.setPos(94, 480);
+        }
+        sim.update(16);
+    }
+
+    @Test
+    public void ticksPerSecond_isFlat() throws IOException {
+        StringBuilder results = new StringBuilder();
+        double slowestShipped = Double.MAX_VALUE;
+        for (int i = 1; i <= 4; i++) {
+            LevelInfo levelInfo = loadLevel("level" + i + ".svg");
+            Simulator sim = new Simulator();
+            levelInfo.loadSolids(sim);
+            double tps = measure(sim);
+            results.append(String.format("level%d.svg (%d solids): %.0f ticks/sec%n", i,
+                    levelInfo.getSolids().size(), tps));
+            slowestShipped = Math.min(slowestShipped, tps);
+        }
+
+        int[] sizes = {1000, 10000, 40000};
+        for (int size : sizes) {
+            double tps = measure(createTiledLevel(size));
+            results.append(String.format("%d tiles: %.0f ticks/sec%n", size, tps));
+            // Timings are noisy so this is deliberately loose, an O(n) scan would fail it easily.
+            assertTrue("Too slow with " + size + " tiles:\n" + results,
+                    tps > slowestShipped / 4);
+        }
+    }
+}
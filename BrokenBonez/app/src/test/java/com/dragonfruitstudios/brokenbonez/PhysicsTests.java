@@ -0,0 +1,956 @@
+package com.dragonfruitstudios.brokenbonez;
+
+import com.dragonfruitstudios.brokenbonez.Game.Camera;
+import com.dragonfruitstudios.brokenbonez.Game.Graphics;
+import com.dragonfruitstudios.brokenbonez.Game.QualityGovernor;
+import com.dragonfruitstudios.brokenbonez.Gameplay.Bike;
+import com.dragonfruitstudios.brokenbonez.Gameplay.BikeRun;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Capsule;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Circle;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.DistanceField;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Heightfield;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Line;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.OrientedBox;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Polygon;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Rect;
+import com.dragonfruitstudios.brokenbonez.Math.Collisions.Triangle;
+import com.dragonfruitstudios.brokenbonez.Math.Physics.BatchSimulator;
+import com.dragonfruitstudios.brokenbonez.Math.Physics.BodyStates;
+import com.dragonfruitstudios.brokenbonez.Math.Physics.Constraint;
+import com.dragonfruitstudios.brokenbonez.Math.Physics.DynamicBody;
+import com.dragonfruitstudios.brokenbonez.Math.Physics.KinematicBody;
+import com.dragonfruitstudios.brokenbonez.Math.Physics.PhysicsThread;
+import com.dragonfruitstudios.brokenbonez.Math.Physics.RaycastHit;
+import com.dragonfruitstudios.brokenbonez.Math.Physics.Simulator;
+import com.dragonfruitstudios.brokenbonez.Math.Physics.SnapshotBuffer;
+import com.dragonfruitstudios.brokenbonez.Math.Physics.StepMetrics;
+import com.dragonfruitstudios.brokenbonez.Math.VectorF;
+import com.dragonfruitstudios.brokenbonez.Math.VectorPool;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PhysicsTests {
+
+    /**
+     * Adds plenty of static bodies which are far away, so that the broadphase has to skip them.
+     */
+    private static void addDistantBodies(Simulator sim) {
+        for (int i = 0; i < 100; i++) {
+            sim.createStaticBody(new Rect(new VectorF(2000 + i * 100, 0), 50, 50));
+        }
+    }
+
+    @Test
+    public void wheel_landsOnStaticBody() {
+        Simulator sim = new Simulator();
+        addDistantBodies(sim);
+        sim.createStaticBody(new Rect(new VectorF(0, 500), 1000, 50));
+        DynamicBody wheel = sim.createDynamicBody(new Circle(500, 400, 20), 200);
+
+        for (int i = 0; i < 300; i++) {
+            sim.update(16);
+        }
+
+        // The wheel should be resting on top of the rectangle.
+        assertEquals(480, wheel.getPos().y, 2);
+        assertEquals(500, wheel.getPos().x, 1);
+    }
+
+    @Test
+    public void wheel_landsOnDistanceField() {
+        ArrayList<Polygon> solids = new ArrayList<Polygon>();
+        solids.add(new Rect(new VectorF(0, 500), 1000, 50));
+        solids.add(new Triangle(new VectorF(600, 400), 200, 100));
+        int maxBytes = 64 * 1024;
+        DistanceField field = new DistanceField(solids, maxBytes);
+        Simulator sim = new Simulator();
+        sim.createStaticBody(field);
+        DynamicBody wheel = sim.createDynamicBody(new Circle(300, 400, 20), 200);
+        DynamicBody rampWheel = sim.createDynamicBody(new Circle(620, 300, 20), 200);
+
+        for (int i = 0; i < 300; i++) {
+            sim.update(16);
+        }
+
+        assertTrue(field.getByteCount() > 0);
+        assertTrue(field.getByteCount() <= maxBytes);
+        // The wheel should be resting on top of the rectangle, like it does without the field.
+        assertEquals(480, wheel.getPos().y, 2);
+        assertEquals(300, wheel.getPos().x, 1);
+        // The other one should have rolled down the ramp.
+        assertTrue(rampWheel.getPos().x > 800);
+        assertEquals(480, rampWheel.getPos().y, 2);
+    }
+
+    @Test
+    public void wheel_restsOnOrientedBoxAndCapsule() {
+        // Both grounds have their top at y = 500, like the Rect in the other tests.
+        Simulator sim = new Simulator();
+        sim.createStaticBody(new OrientedBox(500, 525, 500, 25, 0));
+        sim.createStaticBody(new Capsule(1200, 510, 2200, 510, 10));
+        DynamicBody boxWheel = sim.createDynamicBody(new Circle(300, 400, 20), 200);
+        DynamicBody capsuleWheel = sim.createDynamicBody(new Circle(1700, 400, 20), 200);
+
+        for (int i = 0; i < 300; i++) {
+            sim.update(16);
+        }
+
+        assertEquals(480, boxWheel.getPos().y, 2);
+        assertEquals(300, boxWheel.getPos().x, 1);
+        assertEquals(480, capsuleWheel.getPos().y, 2);
+        assertEquals(1700, capsuleWheel.getPos().x, 1);
+    }
+
+    @Test
+    public void wheel_fallsWhenStaticBodyMissing() {
+        Simulator sim = new Simulator();
+        sim.createStaticBody(new Rect(new VectorF(0, 500), 100, 50));
+        DynamicBody wheel = sim.createDynamicBody(new Circle(500, 400, 20), 200);
+
+        for (int i = 0; i < 300; i++) {
+            sim.update(16);
+        }
+
+        assertTrue(wheel.getPos().y > 550);
+    }
+
+    @Test
+    public void body_handleChangesAreSimulated() {
+        Simulator sim = new Simulator();
+        // Plenty of bodies, like crash debris, to make sure each handle maps to its own state.
+        DynamicBody[] bodies = new DynamicBody[300];
+        for (int i = 0; i < bodies.length; i++) {
+            bodies[i] = sim.createDynamicBody(new Circle(i * 50, 0, 5), 10);
+            bodies[i].setHasGravity(false);
+        }
+
+        // Modify the vectors directly, like LevelBoost and the Bike do.
+        bodies[7].getVelocity().set(600, 0);
+        bodies[8].getPos().set(1000, 1000);
+        bodies[9].setRotation(2);
+        sim.update(16);
+
+        assertEquals(7 * 50 + 600f / 60, bodies[7].getPos().x, 0.5);
+        assertEquals(0, bodies[7].getPos().y, 0.001);
+        assertEquals(1000, bodies[8].getPos().x, 0.001);
+        assertEquals(1000, bodies[8].getPos().y, 0.001);
+        assertEquals(2, bodies[9].getRotation(), 0.001);
+        assertEquals(6 * 50, bodies[6].getPos().x, 0.001);
+        assertTrue(bodies[7].getVelocity().x < 600);
+    }
+
+    @Test
+    public void wheel_doesNotTunnelThroughThinLine() {
+        Simulator sim = new Simulator();
+        sim.createStaticBody(new Line(0, 500, 1000, 500));
+        DynamicBody wheel = sim.createDynamicBody(new Circle(500, 310, 20), 200);
+        // Fast enough to skip over the line completely in a single step.
+        wheel.getVelocity().set(0, 3000);
+
+        for (int i = 0; i < 600; i++) {
+            sim.update(16);
+            assertTrue(wheel.getPos().y < 500);
+        }
+
+        // The wheel should have bounced and come to rest on top of the line.
+        assertEquals(480, wheel.getPos().y, 2);
+    }
+
+    @Test
+    public void island_sleepsWhenRestingAndWakesTogether() {
+        Simulator sim = new Simulator();
+        sim.createStaticBody(new Rect(new VectorF(0, 500), 1000, 50));
+        DynamicBody leftWheel = sim.createDynamicBody(new Circle(400, 400, 20), 200);
+        DynamicBody rightWheel = sim.createDynamicBody(new Circle(474, 400, 20), 200);
+        sim.createConstraint(leftWheel, rightWheel, 74);
+        DynamicBody looseWheel = sim.createDynamicBody(new Circle(800, 300, 20), 200);
+
+        for (int i = 0; i < 300; i++) {
+            sim.update(16);
+        }
+        assertTrue(leftWheel.isAsleep());
+        assertTrue(rightWheel.isAsleep());
+        assertTrue(looseWheel.isAsleep());
+        assertTrue(leftWheel.isOnGround());
+        float restingY = leftWheel.getPos().y;
+        sim.update(16);
+        assertEquals(restingY, leftWheel.getPos().y, 0);
+
+        // Pushing one wheel wakes up the wheel it is constrained to, but not the loose one.
+        leftWheel.getVelocity().set(200, 0);
+        sim.update(16);
+        assertTrue(!leftWheel.isAsleep());
+        assertTrue(!rightWheel.isAsleep());
+        assertTrue(looseWheel.isAsleep());
+        assertTrue(rightWheel.getVelocity().x > 0);
+    }
+
+    @Test
+    public void bike_staysTogetherAtLowUpdateRate() {
+        // Weak devices run the physics at 30 Hz.
+        Simulator.setUpdateRate(30);
+        try {
+            Simulator sim = new Simulator();
+            sim.createStaticBody(new Rect(new VectorF(0, 500), 20000, 50));
+            DynamicBody leftWheel = sim.createDynamicBody(new Circle(400, 400, 20), 200);
+            DynamicBody rightWheel = sim.createDynamicBody(new Circle(474, 400, 20), 200);
+            sim.createConstraint(leftWheel, rightWheel, 74);
+
+            for (int i = 0; i < 150; i++) {
+                leftWheel.setTorque(500);
+                sim.update(33);
+                float separation = (float)Math.sqrt(
+                        leftWheel.getPos().distSquared(rightWheel.getPos()));
+                assertEquals(74, separation, 2);
+                assertTrue(leftWheel.getPos().y < 482);
+                assertTrue(rightWheel.getPos().y < 482);
+            }
+            // The bike should have driven forwards.
+            assertTrue(leftWheel.getPos().x > 600);
+        }
+        finally {
+            Simulator.setUpdateRate(60);
+        }
+    }
+
+    @Test
+    public void simulation_isDeterministic() {
+        Simulator[] sims = new Simulator[3];
+        DynamicBody[] leftWheels = new DynamicBody[sims.length];
+        for (int s = 0; s < sims.length; s++) {
+            sims[s] = new Simulator();
+            sims[s].createStaticBody(new Rect(new VectorF(0, 500), 1000, 50));
+            sims[s].createStaticBody(new Line(1000, 500, 2000, 300));
+            leftWheels[s] = sims[s].createDynamicBody(new Circle(400, 400, 20), 200);
+            DynamicBody rightWheel = sims[s].createDynamicBody(new Circle(474, 400, 20), 200);
+            sims[s].createConstraint(leftWheels[s], rightWheel, 74);
+        }
+
+        for (int i = 0; i < 600; i++) {
+            for (int s = 0; s < sims.length; s++) {
+                // The last simulator gets slightly different input.
+                float torque = s == 2 && i == 300 ? 499 : (i / 50) % 2 * 500;
+                leftWheels[s].setTorque(torque);
+                if (i == 200) {
+                    leftWheels[s].getVelocity().set(1000, 0);
+                }
+                sims[s].update(16);
+            }
+            assertEquals(sims[0].stateHash(), sims[1].stateHash());
+            assertEquals(i + 1, sims[0].getTick());
+        }
+        assertEquals(10, sims[0].getTime(), 0.001);
+        assertTrue(sims[0].stateHash() != sims[2].stateHash());
+    }
+
+    @Test
+    public void snapshot_rewindsSimulation() {
+        Simulator sim = new Simulator();
+        sim.createStaticBody(new Rect(new VectorF(0, 500), 1000, 50));
+        DynamicBody leftWheel = sim.createDynamicBody(new Circle(400, 400, 20), 200);
+        DynamicBody rightWheel = sim.createDynamicBody(new Circle(474, 400, 20), 200);
+        Constraint constraint = sim.createConstraint(leftWheel, rightWheel, 74);
+        SnapshotBuffer buffer = new SnapshotBuffer(120);
+
+        long[] hashes = new long[300];
+        for (int i = 0; i < hashes.length; i++) {
+            leftWheel.setTorque(i < 100 ? 500 : 0);
+            if (i == 250) {
+                // Crash, the bike falls apart.
+                sim.removeConstraint(constraint);
+            }
+            sim.update(16);
+            buffer.record(sim);
+            hashes[i] = sim.stateHash();
+        }
+        assertEquals(120, buffer.size());
+
+        // Rewind to before the crash and check that the simulation continues the same way.
+        buffer.rewind(sim, 100);
+        assertEquals(200, sim.getTick());
+        assertEquals(hashes[199], sim.stateHash());
+        assertEquals(20, buffer.size());
+        for (int i = 200; i < hashes.length; i++) {
+            leftWheel.setTorque(0);
+            if (i == 250) {
+                sim.removeConstraint(constraint);
+            }
+            sim.update(16);
+            assertEquals(hashes[i], sim.stateHash());
+        }
+    }
+
+    @Test
+    public void wheel_creepsAlongShortSegments() {
+        Simulator sim = new Simulator();
+        // Flat ground made of short segments, like the SVG levels.
+        ArrayList<Line> lines = new ArrayList<Line>();
+        VectorF prev = new VectorF(0, 500);
+        for (int i = 1; i <= 400; i++) {
+            VectorF next = new VectorF(i * 5, 500);
+            lines.add(new Line(prev, next));
+            prev = next;
+        }
+        lines.add(new Line(prev, new VectorF(prev.x, 600)));
+        lines.add(new Line(new VectorF(prev.x, 600), new VectorF(0, 600)));
+        lines.add(new Line(new VectorF(0, 600), lines.get(0).getStart()));
+        sim.addStaticShape(new Polygon(lines));
+        DynamicBody wheel = sim.createDynamicBody(new Circle(100, 479, 20), 200);
+        for (int i = 0; i < 60; i++) {
+            sim.update(16);
+        }
+
+        // Slow enough for the contacts to be reused between most steps.
+        for (int i = 0; i < 300; i++) {
+            wheel.getVelocity().x = 6;
+            sim.update(16);
+            assertEquals(480, wheel.getPos().y, 0.2);
+            assertTrue(wheel.isOnGround());
+        }
+        assertEquals(130, wheel.getPos().x, 2);
+    }
+
+    /**
+     * Creates hilly ground from left to right, closed like `LevelInfo` closes open paths.
+     */
+    private static Polygon createHills() {
+        ArrayList<Line> lines = new ArrayList<Line>();
+        VectorF prev = new VectorF(0, 500);
+        for (int i = 1; i <= 200; i++) {
+            VectorF next = new VectorF(i * 10, 500 + (float)Math.sin(i * 0.1) * 30);
+            lines.add(new Line(prev, next));
+            prev = next;
+        }
+        lines.add(new Line(prev, new VectorF(prev.x, 900)));
+        lines.add(new Line(new VectorF(prev.x, 900), new VectorF(0, 900)));
+        lines.add(new Line(new VectorF(0, 900), lines.get(0).getStart()));
+        return new Polygon(lines);
+    }
+
+    @Test
+    public void wheel_ridesHeightfieldLikePolygon() {
+        Polygon hills = createHills();
+        assertTrue(Heightfield.isMonotonic(hills.getLines(), 200));
+        assertTrue(!Heightfield.isMonotonic(hills.getLines(), 201));
+
+        Simulator polygonSim = new Simulator();
+        polygonSim.addStaticShape(hills);
+        DynamicBody polygonWheel = polygonSim.createDynamicBody(new Circle(100, 400, 20), 200);
+        Simulator heightfieldSim = new Simulator();
+        heightfieldSim.addStaticShape(new Heightfield(createHills(), 200));
+        DynamicBody heightfieldWheel = heightfieldSim.createDynamicBody(
+                new Circle(100, 400, 20), 200);
+
+        for (int i = 0; i < 400; i++) {
+            polygonWheel.getVelocity().x = Math.max(polygonWheel.getVelocity().x, 100);
+            heightfieldWheel.getVelocity().x = Math.max(heightfieldWheel.getVelocity().x, 100);
+            polygonSim.update(16);
+            heightfieldSim.update(16);
+            assertEquals(polygonWheel.getPos().x, heightfieldWheel.getPos().x, 0.5);
+            assertEquals(polygonWheel.getPos().y, heightfieldWheel.getPos().y, 0.5);
+        }
+        // It should have ridden over a few of the hills.
+        assertTrue(heightfieldWheel.getPos().x > 600);
+
+        // The left side still stops it.
+        DynamicBody inside = heightfieldSim.createDynamicBody(new Circle(-30, 700, 20), 200);
+        inside.getVelocity().x = 200;
+        for (int i = 0; i < 30; i++) {
+            heightfieldSim.update(16);
+        }
+        assertTrue(inside.getPos().x < -19);
+    }
+
+    @Test
+    public void qualityGovernor_followsFrameTime() {
+        Simulator sim = new Simulator();
+        QualityGovernor governor = new QualityGovernor(sim);
+        assertEquals(QualityGovernor.defaultLevel, governor.getLevel());
+        assertEquals(Simulator.defaultSolverIterations, sim.getSolverIterations());
+
+        // A slow device, which only manages 30 FPS, drops to the lowest level.
+        for (int i = 0; i < 60 * 10; i++) {
+            governor.recordStep(4);
+            governor.recordFrame(33);
+        }
+        assertEquals(0, governor.getLevel());
+        assertEquals(governor.getSettings().solverIterations, sim.getSolverIterations());
+        assertEquals(governor.getSettings().subSteps, sim.getMaxSubSteps());
+        assertEquals(0, governor.getParticleBudget());
+
+        // Once it keeps up with plenty of time to spare, it climbs back up to the highest.
+        for (int i = 0; i < 60 * 100; i++) {
+            governor.recordStep(0.5f);
+            governor.recordFrame(16);
+        }
+        assertEquals(governor.getLevelCount() - 1, governor.getLevel());
+        assertTrue(sim.getSolverIterations() > Simulator.defaultSolverIterations);
+
+        // Frames which keep up but leave no time to spare for the physics keep the level.
+        governor.setBounds(1, 3);
+        assertEquals(3, governor.getLevel());
+        for (int i = 0; i < 60 * 100; i++) {
+            governor.recordStep(6);
+            governor.recordFrame(16);
+        }
+        assertEquals(3, governor.getLevel());
+        assertEquals(QualityGovernor.defaultLevel,
+                QualityGovernor.levelForIterations(Simulator.defaultSolverIterations));
+    }
+
+    @Test
+    public void physicsThread_publishesStates() throws InterruptedException {
+        // Stepped directly, a PhysicsThread simulates exactly like a Simulator updated with
+        // the same step time.
+        Simulator direct = new Simulator();
+        direct.createStaticBody(new Rect(new VectorF(0, 500), 1000, 50));
+        direct.createDynamicBody(new Circle(500, 400, 20), 200);
+        direct.setStepTime(1 / 120f);
+        Simulator stepped = new Simulator();
+        stepped.createStaticBody(new Rect(new VectorF(0, 500), 1000, 50));
+        stepped.createDynamicBody(new Circle(500, 400, 20), 200);
+        PhysicsThread physics = new PhysicsThread(stepped, 120);
+        for (int i = 0; i < 60; i++) {
+            direct.update(16);
+            physics.step();
+        }
+        assertEquals(direct.stateHash(), stepped.stateHash());
+        assertEquals(0.5, stepped.getTime(), 0.001);
+        BodyStates states = physics.getLatest();
+        assertEquals(60, states.getTick());
+        assertEquals(stepped.getTick(), states.getTick());
+
+        // Running on its own thread, with the wheel added by a command.
+        Simulator sim = new Simulator();
+        sim.createStaticBody(new Rect(new VectorF(0, 500), 1000, 50));
+        final PhysicsThread thread = new PhysicsThread(sim, 240);
+        thread.post(new Runnable() {
+            @Override
+            public void run() {
+                thread.getSimulator().createDynamicBody(new Circle(500, 400, 20), 200);
+            }
+        });
+        thread.start();
+        long deadline = System.currentTimeMillis() + 10000;
+        long lastTick = -1;
+        while (thread.getLatest().getTick() < 480 && System.currentTimeMillis() < deadline) {
+            BodyStates latest = thread.getLatest();
+            assertTrue(latest.getTick() >= lastTick);
+            lastTick = latest.getTick();
+            Thread.sleep(1);
+        }
+        thread.stop();
+        assertTrue(!thread.isRunning());
+
+        states = thread.getLatest();
+        assertTrue(states.getTick() >= 480);
+        assertEquals(1, states.getBodyCount());
+        // The wheel should be resting on top of the rectangle.
+        assertEquals(480, states.getY(0), 2);
+        assertEquals(500, states.getX(0), 1);
+        assertTrue(states.isOnGround(0));
+    }
+
+    @Test
+    public void physicsThread_reusesStates() {
+        Simulator sim = new Simulator();
+        sim.createStaticBody(new Rect(new VectorF(0, 500), 1000, 50));
+        sim.createDynamicBody(new Circle(500, 300, 20), 200);
+        PhysicsThread physics = new PhysicsThread(sim, 120);
+        physics.step();
+        BodyStates first = physics.getLatest();
+        float firstY = first.getY(0);
+        assertEquals(1, first.getTick());
+
+        // The reader's states aren't overwritten until it asks for newer ones.
+        physics.step();
+        physics.step();
+        assertEquals(1, first.getTick());
+        assertEquals(firstY, first.getY(0), 0);
+        BodyStates third = physics.getLatest();
+        assertEquals(3, third.getTick());
+        assertTrue(third.getY(0) > firstY);
+        // Without a new step, the same states are returned.
+        assertTrue(physics.getLatest() == third);
+
+        // Only three buffers are ever used.
+        Set<BodyStates> buffers =
+                Collections.newSetFromMap(new IdentityHashMap<BodyStates, Boolean>());
+        for (int i = 0; i < 100; i++) {
+            physics.step();
+            if (i % 3 == 0) {
+                physics.step();
+            }
+            BodyStates latest = physics.getLatest();
+            assertEquals(sim.getTick(), latest.getTick());
+            buffers.add(latest);
+        }
+        assertTrue(buffers.size() <= 3);
+    }
+
+    @Test
+    public void wheel_ridesKinematicLift() {
+        Simulator sim = new Simulator();
+        sim.createStaticBody(new Rect(new VectorF(0, 500), 1000, 50));
+        KinematicBody lift = sim.createKinematicBody(new Rect(new VectorF(1200, 500), 200, 20));
+        DynamicBody wheel = sim.createDynamicBody(new Circle(1300, 479, 20), 200);
+        for (int i = 0; i < 60; i++) {
+            sim.update(16);
+        }
+        assertEquals(480, wheel.getPos().y, 0.2);
+
+        // Going up for two seconds.
+        lift.setVelocity(0, -100);
+        for (int i = 0; i < 120; i++) {
+            sim.update(16);
+            assertEquals(lift.getShape().getAABB().minY - 20, wheel.getPos().y, 2);
+        }
+        assertEquals(300, lift.getShape().getAABB().minY, 0.01);
+
+        // Stopping, the wheel should settle and fall asleep on the lift.
+        lift.setVelocity(0, 0);
+        for (int i = 0; i < 120; i++) {
+            sim.update(16);
+        }
+        assertEquals(280, wheel.getPos().y, 0.2);
+        assertTrue(wheel.isOnGround());
+
+        // Going back down (slower than the wheel falls) wakes it up and it follows the lift.
+        lift.setVelocity(0, 30);
+        for (int i = 0; i < 60; i++) {
+            sim.update(16);
+        }
+        assertEquals(310, wheel.getPos().y, 0.5);
+
+        // The incrementally updated broadphase finds the lift where it is now.
+        assertTrue(sim.collidesWith(new Rect(new VectorF(1250, 335), 10, 10)));
+        assertTrue(!sim.collidesWith(new Rect(new VectorF(1250, 505), 10, 10)));
+    }
+
+    @Test
+    public void kinematicBody_wakesOnlyBodiesInItsWay() {
+        Simulator sim = new Simulator();
+        sim.createStaticBody(new Rect(new VectorF(0, 500), 2000, 50));
+        KinematicBody pusher = sim.createKinematicBody(new Rect(new VectorF(200, 440), 50, 40));
+        DynamicBody near = sim.createDynamicBody(new Circle(300, 479, 20), 200);
+        DynamicBody far = sim.createDynamicBody(new Circle(1500, 479, 20), 200);
+        for (int i = 0; i < 60; i++) {
+            sim.update(16);
+        }
+        assertTrue(near.isAsleep());
+        assertTrue(far.isAsleep());
+
+        pusher.setVelocity(200, 0);
+        // Not yet within reach of the pusher.
+        sim.update(16);
+        assertTrue(near.isAsleep());
+        for (int i = 0; i < 20; i++) {
+            sim.update(16);
+        }
+        assertTrue(!near.isAsleep());
+        assertTrue(far.isAsleep());
+        // It was pushed rather than passed through.
+        assertTrue(near.getPos().x > pusher.getShape().getAABB().maxX);
+    }
+
+    @Test
+    public void wheels_collideWithEachOther() {
+        Simulator sim = new Simulator();
+        sim.createStaticBody(new Rect(new VectorF(0, 500), 1000, 50));
+        DynamicBody left = sim.createDynamicBody(new Circle(300, 479, 20), 200);
+        DynamicBody right = sim.createDynamicBody(new Circle(500, 479, 20), 200);
+        left.setVelocity(new VectorF(300, 0));
+        right.setVelocity(new VectorF(-300, 0));
+        for (int i = 0; i < 120; i++) {
+            sim.update(16);
+            assertTrue(right.getPos().x - left.getPos().x > 40 - 0.5);
+        }
+        // They bounced off each other rather than passing through.
+        assertTrue(left.getPos().x < 400);
+        assertTrue(right.getPos().x > 400);
+
+        // A wheel dropped on top of a sleeping wheel comes to rest on it.
+        Simulator stack = new Simulator();
+        stack.createStaticBody(new Rect(new VectorF(0, 500), 1000, 50));
+        DynamicBody bottom = stack.createDynamicBody(new Circle(500, 479, 20), 200);
+        for (int i = 0; i < 60; i++) {
+            stack.update(16);
+        }
+        assertTrue(bottom.isAsleep());
+        DynamicBody top = stack.createDynamicBody(new Circle(500, 300, 20), 200);
+        for (int i = 0; i < 120; i++) {
+            stack.update(16);
+        }
+        assertEquals(440, top.getPos().y, 1);
+        assertEquals(480, bottom.getPos().y, 0.2);
+    }
+
+    @Test
+    public void constrainedWheels_dontCollide() {
+        Simulator sim = new Simulator();
+        sim.createStaticBody(new Rect(new VectorF(0, 500), 1000, 50));
+        // Several constraints, so that the looked up pair isn't the only one.
+        DynamicBody[] wheels = new DynamicBody[6];
+        Constraint[] constraints = new Constraint[3];
+        for (int i = 0; i < 3; i++) {
+            wheels[i * 2] = sim.createDynamicBody(new Circle(100 + i * 300, 479, 20), 200);
+            wheels[i * 2 + 1] = sim.createDynamicBody(new Circle(110 + i * 300, 479, 20), 200);
+        }
+        // Constrained in a different order than they were created in.
+        for (int i = 2; i >= 0; i--) {
+            constraints[i] = sim.createConstraint(wheels[i * 2 + 1], wheels[i * 2], 10);
+        }
+        for (int i = 0; i < 60; i++) {
+            sim.update(16);
+        }
+        for (int i = 0; i < 3; i++) {
+            assertEquals(10, wheels[i * 2 + 1].getPos().x - wheels[i * 2].getPos().x, 1);
+        }
+
+        // Without its constraint, a pair of wheels pushes each other apart.
+        sim.removeConstraint(constraints[1]);
+        for (int i = 0; i < 60; i++) {
+            sim.update(16);
+        }
+        assertTrue(wheels[3].getPos().x - wheels[2].getPos().x > 40 - 0.5);
+        assertEquals(10, wheels[1].getPos().x - wheels[0].getPos().x, 1);
+        assertEquals(10, wheels[5].getPos().x - wheels[4].getPos().x, 1);
+    }
+
+    @Test
+    public void collidesWith_onlyReportsOverlaps() {
+        Simulator sim = new Simulator();
+        addDistantBodies(sim);
+        sim.createStaticBody(new Triangle(new VectorF(0, 500), 1000, 100));
+
+        // The bike's body, like `Bike.update` checks for crashes.
+        Rect bodyRect = new Rect(new VectorF(2060, 10), 30, 10);
+        assertTrue(!sim.collidesWith(bodyRect));
+        bodyRect.setPos(new VectorF(2040, 10));
+        assertTrue(sim.collidesWith(bodyRect));
+        bodyRect.setPos(new VectorF(2040, 60));
+        assertTrue(!sim.collidesWith(bodyRect));
+
+        Circle wheel = new Circle(2075, 25, 20);
+        assertTrue(!sim.collidesWith(wheel));
+        wheel.setCenter(2025, 70);
+        assertTrue(sim.collidesWith(wheel));
+        // Inside the triangle without touching its edges.
+        wheel.setCenter(300, 575);
+        assertTrue(sim.collidesWith(wheel));
+    }
+
+    @Test
+    public void raycastAndShapeCast_findFirstHit() {
+        Simulator sim = new Simulator();
+        addDistantBodies(sim);
+        sim.createStaticBody(new Rect(new VectorF(0, 500), 1000, 50));
+        sim.createStaticBody(new Line(0, 450, 200, 450));
+
+        // How far above the ground is the bike?
+        RaycastHit hit = sim.raycast(new VectorF(500, 100), new VectorF(0, 2), 1000);
+        assertEquals(500, hit.getPoint().x, 0.001);
+        assertEquals(500, hit.getPoint().y, 0.001);
+        assertEquals(0, hit.getNormal().x, 0.001);
+        assertEquals(-1, hit.getNormal().y, 0.001);
+        assertEquals(400, hit.getDistance(), 0.001);
+        assertEquals(0.4, hit.getFraction(), 0.001);
+        // The thin line is in front of the rectangle.
+        hit = sim.raycast(new VectorF(100, 100), new VectorF(0, 1), 1000);
+        assertEquals(450, hit.getPoint().y, 0.001);
+        assertEquals(null, sim.raycast(new VectorF(500, 100), new VectorF(0, 1), 300));
+        assertEquals(null, sim.raycast(new VectorF(1500, 100), new VectorF(0, 1), 1000));
+
+        // A wheel falling diagonally onto the ground.
+        Circle wheel = new Circle(400, 300, 20);
+        hit = sim.shapeCast(wheel, new VectorF(300, 300));
+        assertEquals(180f / 300, hit.getFraction(), 0.001);
+        assertEquals(580, hit.getPoint().x, 0.001);
+        assertEquals(500, hit.getPoint().y, 0.001);
+        assertEquals(-1, hit.getNormal().y, 0.001);
+        assertEquals(400, wheel.getCenter().x, 0);
+        // Rolling along the ground doesn't hit it.
+        wheel.setCenter(400, 480);
+        assertEquals(null, sim.shapeCast(wheel, new VectorF(300, 0)));
+
+        // Capsules are hit on their sides and their rounded ends.
+        sim.createStaticBody(new Capsule(1200, 300, 1400, 300, 10));
+        hit = sim.raycast(new VectorF(1300, 100), new VectorF(0, 1), 1000);
+        assertEquals(290, hit.getPoint().y, 0.001);
+        assertEquals(-1, hit.getNormal().y, 0.001);
+        hit = sim.raycast(new VectorF(1100, 300), new VectorF(1, 0), 1000);
+        assertEquals(1190, hit.getPoint().x, 0.001);
+        assertEquals(-1, hit.getNormal().x, 0.001);
+        hit = sim.raycast(new VectorF(1400, 100), new VectorF(0, 1), 1000);
+        assertEquals(290, hit.getPoint().y, 0.001);
+        assertEquals(null, sim.raycast(new VectorF(1415, 100), new VectorF(0, 1), 1000));
+    }
+
+    @Test
+    public void sweptWheel_hitsOrientedBoxAndCapsule() {
+        // Thin grounds with their top at y = 500.
+        Simulator sim = new Simulator();
+        sim.createStaticBody(new OrientedBox(500, 505, 500, 5, 0));
+        sim.createStaticBody(new Capsule(1200, 505, 2200, 505, 5));
+
+        Circle wheel = new Circle(400, 300, 20);
+        RaycastHit hit = sim.shapeCast(wheel, new VectorF(0, 300));
+        assertEquals(180f / 300, hit.getFraction(), 0.001);
+        assertEquals(500, hit.getPoint().y, 0.001);
+        assertEquals(-1, hit.getNormal().y, 0.001);
+        wheel.setCenter(1700, 300);
+        hit = sim.shapeCast(wheel, new VectorF(0, 300));
+        assertEquals(180f / 300, hit.getFraction(), 0.001);
+        assertEquals(500, hit.getPoint().y, 0.001);
+        assertEquals(-1, hit.getNormal().y, 0.001);
+
+        // Without sub-steps, wheels this fast would pass right through the thin grounds.
+        sim.setMaxSubSteps(1);
+        DynamicBody boxWheel = sim.createDynamicBody(new Circle(300, 200, 20), 200);
+        DynamicBody capsuleWheel = sim.createDynamicBody(new Circle(1700, 200, 20), 200);
+        boxWheel.getVelocity().set(0, 3000);
+        capsuleWheel.getVelocity().set(0, 3000);
+        for (int i = 0; i < 600; i++) {
+            sim.update(16);
+            assertTrue(boxWheel.getPos().y < 500);
+            assertTrue(capsuleWheel.getPos().y < 500);
+        }
+        assertEquals(480, boxWheel.getPos().y, 2);
+        assertEquals(480, capsuleWheel.getPos().y, 2);
+    }
+
+    /**
+     * A single step of the code under test in `assertAllocationFree`.
+     */
+    private interface Tick {
+        void run(int i);
+    }
+
+    // Allocations which don't depend on the amount of ticks (e.g. by the JIT compiler while
+    // the ticks are measured) must stay below this many bytes.
+    private static final long allocationNoise = 4096;
+
+    /**
+     * Checks that `tick` doesn't allocate memory once it has warmed up. The JIT compiler (and
+     * escape analysis giving up now and then) allocates a little while the ticks are measured,
+     * so rather than expecting exactly 0 bytes this compares a short run with a run 10 times
+     * as long: memory allocated by the ticks themselves grows with the amount of ticks.
+     */
+    private void assertAllocationFree(Tick tick) {
+        // Run for a while so that pools (e.g. of contacts) reach their final size.
+        int i = 0;
+        for (; i < 5000; i++) {
+            tick.run(i);
+        }
+
+        com.sun.management.ThreadMXBean bean = getAllocationBean();
+        if (bean == null) {
+            return; // Can't measure allocations on this JVM.
+        }
+        // Look up the thread ID beforehand, so that the measurement itself doesn't allocate.
+        long threadId = Thread.currentThread().getId();
+        bean.getThreadAllocatedBytes(threadId);
+
+        // Take the smallest of a few measurements of each length to filter out the noise.
+        long shortRun = Long.MAX_VALUE;
+        long longRun = Long.MAX_VALUE;
+        for (int attempt = 0; attempt < 3; attempt++) {
+            long before = bean.getThreadAllocatedBytes(threadId);
+            for (int end = i + 500; i < end; i++) {
+                tick.run(i);
+            }
+            long middle = bean.getThreadAllocatedBytes(threadId);
+            for (int end = i + 5000; i < end; i++) {
+                tick.run(i);
+            }
+            long after = bean.getThreadAllocatedBytes(threadId);
+            shortRun = Math.min(shortRun, middle - before);
+            longRun = Math.min(longRun, after - middle);
+        }
+
+        assertTrue("500 ticks allocated " + shortRun + " bytes and 5000 ticks allocated " +
+                longRun + " bytes.", longRun - shortRun < allocationNoise);
+    }
+
+    /**
+     * Returns the JVM's thread bean if it can measure how much memory a thread allocates.
+     */
+    private com.sun.management.ThreadMXBean getAllocationBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean &&
+                ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported()) {
+            return (com.sun.management.ThreadMXBean)bean;
+        }
+        return null;
+    }
+
+    @Test
+    public void stepMetrics_countWork() {
+        Simulator sim = new Simulator();
+        addDistantBodies(sim);
+        sim.createStaticBody(new Rect(new VectorF(0, 500), 1000, 50));
+        sim.createDynamicBody(new Circle(500, 470, 20), 200);
+
+        final ArrayList<String> steps = new ArrayList<String>();
+        sim.setMetricsListener(new StepMetrics.Listener() {
+            @Override
+            public void onStep(StepMetrics metrics) {
+                // The broadphase should only ever find the ground.
+                assertTrue(metrics.getCandidatePairs() <= 1 + metrics.getSubSteps());
+                assertTrue(metrics.getTotalNanos() >= metrics.getSolveNanos());
+                steps.add(metrics.getTick() + " " + metrics.getAwakeBodies() + " " +
+                        metrics.getManifolds() + " " + metrics.getReusedContacts() + " " +
+                        metrics.getConstraintIterations());
+            }
+        });
+
+        for (int i = 0; i < 120; i++) {
+            sim.update(16);
+        }
+        assertEquals(120, steps.size());
+        // Resting on the ground, one contact which is solved in each iteration.
+        assertEquals("45 1 1 1 " + Simulator.defaultSolverIterations, steps.get(44));
+        // Asleep.
+        assertEquals("120 0 0 0 0", steps.get(119));
+
+        sim.setMetricsListener(null);
+        sim.update(16);
+        assertEquals(120, steps.size());
+    }
+
+    @Test
+    public void batchSimulator_matchesSerialRuns() {
+        // Bumpy ground, so that the wheels hit lots of the shared Lines.
+        ArrayList<Line> lines = new ArrayList<Line>();
+        VectorF prev = new VectorF(0, 500);
+        for (int i = 1; i <= 1000; i++) {
+            VectorF next = new VectorF(i * 5, 500 + 10 * (float)Math.sin(i / 8.0));
+            lines.add(new Line(prev, next));
+            prev = next;
+        }
+        lines.add(new Line(prev, new VectorF(prev.x, 700)));
+        lines.add(new Line(new VectorF(prev.x, 700), new VectorF(0, 700)));
+        lines.add(new Line(new VectorF(0, 700), lines.get(0).getStart()));
+        ArrayList<Polygon> level = new ArrayList<Polygon>();
+        level.add(new Polygon(lines));
+
+        ArrayList<BikeRun> runs = new ArrayList<BikeRun>();
+        for (int i = 0; i < 16; i++) {
+            BikeRun run = new BikeRun(new VectorF(20, 400), Bike.BodyType.Bike, 1, 3000);
+            run.setGravity(Simulator.gravityScaled * (0.5f + i / 10f));
+            runs.add(run);
+        }
+        new BatchSimulator(level, new ForkJoinPool(4)).run(runs, 1200);
+
+        for (int i = 0; i < runs.size(); i++) {
+            // The same run on its own, with its own copy of the level.
+            BikeRun run = new BikeRun(new VectorF(20, 400), Bike.BodyType.Bike, 1, 3000);
+            run.setGravity(Simulator.gravityScaled * (0.5f + i / 10f));
+            Simulator sim = new Simulator();
+            sim.addStaticShape(new Polygon(new ArrayList<Line>(lines)));
+            run.setUp(sim);
+            for (int step = 0; step < 1200 && run.update(sim); step++) {
+                sim.update(16);
+            }
+            run.finish(sim);
+
+            assertTrue(runs.get(i).getSteps() > 0);
+            assertEquals(run.getSteps(), runs.get(i).getSteps());
+            assertEquals(run.getStateHash(), runs.get(i).getStateHash());
+        }
+        // The wheels spend more time on the ground with more gravity, so the bike is faster.
+        assertTrue(!runs.get(0).hasFinished());
+        assertTrue(runs.get(15).hasFinished());
+    }
+
+    @Test
+    public void step_allocatesNothing() {
+        final Simulator sim = new Simulator();
+        sim.createStaticBody(new Rect(new VectorF(0, 500), 1000, 50));
+        // A bumpy polygon, so that wheels also collide with its edges and vertices.
+        ArrayList<Line> lines = new ArrayList<Line>();
+        VectorF prev = new VectorF(1000, 500);
+        for (int i = 1; i <= 100; i++) {
+            VectorF next = new VectorF(1000 + i * 10, 500 - 10 * (i % 2));
+            lines.add(new Line(prev, next));
+            prev = next;
+        }
+        lines.add(new Line(prev, new VectorF(prev.x, 600)));
+        lines.add(new Line(new VectorF(prev.x, 600), new VectorF(1000, 600)));
+        lines.add(new Line(new VectorF(1000, 600), lines.get(0).getStart()));
+        sim.addStaticShape(new Polygon(lines));
+
+        final DynamicBody leftWheel = sim.createDynamicBody(new Circle(800, 400, 20), 200);
+        final DynamicBody rightWheel = sim.createDynamicBody(new Circle(874, 400, 20), 200);
+        sim.createConstraint(leftWheel, rightWheel, 74);
+
+        assertAllocationFree(new Tick() {
+            @Override
+            public void run(int i) {
+                stepBike(sim, leftWheel, rightWheel, i);
+            }
+        });
+    }
+
+    @Test
+    public void gameplayTick_allocatesNothing() {
+        // The parts of `GameState.update` which don't need Android: the bike's throttle and
+        // tilting (through BikeRun, which shares `Bike.tilt`), the physics step and the camera.
+        final Simulator sim = new Simulator();
+        sim.createStaticBody(new Rect(new VectorF(0, 500), 1000000, 50));
+        final BikeRun run = new BikeRun(new VectorF(20, 400), Bike.BodyType.Bike, 1,
+                Float.MAX_VALUE);
+        run.setUp(sim);
+        final Camera camera = new Camera(1280, 768);
+        final VectorF pos = new VectorF(0, 0);
+
+        assertAllocationFree(new Tick() {
+            @Override
+            public void run(int i) {
+                gameplayTick(sim, run, camera, pos, i);
+            }
+        });
+        assertEquals(0, VectorPool.get().getUsed());
+    }
+
+    private void gameplayTick(Simulator sim, BikeRun run, Camera camera, VectorF pos, int i) {
+        // Tilt backwards every now and then.
+        run.setTilt(i % 120 < 30 ? -1 : 0);
+        camera.savePreviousState();
+        run.update(sim);
+        sim.update(16);
+
+        pos.set(run.getPos());
+        Graphics.scalePos(pos, 1920, 1080);
+        camera.centerHorizontally(pos.x);
+
+        VectorPool pool = VectorPool.get();
+        int mark = pool.mark();
+        VectorF center = pool.obtain(run.getPos()).added(pos, pool.obtain(0, 0));
+        center.mult(0.5f);
+        center.rotated(0.1f, center).normalised(center);
+        pool.release(mark);
+    }
+
+    private void stepBike(Simulator sim, DynamicBody leftWheel, DynamicBody rightWheel, int i) {
+        // Drive the bike across both bodies, then drop it back at the start.
+        if (i % 500 == 0) {
+            leftWheel.reset();
+            rightWheel.reset();
+            leftWheel.setPos(800, 400);
+            rightWheel.setPos(874, 400);
+            leftWheel.setTorque(500);
+        }
+        sim.update(16);
+    }
+}
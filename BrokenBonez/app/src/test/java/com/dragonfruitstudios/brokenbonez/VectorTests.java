@@ -1,6 +1,7 @@
 package com.dragonfruitstudios.brokenbonez;
 
 import com.dragonfruitstudios.brokenbonez.Math.VectorF;
+import com.dragonfruitstudios.brokenbonez.Math.VectorPool;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -83,4 +84,55 @@ public class VectorTests {
         assertEquals(7.5f, copy.x, 0.001);
     }
 
+    @Test
+    public void outVariants_matchCopyingVariants() {
+        VectorF out = new VectorF(0, 0);
+        assertSame(out, vec2.added(vec1, out));
+        assertEquals(vec2.added(vec1).x, out.x, 0.0001);
+        assertEquals(vec2.added(vec1).y, out.y, 0.0001);
+
+        vec2.subtracted(vec3, out);
+        assertEquals(0, out.x, 0.0001);
+        assertEquals(-5, out.y, 0.0001);
+
+        vec1.rotated((float) Math.toRadians(90), out);
+        assertEquals(0, out.x, 0.0001);
+        assertEquals(5, out.y, 0.0001);
+
+        vec2.normalised(out);
+        assertEquals(vec2.normalised().x, out.x, 0.0001);
+
+        vec1.interpolated(vec3, 0.5f, out);
+        assertEquals(5, out.y, 0.0001);
+
+        // The source vectors are left alone, and the result can be stored in place.
+        assertEquals(5, vec1.x, 0.0001);
+        vec2.added(vec2, vec2);
+        assertEquals(10, vec2.x, 0.0001);
+
+        vec3.div(5, 2);
+        vec3.mult(2, 3);
+        assertEquals(2, vec3.x, 0.0001);
+        assertEquals(15, vec3.y, 0.0001);
+    }
+
+    @Test
+    public void vectorPool_reusesVectors() {
+        VectorPool pool = VectorPool.get();
+        int mark = pool.mark();
+        VectorF first = pool.obtain(1, 2);
+        // Obtain more vectors than the pool initially holds.
+        for (int i = 0; i < 100; i++) {
+            pool.obtain(i, i);
+        }
+        assertEquals(1, first.x, 0.0001);
+        pool.release(mark);
+        assertEquals(mark, pool.getUsed());
+
+        VectorF again = pool.obtain(3, 4);
+        assertSame(first, again);
+        assertEquals(4, again.y, 0.0001);
+        pool.release(mark);
+    }
+
 }
\ No newline at end of file